@@ -1,10 +1,12 @@
 package com.tencent.supersonic.common.config;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -34,6 +36,25 @@ public class ThreadPoolConfig {
                 new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
+    @Bean("downloadExecutor")
+    public ThreadPoolExecutor getDownloadExecutor() {
+        return new ThreadPoolExecutor(4, 8, 60 * 3, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(1024),
+                new ThreadFactoryBuilder().setNameFormat("supersonic-download-pool-").build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * the candidates are not queued, a candidate beyond the threads runs on the thread of its
+     * request rather than waiting behind others
+     */
+    @Bean("candidateExecutor")
+    public ThreadPoolExecutor getCandidateExecutor() {
+        return new ThreadPoolExecutor(8, 16, 60 * 3, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("supersonic-candidate-pool-").build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
     @Bean("chatExecutor")
     public ThreadPoolExecutor getChatExecutor() {
         return new ThreadPoolExecutor(8, 16, 60 * 3, TimeUnit.SECONDS,
@@ -41,4 +62,18 @@ public class ThreadPoolConfig {
                 new ThreadFactoryBuilder().setNameFormat("supersonic-chat-pool-").build(),
                 new ThreadPoolExecutor.CallerRunsPolicy());
     }
+
+    /** builds the dictionary files of the daily task, idle threads exit between the runs */
+    @Bean("dictTaskExecutor")
+    public ThreadPoolExecutor getDictTaskExecutor(
+            @Value("${s2.dict.task.parallelism:4}") Integer parallelism) {
+        int size = Math.max(parallelism, 1);
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(size, size, 60 * 3, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+                                .setNameFormat("supersonic-dict-task-pool-").build(),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
@@ -0,0 +1,45 @@
+package com.tencent.supersonic.common.jsqlparser;
+
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.StringValue;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces string and integer literals with placeholders numbered by their position and records the
+ * original literal text, so that queries which only differ in literal values get the same sql.
+ */
+public class LiteralReplaceVisitor extends ExpressionVisitorAdapter {
+
+    public static final int MAX_LITERALS = 10000;
+    /** matches a placeholder in sql, group 1 or group 2 is the literal position */
+    public static final Pattern PLACEHOLDER =
+            Pattern.compile("'s2_param_(\\d+)'|(?<![\\w.])700000000000000(\\d{4})(?![\\w.])");
+    private static final long NUMBER_PLACEHOLDER = 7000000000000000000L;
+
+    private final List<String> literals;
+
+    public LiteralReplaceVisitor(List<String> literals) {
+        this.literals = literals;
+    }
+
+    @Override
+    public void visit(StringValue value) {
+        if (value.getPrefix() != null || literals.size() >= MAX_LITERALS) {
+            return;
+        }
+        literals.add(value.toString());
+        value.setValue("s2_param_" + (literals.size() - 1));
+    }
+
+    @Override
+    public void visit(LongValue value) {
+        if (literals.size() >= MAX_LITERALS) {
+            return;
+        }
+        literals.add(value.getStringValue());
+        value.setValue(NUMBER_PLACEHOLDER + literals.size() - 1);
+    }
+}
@@ -0,0 +1,66 @@
+package com.tencent.supersonic.common.jsqlparser;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The parsed statements of recent sql. The sql helpers read the same sql many times while
+ * correcting and checking one query, so the helpers that only read a statement share one parsed
+ * statement per sql. A helper that changes its statement parses the sql again, the nodes of the
+ * parser can not be copied.
+ */
+public class SqlParseCache {
+
+    private static final int MAX_SIZE = 2000;
+    private static final Cache<String, Statement> STATEMENTS = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE).expireAfterAccess(30, TimeUnit.MINUTES).recordStats().build();
+    private static final AtomicLong PARSE_COUNT = new AtomicLong();
+    private static volatile boolean enable = true;
+
+    /** a statement of the sql of its own, the caller may change it */
+    public static Statement parse(String sql) throws JSQLParserException {
+        return doParse(sql);
+    }
+
+    /** the statement of the sql shared by all readers, the caller must not change it */
+    public static Statement parseShared(String sql) throws JSQLParserException {
+        if (!enable || sql == null) {
+            return doParse(sql);
+        }
+        Statement statement = STATEMENTS.getIfPresent(sql);
+        if (statement == null) {
+            statement = doParse(sql);
+            STATEMENTS.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /** the times a sql was actually parsed */
+    public static long getParseCount() {
+        return PARSE_COUNT.get();
+    }
+
+    public static CacheStats getStats() {
+        return STATEMENTS.stats();
+    }
+
+    public static void setEnable(boolean enable) {
+        SqlParseCache.enable = enable;
+    }
+
+    public static void invalidateAll() {
+        STATEMENTS.invalidateAll();
+    }
+
+    private static Statement doParse(String sql) throws JSQLParserException {
+        PARSE_COUNT.incrementAndGet();
+        return CCJSqlParserUtil.parse(sql);
+    }
+}
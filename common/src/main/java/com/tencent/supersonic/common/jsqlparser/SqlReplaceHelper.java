@@ -572,6 +572,27 @@ public class SqlReplaceHelper {
         return selectStatement.toString();
     }
 
+    /**
+     * Replaces the string and integer literals of where and having clauses with numbered
+     * placeholders, the original literals are added to the given list in placeholder order.
+     */
+    public static String replaceLiterals(String sql, List<String> literals) {
+        Select selectStatement = SqlSelectHelper.getSelect(sql);
+        if (Objects.isNull(selectStatement)) {
+            return sql;
+        }
+        LiteralReplaceVisitor visitor = new LiteralReplaceVisitor(literals);
+        for (PlainSelect plainSelect : SqlSelectHelper.getPlainSelect(selectStatement)) {
+            if (Objects.nonNull(plainSelect.getWhere())) {
+                plainSelect.getWhere().accept(visitor);
+            }
+            if (Objects.nonNull(plainSelect.getHaving())) {
+                plainSelect.getHaving().accept(visitor);
+            }
+        }
+        return selectStatement.toString();
+    }
+
     public static Expression distinguishDateDiffFilter(Expression leftExpression,
             Expression expression) {
         if (leftExpression instanceof Function) {
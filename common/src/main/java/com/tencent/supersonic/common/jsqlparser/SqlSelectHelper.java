@@ -24,7 +24,6 @@ import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
 import net.sf.jsqlparser.expression.operators.relational.InExpression;
 import net.sf.jsqlparser.expression.operators.relational.IsBooleanExpression;
 import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
@@ -60,7 +59,7 @@ import java.util.stream.Collectors;
 public class SqlSelectHelper {
 
     public static List<FieldExpression> getFilterExpression(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         Set<FieldExpression> result = new HashSet<>();
         for (PlainSelect plainSelect : plainSelectList) {
             if (Objects.isNull(plainSelect)) {
@@ -82,7 +81,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> getWhereFields(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         if (CollectionUtils.isEmpty(plainSelectList)) {
             return new ArrayList<>();
         }
@@ -101,7 +100,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> gePureSelectFields(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         Set<String> result = new HashSet<>();
         plainSelectList.stream().forEach(plainSelect -> {
             List<SelectItem<?>> selectItems = plainSelect.getSelectItems();
@@ -117,7 +116,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> getSelectFields(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         if (CollectionUtils.isEmpty(plainSelectList)) {
             return new ArrayList<>();
         }
@@ -145,7 +144,7 @@ public class SqlSelectHelper {
     }
 
     public static Set<String> getAliasFields(String sql) {
-        List<PlainSelect> plainSelects = getPlainSelects(getPlainSelect(sql));
+        List<PlainSelect> plainSelects = getPlainSelects(getSharedPlainSelect(sql));
         Set<String> aliasFields = new HashSet<>();
         plainSelects.forEach(select -> {
             aliasFields.addAll(getAliasFields(select));
@@ -181,7 +180,7 @@ public class SqlSelectHelper {
     }
 
     public static Boolean hasSubSelect(String sql) {
-        Select selectStatement = getSelect(sql);
+        Select selectStatement = getSharedSelect(sql);
         if (selectStatement == null) {
             return false;
         }
@@ -225,12 +224,34 @@ public class SqlSelectHelper {
     public static Select getSelect(String sql) {
         Statement statement = null;
         try {
-            statement = CCJSqlParserUtil.parse(sql);
+            statement = SqlParseCache.parse(sql);
+        } catch (JSQLParserException e) {
+            log.error("parse error, sql:{}", sql, e);
+            throw new RuntimeException(e);
+        }
+        return toSelect(statement);
+    }
+
+    /**
+     * the select of the sql shared with the other readers of the same sql, only for the helpers
+     * that neither change it nor hand out its nodes
+     */
+    private static Select getSharedSelect(String sql) {
+        Statement statement = null;
+        try {
+            statement = SqlParseCache.parseShared(sql);
         } catch (JSQLParserException e) {
             log.error("parse error, sql:{}", sql, e);
             throw new RuntimeException(e);
         }
+        return toSelect(statement);
+    }
+
+    private static List<PlainSelect> getSharedPlainSelect(String sql) {
+        return getPlainSelect(getSharedSelect(sql));
+    }
 
+    private static Select toSelect(Statement statement) {
         if (statement instanceof ParenthesedSelect) {
             ParenthesedSelect parenthesedSelect = (ParenthesedSelect) statement;
             return parenthesedSelect.getSelect();
@@ -282,7 +303,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> getAllSelectFields(String sql) {
-        List<PlainSelect> plainSelects = getPlainSelects(getPlainSelect(sql));
+        List<PlainSelect> plainSelects = getPlainSelects(getSharedPlainSelect(sql));
         Set<String> results = new HashSet<>();
         Set<String> aliases = new HashSet<>();
         for (PlainSelect plainSelect : plainSelects) {
@@ -376,7 +397,7 @@ public class SqlSelectHelper {
     }
 
     public static List<FieldExpression> getWhereExpressions(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         Set<FieldExpression> result = new HashSet<>();
         for (PlainSelect plainSelect : plainSelectList) {
             if (Objects.isNull(plainSelect)) {
@@ -417,7 +438,7 @@ public class SqlSelectHelper {
     }
 
     public static List<FieldExpression> getHavingExpressions(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         Set<FieldExpression> result = new HashSet<>();
         for (PlainSelect plainSelect : plainSelectList) {
             if (Objects.isNull(plainSelect)) {
@@ -432,7 +453,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> getOrderByFields(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         Set<String> result = new HashSet<>();
         for (PlainSelect plainSelect : plainSelectList) {
             if (Objects.isNull(plainSelect)) {
@@ -466,7 +487,7 @@ public class SqlSelectHelper {
     }
 
     public static List<FieldExpression> getOrderByExpressions(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         HashSet<FieldExpression> result = new HashSet<>();
         for (PlainSelect plainSelect : plainSelectList) {
             if (Objects.isNull(plainSelect)) {
@@ -478,7 +499,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> getGroupByFields(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         HashSet<String> result = new HashSet<>();
         for (PlainSelect plainSelect : plainSelectList) {
             if (Objects.isNull(plainSelect)) {
@@ -508,7 +529,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> getAggregateFields(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         Set<String> result = new HashSet<>();
         for (PlainSelect plainSelect : plainSelectList) {
             if (Objects.isNull(plainSelect)) {
@@ -532,7 +553,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> getAggregateAsFields(String sql) {
-        List<PlainSelect> plainSelectList = getPlainSelect(sql);
+        List<PlainSelect> plainSelectList = getSharedPlainSelect(sql);
         Set<String> result = new HashSet<>();
         for (PlainSelect plainSelect : plainSelectList) {
             if (Objects.isNull(plainSelect)) {
@@ -561,7 +582,7 @@ public class SqlSelectHelper {
     }
 
     public static boolean hasGroupBy(String sql) {
-        Select selectStatement = getSelect(sql);
+        Select selectStatement = getSharedSelect(sql);
 
         if (!(selectStatement instanceof PlainSelect)) {
             return false;
@@ -634,7 +655,7 @@ public class SqlSelectHelper {
     }
 
     public static Boolean hasWith(String sql) {
-        Select selectStatement = getSelect(sql);
+        Select selectStatement = getSharedSelect(sql);
         if (selectStatement == null) {
             return false;
         }
@@ -677,7 +698,7 @@ public class SqlSelectHelper {
     }
 
     public static List<String> getWithName(String sql) {
-        Select selectStatement = getSelect(sql);
+        Select selectStatement = getSharedSelect(sql);
         if (selectStatement == null) {
             return new ArrayList<>();
         }
@@ -825,7 +846,7 @@ public class SqlSelectHelper {
     }
 
     public static Boolean hasLimit(String querySql) {
-        Select selectStatement = SqlSelectHelper.getSelect(querySql);
+        Select selectStatement = getSharedSelect(querySql);
         if (selectStatement instanceof PlainSelect) {
             PlainSelect plainSelect = selectStatement.getPlainSelect();
             Limit limit = plainSelect.getLimit();
@@ -849,7 +870,7 @@ public class SqlSelectHelper {
     }
 
     public static Map<String, Set<String>> getFieldsWithSubQuery(String sql) {
-        List<PlainSelect> plainSelects = getPlainSelects(getPlainSelect(sql));
+        List<PlainSelect> plainSelects = getPlainSelects(getSharedPlainSelect(sql));
         Map<String, Set<String>> results = new HashMap<>();
         for (PlainSelect plainSelect : plainSelects) {
             getFieldsWithSubQuery(plainSelect, results);
@@ -20,4 +20,10 @@ public interface EmbeddingService {
             int num);
 
     void removeAll();
+
+    /** a counter increased on every change of the stored texts, to tell results based on them */
+    long getVersion();
+
+    /** saves the vectors of the embedded texts, so they are not embedded again after a restart */
+    void persistEmbeddingCache();
 }
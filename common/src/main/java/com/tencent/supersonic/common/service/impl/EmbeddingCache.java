@@ -0,0 +1,213 @@
+package com.tencent.supersonic.common.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.Hashing;
+import com.tencent.supersonic.common.config.EmbeddingStoreParameterConfig;
+import com.tencent.supersonic.common.util.ContextUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The vectors of embedded texts by the hash of the embedding model and the text, so a text that did
+ * not change is not sent to the embedding model again. The cache is bounded by the bytes of its
+ * vectors and saved next to the persisted embedding stores, and loaded again on first use. Saving
+ * appends the vectors added since the last save; the file is rewritten from the cache only once it
+ * holds far more entries than the cache, or after a save failed part way.
+ */
+@Component
+@Slf4j
+public class EmbeddingCache {
+
+    public static final String CACHE_FILE = "embedding.cache";
+    private static final int MAGIC = 0x53324543;
+    /** the object headers and references of an entry, besides its key and vector */
+    private static final int ENTRY_OVERHEAD = 96;
+    /** entries of the file per entry of the cache beyond which the file is rewritten */
+    private static final int COMPACT_RATIO = 2;
+
+    private final boolean enable;
+    private final Cache<String, float[]> vectors;
+    /** vectors put since the last save */
+    private final Map<String, float[]> pending = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    /** entries in the file, including overwritten and evicted ones */
+    private long fileEntries;
+    /** the file has to be rewritten, it is unreadable or its end may be incomplete */
+    private boolean compact;
+
+    public EmbeddingCache(@Value("${s2.embedding.cache.enable:true}") boolean enable,
+            @Value("${s2.embedding.cache.max-bytes:268435456}") long maxBytes) {
+        this.enable = enable;
+        this.vectors = Caffeine.newBuilder().maximumWeight(maxBytes).weigher(EmbeddingCache::weigh)
+                .build();
+    }
+
+    public static String key(String modelKey, String text) {
+        return Hashing.murmur3_128().newHasher().putString(modelKey, StandardCharsets.UTF_8)
+                .putByte((byte) 0).putString(text, StandardCharsets.UTF_8).hash().toString();
+    }
+
+    public float[] get(String key) {
+        if (!enable) {
+            return null;
+        }
+        ensureLoaded();
+        return vectors.getIfPresent(key);
+    }
+
+    public void put(String key, float[] vector) {
+        if (!enable) {
+            return;
+        }
+        vectors.put(key, vector);
+        pending.put(key, vector);
+    }
+
+    public long size() {
+        return vectors.estimatedSize();
+    }
+
+    /** appends the vectors put since the last save, or rewrites the file if it grew too large */
+    public synchronized void persist() {
+        Path path = getCachePath();
+        if (!enable || Objects.isNull(path)) {
+            return;
+        }
+        ensureLoaded();
+        if (pending.isEmpty() && !compact) {
+            return;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            if (compact || !Files.exists(path) || fileEntries + pending.size() > COMPACT_RATIO
+                    * Math.max(vectors.estimatedSize(), 1)) {
+                rewrite(path);
+            } else {
+                append(path);
+            }
+        } catch (IOException e) {
+            compact = true;
+            log.error("persist embedding cache error, path:{}", path, e);
+        }
+    }
+
+    private void append(Path path) throws IOException {
+        Map<String, float[]> entries = new HashMap<>(pending);
+        // an append failing part way leaves an incomplete entry, rewrite the file next time
+        compact = true;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.APPEND), 64 * 1024))) {
+            for (Map.Entry<String, float[]> entry : entries.entrySet()) {
+                write(output, entry.getKey(), entry.getValue());
+            }
+        }
+        compact = false;
+        entries.forEach(pending::remove);
+        fileEntries += entries.size();
+        log.info("embedding cache appended, path:{}, size:{}, file size:{}", path, entries.size(),
+                fileEntries);
+    }
+
+    private void rewrite(Path path) throws IOException {
+        Map<String, float[]> entries = new HashMap<>(pending);
+        Path tmpPath = Paths.get(path + ".tmp");
+        int count = 0;
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmpPath), 64 * 1024))) {
+            output.writeInt(MAGIC);
+            for (Map.Entry<String, float[]> entry : vectors.asMap().entrySet()) {
+                write(output, entry.getKey(), entry.getValue());
+                count++;
+            }
+        }
+        Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        compact = false;
+        // vectors put meanwhile may be missing, they stay pending
+        entries.forEach(pending::remove);
+        fileEntries = count;
+        log.info("embedding cache persisted, path:{}, size:{}", path, count);
+    }
+
+    private static void write(DataOutputStream output, String key, float[] vector)
+            throws IOException {
+        output.writeUTF(key);
+        output.writeInt(vector.length);
+        for (float value : vector) {
+            output.writeFloat(value);
+        }
+    }
+
+    private static int weigh(String key, float[] vector) {
+        return ENTRY_OVERHEAD + 2 * key.length() + 4 * vector.length;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            Path path = getCachePath();
+            if (Objects.isNull(path) || !Files.exists(path)) {
+                return;
+            }
+            int count = 0;
+            try (DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+                if (input.readInt() != MAGIC) {
+                    log.warn("not an embedding cache, path:{}", path);
+                    compact = true;
+                    return;
+                }
+                // later entries of a key were appended later and replace the earlier ones
+                while (input.available() > 0) {
+                    String key = input.readUTF();
+                    float[] vector = new float[input.readInt()];
+                    for (int i = 0; i < vector.length; i++) {
+                        vector[i] = input.readFloat();
+                    }
+                    vectors.put(key, vector);
+                    count++;
+                }
+                log.info("embedding cache loaded, path:{}, size:{}", path, count);
+            } catch (IOException e) {
+                compact = true;
+                log.error("load embedding cache error, path:{}, loaded:{}", path, count, e);
+            }
+            fileEntries = count;
+        }
+    }
+
+    private Path getCachePath() {
+        EmbeddingStoreParameterConfig storeConfig =
+                ContextUtils.getBean(EmbeddingStoreParameterConfig.class);
+        String persistPath = storeConfig.convert().getPersistPath();
+        if (StringUtils.isBlank(persistPath)) {
+            return null;
+        }
+        return Paths.get(persistPath, CACHE_FILE);
+    }
+}
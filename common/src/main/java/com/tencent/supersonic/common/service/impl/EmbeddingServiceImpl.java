@@ -2,7 +2,11 @@ package com.tencent.supersonic.common.service.impl;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.tencent.supersonic.common.config.EmbeddingModelParameterConfig;
+import com.tencent.supersonic.common.pojo.EmbeddingModelConfig;
 import com.tencent.supersonic.common.service.EmbeddingService;
+import com.tencent.supersonic.common.util.ContextUtils;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
@@ -23,14 +27,24 @@ import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,26 +54,63 @@ public class EmbeddingServiceImpl implements EmbeddingService {
     private Cache<String, Boolean> cache = CacheBuilder.newBuilder().maximumSize(10000)
             .expireAfterWrite(10, TimeUnit.HOURS).build();
 
+    private final AtomicLong version = new AtomicLong();
+
+    @Value("${s2.embedding.batch.size:32}")
+    private int batchSize;
+
+    @Value("${s2.embedding.batch.concurrency:2}")
+    private int batchConcurrency;
+
+    @Autowired
+    private EmbeddingCache embeddingCache;
+
+    @Autowired
+    @Qualifier("commonExecutor")
+    private ThreadPoolExecutor commonExecutor;
+
     @Override
     public void addQuery(String collectionName, List<TextSegment> queries) {
         EmbeddingStore embeddingStore =
                 EmbeddingStoreFactoryProvider.getFactory().create(collectionName);
+        List<TextSegment> candidates = new ArrayList<>();
         for (TextSegment query : queries) {
-            String question = query.text();
-            try {
-                EmbeddingModel embeddingModel = ModelProvider.getEmbeddingModel();
-                Embedding embedding = embeddingModel.embed(question).content();
-                MetadataFilterBuilder filterBuilder =
-                        new MetadataFilterBuilder(TextSegmentConvert.QUERY_ID);
-                Filter filter = filterBuilder.isEqualTo(TextSegmentConvert.getQueryId(query));
-                embeddingStore.removeAll(filter);
-                embeddingStore.add(embedding, query);
-                cache.put(TextSegmentConvert.getQueryId(query), true);
-            } catch (Exception e) {
-                log.error("embeddingModel embed error question: {}, embeddingStore: {}", question,
-                        embeddingStore.getClass().getSimpleName(), e);
+            if (TextSegmentConvert.getQueryId(query) == null) {
+                log.warn("skip query without queryId, question: {}", query.text());
+                continue;
             }
+            candidates.add(query);
+        }
+        List<Embedding> computed =
+                embedAll(candidates.stream().map(TextSegment::text).collect(Collectors.toList()));
+        List<String> queryIds = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (computed.get(i) == null) {
+                continue;
+            }
+            queryIds.add(TextSegmentConvert.getQueryId(candidates.get(i)));
+            embeddings.add(computed.get(i));
+            segments.add(candidates.get(i));
+        }
+        if (segments.isEmpty()) {
+            return;
         }
+        // replace the previous version of the queries in one removal and one batched add. The
+        // version is increased before and after, so no result seen during the change is reused.
+        version.incrementAndGet();
+        try {
+            MetadataFilterBuilder filterBuilder =
+                    new MetadataFilterBuilder(TextSegmentConvert.QUERY_ID);
+            embeddingStore.removeAll(filterBuilder.isIn(queryIds));
+            embeddingStore.addAll(embeddings, segments);
+            queryIds.forEach(queryId -> cache.put(queryId, true));
+        } catch (Exception e) {
+            log.error("addQuery error, collectionName: {}, size: {}, embeddingStore: {}",
+                    collectionName, segments.size(), embeddingStore.getClass().getSimpleName(), e);
+        }
+        version.incrementAndGet();
     }
 
     private boolean existSegment(String collectionName, EmbeddingStore embeddingStore,
@@ -99,8 +150,10 @@ public class EmbeddingServiceImpl implements EmbeddingService {
                 MetadataFilterBuilder filterBuilder =
                         new MetadataFilterBuilder(TextSegmentConvert.QUERY_ID);
                 Filter filter = filterBuilder.isIn(queryIds);
+                version.incrementAndGet();
                 embeddingStore.removeAll(filter);
                 queryIds.stream().forEach(queryId -> cache.put(queryId, false));
+                version.incrementAndGet();
             }
 
         } catch (Exception e) {
@@ -113,12 +166,124 @@ public class EmbeddingServiceImpl implements EmbeddingService {
             RetrieveQuery retrieveQuery, int num) {
         EmbeddingStore embeddingStore =
                 EmbeddingStoreFactoryProvider.getFactory().create(collectionName);
-        EmbeddingModel embeddingModel = ModelProvider.getEmbeddingModel();
         Map<String, Object> filterCondition = retrieveQuery.getFilterCondition();
-        return retrieveQuery
-                .getQueryTextsList().stream().map(queryText -> retrieveSingleQuery(queryText,
-                        embeddingModel, embeddingStore, filterCondition, num))
-                .collect(Collectors.toList());
+        List<String> queryTexts = retrieveQuery.getQueryTextsList();
+        List<Embedding> embeddings = embedAll(queryTexts);
+        List<RetrieveQueryResult> results = new ArrayList<>(queryTexts.size());
+        for (int i = 0; i < queryTexts.size(); i++) {
+            if (embeddings.get(i) == null) {
+                throw new RuntimeException("embed query text failed: " + queryTexts.get(i));
+            }
+            results.add(retrieveSingleQuery(queryTexts.get(i), embeddings.get(i), embeddingStore,
+                    filterCondition, num));
+        }
+        return results;
+    }
+
+    @Override
+    public void persistEmbeddingCache() {
+        embeddingCache.persist();
+    }
+
+    /**
+     * the embeddings of the texts in their order, taken from the cache where possible. The other
+     * texts are embedded in batches, a few batches at a time, and a text that cannot be embedded
+     * gets null.
+     */
+    private List<Embedding> embedAll(List<String> texts) {
+        List<Embedding> embeddings = new ArrayList<>(Collections.nCopies(texts.size(), null));
+        if (texts.isEmpty()) {
+            return embeddings;
+        }
+        String modelKey = getModelKey();
+        // texts to embed with the positions they are needed at
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            float[] vector = embeddingCache.get(EmbeddingCache.key(modelKey, texts.get(i)));
+            if (vector != null) {
+                embeddings.set(i, Embedding.from(vector));
+            } else {
+                missing.computeIfAbsent(texts.get(i), k -> new ArrayList<>()).add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return embeddings;
+        }
+        EmbeddingModel embeddingModel = ModelProvider.getEmbeddingModel();
+        List<List<String>> batches =
+                Lists.partition(new ArrayList<>(missing.keySet()), Math.max(batchSize, 1));
+        AtomicInteger nextBatch = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(batches.size());
+        Runnable worker = () -> {
+            int index;
+            while ((index = nextBatch.getAndIncrement()) < batches.size()) {
+                try {
+                    List<String> batch = batches.get(index);
+                    List<Embedding> batchEmbeddings = embedBatch(embeddingModel, batch);
+                    for (int i = 0; i < batch.size(); i++) {
+                        Embedding embedding = batchEmbeddings.get(i);
+                        if (embedding == null) {
+                            continue;
+                        }
+                        embeddingCache.put(EmbeddingCache.key(modelKey, batch.get(i)),
+                                embedding.vector());
+                        for (Integer position : missing.get(batch.get(i))) {
+                            embeddings.set(position, embedding);
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        int workers = Math.min(Math.max(batchConcurrency, 1), batches.size());
+        for (int i = 1; i < workers; i++) {
+            commonExecutor.execute(worker);
+        }
+        // the caller takes batches as well, so a busy pool only means fewer helpers
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while embedding texts");
+        }
+        log.debug("embedAll texts:{}, embedded:{}, batches:{}", texts.size(), missing.size(),
+                batches.size());
+        return embeddings;
+    }
+
+    /** one embedAll call, or one call per text when the batch fails as a whole */
+    private List<Embedding> embedBatch(EmbeddingModel embeddingModel, List<String> batch) {
+        try {
+            List<TextSegment> segments =
+                    batch.stream().map(TextSegment::from).collect(Collectors.toList());
+            List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+            if (embeddings != null && embeddings.size() == batch.size()) {
+                return embeddings;
+            }
+            log.warn("embedAll returned {} embeddings for {} texts, embed them one by one",
+                    embeddings == null ? 0 : embeddings.size(), batch.size());
+        } catch (Exception e) {
+            log.warn("embedAll error, embed {} texts one by one", batch.size(), e);
+        }
+        List<Embedding> embeddings = new ArrayList<>(batch.size());
+        for (String text : batch) {
+            try {
+                embeddings.add(embeddingModel.embed(text).content());
+            } catch (Exception e) {
+                log.error("embeddingModel embed error question: {}", text, e);
+                embeddings.add(null);
+            }
+        }
+        return embeddings;
+    }
+
+    private String getModelKey() {
+        EmbeddingModelConfig modelConfig =
+                ContextUtils.getBean(EmbeddingModelParameterConfig.class).convert();
+        return String.join("|", modelConfig.getProvider(), modelConfig.getBaseUrl(),
+                modelConfig.getModelName(), modelConfig.getModelPath());
     }
 
     @Override
@@ -127,15 +292,21 @@ public class EmbeddingServiceImpl implements EmbeddingService {
                 (BaseEmbeddingStoreFactory) EmbeddingStoreFactoryProvider.getFactory();
         Map<String, EmbeddingStore<TextSegment>> collectionNameToStore =
                 factory.getCollectionNameToStore();
+        version.incrementAndGet();
         for (EmbeddingStore<TextSegment> embeddingStore : collectionNameToStore.values()) {
             embeddingStore.removeAll();
         }
         cache.invalidateAll();
+        version.incrementAndGet();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
     }
 
-    private RetrieveQueryResult retrieveSingleQuery(String queryText, EmbeddingModel embeddingModel,
+    private RetrieveQueryResult retrieveSingleQuery(String queryText, Embedding embeddedText,
             EmbeddingStore embeddingStore, Map<String, Object> filterCondition, int num) {
-        Embedding embeddedText = embeddingModel.embed(queryText).content();
         Filter filter = createCombinedFilter(filterCondition);
         EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
                 .queryEmbedding(embeddedText).filter(filter).maxResults(num).build();
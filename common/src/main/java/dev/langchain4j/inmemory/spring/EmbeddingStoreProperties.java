@@ -1,5 +1,6 @@
 package dev.langchain4j.inmemory.spring;
 
+import dev.langchain4j.store.embedding.inmemory.InMemoryIndexOptions;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -8,4 +9,6 @@ import lombok.Setter;
 public class EmbeddingStoreProperties {
 
     private String persistPath;
+
+    private InMemoryIndexOptions index = new InMemoryIndexOptions();
 }
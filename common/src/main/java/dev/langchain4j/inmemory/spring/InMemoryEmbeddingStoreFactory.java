@@ -7,23 +7,25 @@ import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.BaseEmbeddingStoreFactory;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStorePersister;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanUtils;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class InMemoryEmbeddingStoreFactory extends BaseEmbeddingStoreFactory {
 
     public static final String PERSISTENT_FILE_PRE = "InMemory.";
     private EmbeddingStoreProperties embeddingStore;
+    private final Map<String, InMemoryEmbeddingStorePersister> persisters =
+            new ConcurrentHashMap<>();
 
     public InMemoryEmbeddingStoreFactory(EmbeddingStoreConfig storeConfig) {
         this(createPropertiesFromConfig(storeConfig));
@@ -44,7 +46,7 @@ public class InMemoryEmbeddingStoreFactory extends BaseEmbeddingStoreFactory {
     public synchronized EmbeddingStore createEmbeddingStore(String collectionName) {
         InMemoryEmbeddingStore<TextSegment> embeddingStore = reloadFromPersistFile(collectionName);
         if (Objects.isNull(embeddingStore)) {
-            embeddingStore = new InMemoryEmbeddingStore();
+            embeddingStore = new InMemoryEmbeddingStore<>(this.embeddingStore.getIndex());
         }
         return embeddingStore;
     }
@@ -56,13 +58,14 @@ public class InMemoryEmbeddingStoreFactory extends BaseEmbeddingStoreFactory {
         }
         InMemoryEmbeddingStore<TextSegment> embeddingStore = null;
         try {
-            EmbeddingConfig embeddingConfig = ContextUtils.getBean(EmbeddingConfig.class);
-            if (Files.exists(filePath)
-                    && !collectionName.equals(embeddingConfig.getMetaCollectionName())
-                    && !collectionName.equals(embeddingConfig.getText2sqlCollectionName())) {
-                embeddingStore = InMemoryEmbeddingStore.fromFile(filePath);
-                embeddingStore.entries = new CopyOnWriteArraySet<>(embeddingStore.entries);
-                log.info("embeddingStore reload from file:{}", filePath);
+            if (isPersistent(collectionName)) {
+                long startTime = System.currentTimeMillis();
+                embeddingStore =
+                        getPersister(collectionName, filePath).load(this.embeddingStore.getIndex());
+                if (Objects.nonNull(embeddingStore)) {
+                    log.info("embeddingStore reload from file:{}, size:{}, cost:{}ms", filePath,
+                            embeddingStore.size(), System.currentTimeMillis() - startTime);
+                }
             }
         } catch (Exception e) {
             log.error("load persistFile error, persistFile:" + filePath, e);
@@ -70,6 +73,18 @@ public class InMemoryEmbeddingStoreFactory extends BaseEmbeddingStoreFactory {
         return embeddingStore;
     }
 
+    /** the meta and text2sql collections are rebuilt from the database on startup */
+    private boolean isPersistent(String collectionName) {
+        EmbeddingConfig embeddingConfig = ContextUtils.getBean(EmbeddingConfig.class);
+        return !collectionName.equals(embeddingConfig.getMetaCollectionName())
+                && !collectionName.equals(embeddingConfig.getText2sqlCollectionName());
+    }
+
+    private InMemoryEmbeddingStorePersister getPersister(String collectionName, Path filePath) {
+        return persisters.computeIfAbsent(collectionName,
+                name -> new InMemoryEmbeddingStorePersister(filePath));
+    }
+
     public synchronized void persistFile() {
         if (MapUtils.isEmpty(super.collectionNameToStore)) {
             return;
@@ -81,14 +96,11 @@ public class InMemoryEmbeddingStoreFactory extends BaseEmbeddingStoreFactory {
                 continue;
             }
             try {
-                Path directoryPath = filePath.getParent();
-                if (!Files.exists(directoryPath)) {
-                    Files.createDirectories(directoryPath);
-                }
-                if (entry.getValue() instanceof InMemoryEmbeddingStore) {
+                if (entry.getValue() instanceof InMemoryEmbeddingStore
+                        && isPersistent(entry.getKey())) {
                     InMemoryEmbeddingStore<TextSegment> inMemoryEmbeddingStore =
                             (InMemoryEmbeddingStore) entry.getValue();
-                    inMemoryEmbeddingStore.serializeToFile(filePath);
+                    getPersister(entry.getKey(), filePath).persist(inMemoryEmbeddingStore);
                 }
             } catch (Exception e) {
                 log.error("persistFile error, persistFile:" + filePath, e);
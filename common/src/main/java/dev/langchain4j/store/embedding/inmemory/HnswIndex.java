@@ -0,0 +1,210 @@
+package dev.langchain4j.store.embedding.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * A hierarchical navigable small world graph over the normalized vectors of one
+ * {@link VectorPartition}. Nodes are the slots of the partition, so the graph only keeps the links
+ * and reads the vectors from the partition. Removed slots stay in the graph to keep it connected
+ * and are skipped by the caller, the partition rebuilds the graph when it compacts.
+ */
+class HnswIndex {
+
+    private final VectorPartition<?> partition;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random = new Random(42);
+    /** links[node][level] holds the neighbour count at 0 followed by the neighbours */
+    private int[][][] links = new int[0][][];
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(VectorPartition<?> partition, InMemoryIndexOptions options) {
+        this.partition = partition;
+        this.m = Math.max(options.getM(), 2);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(options.getEfConstruction(), this.m);
+        this.levelFactor = 1 / Math.log(this.m);
+    }
+
+    void insert(int node) {
+        if (node >= links.length) {
+            links = Arrays.copyOf(links, Math.max(node + 1, links.length * 2));
+        }
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+        float[] vector = partition.vector(node);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedy(vector, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(vector, current, efConstruction, l);
+            int[] selected = selectNeighbours(candidates, l == 0 ? maxM0 : m);
+            int[] nodeLinks = links[node][l];
+            nodeLinks[0] = selected.length;
+            System.arraycopy(selected, 0, nodeLinks, 1, selected.length);
+            for (int neighbour : selected) {
+                connect(neighbour, node, l);
+            }
+            current = candidates.get(0).node;
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    /** the ef nodes closest to the query, best first */
+    List<Candidate> search(float[] query, int ef) {
+        if (entryPoint < 0) {
+            return new ArrayList<>();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(query, current, l);
+        }
+        return searchLayer(query, current, ef, 0);
+    }
+
+    private int greedy(float[] query, int start, int level) {
+        int current = start;
+        float best = partition.similarity(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float score = partition.similarity(query, neighbours[i]);
+                if (score > best) {
+                    best = score;
+                    current = neighbours[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(links.length);
+        visited.set(start);
+        Candidate first = new Candidate(start, partition.similarity(query, start));
+        PriorityQueue<Candidate> candidates =
+                new PriorityQueue<>(Comparator.comparingDouble(Candidate::score).reversed());
+        PriorityQueue<Candidate> results =
+                new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+        candidates.add(first);
+        results.add(first);
+        while (!candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score < results.peek().score) {
+                break;
+            }
+            int[] neighbours = links[candidate.node][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float score = partition.similarity(query, neighbour);
+                if (results.size() < ef || score > results.peek().score) {
+                    Candidate next = new Candidate(neighbour, score);
+                    candidates.add(next);
+                    results.add(next);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        return sorted;
+    }
+
+    /**
+     * keeps a candidate only when it is closer to the base node than to every neighbour already
+     * kept, which spreads the links over different directions, and fills up with the pruned
+     * candidates so that sparse regions stay connected
+     */
+    private int[] selectNeighbours(List<Candidate> candidates, int max) {
+        int[] selected = new int[Math.min(max, candidates.size())];
+        int count = 0;
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (count == selected.length) {
+                break;
+            }
+            boolean keep = true;
+            for (int i = 0; i < count && keep; i++) {
+                keep = partition.similarity(candidate.node, selected[i]) < candidate.score;
+            }
+            if (keep) {
+                selected[count++] = candidate.node;
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && count < selected.length; i++) {
+            selected[count++] = pruned.get(i).node;
+        }
+        return selected;
+    }
+
+    private void connect(int node, int neighbour, int level) {
+        int[] nodeLinks = links[node][level];
+        int count = nodeLinks[0];
+        if (count < nodeLinks.length - 1) {
+            nodeLinks[++count] = neighbour;
+            nodeLinks[0] = count;
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        float[] vector = partition.vector(node);
+        candidates.add(new Candidate(neighbour, partition.similarity(vector, neighbour)));
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Candidate(nodeLinks[i], partition.similarity(vector, nodeLinks[i])));
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        int[] selected = selectNeighbours(candidates, count);
+        nodeLinks[0] = selected.length;
+        System.arraycopy(selected, 0, nodeLinks, 1, selected.length);
+    }
+
+    static final class Candidate {
+
+        private final int node;
+        private final float score;
+
+        Candidate(int node, float score) {
+            this.node = node;
+            this.score = score;
+        }
+
+        int node() {
+            return node;
+        }
+
+        float score() {
+            return score;
+        }
+    }
+}
@@ -4,13 +4,17 @@ import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.spi.store.embedding.inmemory.InMemoryEmbeddingStoreJsonCodecFactory;
-import dev.langchain4j.store.embedding.CosineSimilarity;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.RelevanceScore;
 import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import dev.langchain4j.store.embedding.inmemory.VectorPartition.ScoredSlot;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -20,11 +24,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.IntStream;
 
 import static dev.langchain4j.internal.Utils.randomUUID;
@@ -41,7 +49,10 @@ import static java.util.stream.Collectors.toList;
  * An {@link EmbeddingStore} that stores embeddings in memory.
  *
  * <p>
- * Uses a brute force approach by iterating over all embeddings to find the best matches.
+ * The entries are split into partitions by the metadata keys of {@link InMemoryIndexOptions}, and a
+ * search only visits the partitions its filter can match. Each partition keeps its vectors in one
+ * contiguous array and is scanned exactly until it grows beyond the index threshold, from where an
+ * HNSW graph finds the nearest entries. Adding an entry with an existing id replaces it.
  *
  * <p>
  * This store can be persisted using the {@link #serializeToJson()} and
@@ -56,7 +67,25 @@ import static java.util.stream.Collectors.toList;
  */
 public class InMemoryEmbeddingStore<Embedded> implements EmbeddingStore<Embedded> {
 
-    public Set<Entry<Embedded>> entries = new CopyOnWriteArraySet<>();
+    private static final String DEFAULT_PARTITION = "";
+
+    /** only set while the store is converted from or to json */
+    private List<Entry<Embedded>> entries;
+    private final transient InMemoryIndexOptions options;
+    private final transient Map<String, VectorPartition<Embedded>> partitions = new HashMap<>();
+    private final transient Map<String, VectorPartition<Embedded>> idToPartition = new HashMap<>();
+    private final transient ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** ids written since the changes were last drained, null while changes are not tracked */
+    private transient Set<String> changedIds;
+    private transient boolean cleared;
+
+    public InMemoryEmbeddingStore() {
+        this(new InMemoryIndexOptions());
+    }
+
+    public InMemoryEmbeddingStore(InMemoryIndexOptions options) {
+        this.options = ensureNotNull(options, "options");
+    }
 
     @Override
     public String add(Embedding embedding) {
@@ -78,13 +107,18 @@ public class InMemoryEmbeddingStore<Embedded> implements EmbeddingStore<Embedded
     }
 
     public void add(String id, Embedding embedding, Embedded embedded) {
-        entries.add(new Entry<>(id, embedding, embedded));
+        add(Collections.singletonList(new Entry<>(id, embedding, embedded)));
     }
 
     private List<String> add(List<Entry<Embedded>> newEntries) {
-
-        entries.addAll(newEntries);
-
+        lock.writeLock().lock();
+        try {
+            for (Entry<Embedded> entry : newEntries) {
+                put(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
         return newEntries.stream().map(entry -> entry.id).collect(toList());
     }
 
@@ -111,70 +145,302 @@ public class InMemoryEmbeddingStore<Embedded> implements EmbeddingStore<Embedded
         return add(newEntries);
     }
 
+    /** adds the entries in one write, replacing the entries with the same ids */
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<Embedded> embedded) {
+        if (ids.size() != embeddings.size() || embeddings.size() != embedded.size()) {
+            throw new IllegalArgumentException(
+                    "The list of ids, embeddings and embedded must have the same size");
+        }
+
+        List<Entry<Embedded>> newEntries = IntStream.range(0, embeddings.size())
+                .mapToObj(i -> new Entry<>(ids.get(i), embeddings.get(i), embedded.get(i)))
+                .collect(toList());
+
+        add(newEntries);
+    }
+
     @Override
     public void removeAll(Collection<String> ids) {
         ensureNotEmpty(ids, "ids");
 
-        entries.removeIf(entry -> ids.contains(entry.id));
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::delete);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
     public void removeAll(Filter filter) {
         ensureNotNull(filter, "filter");
 
-        entries.removeIf(entry -> {
-            if (entry.embedded instanceof TextSegment) {
-                return filter.test(((TextSegment) entry.embedded).metadata());
-            } else if (entry.embedded == null) {
-                return false;
-            } else {
-                throw new UnsupportedOperationException("Not supported yet.");
+        lock.writeLock().lock();
+        try {
+            List<String> ids = new ArrayList<>();
+            for (VectorPartition<Embedded> partition : selectPartitions(filter)) {
+                partition.collectIds(slot -> {
+                    Embedded embedded = partition.embedded(slot);
+                    if (embedded instanceof TextSegment) {
+                        return filter.test(((TextSegment) embedded).metadata());
+                    } else if (embedded == null) {
+                        return false;
+                    } else {
+                        throw new UnsupportedOperationException("Not supported yet.");
+                    }
+                }, ids);
             }
-        });
+            ids.forEach(this::delete);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
     public void removeAll() {
-        entries.clear();
+        lock.writeLock().lock();
+        try {
+            partitions.clear();
+            idToPartition.clear();
+            if (changedIds != null) {
+                changedIds.clear();
+                cleared = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idToPartition.size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public EmbeddingSearchResult<Embedded> search(EmbeddingSearchRequest embeddingSearchRequest) {
 
-        Comparator<EmbeddingMatch<Embedded>> comparator = comparingDouble(EmbeddingMatch::score);
-        PriorityQueue<EmbeddingMatch<Embedded>> matches = new PriorityQueue<>(comparator);
+        Comparator<ScoredSlot<Embedded>> comparator = comparingDouble(ScoredSlot::similarity);
+        PriorityQueue<ScoredSlot<Embedded>> matches = new PriorityQueue<>(comparator);
 
         Filter filter = embeddingSearchRequest.filter();
+        float[] query = embeddingSearchRequest.queryEmbedding().vector();
+        int maxResults = embeddingSearchRequest.maxResults();
+        // relevance score = (cosine similarity + 1) / 2
+        double minSimilarity = 2 * embeddingSearchRequest.minScore() - 1;
 
-        for (Entry<Embedded> entry : entries) {
+        List<EmbeddingMatch<Embedded>> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (VectorPartition<Embedded> partition : selectPartitions(filter)) {
+                partition.search(query, maxResults, minSimilarity, slot -> {
+                    if (filter != null && partition.embedded(slot) instanceof TextSegment) {
+                        Metadata metadata = ((TextSegment) partition.embedded(slot)).metadata();
+                        return filter.test(metadata);
+                    }
+                    return true;
+                }, matches);
+            }
+            for (ScoredSlot<Embedded> match : matches) {
+                VectorPartition<Embedded> partition = match.partition();
+                double score = RelevanceScore.fromCosineSimilarity(match.similarity());
+                result.add(new EmbeddingMatch<>(score, partition.id(match.slot()),
+                        partition.embedding(match.slot()), partition.embedded(match.slot())));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(comparingDouble(EmbeddingMatch::score));
+        Collections.reverse(result);
 
-            if (filter != null && entry.embedded instanceof TextSegment) {
-                Metadata metadata = ((TextSegment) entry.embedded).metadata();
-                if (!filter.test(metadata)) {
-                    continue;
-                }
+        return new EmbeddingSearchResult<>(result);
+    }
+
+    /** starts recording the written ids for {@link #drainChanges()} */
+    void trackChanges() {
+        lock.writeLock().lock();
+        try {
+            if (changedIds == null) {
+                changedIds = new HashSet<>();
             }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-            double cosineSimilarity = CosineSimilarity.between(entry.embedding,
-                    embeddingSearchRequest.queryEmbedding());
-            double score = RelevanceScore.fromCosineSimilarity(cosineSimilarity);
-            if (score >= embeddingSearchRequest.minScore()) {
-                matches.add(new EmbeddingMatch<>(score, entry.id, entry.embedding, entry.embedded));
-                if (matches.size() > embeddingSearchRequest.maxResults()) {
-                    matches.poll();
+    /** the current state of the entries written since the last call */
+    Changes<Embedded> drainChanges() {
+        lock.writeLock().lock();
+        try {
+            Changes<Embedded> changes = new Changes<>(cleared);
+            if (changedIds != null) {
+                for (String id : changedIds) {
+                    Entry<Embedded> entry = getEntry(id);
+                    if (entry == null) {
+                        changes.removedIds.add(id);
+                    } else {
+                        changes.entries.add(entry);
+                    }
                 }
+                changedIds.clear();
             }
+            cleared = false;
+            return changes;
+        } finally {
+            lock.writeLock().unlock();
         }
+    }
 
-        List<EmbeddingMatch<Embedded>> result = new ArrayList<>(matches);
-        result.sort(comparator);
-        Collections.reverse(result);
+    List<Entry<Embedded>> getEntries() {
+        List<Entry<Embedded>> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (VectorPartition<Embedded> partition : partitions.values()) {
+                partition.forEach(slot -> result.add(new Entry<>(partition.id(slot),
+                        partition.embedding(slot), partition.embedded(slot))));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
 
-        return new EmbeddingSearchResult<>(result);
+    void putAll(List<Entry<Embedded>> newEntries) {
+        add(newEntries);
+    }
+
+    private Entry<Embedded> getEntry(String id) {
+        VectorPartition<Embedded> partition = idToPartition.get(id);
+        Integer slot = partition == null ? null : partition.slot(id);
+        if (slot == null) {
+            return null;
+        }
+        return new Entry<>(id, partition.embedding(slot), partition.embedded(slot));
+    }
+
+    private void put(Entry<Embedded> entry) {
+        if (changedIds != null) {
+            changedIds.add(entry.id);
+        }
+        String partitionKey = getPartitionKey(entry.embedded);
+        VectorPartition<Embedded> current = idToPartition.get(entry.id);
+        if (current != null && current != partitions.get(partitionKey)) {
+            delete(entry.id);
+        }
+        VectorPartition<Embedded> partition =
+                partitions.computeIfAbsent(partitionKey, key -> new VectorPartition<>(options));
+        partition.put(entry.id, entry.embedding, entry.embedded);
+        idToPartition.put(entry.id, partition);
+    }
+
+    private void delete(String id) {
+        VectorPartition<Embedded> partition = idToPartition.remove(id);
+        if (partition == null) {
+            return;
+        }
+        if (changedIds != null) {
+            changedIds.add(id);
+        }
+        partition.remove(id);
+        if (partition.liveSize() == 0) {
+            partitions.values().remove(partition);
+        }
+    }
+
+    private String getPartitionKey(Embedded embedded) {
+        if (!(embedded instanceof TextSegment)) {
+            return DEFAULT_PARTITION;
+        }
+        Map<String, Object> metadata = ((TextSegment) embedded).metadata().toMap();
+        for (String key : options.getPartitionKeys()) {
+            Object value = metadata.get(key);
+            if (value != null) {
+                return partitionKey(key, value);
+            }
+        }
+        return DEFAULT_PARTITION;
+    }
+
+    private static String partitionKey(String key, Object value) {
+        return key + "=" + value;
+    }
+
+    /**
+     * the partitions that can hold entries matching the filter. A filter on a partition key rules
+     * out the other partitions of that key, entries of an earlier key may still match it.
+     */
+    private Collection<VectorPartition<Embedded>> selectPartitions(Filter filter) {
+        Set<String> keys = getPartitionKeys(filter);
+        if (keys == null) {
+            return partitions.values();
+        }
+        List<VectorPartition<Embedded>> selected = new ArrayList<>();
+        for (Map.Entry<String, VectorPartition<Embedded>> entry : partitions.entrySet()) {
+            if (keys.contains(entry.getKey())) {
+                selected.add(entry.getValue());
+            }
+        }
+        return selected;
+    }
+
+    /** the partition keys a filter is restricted to, null if it can match every partition */
+    private Set<String> getPartitionKeys(Filter filter) {
+        if (filter instanceof IsEqualTo) {
+            IsEqualTo isEqualTo = (IsEqualTo) filter;
+            return getPartitionKeys(isEqualTo.key(),
+                    Collections.singletonList(isEqualTo.comparisonValue()));
+        }
+        if (filter instanceof IsIn) {
+            IsIn isIn = (IsIn) filter;
+            return getPartitionKeys(isIn.key(), isIn.comparisonValues());
+        }
+        if (filter instanceof Or) {
+            Set<String> left = getPartitionKeys(((Or) filter).left());
+            Set<String> right = getPartitionKeys(((Or) filter).right());
+            if (left == null || right == null) {
+                return null;
+            }
+            left.addAll(right);
+            return left;
+        }
+        if (filter instanceof And) {
+            Set<String> left = getPartitionKeys(((And) filter).left());
+            Set<String> right = getPartitionKeys(((And) filter).right());
+            if (left == null || right == null) {
+                return left == null ? right : left;
+            }
+            left.retainAll(right);
+            return left;
+        }
+        return null;
+    }
+
+    private Set<String> getPartitionKeys(String key, Collection<?> values) {
+        List<String> partitionKeys = options.getPartitionKeys();
+        int position = partitionKeys.indexOf(key);
+        // only string values are matched exactly by their partition name
+        if (position < 0 || values.stream().anyMatch(value -> !(value instanceof String))) {
+            return null;
+        }
+        Set<String> keys = new HashSet<>();
+        values.forEach(value -> keys.add(partitionKey(key, value)));
+        for (Map.Entry<String, VectorPartition<Embedded>> entry : partitions.entrySet()) {
+            for (int i = 0; i < position; i++) {
+                if (entry.getKey().startsWith(partitionKeys.get(i) + "=")) {
+                    keys.add(entry.getKey());
+                }
+            }
+        }
+        return keys;
     }
 
     public String serializeToJson() {
-        return loadCodec().toJson(this);
+        InMemoryEmbeddingStore<Embedded> snapshot = new InMemoryEmbeddingStore<>(options);
+        snapshot.entries = getEntries();
+        return loadCodec().toJson(snapshot);
     }
 
     public void serializeToFile(Path filePath) {
@@ -191,13 +457,28 @@ public class InMemoryEmbeddingStore<Embedded> implements EmbeddingStore<Embedded
     }
 
     public static InMemoryEmbeddingStore<TextSegment> fromJson(String json) {
-        return loadCodec().fromJson(json);
+        return fromJson(json, new InMemoryIndexOptions());
+    }
+
+    public static InMemoryEmbeddingStore<TextSegment> fromJson(String json,
+            InMemoryIndexOptions options) {
+        InMemoryEmbeddingStore<TextSegment> decoded = loadCodec().fromJson(json);
+        InMemoryEmbeddingStore<TextSegment> embeddingStore = new InMemoryEmbeddingStore<>(options);
+        if (decoded.entries != null) {
+            embeddingStore.add(decoded.entries);
+        }
+        return embeddingStore;
     }
 
     public static InMemoryEmbeddingStore<TextSegment> fromFile(Path filePath) {
+        return fromFile(filePath, new InMemoryIndexOptions());
+    }
+
+    public static InMemoryEmbeddingStore<TextSegment> fromFile(Path filePath,
+            InMemoryIndexOptions options) {
         try {
             String json = new String(Files.readAllBytes(filePath));
-            return fromJson(json);
+            return fromJson(json, options);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -207,7 +488,24 @@ public class InMemoryEmbeddingStore<Embedded> implements EmbeddingStore<Embedded
         return fromFile(Paths.get(filePath));
     }
 
-    private static class Entry<Embedded> {
+    /** the entries written and the ids removed since the changes were last drained */
+    static final class Changes<Embedded> {
+
+        /** all entries were removed before these changes */
+        final boolean cleared;
+        final List<Entry<Embedded>> entries = new ArrayList<>();
+        final List<String> removedIds = new ArrayList<>();
+
+        Changes(boolean cleared) {
+            this.cleared = cleared;
+        }
+
+        boolean isEmpty() {
+            return !cleared && entries.isEmpty() && removedIds.isEmpty();
+        }
+    }
+
+    static class Entry<Embedded> {
 
         String id;
         Embedding embedding;
@@ -0,0 +1,404 @@
+package dev.langchain4j.store.embedding.inmemory;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore.Changes;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore.Entry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Persists an {@link InMemoryEmbeddingStore} of text segments as a binary segment plus a log of the
+ * later writes, so each persist only appends the entries written since the previous one.
+ *
+ * <p>
+ * The segment file holds a header, the vectors as one block of little endian floats and a side
+ * table with the id, text and typed metadata of each entry. It is memory mapped when loading. The
+ * log file holds records of upserted and removed entries, each with its length and checksum, and is
+ * replayed over the segment of the same generation. Once the log outgrows half of the segment, or
+ * the store was cleared, the next persist writes a new segment and starts an empty log.
+ */
+@Slf4j
+public class InMemoryEmbeddingStorePersister {
+
+    public static final String SEGMENT_SUFFIX = ".seg";
+    public static final String LOG_SUFFIX = ".wal";
+
+    private static final int SEGMENT_MAGIC = 0x53324553;
+    private static final int LOG_MAGIC = 0x53324557;
+    private static final int FORMAT_VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 16;
+    private static final long MIN_COMPACT_LOG_SIZE = 1024 * 1024;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private final Path segmentPath;
+    private final Path logPath;
+    /** the legacy json file, read when there is no segment yet */
+    private final Path jsonPath;
+    private long generation;
+    private long segmentSize;
+    private long logSize;
+    /** the files do not hold the store yet, so the next persist writes a segment */
+    private boolean segmentRequired = true;
+
+    public InMemoryEmbeddingStorePersister(Path basePath) {
+        this.jsonPath = basePath;
+        this.segmentPath = Path.of(basePath + SEGMENT_SUFFIX);
+        this.logPath = Path.of(basePath + LOG_SUFFIX);
+    }
+
+    /** the persisted store, or null if nothing was persisted yet */
+    public synchronized InMemoryEmbeddingStore<TextSegment> load(InMemoryIndexOptions options)
+            throws IOException {
+        InMemoryEmbeddingStore<TextSegment> embeddingStore;
+        if (Files.exists(segmentPath)) {
+            embeddingStore = new InMemoryEmbeddingStore<>(options);
+            embeddingStore.putAll(readSegment());
+            segmentSize = Files.size(segmentPath);
+            logSize = replayLog(embeddingStore);
+            segmentRequired = false;
+        } else if (Files.exists(jsonPath)) {
+            embeddingStore = InMemoryEmbeddingStore.fromFile(jsonPath, options);
+            segmentRequired = true;
+        } else {
+            return null;
+        }
+        embeddingStore.trackChanges();
+        return embeddingStore;
+    }
+
+    /** writes the entries changed since the last persist, or a new segment when it is due */
+    public synchronized void persist(InMemoryEmbeddingStore<TextSegment> embeddingStore)
+            throws IOException {
+        embeddingStore.trackChanges();
+        Changes<TextSegment> changes = embeddingStore.drainChanges();
+        if (!segmentRequired && changes.isEmpty()) {
+            return;
+        }
+        try {
+            if (segmentRequired || changes.cleared
+                    || logSize > Math.max(segmentSize / 2, MIN_COMPACT_LOG_SIZE)) {
+                // entries written after draining are in the next changes, replaying them is fine
+                writeSegment(embeddingStore.getEntries());
+            } else {
+                appendLog(changes);
+            }
+        } catch (IOException e) {
+            // the drained changes are lost for the log, so the next persist writes them all
+            segmentRequired = true;
+            throw e;
+        }
+    }
+
+    private void writeSegment(List<Entry<TextSegment>> entries) throws IOException {
+        int dimension = entries.isEmpty() ? 0 : entries.get(0).embedding.dimension();
+        List<Entry<TextSegment>> written = new ArrayList<>(entries.size());
+        for (Entry<TextSegment> entry : entries) {
+            if (entry.embedding.dimension() == dimension) {
+                written.add(entry);
+            } else {
+                log.warn("skip embedding of dimension {} in a segment of dimension {}, id:{}",
+                        entry.embedding.dimension(), dimension, entry.id);
+            }
+        }
+        long newGeneration = generation + 1;
+        Files.createDirectories(segmentPath.getParent());
+        Path tmpPath = Path.of(segmentPath + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION).putLong(newGeneration)
+                    .putInt(written.size()).putInt(dimension).flip();
+            writeFully(channel, header);
+            ByteBuffer vectors = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (Entry<TextSegment> entry : written) {
+                for (float value : entry.embedding.vector()) {
+                    if (!vectors.hasRemaining()) {
+                        vectors.flip();
+                        writeFully(channel, vectors);
+                        vectors.clear();
+                    }
+                    vectors.putFloat(value);
+                }
+            }
+            vectors.flip();
+            writeFully(channel, vectors);
+            OutputStream stream = Channels.newOutputStream(channel);
+            DataOutputStream output =
+                    new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            for (Entry<TextSegment> entry : written) {
+                writeString(output, entry.id);
+                writeEmbedded(output, entry.embedded);
+            }
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(tmpPath, segmentPath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        generation = newGeneration;
+        segmentSize = Files.size(segmentPath);
+        startLog();
+        segmentRequired = false;
+        Files.deleteIfExists(jsonPath);
+        log.info("embedding segment written, path:{}, entries:{}, size:{}", segmentPath,
+                written.size(), segmentSize);
+    }
+
+    private List<Entry<TextSegment>> readSegment() throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != SEGMENT_MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("not an embedding segment: " + segmentPath);
+            }
+            generation = buffer.getLong();
+            int count = buffer.getInt();
+            int dimension = buffer.getInt();
+            float[][] vectors = new float[count][dimension];
+            for (float[] vector : vectors) {
+                buffer.asFloatBuffer().get(vector);
+                buffer.position(buffer.position() + dimension * Float.BYTES);
+            }
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            List<Entry<TextSegment>> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = readString(buffer);
+                entries.add(new Entry<>(id, Embedding.from(vectors[i]), readEmbedded(buffer)));
+            }
+            return entries;
+        }
+    }
+
+    /** applies the valid records of the log, a torn last record is cut off */
+    private long replayLog(InMemoryEmbeddingStore<TextSegment> embeddingStore) throws IOException {
+        if (!Files.exists(logPath)) {
+            startLog();
+            return LOG_HEADER_SIZE;
+        }
+        long validSize = LOG_HEADER_SIZE;
+        int records = 0;
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < LOG_HEADER_SIZE || buffer.getInt() != LOG_MAGIC
+                    || buffer.getInt() != FORMAT_VERSION || buffer.getLong() != generation) {
+                log.warn("ignore the log of another segment, path:{}", logPath);
+                buffer.limit(buffer.position());
+                validSize = -1;
+            }
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            while (buffer.remaining() >= 8) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer record = buffer.slice(buffer.position(), length);
+                CRC32 crc = new CRC32();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                applyRecord(embeddingStore, record);
+                buffer.position(buffer.position() + length);
+                validSize = buffer.position();
+                records++;
+            }
+        }
+        if (validSize < 0) {
+            startLog();
+            return LOG_HEADER_SIZE;
+        }
+        if (validSize < Files.size(logPath)) {
+            log.warn("truncate the log after its last valid record, path:{}, size:{}", logPath,
+                    validSize);
+            try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                channel.truncate(validSize);
+            }
+        }
+        log.info("embedding log replayed, path:{}, records:{}", logPath, records);
+        return validSize;
+    }
+
+    private void applyRecord(InMemoryEmbeddingStore<TextSegment> embeddingStore,
+            ByteBuffer record) {
+        byte op = record.get();
+        String id = readString(record);
+        if (op == OP_REMOVE) {
+            embeddingStore.removeAll(List.of(id));
+            return;
+        }
+        float[] vector = new float[record.getInt()];
+        record.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        record.order(ByteOrder.BIG_ENDIAN).position(record.position() + vector.length * 4);
+        embeddingStore.add(id, Embedding.from(vector), readEmbedded(record));
+    }
+
+    private void startLog() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOG_MAGIC).putInt(FORMAT_VERSION).putLong(generation).flip();
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            channel.force(true);
+        }
+        logSize = LOG_HEADER_SIZE;
+    }
+
+    private void appendLog(Changes<TextSegment> changes) throws IOException {
+        try (FileChannel channel =
+                FileChannel.open(logPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            RecordBuffer record = new RecordBuffer();
+            for (String id : changes.removedIds) {
+                record.reset();
+                record.data.writeByte(OP_REMOVE);
+                writeString(record.data, id);
+                record.writeTo(output);
+            }
+            for (Entry<TextSegment> entry : changes.entries) {
+                record.reset();
+                record.data.writeByte(OP_PUT);
+                writeString(record.data, entry.id);
+                float[] vector = entry.embedding.vector();
+                record.data.writeInt(vector.length);
+                ByteBuffer floats =
+                        ByteBuffer.allocate(vector.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+                floats.asFloatBuffer().put(vector);
+                record.data.write(floats.array());
+                writeEmbedded(record.data, entry.embedded);
+                record.writeTo(output);
+            }
+            output.flush();
+            channel.force(false);
+            logSize = channel.size();
+        }
+        log.info("embedding log appended, path:{}, entries:{}, removed:{}, size:{}", logPath,
+                changes.entries.size(), changes.removedIds.size(), logSize);
+    }
+
+    private static void writeEmbedded(DataOutputStream output, TextSegment segment)
+            throws IOException {
+        if (segment == null) {
+            output.writeByte(0);
+            return;
+        }
+        output.writeByte(1);
+        writeString(output, segment.text());
+        Map<String, Object> metadata = segment.metadata().toMap();
+        output.writeInt(metadata.size());
+        for (Map.Entry<String, Object> item : metadata.entrySet()) {
+            writeString(output, item.getKey());
+            Object value = item.getValue();
+            if (value instanceof Integer) {
+                output.writeByte(1);
+                output.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                output.writeByte(2);
+                output.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                output.writeByte(3);
+                output.writeFloat((Float) value);
+            } else if (value instanceof Double) {
+                output.writeByte(4);
+                output.writeDouble((Double) value);
+            } else if (value instanceof UUID) {
+                output.writeByte(5);
+                writeString(output, value.toString());
+            } else {
+                output.writeByte(0);
+                writeString(output, String.valueOf(value));
+            }
+        }
+    }
+
+    private static TextSegment readEmbedded(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        String text = readString(buffer);
+        int size = buffer.getInt();
+        Map<String, Object> metadata = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(buffer);
+            byte type = buffer.get();
+            switch (type) {
+                case 1 -> metadata.put(key, buffer.getInt());
+                case 2 -> metadata.put(key, buffer.getLong());
+                case 3 -> metadata.put(key, buffer.getFloat());
+                case 4 -> metadata.put(key, buffer.getDouble());
+                case 5 -> metadata.put(key, UUID.fromString(readString(buffer)));
+                default -> metadata.put(key, readString(buffer));
+            }
+        }
+        return TextSegment.from(text, new Metadata(metadata));
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /** one log record, written with its length and checksum once complete */
+    private static class RecordBuffer {
+
+        private final ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream();
+        private final DataOutputStream data = new DataOutputStream(bytes);
+
+        void reset() {
+            bytes.reset();
+        }
+
+        void writeTo(DataOutputStream output) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(bytes.buffer(), 0, bytes.size());
+            output.writeInt(bytes.size());
+            output.writeInt((int) crc.getValue());
+            output.write(bytes.buffer(), 0, bytes.size());
+        }
+    }
+
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
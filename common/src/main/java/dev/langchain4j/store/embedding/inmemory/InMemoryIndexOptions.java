@@ -0,0 +1,27 @@
+package dev.langchain4j.store.embedding.inmemory;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** How an {@link InMemoryEmbeddingStore} partitions its entries and indexes large partitions. */
+@Getter
+@Setter
+public class InMemoryIndexOptions {
+
+    /**
+     * metadata keys that split the entries, an entry goes to the partition of the first key it has,
+     * so a search filtering on one of them only visits the matching partitions
+     */
+    private List<String> partitionKeys = new ArrayList<>(Arrays.asList("modelId", "dataSetId"));
+    /** partitions with fewer entries are scanned exactly, larger ones keep an HNSW graph */
+    private int threshold = 20000;
+    /** links per node and layer, twice as many on the base layer */
+    private int m = 16;
+    private int efConstruction = 100;
+    /** candidates visited per search, higher values trade speed for recall */
+    private int efSearch = 64;
+}
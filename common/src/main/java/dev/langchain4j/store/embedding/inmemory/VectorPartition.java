@@ -0,0 +1,293 @@
+package dev.langchain4j.store.embedding.inmemory;
+
+import dev.langchain4j.data.embedding.Embedding;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * The entries of one partition of an {@link InMemoryEmbeddingStore}. The normalized vectors are
+ * kept back to back in one float array so a scan is a plain dot product over it, removed entries
+ * leave a hole until the partition compacts. Large partitions also keep a {@link HnswIndex}.
+ */
+class VectorPartition<Embedded> {
+
+    private static final int MIN_COMPACT_SIZE = 64;
+
+    private final InMemoryIndexOptions options;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private int dimension = -1;
+    private float[] vectors = new float[0];
+    private String[] ids = new String[0];
+    private Embedding[] embeddings = new Embedding[0];
+    private Object[] embedded = new Object[0];
+    private BitSet removed = new BitSet();
+    private int size;
+    private HnswIndex index;
+
+    VectorPartition(InMemoryIndexOptions options) {
+        this.options = options;
+    }
+
+    int liveSize() {
+        return slots.size();
+    }
+
+    Integer slot(String id) {
+        return slots.get(id);
+    }
+
+    /**
+     * adds an entry or replaces the one with the same id, an unchanged vector only replaces the
+     * embedded object and keeps the slot and its links
+     */
+    void put(String id, Embedding embedding, Embedded embeddedObject) {
+        float[] vector = embedding.vector();
+        if (dimension < 0) {
+            dimension = vector.length;
+        } else if (dimension != vector.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Length of vector a (%s) must be equal to the length of vector b (%s)",
+                    vector.length, dimension));
+        }
+        Integer slot = slots.get(id);
+        if (slot != null) {
+            if (Arrays.equals(embeddings[slot].vector(), vector)) {
+                embeddings[slot] = embedding;
+                embedded[slot] = embeddedObject;
+                return;
+            }
+            remove(id);
+        }
+        ensureCapacity(size + 1);
+        int newSlot = size++;
+        normalize(vector, vectors, newSlot * dimension);
+        ids[newSlot] = id;
+        embeddings[newSlot] = embedding;
+        embedded[newSlot] = embeddedObject;
+        slots.put(id, newSlot);
+        if (index != null) {
+            index.insert(newSlot);
+        } else if (slots.size() >= options.getThreshold()) {
+            buildIndex();
+        }
+    }
+
+    void remove(String id) {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
+            return;
+        }
+        removed.set(slot);
+        embeddings[slot] = null;
+        embedded[slot] = null;
+        int holes = size - slots.size();
+        if (size >= MIN_COMPACT_SIZE && holes > slots.size()) {
+            compact();
+        }
+    }
+
+    /** the ids of the entries whose embedded object matches */
+    void collectIds(IntPredicate slotFilter, List<String> result) {
+        for (int slot = 0; slot < size; slot++) {
+            if (!removed.get(slot) && slotFilter.test(slot)) {
+                result.add(ids[slot]);
+            }
+        }
+    }
+
+    /**
+     * offers the best entries with a cosine similarity of at least minSimilarity to the given
+     * queue, which keeps the best maxResults of all partitions
+     */
+    void search(float[] query, int maxResults, double minSimilarity, IntPredicate slotFilter,
+            PriorityQueue<ScoredSlot<Embedded>> matches) {
+        if (size == 0) {
+            return;
+        }
+        if (dimension != query.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Length of vector a (%s) must be equal to the length of vector b (%s)",
+                    query.length, dimension));
+        }
+        float[] normalized = new float[dimension];
+        normalize(query, normalized, 0);
+        if (index != null) {
+            List<HnswIndex.Candidate> candidates =
+                    index.search(normalized, Math.max(options.getEfSearch(), maxResults));
+            candidates.removeIf(candidate -> removed.get(candidate.node())
+                    || !slotFilter.test(candidate.node()));
+            // a selective filter can leave too few candidates, fall back to the exact scan
+            if (candidates.size() >= maxResults) {
+                for (HnswIndex.Candidate candidate : candidates) {
+                    offer(candidate.node(), candidate.score(), maxResults, minSimilarity, matches);
+                }
+                return;
+            }
+        }
+        for (int slot = 0; slot < size; slot++) {
+            if (removed.get(slot) || !slotFilter.test(slot)) {
+                continue;
+            }
+            offer(slot, dot(normalized, slot), maxResults, minSimilarity, matches);
+        }
+    }
+
+    private void offer(int slot, float similarity, int maxResults, double minSimilarity,
+            PriorityQueue<ScoredSlot<Embedded>> matches) {
+        if (similarity < minSimilarity) {
+            return;
+        }
+        if (matches.size() >= maxResults && similarity <= matches.peek().similarity()) {
+            return;
+        }
+        matches.add(new ScoredSlot<>(this, slot, similarity));
+        if (matches.size() > maxResults) {
+            matches.poll();
+        }
+    }
+
+    String id(int slot) {
+        return ids[slot];
+    }
+
+    Embedding embedding(int slot) {
+        return embeddings[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    Embedded embedded(int slot) {
+        return (Embedded) embedded[slot];
+    }
+
+    void forEach(IntConsumer consumer) {
+        for (int slot = 0; slot < size; slot++) {
+            if (!removed.get(slot)) {
+                consumer.accept(slot);
+            }
+        }
+    }
+
+    float[] vector(int slot) {
+        return Arrays.copyOfRange(vectors, slot * dimension, (slot + 1) * dimension);
+    }
+
+    float similarity(float[] query, int slot) {
+        return dot(query, slot);
+    }
+
+    float similarity(int a, int b) {
+        float sum = 0;
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return sum;
+    }
+
+    private float dot(float[] query, int slot) {
+        float sum = 0;
+        int offset = slot * dimension;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * vectors[offset + i];
+        }
+        return sum;
+    }
+
+    private static void normalize(float[] vector, float[] target, int offset) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            target[offset + i] = vector[i] * scale;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, ids.length + (ids.length >> 1)));
+        vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+        ids = Arrays.copyOf(ids, newCapacity);
+        embeddings = Arrays.copyOf(embeddings, newCapacity);
+        embedded = Arrays.copyOf(embedded, newCapacity);
+    }
+
+    /** moves the live entries to the front and rebuilds the graph over them */
+    private void compact() {
+        int live = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (removed.get(slot)) {
+                continue;
+            }
+            if (live != slot) {
+                System.arraycopy(vectors, slot * dimension, vectors, live * dimension, dimension);
+                ids[live] = ids[slot];
+                embeddings[live] = embeddings[slot];
+                embedded[live] = embedded[slot];
+                slots.put(ids[live], live);
+            }
+            live++;
+        }
+        Arrays.fill(ids, live, size, null);
+        Arrays.fill(embeddings, live, size, null);
+        Arrays.fill(embedded, live, size, null);
+        size = live;
+        removed = new BitSet();
+        int capacity = Math.max(16, live + (live >> 1));
+        if (capacity < ids.length / 2) {
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+            ids = Arrays.copyOf(ids, capacity);
+            embeddings = Arrays.copyOf(embeddings, capacity);
+            embedded = Arrays.copyOf(embedded, capacity);
+        }
+        index = null;
+        if (live >= options.getThreshold()) {
+            buildIndex();
+        }
+    }
+
+    private void buildIndex() {
+        index = new HnswIndex(this, options);
+        for (int slot = 0; slot < size; slot++) {
+            if (!removed.get(slot)) {
+                index.insert(slot);
+            }
+        }
+    }
+
+    static final class ScoredSlot<Embedded> {
+
+        private final VectorPartition<Embedded> partition;
+        private final int slot;
+        private final float similarity;
+
+        ScoredSlot(VectorPartition<Embedded> partition, int slot, float similarity) {
+            this.partition = partition;
+            this.slot = slot;
+            this.similarity = similarity;
+        }
+
+        VectorPartition<Embedded> partition() {
+            return partition;
+        }
+
+        int slot() {
+            return slot;
+        }
+
+        float similarity() {
+            return similarity;
+        }
+    }
+}
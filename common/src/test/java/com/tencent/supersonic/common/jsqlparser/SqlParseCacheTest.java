@@ -0,0 +1,117 @@
+package com.tencent.supersonic.common.jsqlparser;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+class SqlParseCacheTest {
+
+    private static final String SQL = "WITH t AS (SELECT 部门, 用户, 访问次数 FROM 超音数 "
+            + "WHERE 数据日期 >= '2023-08-01') SELECT 部门, SUM(访问次数) AS pv FROM t "
+            + "WHERE 用户 IN ('alice', 'bob') AND (部门 = 'HR' OR 部门 LIKE '%sales%') "
+            + "AND 数据日期 BETWEEN '2023-08-01' AND '2023-08-08' GROUP BY 部门 "
+            + "HAVING SUM(访问次数) > 10 ORDER BY pv DESC LIMIT 10";
+
+    @AfterEach
+    void tearDown() {
+        SqlParseCache.setEnable(true);
+    }
+
+    @Test
+    void testCopyIsIndependent() throws JSQLParserException {
+        String expected = CCJSqlParserUtil.parse(SQL).toString();
+        Select select = SqlSelectHelper.getSelect(SQL);
+        Assertions.assertEquals(expected, select.toString());
+
+        PlainSelect plainSelect = select.getPlainSelect();
+        plainSelect.setWhere(null);
+        plainSelect.getSelectItems().clear();
+        select.getWithItemsList().get(0).getSelect().getPlainSelect().setWhere(null);
+
+        Assertions.assertEquals(expected, SqlSelectHelper.getSelect(SQL).toString());
+    }
+
+    @Test
+    void testReadersShareOneParse() {
+        SqlParseCache.invalidateAll();
+        long parseCount = SqlParseCache.getParseCount();
+        List<String> selectFields = SqlSelectHelper.getSelectFields(SQL);
+        Assertions.assertEquals(selectFields, SqlSelectHelper.getSelectFields(SQL));
+        SqlSelectHelper.getWhereFields(SQL);
+        SqlSelectHelper.hasGroupBy(SQL);
+        Assertions.assertEquals(1, SqlParseCache.getParseCount() - parseCount);
+
+        // a caller that changes its select parses the sql again
+        SqlSelectHelper.getSelect(SQL).getPlainSelect().getSelectItems().clear();
+        Assertions.assertEquals(2, SqlParseCache.getParseCount() - parseCount);
+        Assertions.assertEquals(selectFields, SqlSelectHelper.getSelectFields(SQL));
+    }
+
+    @Test
+    void testCorrectorChain() {
+        SqlParseCache.setEnable(false);
+        long parseCount = SqlParseCache.getParseCount();
+        long start = System.nanoTime();
+        List<String> uncached = correct(SQL);
+        long uncachedCost = System.nanoTime() - start;
+        long uncachedParses = SqlParseCache.getParseCount() - parseCount;
+
+        SqlParseCache.setEnable(true);
+        SqlParseCache.invalidateAll();
+        parseCount = SqlParseCache.getParseCount();
+        start = System.nanoTime();
+        List<String> cached = correct(SQL);
+        long cachedCost = System.nanoTime() - start;
+        long cachedParses = SqlParseCache.getParseCount() - parseCount;
+
+        Assertions.assertEquals(uncached, cached);
+        Assertions.assertTrue(cachedParses < uncachedParses,
+                cachedParses + " parses with cache, " + uncachedParses + " without");
+        log.info("corrector chain, without cache:{} parses {}us, with cache:{} parses {}us",
+                uncachedParses, uncachedCost / 1000, cachedParses, cachedCost / 1000);
+    }
+
+    /** the sql helper calls of the correctors on one query, and the sql after each change */
+    private static List<String> correct(String sql) {
+        List<String> results = new ArrayList<>();
+        results.add(String.valueOf(SqlSelectHelper.getSelectFields(sql)));
+        results.add(String.valueOf(SqlSelectHelper.getAggregateFields(sql)));
+        results.add(String.valueOf(SqlSelectHelper.getWhereFields(sql)));
+        results.add(String.valueOf(SqlSelectHelper.getGroupByFields(sql)));
+        results.add(String.valueOf(SqlSelectHelper.hasGroupBy(sql)));
+        results.add(String.valueOf(SqlSelectHelper.hasSubSelect(sql)));
+        results.add(String.valueOf(SqlSelectHelper.getWhereExpressions(sql).size()));
+
+        Map<String, String> fieldNameMap = new HashMap<>();
+        fieldNameMap.put("部门", "department");
+        fieldNameMap.put("用户", "user_name");
+        fieldNameMap.put("访问次数", "pv");
+        String corrected = SqlReplaceHelper.replaceFields(sql, fieldNameMap);
+        results.add(corrected);
+        results.add(String.valueOf(SqlSelectHelper.getSelectFields(corrected)));
+        results.add(String.valueOf(SqlSelectHelper.getAggregateFields(corrected)));
+        results.add(String.valueOf(SqlSelectHelper.getWhereExpressions(corrected).size()));
+        results.add(String.valueOf(SqlSelectHelper.hasGroupBy(corrected)));
+
+        String withWhere = SqlAddHelper.addWhere(corrected, "sys_imp_date", "2023-08-08");
+        results.add(withWhere);
+        results.add(String.valueOf(SqlSelectHelper.getWhereFields(withWhere)));
+        results.add(String.valueOf(SqlSelectHelper.getGroupByFields(withWhere)));
+        results.add(String.valueOf(SqlSelectHelper.hasGroupBy(withWhere)));
+        results.add(SqlReplaceHelper.replaceAlias(withWhere));
+        results.add(SqlRemoveHelper.removeSameFieldFromSelect(withWhere));
+        results.add(String.valueOf(SqlSelectHelper.getAllSelectFields(withWhere)));
+        return results;
+    }
+}
@@ -377,6 +377,18 @@ class SqlReplaceHelperTest {
                 replaceSql);
     }
 
+    @Test
+    void testReplaceLiterals() {
+        String sql = "SELECT 部门, sum(访问次数) FROM 超音数 WHERE 数据日期 >= '2023-08-01' "
+                + "AND 用户 IN ('alice', 'bob') GROUP BY 部门 HAVING sum(访问次数) > 10 LIMIT 100";
+        List<String> literals = new ArrayList<>();
+        String shape = SqlReplaceHelper.replaceLiterals(sql, literals);
+        Assert.assertEquals("SELECT 部门, sum(访问次数) FROM 超音数 WHERE 数据日期 >= 's2_param_0' "
+                + "AND 用户 IN ('s2_param_1', 's2_param_2') GROUP BY 部门 "
+                + "HAVING sum(访问次数) > 7000000000000000003 LIMIT 100", shape);
+        Assert.assertEquals(Arrays.asList("'2023-08-01'", "'alice'", "'bob'", "10"), literals);
+    }
+
     protected Map<String, String> initParams() {
         Map<String, String> fieldToBizName = new HashMap<>();
         fieldToBizName.put("部门", "department");
@@ -0,0 +1,85 @@
+package com.tencent.supersonic.common.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.tencent.supersonic.common.config.EmbeddingStoreParameterConfig;
+import com.tencent.supersonic.common.pojo.EmbeddingStoreConfig;
+import com.tencent.supersonic.common.service.impl.EmbeddingCache;
+import com.tencent.supersonic.common.util.ContextUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class EmbeddingCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddingStoreParameterConfig storeConfig =
+                Mockito.mock(EmbeddingStoreParameterConfig.class);
+        Mockito.when(storeConfig.convert())
+                .thenReturn(EmbeddingStoreConfig.builder().persistPath(dir.toString()).build());
+        ApplicationContext context = Mockito.mock(ApplicationContext.class);
+        Mockito.when(context.getBean(EmbeddingStoreParameterConfig.class)).thenReturn(storeConfig);
+        new ContextUtils().setApplicationContext(context);
+    }
+
+    @Test
+    void testPersistAppendsNewVectors() throws Exception {
+        Path file = dir.resolve(EmbeddingCache.CACHE_FILE);
+        EmbeddingCache cache = new EmbeddingCache(true, 1 << 20);
+        cache.put("a", new float[] {1f, 2f});
+        cache.put("b", new float[] {3f});
+        cache.persist();
+        long written = Files.size(file);
+
+        cache.put("c", new float[] {4f});
+        cache.persist();
+        // only the new vector is appended
+        Assertions.assertEquals(written + 2 + 1 + 4 + 4, Files.size(file));
+        cache.persist();
+        Assertions.assertEquals(written + 11, Files.size(file));
+
+        EmbeddingCache reloaded = new EmbeddingCache(true, 1 << 20);
+        Assertions.assertArrayEquals(new float[] {1f, 2f}, reloaded.get("a"));
+        Assertions.assertArrayEquals(new float[] {4f}, reloaded.get("c"));
+        Assertions.assertEquals(3, reloaded.size());
+    }
+
+    @Test
+    void testRewriteOnceFileOutgrowsCache() throws Exception {
+        Path file = dir.resolve(EmbeddingCache.CACHE_FILE);
+        EmbeddingCache cache = new EmbeddingCache(true, 1 << 20);
+        cache.put("a", new float[] {1f});
+        cache.persist();
+        long single = Files.size(file);
+        // the same key again and again, the file would hold many stale entries
+        for (int i = 0; i < 3; i++) {
+            cache.put("a", new float[] {i});
+            cache.persist();
+        }
+        Assertions.assertTrue(Files.size(file) <= single + 11);
+        Assertions.assertArrayEquals(new float[] {2f}, new EmbeddingCache(true, 1 << 20).get("a"));
+    }
+
+    @Test
+    void testBoundedByBytes() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(true, 64 * 1024);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, new float[1024]);
+        }
+        // evictions run in the background, run them now
+        Field vectors = EmbeddingCache.class.getDeclaredField("vectors");
+        vectors.setAccessible(true);
+        ((Cache<?, ?>) vectors.get(cache)).cleanUp();
+        Assertions.assertTrue(cache.size() < 16);
+    }
+}
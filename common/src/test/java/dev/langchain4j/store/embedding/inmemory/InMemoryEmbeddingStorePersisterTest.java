@@ -0,0 +1,77 @@
+package dev.langchain4j.store.embedding.inmemory;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class InMemoryEmbeddingStorePersisterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSegmentAndLog() throws Exception {
+        Path basePath = dir.resolve("InMemory.test");
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        store.add("a", Embedding.from(new float[] {1, 0}), segment("a", 1));
+        store.add("b", Embedding.from(new float[] {0, 1}), segment("b", 2));
+        new InMemoryEmbeddingStore<TextSegment>().serializeToFile(basePath);
+
+        InMemoryEmbeddingStorePersister persister = new InMemoryEmbeddingStorePersister(basePath);
+        persister.persist(store);
+        Assertions.assertFalse(Files.exists(basePath));
+        long segmentSize =
+                Files.size(Path.of(basePath + InMemoryEmbeddingStorePersister.SEGMENT_SUFFIX));
+
+        store.add("c", Embedding.from(new float[] {0.6f, 0.8f}), segment("c", 3));
+        store.removeAll(List.of("a"));
+        persister.persist(store);
+        Assertions.assertEquals(segmentSize,
+                Files.size(Path.of(basePath + InMemoryEmbeddingStorePersister.SEGMENT_SUFFIX)));
+
+        // a torn record at the end of the log is cut off
+        Files.write(Path.of(basePath + InMemoryEmbeddingStorePersister.LOG_SUFFIX),
+                new byte[] {0, 0, 0, 9, 1, 2}, StandardOpenOption.APPEND);
+
+        InMemoryEmbeddingStore<TextSegment> loaded =
+                new InMemoryEmbeddingStorePersister(basePath).load(new InMemoryIndexOptions());
+        Assertions.assertEquals(2, loaded.size());
+        List<EmbeddingMatch<TextSegment>> matches = loaded.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[] {0.6f, 0.8f})).maxResults(1).build())
+                .matches();
+        Assertions.assertEquals("c", matches.get(0).embeddingId());
+        Assertions.assertEquals(3, matches.get(0).embedded().metadata().getInteger("modelId"));
+        Assertions.assertEquals("c", matches.get(0).embedded().metadata().getString("queryId"));
+    }
+
+    @Test
+    void testLegacyJson() throws Exception {
+        Path basePath = dir.resolve("InMemory.legacy");
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        store.add("a", Embedding.from(new float[] {1, 0}), segment("a", 1));
+        store.serializeToFile(basePath);
+
+        InMemoryEmbeddingStore<TextSegment> loaded =
+                new InMemoryEmbeddingStorePersister(basePath).load(new InMemoryIndexOptions());
+        Assertions.assertEquals(1, loaded.size());
+    }
+
+    private static TextSegment segment(String text, int modelId) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("modelId", modelId);
+        metadata.put("queryId", text);
+        return TextSegment.from(text, new Metadata(metadata));
+    }
+}
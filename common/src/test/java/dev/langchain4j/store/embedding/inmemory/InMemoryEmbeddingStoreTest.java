@@ -0,0 +1,95 @@
+package dev.langchain4j.store.embedding.inmemory;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class InMemoryEmbeddingStoreTest {
+
+    @Test
+    void testPartitionFilterAndUpsert() {
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        store.add("a", Embedding.from(new float[] {1, 0}), segment("a", "1_"));
+        store.add("b", Embedding.from(new float[] {0.9f, 0.1f}), segment("b", "2_"));
+        store.add("c", Embedding.from(new float[] {0, 1}), segment("c", "1_"));
+
+        Filter filter = new MetadataFilterBuilder("modelId").isEqualTo("1_");
+        List<EmbeddingMatch<TextSegment>> matches = store.search(
+                EmbeddingSearchRequest.builder().queryEmbedding(Embedding.from(new float[] {1, 0}))
+                        .filter(filter).maxResults(2).build())
+                .matches();
+        Assertions.assertEquals(List.of("a", "c"),
+                matches.stream().map(EmbeddingMatch::embeddingId).collect(Collectors.toList()));
+        Assertions.assertEquals(1.0, matches.get(0).score(), 1e-6);
+
+        // the same id moves to the other partition
+        store.add("a", Embedding.from(new float[] {1, 0}), segment("a", "2_"));
+        Assertions.assertEquals(3, store.size());
+        matches = store.search(
+                EmbeddingSearchRequest.builder().queryEmbedding(Embedding.from(new float[] {1, 0}))
+                        .filter(filter).maxResults(2).build())
+                .matches();
+        Assertions.assertEquals(List.of("c"),
+                matches.stream().map(EmbeddingMatch::embeddingId).collect(Collectors.toList()));
+
+        store.removeAll(new MetadataFilterBuilder("modelId").isIn(List.of("2_")));
+        Assertions.assertEquals(1, store.size());
+
+        InMemoryEmbeddingStore<TextSegment> reloaded =
+                InMemoryEmbeddingStore.fromJson(store.serializeToJson());
+        Assertions.assertEquals(1, reloaded.size());
+        Assertions.assertEquals("c",
+                reloaded.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(Embedding.from(new float[] {0, 1})).build()).matches()
+                        .get(0).embedded().text());
+    }
+
+    @Test
+    void testIndexRecall() {
+        InMemoryIndexOptions options = new InMemoryIndexOptions();
+        options.setThreshold(500);
+        InMemoryEmbeddingStore<TextSegment> indexed = new InMemoryEmbeddingStore<>(options);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            Embedding embedding = Embedding.from(randomVector(random));
+            indexed.add(String.valueOf(i), embedding, segment(String.valueOf(i), "1_"));
+            exact.add(String.valueOf(i), embedding, segment(String.valueOf(i), "1_"));
+        }
+        int found = 0;
+        for (int q = 0; q < 20; q++) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(Embedding.from(randomVector(random))).maxResults(10).build();
+            Set<String> expected = exact.search(request).matches().stream()
+                    .map(EmbeddingMatch::embeddingId).collect(Collectors.toSet());
+            found += (int) indexed.search(request).matches().stream()
+                    .filter(match -> expected.contains(match.embeddingId())).count();
+        }
+        Assertions.assertTrue(found >= 180, "recall too low: " + found);
+    }
+
+    private static TextSegment segment(String text, String modelId) {
+        return TextSegment.from(text, new Metadata(Collections.singletonMap("modelId", modelId)));
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[16];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,235 @@
+package com.tencent.supersonic.headless.api.pojo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Values of one result column. Metric columns are kept in primitive arrays, string dimension
+ * columns are dictionary encoded and everything else falls back to a plain object array.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ColumnVector implements Serializable {
+
+    private static final long MAX_EXACT_LONG = 1L << 53;
+
+    public enum Encoding {
+        LONG, DOUBLE, DICTIONARY, OBJECT
+    }
+
+    private String name;
+    private Encoding encoding;
+    private long[] longValues;
+    private double[] doubleValues;
+    /** bitset words of the null positions of primitive columns */
+    private long[] nulls;
+    /** dictionary codes of DICTIONARY columns, -1 stands for null */
+    private int[] codes;
+    private List<String> dictionary;
+    private Object[] values;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Map<String, Integer> dictionaryIndex;
+
+    public static ColumnVector encode(String name, boolean metric, List<Map<String, Object>> rows) {
+        ColumnVector vector = new ColumnVector();
+        vector.name = name;
+        int size = rows.size();
+        if (metric && allMatch(name, rows, ColumnVector::isIntegral)) {
+            vector.encoding = Encoding.LONG;
+            vector.longValues = new long[size];
+            vector.nulls = new long[wordCount(size)];
+            for (int i = 0; i < size; i++) {
+                Object value = rows.get(i).get(name);
+                if (value == null) {
+                    vector.setNull(i, true);
+                } else {
+                    vector.longValues[i] = ((Number) value).longValue();
+                }
+            }
+        } else if (metric && allMatch(name, rows, ColumnVector::isExactDouble)) {
+            vector.encoding = Encoding.DOUBLE;
+            vector.doubleValues = new double[size];
+            vector.nulls = new long[wordCount(size)];
+            for (int i = 0; i < size; i++) {
+                Object value = rows.get(i).get(name);
+                if (value == null) {
+                    vector.setNull(i, true);
+                } else {
+                    vector.doubleValues[i] = ((Number) value).doubleValue();
+                }
+            }
+        } else if (!metric && allMatch(name, rows, value -> value instanceof String)) {
+            vector.encoding = Encoding.DICTIONARY;
+            vector.codes = new int[size];
+            vector.dictionary = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                vector.codes[i] = vector.codeOf((String) rows.get(i).get(name));
+            }
+        } else {
+            vector.encoding = Encoding.OBJECT;
+            vector.values = new Object[size];
+            for (int i = 0; i < size; i++) {
+                vector.values[i] = rows.get(i).get(name);
+            }
+        }
+        return vector;
+    }
+
+    public Object get(int row) {
+        switch (encoding) {
+            case LONG:
+                return isNull(row) ? null : longValues[row];
+            case DOUBLE:
+                return isNull(row) ? null : doubleValues[row];
+            case DICTIONARY:
+                return codes[row] < 0 ? null : dictionary.get(codes[row]);
+            default:
+                return values[row];
+        }
+    }
+
+    /**
+     * Overwrites a single value. A value that does not fit the current encoding turns the column
+     * into a plain object column, so writes through the row view never lose information.
+     */
+    public void set(int row, Object value) {
+        if (encoding == Encoding.DICTIONARY && (value == null || value instanceof String)) {
+            codes[row] = codeOf((String) value);
+            return;
+        }
+        if (encoding == Encoding.LONG && (value == null || isIntegral(value))) {
+            setNull(row, value == null);
+            longValues[row] = value == null ? 0L : ((Number) value).longValue();
+            return;
+        }
+        if (encoding == Encoding.DOUBLE && (value == null || isExactDouble(value))) {
+            setNull(row, value == null);
+            doubleValues[row] = value == null ? 0D : ((Number) value).doubleValue();
+            return;
+        }
+        if (encoding != Encoding.OBJECT) {
+            Object[] decoded = new Object[size()];
+            for (int i = 0; i < decoded.length; i++) {
+                decoded[i] = get(i);
+            }
+            values = decoded;
+            encoding = Encoding.OBJECT;
+            longValues = null;
+            doubleValues = null;
+            nulls = null;
+            codes = null;
+            dictionary = null;
+            dictionaryIndex = null;
+        }
+        values[row] = value;
+    }
+
+    /** copies the value arrays, so writes to the copy never reach this vector */
+    public ColumnVector copy() {
+        ColumnVector copy = new ColumnVector();
+        copy.name = name;
+        copy.encoding = encoding;
+        copy.longValues = longValues == null ? null : longValues.clone();
+        copy.doubleValues = doubleValues == null ? null : doubleValues.clone();
+        copy.nulls = nulls == null ? null : nulls.clone();
+        copy.codes = codes == null ? null : codes.clone();
+        copy.dictionary = dictionary == null ? null : new ArrayList<>(dictionary);
+        copy.values = values == null ? null : values.clone();
+        return copy;
+    }
+
+    public int size() {
+        switch (encoding) {
+            case LONG:
+                return longValues.length;
+            case DOUBLE:
+                return doubleValues.length;
+            case DICTIONARY:
+                return codes.length;
+            default:
+                return values.length;
+        }
+    }
+
+    private boolean isNull(int row) {
+        int word = row >>> 6;
+        return nulls != null && word < nulls.length && (nulls[word] & (1L << row)) != 0;
+    }
+
+    /** flips the bit of the row in place, the words only grow for vectors read without them */
+    private void setNull(int row, boolean isNull) {
+        int word = row >>> 6;
+        if (nulls == null || word >= nulls.length) {
+            if (!isNull) {
+                return;
+            }
+            nulls = Arrays.copyOf(nulls == null ? new long[0] : nulls, wordCount(size()));
+        }
+        if (isNull) {
+            nulls[word] |= 1L << row;
+        } else {
+            nulls[word] &= ~(1L << row);
+        }
+    }
+
+    private static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    private int codeOf(String value) {
+        if (value == null) {
+            return -1;
+        }
+        if (dictionaryIndex == null) {
+            dictionaryIndex = new HashMap<>();
+            for (int i = 0; i < dictionary.size(); i++) {
+                dictionaryIndex.put(dictionary.get(i), i);
+            }
+        }
+        return dictionaryIndex.computeIfAbsent(value, v -> {
+            dictionary.add(v);
+            return dictionary.size() - 1;
+        });
+    }
+
+    private static boolean allMatch(String name, List<Map<String, Object>> rows,
+            Predicate<Object> predicate) {
+        for (Map<String, Object> row : rows) {
+            Object value = row.get(name);
+            if (value != null && !predicate.test(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte;
+    }
+
+    private static boolean isExactDouble(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return true;
+        }
+        if (isIntegral(value)) {
+            long longValue = ((Number) value).longValue();
+            return longValue < MAX_EXACT_LONG && longValue > -MAX_EXACT_LONG;
+        }
+        // BigDecimal stays an object, a double would lose its scale and type
+        return false;
+    }
+}
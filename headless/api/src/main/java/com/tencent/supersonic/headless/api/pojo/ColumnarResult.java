@@ -0,0 +1,191 @@
+package com.tencent.supersonic.headless.api.pojo;
+
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.headless.api.pojo.enums.SemanticType;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Column-major form of a query result: one {@link ColumnVector} per query column instead of one map
+ * per row. {@link #asRows()} gives a lazy row view for callers that expect
+ * {@code List<Map<String, Object>>}.
+ */
+@Data
+public class ColumnarResult implements Serializable {
+
+    private int rowCount;
+    private List<ColumnVector> columns = new ArrayList<>();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient Map<String, Integer> columnIndex;
+
+    public static ColumnarResult of(List<QueryColumn> queryColumns,
+            List<Map<String, Object>> rows) {
+        ColumnarResult columnarResult = new ColumnarResult();
+        columnarResult.rowCount = rows.size();
+        for (QueryColumn queryColumn : queryColumns) {
+            boolean metric = SemanticType.NUMBER.name().equals(queryColumn.getShowType());
+            columnarResult.columns.add(ColumnVector.encode(queryColumn.getBizName(), metric, rows));
+        }
+        return columnarResult;
+    }
+
+    public ColumnarResult copy() {
+        ColumnarResult copy = new ColumnarResult();
+        copy.rowCount = rowCount;
+        for (ColumnVector column : columns) {
+            copy.columns.add(column.copy());
+        }
+        return copy;
+    }
+
+    public List<Map<String, Object>> asRows() {
+        return new RowList(this);
+    }
+
+    /** copies the rows out into plain maps, detached from this result */
+    public List<Map<String, Object>> toRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            for (ColumnVector column : columns) {
+                line.put(column.getName(), column.get(row));
+            }
+            rows.add(line);
+        }
+        return rows;
+    }
+
+    public void setColumns(List<ColumnVector> columns) {
+        this.columns = columns;
+        this.columnIndex = null;
+    }
+
+    /** positions of the columns by name, built once instead of scanning on every row access */
+    private int indexOf(Object name) {
+        Map<String, Integer> index = columnIndex;
+        if (index == null || index.size() != columns.size()) {
+            index = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                index.putIfAbsent(columns.get(i).getName(), i);
+            }
+            columnIndex = index;
+        }
+        Integer column = index.get(name);
+        return column == null ? -1 : column;
+    }
+
+    /** lazy row view, rows are created on access and write through to the column vectors */
+    public static class RowList extends AbstractList<Map<String, Object>> {
+
+        private final ColumnarResult result;
+
+        RowList(ColumnarResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public Map<String, Object> get(int index) {
+            if (index < 0 || index >= result.rowCount) {
+                throw new IndexOutOfBoundsException("row " + index);
+            }
+            return new Row(result, index);
+        }
+
+        @Override
+        public int size() {
+            return result.rowCount;
+        }
+    }
+
+    private static class Row extends AbstractMap<String, Object> {
+
+        private final ColumnarResult result;
+        private final int row;
+
+        Row(ColumnarResult result, int row) {
+            this.result = result;
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int column = result.indexOf(key);
+            return column < 0 ? null : result.columns.get(column).get(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return result.indexOf(key) >= 0;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            int column = result.indexOf(key);
+            if (column < 0) {
+                throw new UnsupportedOperationException("unknown column " + key);
+            }
+            ColumnVector vector = result.columns.get(column);
+            Object old = vector.get(row);
+            vector.set(row, value);
+            return old;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int column = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return column < result.columns.size();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            ColumnVector vector = result.columns.get(column++);
+                            return new SimpleEntry<>(vector.getName(), vector.get(row)) {
+                                @Override
+                                public Object setValue(Object value) {
+                                    vector.set(row, value);
+                                    return super.setValue(value);
+                                }
+                            };
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return result.columns.size();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.tencent.supersonic.headless.api.pojo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Connection pool and query admission settings of a database, empty settings fall back to the
+ * global {@code source.*} configuration.
+ */
+@Data
+public class ConnectionPoolConfig implements Serializable {
+
+    private Integer maxActive;
+
+    private Integer minIdle;
+
+    /** milliseconds to wait for a pooled connection */
+    private Long maxWait;
+
+    /** seconds a query may run before the driver cancels it, 0 means no limit */
+    private Integer queryTimeout;
+
+    /** queries running at the same time, defaults to maxActive */
+    private Integer maxConcurrentQueries;
+
+    /** queries waiting for admission, further queries are rejected at once */
+    private Integer maxQueuedQueries;
+
+    /** milliseconds a query waits for admission */
+    private Long queueTimeout;
+}
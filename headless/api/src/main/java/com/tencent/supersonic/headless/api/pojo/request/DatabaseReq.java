@@ -2,6 +2,7 @@ package com.tencent.supersonic.headless.api.pojo.request;
 
 import com.google.common.collect.Lists;
 import com.tencent.supersonic.common.pojo.RecordInfo;
+import com.tencent.supersonic.headless.api.pojo.ConnectionPoolConfig;
 import lombok.Data;
 
 import java.util.List;
@@ -40,4 +41,6 @@ public class DatabaseReq extends RecordInfo {
     private List<String> viewers = Lists.newArrayList();
 
     private Integer isOpen = 0;
+
+    private ConnectionPoolConfig poolConfig;
 }
@@ -33,6 +33,9 @@ public abstract class SemanticQueryReq {
 
     protected SqlInfo sqlInfo = new SqlInfo();
 
+    /** return the result in columnar form instead of one map per row */
+    protected boolean columnarResult = false;
+
     public void addModelId(Long modelId) {
         modelIds.add(modelId);
     }
@@ -1,14 +1,18 @@
 package com.tencent.supersonic.headless.api.pojo.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.google.common.collect.Lists;
 import com.tencent.supersonic.common.pojo.QueryAuthorization;
 import com.tencent.supersonic.common.pojo.QueryColumn;
 import com.tencent.supersonic.common.util.StringUtil;
+import com.tencent.supersonic.headless.api.pojo.ColumnarResult;
 import com.tencent.supersonic.headless.api.pojo.QueryResult;
 import com.tencent.supersonic.headless.api.pojo.enums.SemanticType;
 import lombok.Data;
 import lombok.ToString;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -22,6 +26,28 @@ public class SemanticQueryResp extends QueryResult<Map<String, Object>> {
     QueryAuthorization queryAuthorization;
     boolean useCache;
     private String errorMsg;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @ToString.Exclude
+    private ColumnarResult columnarResult;
+
+    /**
+     * When the result is held in columnar form the rows are a lazy view over it, and they are left
+     * out of the json output since the columnar result carries the same data.
+     */
+    @Override
+    @JsonInclude(value = JsonInclude.Include.CUSTOM, valueFilter = ColumnarRowsFilter.class)
+    public List<Map<String, Object>> getResultList() {
+        if (columnarResult != null) {
+            return columnarResult.asRows();
+        }
+        return super.getResultList();
+    }
+
+    @Override
+    public void setResultList(List<Map<String, Object>> resultList) {
+        columnarResult = null;
+        super.setResultList(resultList);
+    }
 
     public List<QueryColumn> getMetricColumns() {
         return columns.stream()
@@ -38,4 +64,61 @@ public class SemanticQueryResp extends QueryResult<Map<String, Object>> {
     public void appendErrorMsg(String msg) {
         errorMsg = StringUtil.append(errorMsg, msg);
     }
+
+    /** converts the rows held by this response into columnar form */
+    public void toColumnar() {
+        if (columnarResult == null) {
+            columnarResult = ColumnarResult.of(columns, super.getResultList());
+            super.setResultList(new ArrayList<>());
+        }
+    }
+
+    /** returns a copy of this response whose rows are held in columnar form */
+    public SemanticQueryResp columnarCopy() {
+        SemanticQueryResp copy = copyWithoutRows();
+        copy.columnarResult = columnarResult != null ? columnarResult.copy()
+                : ColumnarResult.of(columns, super.getResultList());
+        return copy;
+    }
+
+    /** returns a copy of this response whose rows are plain maps detached from this one */
+    public SemanticQueryResp rowCopy() {
+        SemanticQueryResp copy = copyWithoutRows();
+        copy.setResultList(columnarResult != null ? columnarResult.toRows()
+                : super.getResultList().stream()
+                        .map(row -> (Map<String, Object>) new LinkedHashMap<>(row))
+                        .collect(Collectors.toList()));
+        return copy;
+    }
+
+    /** copies everything but the rows, the columns are copied too as processors modify them */
+    private SemanticQueryResp copyWithoutRows() {
+        SemanticQueryResp copy = new SemanticQueryResp();
+        copy.setPageNo(getPageNo());
+        copy.setPageSize(getPageSize());
+        copy.setTotalCount(getTotalCount());
+        copy.setColumns(columns.stream()
+                .map(c -> new QueryColumn(c.getName(), c.getType(), c.getBizName(), c.getNameEn(),
+                        c.getShowType(), c.getAuthorized(), c.getDataFormatType(),
+                        c.getDataFormat(), c.getComment(), c.getModelId()))
+                .collect(Collectors.toList()));
+        copy.setSql(sql);
+        copy.setQueryAuthorization(queryAuthorization);
+        copy.setUseCache(useCache);
+        copy.setErrorMsg(errorMsg);
+        return copy;
+    }
+
+    public static class ColumnarRowsFilter {
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ColumnarResult.RowList;
+        }
+
+        @Override
+        public int hashCode() {
+            return ColumnarRowsFilter.class.hashCode();
+        }
+    }
 }
@@ -9,6 +9,7 @@ import com.tencent.supersonic.headless.api.pojo.SemanticSchema;
 import com.tencent.supersonic.headless.api.pojo.enums.ChatWorkflowState;
 import com.tencent.supersonic.headless.api.pojo.request.QueryNLReq;
 import com.tencent.supersonic.headless.api.pojo.response.ParseResp;
+import com.tencent.supersonic.headless.chat.mapper.MappingContext;
 import com.tencent.supersonic.headless.chat.query.SemanticQuery;
 import lombok.Data;
 
@@ -31,6 +32,8 @@ public class ChatQueryContext implements Serializable {
     @JsonIgnore
     private SemanticSchema semanticSchema;
     private ChatWorkflowState chatWorkflowState;
+    @JsonIgnore
+    private transient volatile MappingContext mappingContext;
 
     public ChatQueryContext() {
         this(new QueryNLReq());
@@ -44,6 +47,17 @@ public class ChatQueryContext implements Serializable {
         }
     }
 
+    public MappingContext getMappingContext() {
+        if (mappingContext == null) {
+            synchronized (this) {
+                if (mappingContext == null) {
+                    mappingContext = new MappingContext();
+                }
+            }
+        }
+        return mappingContext;
+    }
+
     public boolean needSQL() {
         return !request.getText2SQLType().equals(Text2SQLType.NONE);
     }
@@ -52,15 +66,37 @@ public class ChatQueryContext implements Serializable {
         return semanticSchema.getDataSetSchema(dataSetId);
     }
 
+    /** returns all the candidates sorted by score, see {@link #retainTopCandidate()} */
     public List<SemanticQuery> getCandidateQueries() {
         candidateQueries = candidateQueries.stream()
                 .sorted(Comparator.comparing(
                         semanticQuery -> semanticQuery.getParseInfo().getScore(),
                         Comparator.reverseOrder()))
-                .limit(1).collect(Collectors.toList());
+                .collect(Collectors.toList());
         return candidateQueries;
     }
 
+    /** keeps only the candidate with the highest score */
+    public void retainTopCandidate() {
+        candidateQueries = getCandidateQueries().stream().limit(1).collect(Collectors.toList());
+    }
+
+    /**
+     * copies the context for correcting a single candidate on its own thread. The request, the
+     * schema and the mapping result are shared and only read by the correctors, the workflow state,
+     * the candidates and the parse response belong to the copy.
+     */
+    public ChatQueryContext copyForCandidate(SemanticQuery candidateQuery) {
+        ChatQueryContext queryCtx = new ChatQueryContext(request);
+        queryCtx.setModelIdToDataSetIds(modelIdToDataSetIds);
+        queryCtx.setSemanticSchema(semanticSchema);
+        queryCtx.setMapInfo(mapInfo);
+        queryCtx.setChatWorkflowState(chatWorkflowState);
+        queryCtx.setParseResp(new ParseResp(request.getQueryText()));
+        queryCtx.setCandidateQueries(new ArrayList<>(List.of(candidateQuery)));
+        return queryCtx;
+    }
+
     public boolean containsPartitionDimensions(Long dataSetId) {
         SemanticSchema semanticSchema = this.getSemanticSchema();
         DataSetSchema dataSetSchema = semanticSchema.getDataSetSchemaMap().get(dataSetId);
@@ -0,0 +1,655 @@
+package com.tencent.supersonic.headless.chat.knowledge;
+
+import com.hankcs.hanlp.corpus.tag.Nature;
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.tencent.supersonic.headless.chat.knowledge.helper.NatureHelper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Memory-mapped table of the dimension values loaded from the {@code dic_value_*} files. The values
+ * are kept sorted by their utf-8 bytes in a file next to the dictionary files, so a prefix search
+ * is a binary search and a scan over the mapped bytes, and only the words returned are materialised
+ * as strings. The table remembers the files it was built from and is reused across restarts as long
+ * as they are unchanged.
+ *
+ * <p>
+ * Layout: a header, the nature names, the top values of each nature, the offsets of the entries and
+ * the entries, each being the word and its nature ids with frequencies.
+ */
+@Slf4j
+public class DimValueTable {
+
+    public static final String FILE_PREFIX = "dic_value_";
+    public static final String TABLE_FILE = "dic_value.table";
+    private static final int MAGIC = 0x53325654;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+    private static final int MAX_WORD_BYTES = 0xFFFF;
+    private static final int MAX_NATURES = 0xFF;
+
+    private final ByteBuffer buffer;
+    private final String[] natures;
+    /** model id of each nature, -1 if the nature does not carry one */
+    private final long[] natureModelIds;
+    private final Map<String, Integer> natureIds;
+    private final int[][] topValues;
+    private final int entryCount;
+    private final int offsetsStart;
+
+    private DimValueTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int natureCount = buffer.getInt(16);
+        this.entryCount = buffer.getInt(20);
+        int position = HEADER_SIZE;
+        this.natures = new String[natureCount];
+        this.natureModelIds = new long[natureCount];
+        this.natureIds = new HashMap<>();
+        for (int i = 0; i < natureCount; i++) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            natures[i] = readString(position + 2, length);
+            position += 2 + length;
+            Long modelId = NatureHelper.parseIdFromNature(natures[i], 1);
+            natureModelIds[i] = Objects.isNull(modelId) ? -1 : modelId;
+            natureIds.put(natures[i], i);
+        }
+        this.topValues = new int[natureCount][];
+        for (int i = 0; i < natureCount; i++) {
+            int count = buffer.getInt(position);
+            position += 4;
+            topValues[i] = new int[count];
+            for (int j = 0; j < count; j++) {
+                topValues[i][j] = buffer.getInt(position);
+                position += 4;
+            }
+        }
+        this.offsetsStart = position;
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Maps the table of the value files if it was built from exactly these files.
+     *
+     * @return the table, or null if it has to be built
+     */
+    public static DimValueTable open(String tablePath, List<String> valueFiles) {
+        File file = new File(tablePath);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(8) != signature(valueFiles)) {
+                log.info("dimension value table is out of date, path:{}", tablePath);
+                return null;
+            }
+            DimValueTable table = new DimValueTable(buffer);
+            log.info("dimension value table is mapped, path:{}, size:{}", tablePath, table.size());
+            return table;
+        } catch (Exception e) {
+            log.warn("failed to map dimension value table, path:{}", tablePath, e);
+            return null;
+        }
+    }
+
+    public static boolean isValueFile(String path) {
+        return new File(path).getName().startsWith(FILE_PREFIX);
+    }
+
+    /** the table file kept in the directory of the dictionary files */
+    public static String getTablePath(String[] paths) {
+        Path parent = Paths.get(paths[0]).toAbsolutePath().normalize().getParent();
+        return parent.resolve(TABLE_FILE).toString();
+    }
+
+    /** the value files among the dictionary files */
+    public static List<String> getValueFiles(String[] paths) {
+        List<String> valueFiles = new ArrayList<>();
+        for (String path : paths) {
+            if (isValueFile(path)) {
+                valueFiles.add(path);
+            }
+        }
+        Collections.sort(valueFiles);
+        return valueFiles;
+    }
+
+    /** identifies the content of the value files by their names, sizes and modification times */
+    private static long signature(List<String> valueFiles) {
+        long signature = 17;
+        for (String valueFile : valueFiles) {
+            File file = new File(valueFile);
+            signature = 31 * signature + file.getName().hashCode();
+            signature = 31 * signature + file.length();
+            signature = 31 * signature + file.lastModified();
+        }
+        return signature;
+    }
+
+    /**
+     * Words starting with the prefix and their natures accepted by the filter, the shortest words
+     * first.
+     */
+    public Map<String, List<String>> prefixSearch(String prefix, int limit,
+            LongPredicate modelFilter) {
+        if (limit <= 0) {
+            return Collections.emptyMap();
+        }
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        // the shortest matches, the longest of them on top
+        PriorityQueue<int[]> shortest =
+                new PriorityQueue<>(Comparator.<int[]>comparingInt(entry -> entry[0])
+                        .thenComparingInt(entry -> entry[1]).reversed());
+        for (int index = lowerBound(key); index < entryCount; index++) {
+            int offset = offset(index);
+            if (!startsWith(offset, key)) {
+                break;
+            }
+            if (!anyNature(offset, modelFilter)) {
+                continue;
+            }
+            int length = buffer.getShort(offset) & 0xFFFF;
+            if (shortest.size() < limit) {
+                shortest.add(new int[] {length, index});
+            } else if (length < shortest.peek()[0]) {
+                shortest.poll();
+                shortest.add(new int[] {length, index});
+            }
+        }
+        List<int[]> entries = new ArrayList<>(shortest);
+        entries.sort(Comparator.<int[]>comparingInt(entry -> entry[0])
+                .thenComparingInt(entry -> entry[1]));
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (int[] entry : entries) {
+            int offset = offset(entry[1]);
+            result.put(readWord(offset), readNatures(offset, modelFilter));
+        }
+        return result;
+    }
+
+    /** the values of the nature with the highest frequencies */
+    public List<String> getTopValues(String nature) {
+        Integer natureId = natureIds.get(nature);
+        if (Objects.isNull(natureId)) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>();
+        for (int index : topValues[natureId]) {
+            values.add(readWord(offset(index)));
+        }
+        return values;
+    }
+
+    private int offset(int index) {
+        return buffer.getInt(offsetsStart + 4 * index);
+    }
+
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(offset(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int offset, byte[] key) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(offset + 2 + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    private boolean startsWith(int offset, byte[] key) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        if (length < key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(offset + 2 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean anyNature(int offset, LongPredicate modelFilter) {
+        int position = offset + 2 + (buffer.getShort(offset) & 0xFFFF);
+        int count = buffer.get(position) & 0xFF;
+        for (int i = 0; i < count; i++) {
+            if (accept(buffer.getInt(position + 1 + 8 * i), modelFilter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> readNatures(int offset, LongPredicate modelFilter) {
+        int position = offset + 2 + (buffer.getShort(offset) & 0xFFFF);
+        int count = buffer.get(position) & 0xFF;
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int natureId = buffer.getInt(position + 1 + 8 * i);
+            if (accept(natureId, modelFilter)) {
+                result.add(natures[natureId]);
+            }
+        }
+        return result;
+    }
+
+    private boolean accept(int natureId, LongPredicate modelFilter) {
+        long modelId = natureModelIds[natureId];
+        return modelId < 0 || modelFilter.test(modelId);
+    }
+
+    private String readWord(int offset) {
+        return readString(offset + 2, buffer.getShort(offset) & 0xFFFF);
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Collects the values while the value files are parsed and writes the table once done. The
+     * values are sorted in runs of bounded size, which are spilled to files next to the table and
+     * merged when it is written, so the heap holds a single run instead of all values.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_RUN_SIZE = 100000;
+
+        private final Path directory;
+        private int runSize;
+        private final List<Map.Entry<String, CoreDictionary.Attribute>> run = new ArrayList<>();
+        private final List<Path> runFiles = new ArrayList<>();
+
+        public Builder(String tablePath) {
+            this(tablePath, DEFAULT_RUN_SIZE);
+        }
+
+        Builder(String tablePath, int runSize) {
+            this.directory = Paths.get(tablePath).toAbsolutePath().getParent();
+            this.runSize = runSize;
+        }
+
+        public void add(String word, CoreDictionary.Attribute attribute) {
+            if (utf8Length(word) > MAX_WORD_BYTES || attribute.nature.length > MAX_NATURES) {
+                log.warn("dimension value is too long for the table, skip it:{}", word);
+                return;
+            }
+            run.add(new AbstractMap.SimpleImmutableEntry<>(word, attribute));
+            if (run.size() >= runSize) {
+                spill();
+            }
+        }
+
+        /** hands the values to the consumer when the table could not be built */
+        public void forEach(BiConsumer<String, CoreDictionary.Attribute> consumer)
+                throws IOException {
+            try {
+                merge(consumer);
+            } finally {
+                clear();
+            }
+        }
+
+        public DimValueTable build(String tablePath, List<String> valueFiles, int maxTop)
+                throws IOException {
+            Map<String, Integer> natureIds = new LinkedHashMap<>();
+            List<PriorityQueue<long[]>> tops = new ArrayList<>();
+            int[][] offsets = {new int[1024]};
+            long[] position = {0};
+            int[] count = {0};
+            Path entries = Files.createTempFile(directory, TABLE_FILE, ".entries");
+            Path target = Paths.get(tablePath);
+            Path temp = target.resolveSibling(TABLE_FILE + ".tmp");
+            try {
+                try (DataOutputStream out = newOutputStream(entries)) {
+                    merge((word, attribute) -> {
+                        int index = count[0]++;
+                        for (int i = 0; i < attribute.nature.length; i++) {
+                            int natureId = natureIds.computeIfAbsent(attribute.nature[i].toString(),
+                                    k -> natureIds.size());
+                            if (natureId == tops.size()) {
+                                // the lowest frequency, and the last word among equal ones, on top
+                                tops.add(new PriorityQueue<>(Comparator
+                                        .<long[]>comparingLong(top -> top[0])
+                                        .thenComparing(top -> top[1], Comparator.reverseOrder())));
+                            }
+                            PriorityQueue<long[]> top = tops.get(natureId);
+                            top.add(new long[] {attribute.frequency[i], index});
+                            if (top.size() > maxTop) {
+                                top.poll();
+                            }
+                        }
+                        if (index == offsets[0].length) {
+                            offsets[0] = Arrays.copyOf(offsets[0], index * 2);
+                        }
+                        offsets[0][index] = (int) position[0];
+                        position[0] += 2 + utf8Length(word) + 1 + 8L * attribute.nature.length;
+                        try {
+                            writeString(out, word);
+                            out.writeByte(attribute.nature.length);
+                            for (int i = 0; i < attribute.nature.length; i++) {
+                                out.writeInt(natureIds.get(attribute.nature[i].toString()));
+                                out.writeInt(attribute.frequency[i]);
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        if (position[0] > Integer.MAX_VALUE) {
+                            throw new UncheckedIOException(
+                                    new IOException("dimension value table exceeds 2GB"));
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                long headerSize = HEADER_SIZE + 4L * count[0];
+                for (String nature : natureIds.keySet()) {
+                    headerSize += 2 + utf8Length(nature);
+                }
+                for (PriorityQueue<long[]> top : tops) {
+                    headerSize += 4 + 4L * top.size();
+                }
+                if (headerSize + position[0] > Integer.MAX_VALUE) {
+                    throw new IOException("dimension value table exceeds 2GB");
+                }
+
+                try (DataOutputStream out = newOutputStream(temp)) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeLong(signature(valueFiles));
+                    out.writeInt(natureIds.size());
+                    out.writeInt(count[0]);
+                    out.writeInt(maxTop);
+                    for (String nature : natureIds.keySet()) {
+                        writeString(out, nature);
+                    }
+                    for (PriorityQueue<long[]> top : tops) {
+                        List<long[]> sorted = new ArrayList<>(top);
+                        sorted.sort(top.comparator().reversed());
+                        out.writeInt(sorted.size());
+                        for (long[] value : sorted) {
+                            out.writeInt((int) value[1]);
+                        }
+                    }
+                    for (int i = 0; i < count[0]; i++) {
+                        out.writeInt((int) (headerSize + offsets[0][i]));
+                    }
+                    Files.copy(entries, out);
+                }
+            } finally {
+                Files.deleteIfExists(entries);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            clear();
+            DimValueTable table = open(tablePath, valueFiles);
+            if (Objects.isNull(table)) {
+                throw new IOException("failed to map the dimension value table just built");
+            }
+            return table;
+        }
+
+        /** sorts the current run and writes it to a file, or keeps it in memory if that fails */
+        private void spill() {
+            Path runFile = null;
+            try {
+                runFile = Files.createTempFile(directory, TABLE_FILE, ".run");
+                sortRun();
+                try (DataOutputStream out = newOutputStream(runFile)) {
+                    out.writeInt(run.size());
+                    for (Map.Entry<String, CoreDictionary.Attribute> entry : run) {
+                        writeString(out, entry.getKey());
+                        CoreDictionary.Attribute attribute = entry.getValue();
+                        out.writeByte(attribute.nature.length);
+                        for (int i = 0; i < attribute.nature.length; i++) {
+                            writeString(out, attribute.nature[i].toString());
+                            out.writeInt(attribute.frequency[i]);
+                        }
+                    }
+                }
+                runFiles.add(runFile);
+                run.clear();
+            } catch (IOException e) {
+                log.warn("failed to spill dimension values, keep them in memory", e);
+                deleteQuietly(runFile);
+                runSize = Integer.MAX_VALUE;
+            }
+        }
+
+        private void sortRun() {
+            // stable, so equal words are merged in the order they were added
+            run.sort(Map.Entry.comparingByKey(DimValueTable::compareCodePoints));
+        }
+
+        /**
+         * Merges the spilled runs and the run in memory and hands the values to the consumer in the
+         * order of the table, the attributes of equal words merged in the order they were added.
+         */
+        private void merge(BiConsumer<String, CoreDictionary.Attribute> consumer)
+                throws IOException {
+            sortRun();
+            List<DataInputStream> inputs = new ArrayList<>();
+            try {
+                PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator
+                        .<Cursor, String>comparing(cursor -> cursor.current.getKey(),
+                                DimValueTable::compareCodePoints)
+                        .thenComparingInt(cursor -> cursor.index));
+                for (int i = 0; i < runFiles.size(); i++) {
+                    DataInputStream input = new DataInputStream(new BufferedInputStream(
+                            Files.newInputStream(runFiles.get(i)), 1 << 16));
+                    inputs.add(input);
+                    addCursor(cursors, new Cursor(i, readRun(input)));
+                }
+                addCursor(cursors, new Cursor(runFiles.size(), run.iterator()));
+
+                String word = null;
+                CoreDictionary.Attribute merged = null;
+                while (!cursors.isEmpty()) {
+                    Cursor cursor = cursors.poll();
+                    Map.Entry<String, CoreDictionary.Attribute> entry = cursor.current;
+                    addCursor(cursors, cursor);
+                    if (entry.getKey().equals(word)) {
+                        merged = DictionaryAttributeUtil.getAttribute(merged, entry.getValue());
+                        continue;
+                    }
+                    if (Objects.nonNull(word)) {
+                        consumer.accept(word, merged);
+                    }
+                    word = entry.getKey();
+                    merged = entry.getValue();
+                }
+                if (Objects.nonNull(word)) {
+                    consumer.accept(word, merged);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (DataInputStream input : inputs) {
+                    input.close();
+                }
+            }
+        }
+
+        private static void addCursor(PriorityQueue<Cursor> cursors, Cursor cursor) {
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+
+        private static Iterator<Map.Entry<String, CoreDictionary.Attribute>> readRun(
+                DataInputStream input) throws IOException {
+            int size = input.readInt();
+            return new Iterator<Map.Entry<String, CoreDictionary.Attribute>>() {
+                private int read;
+
+                @Override
+                public boolean hasNext() {
+                    return read < size;
+                }
+
+                @Override
+                public Map.Entry<String, CoreDictionary.Attribute> next() {
+                    try {
+                        read++;
+                        String word = readString(input);
+                        int natureCount = input.readUnsignedByte();
+                        CoreDictionary.Attribute attribute =
+                                new CoreDictionary.Attribute(natureCount);
+                        for (int i = 0; i < natureCount; i++) {
+                            attribute.nature[i] = Nature.create(readString(input));
+                            attribute.frequency[i] = input.readInt();
+                            attribute.totalFrequency += attribute.frequency[i];
+                        }
+                        return new AbstractMap.SimpleImmutableEntry<>(word, attribute);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+
+        private void clear() {
+            run.clear();
+            runFiles.forEach(Builder::deleteQuietly);
+            runFiles.clear();
+        }
+
+        private static void deleteQuietly(Path file) {
+            if (Objects.isNull(file)) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("failed to delete {}", file, e);
+            }
+        }
+
+        private static DataOutputStream newOutputStream(Path file) throws IOException {
+            return new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream input) throws IOException {
+            byte[] bytes = new byte[input.readUnsignedShort()];
+            input.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** the values of one run, in the order of the table */
+        private static class Cursor {
+
+            private final int index;
+            private final Iterator<Map.Entry<String, CoreDictionary.Attribute>> entries;
+            private Map.Entry<String, CoreDictionary.Attribute> current;
+
+            private Cursor(int index,
+                    Iterator<Map.Entry<String, CoreDictionary.Attribute>> entries) {
+                this.index = index;
+                this.entries = entries;
+            }
+
+            private boolean advance() {
+                current = entries.hasNext() ? entries.next() : null;
+                return Objects.nonNull(current);
+            }
+        }
+    }
+
+    /** the order of the utf-8 bytes, which differs from {@link String#compareTo} for surrogates */
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is encoded as '?'
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
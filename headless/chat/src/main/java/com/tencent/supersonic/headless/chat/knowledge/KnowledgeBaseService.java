@@ -5,6 +5,7 @@ import com.tencent.supersonic.common.pojo.enums.DictWordType;
 import com.tencent.supersonic.headless.api.pojo.response.S2Term;
 import com.tencent.supersonic.headless.chat.knowledge.helper.HanlpHelper;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -43,43 +44,68 @@ public class KnowledgeBaseService {
         return dimValueAlias;
     }
 
-    public void updateSemanticKnowledge(List<DictWord> natures) {
+    public void updateSemanticKnowledge(MultiCustomDictionary customDictionary,
+            List<DictWord> natures) {
 
         List<DictWord> prefixes = natures.stream().filter(
                 entry -> !entry.getNatureWithFrequency().contains(DictWordType.SUFFIX.getType()))
                 .collect(Collectors.toList());
 
         for (DictWord nature : prefixes) {
-            HanlpHelper.addToCustomDictionary(nature);
+            HanlpHelper.addToCustomDictionary(customDictionary, nature);
         }
 
         List<DictWord> suffixes = natures.stream().filter(
                 entry -> entry.getNatureWithFrequency().contains(DictWordType.SUFFIX.getType()))
                 .collect(Collectors.toList());
 
-        SearchService.loadSuffix(suffixes);
+        SearchService.loadSuffix(customDictionary, suffixes);
     }
 
+    /**
+     * Applies changed words to a fork of the published knowledge and publishes the fork, without
+     * rebuilding it from the dictionary files. Words are identified by word and nature, so removing
+     * a word only drops its nature and leaves the natures other elements gave to the same word.
+     */
+    public void updateDictWords(List<DictWord> addedWords, List<DictWord> removedWords) {
+        HanlpHelper.updateCustomDictionary(customDictionary -> {
+            for (DictWord dictWord : removedWords) {
+                String nature = StringUtils.substringBefore(dictWord.getNatureWithFrequency(),
+                        DictWordType.SPACE);
+                if (nature.contains(DictWordType.SUFFIX.getType())) {
+                    customDictionary.removeSuffixNature(dictWord.getWord(), nature);
+                } else {
+                    customDictionary.removeNature(dictWord.getWord(), nature);
+                }
+            }
+            updateSemanticKnowledge(customDictionary, addedWords);
+        });
+    }
+
+    /**
+     * Rebuilds the knowledge from the dictionary files and the given words. The new knowledge is
+     * built completely before it replaces the current one, queries keep using the current one
+     * meanwhile.
+     */
     public void reloadAllData(List<DictWord> natures) {
-        // 1. reload custom knowledge
         try {
-            HanlpHelper.reloadCustomDictionary();
+            // 1. reload custom knowledge, then 2. add online knowledge before publishing
+            HanlpHelper.reloadCustomDictionary(
+                    customDictionary -> updateOnlineKnowledge(customDictionary, natures));
         } catch (Exception e) {
             log.error("reloadCustomDictionary error", e);
         }
+    }
 
-        // 2. update online knowledge
+    private void updateOnlineKnowledge(MultiCustomDictionary customDictionary,
+            List<DictWord> natures) {
         if (CollectionUtils.isNotEmpty(dimValueAliasMap)) {
             for (Long dimId : dimValueAliasMap.keySet()) {
                 natures.addAll(dimValueAliasMap.get(dimId));
             }
         }
-        updateOnlineKnowledge(natures);
-    }
-
-    private void updateOnlineKnowledge(List<DictWord> natures) {
         try {
-            updateSemanticKnowledge(natures);
+            updateSemanticKnowledge(customDictionary, natures);
         } catch (Exception e) {
             log.error("updateSemanticKnowledge error", e);
         }
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedHashSet;
@@ -41,16 +42,122 @@ public class MultiCustomDictionary extends DynamicCustomDictionary {
 
     public static int MAX_SIZE = 10;
     public static Boolean removeDuplicates = true;
-    public static ConcurrentHashMap<String, PriorityBlockingQueue<Term>> NATURE_TO_VALUES =
-            new ConcurrentHashMap<>();
     private static boolean addToSuggesterTrie = true;
+    /** serve the values of the dic_value files from a memory-mapped table instead of the tries */
+    public static boolean enableValueTable = true;
+
+    /** search tries and the top values of each nature, built together with the dictionary */
+    private BinTrie<List<String>> prefixTrie = new BinTrie<>();
+    private BinTrie<List<String>> suffixTrie = new BinTrie<>();
+    private Map<String, PriorityBlockingQueue<Term>> natureToValues = new ConcurrentHashMap<>();
+    private DimValueTable valueTable;
+    /** structures still shared with the published dictionary this one was forked from */
+    private boolean sharedDat;
+    private boolean sharedTrie;
+    private boolean sharedPrefixTrie;
+    private boolean sharedSuffixTrie;
+    /** collects the values while the files are parsed, when the table has to be built */
+    private DimValueTable.Builder valueTableBuilder;
+    private boolean loaded;
 
     public MultiCustomDictionary() {
         this(HanLP.Config.CustomDictionaryPath);
     }
 
     public MultiCustomDictionary(String... path) {
-        super(path);
+        // load after the fields of this class are initialized
+        super(new DoubleArrayTrie<>(), new BinTrie<>(), null);
+        if (path != null) {
+            loaded = load(path);
+        }
+    }
+
+    public BinTrie<List<String>> getPrefixTrie() {
+        return prefixTrie;
+    }
+
+    public BinTrie<List<String>> getSuffixTrie() {
+        return suffixTrie;
+    }
+
+    /** the prefix trie to change, copied first if it is shared with the published dictionary */
+    public BinTrie<List<String>> getWritablePrefixTrie() {
+        if (sharedPrefixTrie) {
+            prefixTrie = copyOf(prefixTrie);
+            sharedPrefixTrie = false;
+        }
+        return prefixTrie;
+    }
+
+    /** the suffix trie to change, copied first if it is shared with the published dictionary */
+    public BinTrie<List<String>> getWritableSuffixTrie() {
+        if (sharedSuffixTrie) {
+            suffixTrie = copyOf(suffixTrie);
+            sharedSuffixTrie = false;
+        }
+        return suffixTrie;
+    }
+
+    /**
+     * Returns a copy to apply updates to while this dictionary stays published and unchanged. The
+     * copy shares the tries of this dictionary and copies each of them on its first write; the
+     * double array trie keeps its structure and only copies its value array.
+     */
+    public MultiCustomDictionary fork() {
+        MultiCustomDictionary copy = new MultiCustomDictionary((String[]) null);
+        copy.path = path;
+        copy.dat = dat;
+        copy.trie = trie;
+        copy.prefixTrie = prefixTrie;
+        copy.suffixTrie = suffixTrie;
+        copy.natureToValues = natureToValues;
+        copy.valueTable = valueTable;
+        copy.loaded = loaded;
+        copy.sharedDat = true;
+        copy.sharedTrie = true;
+        copy.sharedPrefixTrie = true;
+        copy.sharedSuffixTrie = true;
+        return copy;
+    }
+
+    private DoubleArrayTrie<CoreDictionary.Attribute> getWritableDat() {
+        if (sharedDat) {
+            if (Objects.nonNull(dat.getBase())) {
+                dat = new ValueCopyTrie(dat);
+            }
+            sharedDat = false;
+        }
+        return dat;
+    }
+
+    private BinTrie<CoreDictionary.Attribute> getWritableTrie() {
+        if (sharedTrie) {
+            trie = Objects.isNull(trie) ? new BinTrie<>() : copyOf(trie);
+            sharedTrie = false;
+        } else if (Objects.isNull(trie)) {
+            trie = new BinTrie<>();
+        }
+        return trie;
+    }
+
+    private static <V> BinTrie<V> copyOf(BinTrie<V> source) {
+        BinTrie<V> copy = new BinTrie<>();
+        for (Map.Entry<String, V> entry : source.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue());
+        }
+        return copy;
+    }
+
+    public Map<String, PriorityBlockingQueue<Term>> getNatureToValues() {
+        return natureToValues;
+    }
+
+    public DimValueTable getValueTable() {
+        return valueTable;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
     }
 
     /**
@@ -60,18 +167,18 @@ public class MultiCustomDictionary extends DynamicCustomDictionary {
      * @param defaultNature
      * @param map
      * @param customNatureCollector
-     * @param addToSuggeterTrie
      * @return
      */
-    public static boolean load(String path, Nature defaultNature,
+    public boolean load(String path, Nature defaultNature,
             TreeMap<String, CoreDictionary.Attribute> map,
-            LinkedHashSet<Nature> customNatureCollector, boolean addToSuggeterTrie) {
+            LinkedHashSet<Nature> customNatureCollector) {
         try {
             String splitter = "\\s";
             if (path.endsWith(".csv")) {
                 splitter = ",";
             }
 
+            boolean valueFile = DimValueTable.isValueFile(path);
             BufferedReader br =
                     new BufferedReader(new InputStreamReader(IOUtil.newInputStream(path), "UTF-8"));
             boolean firstLine = true;
@@ -138,28 +245,21 @@ public class MultiCustomDictionary extends DynamicCustomDictionary {
                 }
                 // attribute.original = original;
 
-                if (removeDuplicates && map.containsKey(word)) {
-                    attribute = DictionaryAttributeUtil.getAttribute(map.get(word), attribute);
+                // without a map only the values are collected, to rebuild the value table
+                if (Objects.nonNull(map)) {
+                    if (removeDuplicates && map.containsKey(word)) {
+                        attribute = DictionaryAttributeUtil.getAttribute(map.get(word), attribute);
+                    }
+                    map.put(word, attribute);
                 }
-                map.put(word, attribute);
-                if (addToSuggeterTrie) {
-                    SearchService.put(word, attribute);
+                if (valueFile && Objects.nonNull(valueTable)) {
+                    continue;
                 }
-                for (int i = 0; i < attribute.nature.length; i++) {
-                    Nature nature = attribute.nature[i];
-                    PriorityBlockingQueue<Term> priorityQueue =
-                            NATURE_TO_VALUES.get(nature.toString());
-                    if (Objects.isNull(priorityQueue)) {
-                        priorityQueue = new PriorityBlockingQueue<>(MAX_SIZE,
-                                Comparator.comparingInt(Term::getFrequency).reversed());
-                        NATURE_TO_VALUES.put(nature.toString(), priorityQueue);
-                    }
-                    Term term = new Term(word, nature);
-                    term.setFrequency(attribute.frequency[i]);
-                    if (!priorityQueue.contains(term) && priorityQueue.size() < MAX_SIZE) {
-                        priorityQueue.add(term);
-                    }
+                if (valueFile && Objects.nonNull(valueTableBuilder)) {
+                    valueTableBuilder.add(word, attribute);
+                    continue;
                 }
+                addSearchValue(word, attribute);
             }
         } catch (Exception var12) {
             logger.severe("自定义词典" + path + "读取错误！" + var12);
@@ -167,6 +267,66 @@ public class MultiCustomDictionary extends DynamicCustomDictionary {
         }
     }
 
+    private void addSearchValue(String word, CoreDictionary.Attribute attribute) {
+        if (addToSuggesterTrie) {
+            SearchService.put(this, word, attribute);
+        }
+        for (int i = 0; i < attribute.nature.length; i++) {
+            Nature nature = attribute.nature[i];
+            PriorityBlockingQueue<Term> priorityQueue = natureToValues.get(nature.toString());
+            if (Objects.isNull(priorityQueue)) {
+                priorityQueue = new PriorityBlockingQueue<>(MAX_SIZE,
+                        Comparator.comparingInt(Term::getFrequency).reversed());
+                natureToValues.put(nature.toString(), priorityQueue);
+            }
+            Term term = new Term(word, nature);
+            term.setFrequency(attribute.frequency[i]);
+            if (!priorityQueue.contains(term) && priorityQueue.size() < MAX_SIZE) {
+                priorityQueue.add(term);
+            }
+        }
+    }
+
+    /**
+     * Maps the value table built from the current value files, or prepares a builder to build it
+     * while the files are parsed. The table needs local files, so it is not used on hdfs.
+     */
+    private void openValueTable(String[] path) {
+        if (!enableValueTable || HanLP.Config.IOAdapter instanceof HadoopFileIOAdapter) {
+            return;
+        }
+        List<String> valueFiles = DimValueTable.getValueFiles(path);
+        if (valueFiles.isEmpty()) {
+            return;
+        }
+        valueTable = DimValueTable.open(DimValueTable.getTablePath(path), valueFiles);
+        if (Objects.isNull(valueTable)) {
+            valueTableBuilder = new DimValueTable.Builder(DimValueTable.getTablePath(path));
+        }
+    }
+
+    private void buildValueTable(String[] path) {
+        if (Objects.isNull(valueTableBuilder)) {
+            return;
+        }
+        DimValueTable.Builder builder = valueTableBuilder;
+        valueTableBuilder = null;
+        long start = System.currentTimeMillis();
+        try {
+            valueTable = builder.build(DimValueTable.getTablePath(path),
+                    DimValueTable.getValueFiles(path), MAX_SIZE);
+            logger.info("维度值表构建成功:" + valueTable.size() + "个词条，耗时"
+                    + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            logger.warning("维度值表构建失败，维度值保留在内存中！" + TextUtility.exceptionToString(e));
+            try {
+                builder.forEach(this::addSearchValue);
+            } catch (Exception ex) {
+                logger.severe("维度值加载失败！" + TextUtility.exceptionToString(ex));
+            }
+        }
+    }
+
     public boolean load(String... path) {
         this.path = path;
         long start = System.currentTimeMillis();
@@ -186,58 +346,35 @@ public class MultiCustomDictionary extends DynamicCustomDictionary {
      *
      * @param mainPath
      * @param path
-     * @param dat
      * @param isCache
-     * @param addToSuggestTrie
      * @return
      */
-    public static boolean loadMainDictionary(String mainPath, String[] path,
-            DoubleArrayTrie<CoreDictionary.Attribute> dat, boolean isCache,
-            boolean addToSuggestTrie) {
+    public boolean loadMainDictionary(String mainPath, String[] path, boolean isCache) {
         logger.info("自定义词典开始加载:" + mainPath);
+        openValueTable(path);
         if (loadDat(mainPath, dat)) {
+            if (Objects.nonNull(valueTableBuilder)) {
+                // the table is missing or older than the value files, parse them to rebuild it
+                loadFiles(DimValueTable.getValueFiles(path).toArray(new String[0]), null,
+                        new LinkedHashSet<>());
+                buildValueTable(path);
+            }
             return true;
         } else {
             TreeMap<String, CoreDictionary.Attribute> map = new TreeMap();
             LinkedHashSet customNatureCollector = new LinkedHashSet();
 
             try {
-                for (String p : path) {
-                    Nature defaultNature = Nature.n;
-                    File file = new File(p);
-                    String fileName = file.getName();
-                    int cut = fileName.lastIndexOf(32);
-                    if (cut > 0) {
-                        String nature = fileName.substring(cut + 1);
-                        p = file.getParent() + File.separator + fileName.substring(0, cut);
-
-                        try {
-                            defaultNature = LexiconUtility.convertStringToNature(nature,
-                                    customNatureCollector);
-                        } catch (Exception var16) {
-                            logger.severe("配置文件【" + p + "】写错了！" + var16);
-                            continue;
-                        }
-                    }
-
-                    logger.info("以默认词性[" + defaultNature + "]加载自定义词典" + p + "中……");
-                    boolean success =
-                            load(p, defaultNature, map, customNatureCollector, addToSuggestTrie);
-                    if (!success) {
-                        logger.warning("失败：" + p);
-                    }
-                }
+                loadFiles(path, map, customNatureCollector);
 
                 if (map.size() == 0) {
                     logger.warning("没有加载到任何词条");
                     map.put("未##它", null);
                 }
 
+                buildValueTable(path);
                 logger.info("正在构建DoubleArrayTrie……");
                 dat.build(map);
-                if (addToSuggestTrie) {
-                    // SearchService.save();
-                }
                 if (isCache) {
                     // 缓存成dat文件，下次加载会快很多
                     logger.info("正在缓存词典为dat文件……");
@@ -284,8 +421,36 @@ public class MultiCustomDictionary extends DynamicCustomDictionary {
         }
     }
 
+    private void loadFiles(String[] path, TreeMap<String, CoreDictionary.Attribute> map,
+            LinkedHashSet<Nature> customNatureCollector) {
+        for (String p : path) {
+            Nature defaultNature = Nature.n;
+            File file = new File(p);
+            String fileName = file.getName();
+            int cut = fileName.lastIndexOf(32);
+            if (cut > 0) {
+                String nature = fileName.substring(cut + 1);
+                p = file.getParent() + File.separator + fileName.substring(0, cut);
+
+                try {
+                    defaultNature =
+                            LexiconUtility.convertStringToNature(nature, customNatureCollector);
+                } catch (Exception var16) {
+                    logger.severe("配置文件【" + p + "】写错了！" + var16);
+                    continue;
+                }
+            }
+
+            logger.info("以默认词性[" + defaultNature + "]加载自定义词典" + p + "中……");
+            boolean success = load(p, defaultNature, map, customNatureCollector);
+            if (!success) {
+                logger.warning("失败：" + p);
+            }
+        }
+    }
+
     public boolean loadMainDictionary(String mainPath) {
-        return loadMainDictionary(mainPath, this.path, this.dat, true, addToSuggesterTrie);
+        return loadMainDictionary(mainPath, this.path, true);
     }
 
     public static boolean loadDat(String path, DoubleArrayTrie<CoreDictionary.Attribute> dat) {
@@ -379,8 +544,7 @@ public class MultiCustomDictionary extends DynamicCustomDictionary {
             IOUtil.deleteFile(this.path[0] + ".bin");
             Boolean loadCacheOk = this.loadDat(this.path[0], this.path, this.dat);
             if (!loadCacheOk) {
-                return this.loadMainDictionary(this.path[0], this.path, this.dat, true,
-                        addToSuggesterTrie);
+                return this.loadMainDictionary(this.path[0], this.path, true);
             }
         }
         return false;
@@ -407,25 +571,125 @@ public class MultiCustomDictionary extends DynamicCustomDictionary {
                 return false;
             } else if (this.dat.containsKey(word)) {
                 att.setOriginals(original);
-                att = DictionaryAttributeUtil.getAttribute(this.dat.get(word), att);
-                this.dat.set(word, att);
+                // a word whose natures were all removed is kept in the dat with a null attribute
+                if (Objects.nonNull(this.dat.get(word))) {
+                    att = DictionaryAttributeUtil.getAttribute(this.dat.get(word), att);
+                }
+                getWritableDat().set(word, att);
                 // return true;
             } else {
-                if (this.trie == null) {
-                    this.trie = new BinTrie();
-                }
+                BinTrie<CoreDictionary.Attribute> trie = getWritableTrie();
                 // att.original = original;
                 att.setOriginals(original);
-                if (this.trie.containsKey(word)) {
-                    att = DictionaryAttributeUtil.getAttribute(this.trie.get(word), att);
+                if (trie.containsKey(word)) {
+                    att = DictionaryAttributeUtil.getAttribute(trie.get(word), att);
                 }
-                this.trie.put(word, att);
+                trie.put(word, att);
                 // return true;
             }
             if (addToSuggesterTrie) {
-                SearchService.put(word, att);
+                SearchService.put(this, word, att);
             }
             return true;
         }
     }
+
+    /**
+     * Removes one nature of a word that was inserted, the word is dropped from the dictionary and
+     * the prefix trie once it has no nature left.
+     */
+    public synchronized boolean removeNature(String word, String nature) {
+        if (word == null) {
+            return false;
+        }
+        if (HanLP.Config.Normalization) {
+            word = CharTable.convert(word);
+        }
+        boolean isLetters = isLetters(word);
+        word = getWordBySpace(word);
+        if (isLetters) {
+            word = word.toLowerCase();
+        }
+        CoreDictionary.Attribute attribute = get(word);
+        if (attribute == null) {
+            return false;
+        }
+        CoreDictionary.Attribute rest = removeNature(attribute, nature);
+        if (this.dat.containsKey(word)) {
+            // entries of a double array trie can not be removed, a null attribute is not matched
+            getWritableDat().set(word, rest);
+        } else if (rest == null) {
+            getWritableTrie().remove(word);
+        } else {
+            getWritableTrie().put(word, rest);
+        }
+        if (rest == null) {
+            getWritablePrefixTrie().remove(word);
+        } else {
+            SearchService.put(this, word, rest);
+        }
+        return true;
+    }
+
+    /** removes one nature of a word from the suffix trie */
+    public synchronized void removeSuffixNature(String word, String nature) {
+        List<String> natures = suffixTrie.get(word);
+        if (natures == null) {
+            return;
+        }
+        List<String> rest = natures.stream().filter(n -> !n.equals(nature)).toList();
+        if (rest.isEmpty()) {
+            getWritableSuffixTrie().remove(word);
+        } else {
+            getWritableSuffixTrie().put(word, rest);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String word) {
+        if (HanLP.Config.Normalization) {
+            word = CharTable.convert(word);
+        }
+        if (Objects.nonNull(trie) && trie.containsKey(word)) {
+            getWritableTrie().remove(word);
+        }
+    }
+
+    private static CoreDictionary.Attribute removeNature(CoreDictionary.Attribute attribute,
+            String nature) {
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < attribute.nature.length; i++) {
+            if (!attribute.nature[i].toString().equals(nature)) {
+                kept.add(i);
+            }
+        }
+        if (kept.isEmpty()) {
+            return null;
+        }
+        Nature[] natures = new Nature[kept.size()];
+        int[] frequencies = new int[kept.size()];
+        String[] originals = new String[kept.size()];
+        int totalFrequency = 0;
+        for (int i = 0; i < kept.size(); i++) {
+            natures[i] = attribute.nature[kept.get(i)];
+            frequencies[i] = attribute.frequency[kept.get(i)];
+            originals[i] = attribute.originals == null ? null : attribute.originals[kept.get(i)];
+            totalFrequency += frequencies[i];
+        }
+        return new CoreDictionary.Attribute(natures, frequencies, originals, totalFrequency);
+    }
+
+    /**
+     * A double array trie sharing the structure of another one, with its own copy of the values, so
+     * setting a value does not change the trie it was copied from.
+     */
+    private static class ValueCopyTrie extends DoubleArrayTrie<CoreDictionary.Attribute> {
+
+        ValueCopyTrie(DoubleArrayTrie<CoreDictionary.Attribute> source) {
+            check = source.getCheck();
+            base = source.getBase();
+            size = source.getSize();
+            v = source.getValueArray(new CoreDictionary.Attribute[0]);
+        }
+    }
 }
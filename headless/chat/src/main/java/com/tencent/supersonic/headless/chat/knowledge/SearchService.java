@@ -7,6 +7,7 @@ import com.hankcs.hanlp.dictionary.CoreDictionary;
 import com.hankcs.hanlp.seg.common.Term;
 import com.tencent.supersonic.common.pojo.enums.DictWordType;
 import com.tencent.supersonic.headless.api.pojo.request.DimensionValueReq;
+import com.tencent.supersonic.headless.chat.knowledge.helper.HanlpHelper;
 import com.tencent.supersonic.headless.chat.knowledge.helper.NatureHelper;
 import com.tencent.supersonic.headless.chat.utils.EditDistanceUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -25,19 +27,19 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
 
+/**
+ * Prefix and suffix search over the tries of the published custom dictionary. The tries are built
+ * together with the dictionary and swapped in with it, so searches never see a partly loaded trie.
+ * The values of the dimension value files are searched in the memory-mapped value table of the
+ * dictionary instead.
+ */
 @Slf4j
 public class SearchService {
 
     public static final int SEARCH_SIZE = 200;
-    private static BinTrie<List<String>> trie;
-    private static BinTrie<List<String>> suffixTrie;
-
-    static {
-        trie = new BinTrie<>();
-        suffixTrie = new BinTrie<>();
-    }
 
     /**
      * * prefix Search
@@ -47,16 +49,38 @@ public class SearchService {
      */
     public static List<HanlpMapResult> prefixSearch(String key, int limit,
             Map<Long, List<Long>> modelIdToDataSetIds, Set<Long> detectDataSetIds) {
-        return prefixSearch(key, limit, trie, modelIdToDataSetIds, detectDataSetIds);
+        MultiCustomDictionary dictionary = HanlpHelper.getCustomDictionary();
+        return prefixSearch(key, limit, dictionary.getPrefixTrie(), dictionary.getValueTable(),
+                modelIdToDataSetIds, detectDataSetIds);
     }
 
     public static List<HanlpMapResult> prefixSearch(String key, int limit,
             BinTrie<List<String>> binTrie, Map<Long, List<Long>> modelIdToDataSetIds,
             Set<Long> detectDataSetIds) {
+        return prefixSearch(key, limit, binTrie, null, modelIdToDataSetIds, detectDataSetIds);
+    }
+
+    /** searches the trie and the value table, natures of a word found in both are merged */
+    public static List<HanlpMapResult> prefixSearch(String key, int limit,
+            BinTrie<List<String>> binTrie, DimValueTable valueTable,
+            Map<Long, List<Long>> modelIdToDataSetIds, Set<Long> detectDataSetIds) {
         Set<Long> modelIdOrDataSetIds =
                 findModelIdOrDataSetIds(modelIdToDataSetIds, detectDataSetIds);
-        Set<Map.Entry<String, List<String>>> result = search(key, binTrie, modelIdOrDataSetIds);
-        List<HanlpMapResult> hanlpMapResults = result.stream().map(entry -> {
+        Map<String, List<String>> result = new TreeMap<>();
+        search(key, binTrie, modelIdOrDataSetIds)
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        if (Objects.nonNull(valueTable)) {
+            valueTable
+                    .prefixSearch(key.toLowerCase(), limit,
+                            getModelFilter(modelIdOrDataSetIds, modelIdToDataSetIds,
+                                    detectDataSetIds))
+                    .forEach((word, natures) -> result.merge(word, natures, (a, b) -> {
+                        Set<String> merged = new LinkedHashSet<>(a);
+                        merged.addAll(b);
+                        return new ArrayList<>(merged);
+                    }));
+        }
+        List<HanlpMapResult> hanlpMapResults = result.entrySet().stream().map(entry -> {
             String name = entry.getKey().replace("#", " ");
             double similarity = EditDistanceUtils.getSimilarity(name, key);
             return new HanlpMapResult(name, entry.getValue(), key, similarity);
@@ -74,7 +98,8 @@ public class SearchService {
      */
     public static List<HanlpMapResult> suffixSearch(String key, int limit,
             Map<Long, List<Long>> modelIdToDataSetIds, Set<Long> detectDataSetIds) {
-        return suffixSearch(key, limit, suffixTrie, modelIdToDataSetIds, detectDataSetIds);
+        return suffixSearch(key, limit, HanlpHelper.getCustomDictionary().getSuffixTrie(),
+                modelIdToDataSetIds, detectDataSetIds);
     }
 
     public static List<HanlpMapResult> suffixSearch(String key, int limit,
@@ -148,17 +173,12 @@ public class SearchService {
         return entrySet;
     }
 
-    public static void clear() {
-        log.debug("clear all trie");
-        trie = new BinTrie<>();
-        suffixTrie = new BinTrie<>();
-    }
-
-    public static void put(String key, CoreDictionary.Attribute attribute) {
-        trie.put(key, getValue(attribute.nature));
+    public static void put(MultiCustomDictionary dictionary, String key,
+            CoreDictionary.Attribute attribute) {
+        dictionary.getWritablePrefixTrie().put(key, getValue(attribute.nature));
     }
 
-    public static void loadSuffix(List<DictWord> suffixes) {
+    public static void loadSuffix(MultiCustomDictionary dictionary, List<DictWord> suffixes) {
         if (CollectionUtils.isEmpty(suffixes)) {
             return;
         }
@@ -174,34 +194,72 @@ public class SearchService {
             map.put(suffix.getWord(), attributeNew);
         }
         for (Map.Entry<String, CoreDictionary.Attribute> stringAttributeEntry : map.entrySet()) {
-            putSuffix(stringAttributeEntry.getKey(), stringAttributeEntry.getValue());
+            putSuffix(dictionary, stringAttributeEntry.getKey(), stringAttributeEntry.getValue());
         }
     }
 
-    public static void putSuffix(String key, CoreDictionary.Attribute attribute) {
-        Nature[] nature = attribute.nature;
-        suffixTrie.put(key, getValue(nature));
+    /** natures already kept for the suffix are merged, so suffixes can be added incrementally */
+    public static void putSuffix(MultiCustomDictionary dictionary, String key,
+            CoreDictionary.Attribute attribute) {
+        List<String> natures = getValue(attribute.nature);
+        List<String> existing = dictionary.getSuffixTrie().get(key);
+        if (!CollectionUtils.isEmpty(existing)) {
+            Set<String> merged = new LinkedHashSet<>(existing);
+            merged.addAll(natures);
+            natures = new ArrayList<>(merged);
+        }
+        dictionary.getWritableSuffixTrie().put(key, natures);
     }
 
     private static List<String> getValue(Nature[] nature) {
         return Arrays.stream(nature).map(entry -> entry.toString()).collect(Collectors.toList());
     }
 
-    public static void remove(DictWord dictWord, Nature[] natures) {
+    public static void remove(MultiCustomDictionary dictionary, DictWord dictWord,
+            Nature[] natures) {
+        BinTrie<List<String>> trie = dictionary.getWritablePrefixTrie();
         trie.remove(dictWord.getWord());
         if (Objects.nonNull(natures) && natures.length > 0) {
             trie.put(dictWord.getWord(), getValue(natures));
         }
         if (dictWord.getNature().contains(DictWordType.METRIC.getType())
                 || dictWord.getNature().contains(DictWordType.DIMENSION.getType())) {
-            suffixTrie.remove(dictWord.getWord());
+            dictionary.getWritableSuffixTrie().remove(dictWord.getWord());
         }
     }
 
+    /**
+     * Accepts the models whose natures would survive {@link #transformAndFilterByDataSet}, so the
+     * value table only returns words that count towards the limit.
+     */
+    private static LongPredicate getModelFilter(Set<Long> modelIdOrDataSetIds,
+            Map<Long, List<Long>> modelIdToDataSetIds, Set<Long> detectDataSetIds) {
+        return modelId -> {
+            if (!CollectionUtils.isEmpty(modelIdOrDataSetIds)
+                    && !modelIdOrDataSetIds.contains(modelId)) {
+                return false;
+            }
+            List<Long> dataSetIds = CollectionUtils.isEmpty(modelIdToDataSetIds) ? null
+                    : modelIdToDataSetIds.get(modelId);
+            if (CollectionUtils.isEmpty(dataSetIds)) {
+                return false;
+            }
+            return CollectionUtils.isEmpty(detectDataSetIds)
+                    || dataSetIds.stream().anyMatch(detectDataSetIds::contains);
+        };
+    }
+
     public static List<String> getDimensionValue(DimensionValueReq dimensionValueReq) {
         String nature = DictWordType.NATURE_SPILT + dimensionValueReq.getModelId()
                 + DictWordType.NATURE_SPILT + dimensionValueReq.getElementID();
-        PriorityBlockingQueue<Term> terms = MultiCustomDictionary.NATURE_TO_VALUES.get(nature);
+        MultiCustomDictionary dictionary = HanlpHelper.getCustomDictionary();
+        if (Objects.nonNull(dictionary.getValueTable())) {
+            List<String> values = dictionary.getValueTable().getTopValues(nature);
+            if (!CollectionUtils.isEmpty(values)) {
+                return values;
+            }
+        }
+        PriorityBlockingQueue<Term> terms = dictionary.getNatureToValues().get(nature);
         if (CollectionUtils.isEmpty(terms)) {
             return new ArrayList<>();
         }
@@ -0,0 +1,247 @@
+package com.tencent.supersonic.headless.chat.knowledge.file;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.pagehelper.PageInfo;
+import com.tencent.supersonic.headless.api.pojo.response.DictValueResp;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The values of one dictionary value file, mapped into memory, with the offsets of their lines in
+ * file order, so a page is a slice of the offsets and only the lines of the page are parsed. A
+ * keyword is looked up in an index of the characters of the values, built on the first keyword, and
+ * only the values holding all its characters are checked. The positions matching a keyword are kept
+ * for the following pages of the same keyword.
+ */
+public class DictValueStore {
+
+    private static final int MAX_KEYWORDS = 32;
+
+    @Getter
+    private final long lastModified;
+    @Getter
+    private final long length;
+    private final ByteBuffer buffer;
+    /** offset of each valid line */
+    private final int[] offsets;
+    /** the values holding each character, in file order */
+    private volatile Map<Integer, int[]> characterIndex;
+    private volatile int indexSize;
+    private final Cache<String, int[]> keywordMatches =
+            Caffeine.newBuilder().maximumSize(MAX_KEYWORDS).build();
+
+    private DictValueStore(long lastModified, long length, ByteBuffer buffer, int[] offsets) {
+        this.lastModified = lastModified;
+        this.length = length;
+        this.buffer = buffer;
+        this.offsets = offsets;
+    }
+
+    public static DictValueStore load(Path path) throws IOException {
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("dict value file exceeds 2GB: " + path);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int[] offsets = new int[1024];
+            int count = 0;
+            int offset = 0;
+            while (offset < length) {
+                int end = lineEnd(buffer, offset);
+                if (Objects.nonNull(parse(buffer, offset, end))) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = offset;
+                }
+                offset = end + 1;
+            }
+            return new DictValueStore(lastModified, length, buffer, Arrays.copyOf(offsets, count));
+        }
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    /** the line offsets and the index entries held on the heap, to weigh the store by */
+    public int weight() {
+        return offsets.length + indexSize;
+    }
+
+    /** the page of the values containing the keyword, or of all values without a keyword */
+    public PageInfo<DictValueResp> query(String keyword, int current, int pageSize) {
+        int[] matches =
+                StringUtils.isEmpty(keyword) ? null : keywordMatches.get(keyword, this::match);
+        int total = matches == null ? offsets.length : matches.length;
+        int start = Math.max((current - 1) * pageSize, 0);
+        int end = Math.min(start + Math.max(pageSize, 0), total);
+        List<DictValueResp> list = new ArrayList<>(Math.max(end - start, 0));
+        for (int i = start; i < end; i++) {
+            list.add(get(matches == null ? i : matches[i]));
+        }
+        PageInfo<DictValueResp> pageInfo = new PageInfo<>();
+        pageInfo.setPageSize(pageSize);
+        pageInfo.setPageNum(current);
+        pageInfo.setTotal(total);
+        pageInfo.setList(list);
+        pageInfo.setHasNextPage(end < total);
+        pageInfo.setHasPreviousPage(start > 0);
+        return pageInfo;
+    }
+
+    /** the values holding every character of the keyword, then checked for the keyword itself */
+    private int[] match(String keyword) {
+        Map<Integer, int[]> index = getCharacterIndex();
+        List<int[]> postings = new ArrayList<>();
+        for (int codePoint : keyword.codePoints().distinct().toArray()) {
+            int[] posting = index.get(codePoint);
+            if (Objects.isNull(posting)) {
+                return new int[0];
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(posting -> posting.length));
+        int[] candidates = postings.get(0);
+        for (int i = 1; i < postings.size() && candidates.length > 0; i++) {
+            candidates = intersect(candidates, postings.get(i));
+        }
+        int[] matches = new int[candidates.length];
+        int count = 0;
+        for (int candidate : candidates) {
+            if (value(candidate).contains(keyword)) {
+                matches[count++] = candidate;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private Map<Integer, int[]> getCharacterIndex() {
+        Map<Integer, int[]> index = characterIndex;
+        if (Objects.nonNull(index)) {
+            return index;
+        }
+        synchronized (this) {
+            if (Objects.isNull(characterIndex)) {
+                buildCharacterIndex();
+            }
+            return characterIndex;
+        }
+    }
+
+    private void buildCharacterIndex() {
+        // [size, positions...] of each character, grown while the values are read
+        Map<Integer, int[]> growing = new HashMap<>();
+        for (int i = 0; i < offsets.length; i++) {
+            int position = i;
+            value(i).codePoints().forEach(codePoint -> {
+                int[] posting = growing.computeIfAbsent(codePoint, k -> new int[5]);
+                int size = posting[0];
+                if (size > 0 && posting[size] == position) {
+                    return;
+                }
+                if (size + 1 == posting.length) {
+                    posting = Arrays.copyOf(posting, posting.length * 2);
+                    growing.put(codePoint, posting);
+                }
+                posting[size + 1] = position;
+                posting[0] = size + 1;
+            });
+        }
+        Map<Integer, int[]> index = new HashMap<>(growing.size() * 2);
+        int size = 0;
+        for (Map.Entry<Integer, int[]> entry : growing.entrySet()) {
+            int[] posting = entry.getValue();
+            index.put(entry.getKey(), Arrays.copyOfRange(posting, 1, posting[0] + 1));
+            size += posting[0];
+        }
+        indexSize = size;
+        characterIndex = index;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private String value(int index) {
+        return line(index)[0].replace("#", " ");
+    }
+
+    private String[] line(int index) {
+        int offset = offsets[index];
+        return parse(buffer, offset, lineEnd(buffer, offset));
+    }
+
+    private DictValueResp get(int index) {
+        String[] items = line(index);
+        DictValueResp dictValueResp = new DictValueResp();
+        dictValueResp.setValue(items[0].replace("#", " "));
+        dictValueResp.setNature(items[1]);
+        dictValueResp.setFrequency(Long.parseLong(items[2]));
+        return dictValueResp;
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int offset) {
+        int end = offset;
+        while (end < buffer.limit() && buffer.get(end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    /** the value, nature and frequency of the line, or null if it is not a valid value line */
+    private static String[] parse(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end <= start) {
+            return null;
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        String line = new String(bytes, StandardCharsets.UTF_8);
+        String[] items = StringUtils.stripStart(line, null).split("\\s+");
+        if (items.length < 3) {
+            return null;
+        }
+        try {
+            Long.parseLong(items[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return items;
+    }
+}
@@ -5,6 +5,7 @@ import com.tencent.supersonic.headless.api.pojo.request.DictValueReq;
 import com.tencent.supersonic.headless.api.pojo.response.DictValueResp;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface FileHandler {
 
@@ -33,6 +34,16 @@ public interface FileHandler {
      */
     void writeFile(List<String> data, String fileName, Boolean append);
 
+    /**
+     * write lines to a temporary file and replace the file with it once all lines are written, so
+     * readers never see a partly written file. Without lines the file is replaced by an empty one.
+     *
+     * @param lines
+     * @param fileName
+     * @return the number of lines written
+     */
+    long writeFile(Stream<String> lines, String fileName);
+
     /**
      * get the knowledge file root directory
      *
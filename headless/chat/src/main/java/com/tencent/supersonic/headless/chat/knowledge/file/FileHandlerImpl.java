@@ -1,10 +1,11 @@
 package com.tencent.supersonic.headless.chat.knowledge.file;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.pagehelper.PageInfo;
 import com.tencent.supersonic.headless.api.pojo.request.DictValueReq;
 import com.tencent.supersonic.headless.api.pojo.response.DictValueResp;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
@@ -12,6 +13,7 @@ import org.springframework.util.CollectionUtils;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -19,9 +21,10 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 @Slf4j
@@ -32,8 +35,19 @@ public class FileHandlerImpl implements FileHandler {
 
     private final LocalFileConfig localFileConfig;
 
-    public FileHandlerImpl(LocalFileConfig localFileConfig) {
+    /**
+     * values of the dictionary value files being paged through, weighed by their value count and
+     * the entries of their keyword index
+     */
+    private final Cache<String, DictValueStore> valueStores;
+
+    public FileHandlerImpl(LocalFileConfig localFileConfig,
+            @Value("${s2.dict.value.cache.max.values:5000000}") Long maxCachedValues,
+            @Value("${s2.dict.value.cache.expire.minutes:30}") Integer expireMinutes) {
         this.localFileConfig = localFileConfig;
+        this.valueStores = Caffeine.newBuilder().maximumWeight(maxCachedValues)
+                .weigher((String path, DictValueStore store) -> Math.max(store.weight(), 1))
+                .expireAfterAccess(expireMinutes, TimeUnit.MINUTES).build();
     }
 
     @Override
@@ -71,6 +85,7 @@ public class FileHandlerImpl implements FileHandler {
         Path path = Paths.get(filePath);
         try {
             Files.delete(path);
+            valueStores.invalidate(filePath);
             log.info("File:{} deleted successfully!", getAbsolutePath(filePath));
         } catch (IOException e) {
             log.warn("Failed to delete file:{}, e:", getAbsolutePath(filePath), e);
@@ -79,127 +94,68 @@ public class FileHandlerImpl implements FileHandler {
 
     @Override
     public PageInfo<DictValueResp> queryDictValue(String fileName, DictValueReq dictValueReq) {
-        if (StringUtils.isEmpty(dictValueReq.getKeyValue())) {
-            return getDictValueRespPagWithoutKey(fileName, dictValueReq);
-        }
-        return getDictValueRespPagWithKey(fileName, dictValueReq);
-    }
-
-    private PageInfo<DictValueResp> getDictValueRespPagWithKey(String fileName,
-            DictValueReq dictValueReq) {
-        PageInfo<DictValueResp> dictValueRespPageInfo = new PageInfo<>();
-        dictValueRespPageInfo.setPageSize(dictValueReq.getPageSize());
-        dictValueRespPageInfo.setPageNum(dictValueReq.getCurrent());
         String filePath = localFileConfig.getDictDirectoryLatest() + FILE_SPILT + fileName;
-        Long fileLineNum = getFileLineNum(filePath);
-        Integer startLine = 1;
-        List<DictValueResp> dictValueRespList =
-                getFileData(filePath, startLine, fileLineNum.intValue()).stream().filter(
-                        dictValue -> dictValue.getValue().contains(dictValueReq.getKeyValue()))
-                        .collect(Collectors.toList());
-        if (CollectionUtils.isEmpty(dictValueRespList)) {
+        DictValueStore store = getValueStore(filePath);
+        if (Objects.isNull(store)) {
+            PageInfo<DictValueResp> dictValueRespPageInfo = new PageInfo<>();
+            dictValueRespPageInfo.setPageSize(dictValueReq.getPageSize());
+            dictValueRespPageInfo.setPageNum(dictValueReq.getCurrent());
             dictValueRespPageInfo.setList(new ArrayList<>());
             return dictValueRespPageInfo;
         }
-
-        Integer startIndex =
-                Math.max((dictValueReq.getCurrent() - 1) * dictValueReq.getPageSize(), 0);
-        Integer endIndex =
-                Integer.valueOf(Math.min(dictValueReq.getCurrent() * dictValueReq.getPageSize(),
-                        dictValueRespList.size()) + "");
-        List<DictValueResp> list = dictValueRespList.subList(startIndex, endIndex);
-        dictValueRespPageInfo.setPageSize(dictValueReq.getPageSize());
-        dictValueRespPageInfo.setPageNum(dictValueReq.getCurrent());
-        dictValueRespPageInfo.setTotal(dictValueRespList.size());
-        dictValueRespPageInfo.setList(list);
-        dictValueRespPageInfo.setHasNextPage(endIndex >= dictValueRespList.size() ? false : true);
-        dictValueRespPageInfo.setHasPreviousPage(startLine <= 0 ? false : true);
-        return dictValueRespPageInfo;
-    }
-
-    private PageInfo<DictValueResp> getDictValueRespPagWithoutKey(String fileName,
-            DictValueReq dictValueReq) {
-        PageInfo<DictValueResp> dictValueRespPageInfo = new PageInfo<>();
-        String filePath = localFileConfig.getDictDirectoryLatest() + FILE_SPILT + fileName;
-        Long fileLineNum = getFileLineNum(filePath);
-        Integer startLine =
-                Math.max(1, (dictValueReq.getCurrent() - 1) * dictValueReq.getPageSize() + 1);
-        Integer endLine = Integer.valueOf(
-                Math.min(dictValueReq.getCurrent() * dictValueReq.getPageSize(), fileLineNum) + "");
-        List<DictValueResp> dictValueRespList = getFileData(filePath, startLine, endLine);
-
-        dictValueRespPageInfo.setPageSize(dictValueReq.getPageSize());
-        dictValueRespPageInfo.setPageNum(dictValueReq.getCurrent());
-        dictValueRespPageInfo.setTotal(fileLineNum);
-        dictValueRespPageInfo.setList(dictValueRespList);
-        dictValueRespPageInfo.setHasNextPage(endLine >= fileLineNum ? false : true);
-        dictValueRespPageInfo.setHasPreviousPage(startLine <= 1 ? false : true);
-        return dictValueRespPageInfo;
-    }
-
-    @Override
-    public String queryDictFilePath(String fileName) {
-        String path = localFileConfig.getDictDirectoryLatest() + FILE_SPILT + fileName;
-        if (existPath(path)) {
-            return path;
+        int weight = store.weight();
+        PageInfo<DictValueResp> pageInfo = store.query(dictValueReq.getKeyValue(),
+                dictValueReq.getCurrent(), dictValueReq.getPageSize());
+        if (store.weight() != weight) {
+            // the keyword index was built, weigh the store again
+            valueStores.asMap().replace(filePath, store, store);
         }
-        log.info("dict file:{} is not exist", path);
-        return null;
+        return pageInfo;
     }
 
     /**
-     *
-     * @param filePath
-     * @param startLine 1开始
-     * @param endLine
-     * @return
+     * the values of the file, loaded again once the file is modified. Concurrent requests for a
+     * file wait for a single load.
      */
-    private List<DictValueResp> getFileData(String filePath, Integer startLine, Integer endLine) {
-        List<DictValueResp> fileData = new ArrayList<>();
+    private DictValueStore getValueStore(String filePath) {
         Path path = Paths.get(filePath);
         if (!Files.exists(path)) {
-            log.warn("[getFileData] File does not exist: {}", getAbsolutePath(filePath));
-            return fileData;
+            log.warn("[getValueStore] File does not exist: {}", getAbsolutePath(filePath));
+            valueStores.invalidate(filePath);
+            return null;
         }
-
-        try (Stream<String> lines = Files.lines(path)) {
-            fileData = lines.skip(startLine - 1).limit(endLine - startLine + 1)
-                    .map(lineStr -> convert2Resp(lineStr)).filter(line -> Objects.nonNull(line))
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            log.warn("[getFileData] e:{}", e);
-        }
-        return fileData;
-    }
-
-    private DictValueResp convert2Resp(String lineStr) {
-        DictValueResp dictValueResp = new DictValueResp();
-        if (StringUtils.isNotEmpty(lineStr)) {
-            lineStr = StringUtils.stripStart(lineStr, null);
-            String[] itemArray = lineStr.split("\\s+");
-            if (Objects.nonNull(itemArray) && itemArray.length >= 3) {
-                dictValueResp.setValue(itemArray[0].replace("#", " "));
-                dictValueResp.setNature(itemArray[1]);
-                dictValueResp.setFrequency(Long.parseLong(itemArray[2]));
-            }
+        try {
+            return valueStores.asMap().compute(filePath, (key, store) -> {
+                try {
+                    if (Objects.nonNull(store)
+                            && store.getLastModified() == Files.getLastModifiedTime(path).toMillis()
+                            && store.getLength() == Files.size(path)) {
+                        return store;
+                    }
+                    long start = System.currentTimeMillis();
+                    DictValueStore loaded = DictValueStore.load(path);
+                    log.info("dict value file:{} is loaded, size:{}, cost:{}ms",
+                            getAbsolutePath(filePath), loaded.size(),
+                            System.currentTimeMillis() - start);
+                    return loaded;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            log.warn("[getValueStore] e:", e.getCause());
+            return null;
         }
-        return dictValueResp;
     }
 
-    private Long getFileLineNum(String filePath) {
-        Path path = Paths.get(filePath);
-        if (!Files.exists(path)) {
-            log.warn("[getFileData] File does not exist: {}", getAbsolutePath(filePath));
-            return 0L;
-        }
-
-        try (Stream<String> lines = Files.lines(path)) {
-            Long lineCount = lines.count();
-            return lineCount;
-        } catch (IOException e) {
-            e.printStackTrace();
+    @Override
+    public String queryDictFilePath(String fileName) {
+        String path = localFileConfig.getDictDirectoryLatest() + FILE_SPILT + fileName;
+        if (existPath(path)) {
+            return path;
         }
-        return 0L;
+        log.info("dict file:{} is not exist", path);
+        return null;
     }
 
     @Override
@@ -241,6 +197,52 @@ public class FileHandlerImpl implements FileHandler {
         }
     }
 
+    @Override
+    public long writeFile(Stream<String> lines, String fileName) {
+        String dictDirectoryLatest = localFileConfig.getDictDirectoryLatest();
+        if (!existPath(dictDirectoryLatest)) {
+            createDir(dictDirectoryLatest);
+        }
+        String filePath = dictDirectoryLatest + FILE_SPILT + fileName;
+        Path tempPath = Paths.get(filePath + ".tmp");
+        long count = 0;
+        try (BufferedWriter writer = getWriter(tempPath.toString(), false)) {
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+                writer.newLine();
+                count++;
+            }
+        } catch (IOException e) {
+            deleteTempFile(tempPath);
+            throw new RuntimeException("failed to write file " + getAbsolutePath(filePath), e);
+        }
+        if (count == 0) {
+            // the item has no values anymore, the empty file replaces the stale one
+            log.info("lines is empty, file:{} is emptied", getAbsolutePath(filePath));
+        }
+        if (existPath(filePath)) {
+            backupFile(fileName);
+        }
+        try {
+            Files.move(tempPath, Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteTempFile(tempPath);
+            throw new RuntimeException("failed to replace file " + getAbsolutePath(filePath), e);
+        }
+        log.info("File:{} written successfully, lines:{}", getAbsolutePath(filePath), count);
+        return count;
+    }
+
+    private void deleteTempFile(Path tempPath) {
+        try {
+            Files.deleteIfExists(tempPath);
+        } catch (IOException e) {
+            log.warn("Failed to delete file:{}, e:", tempPath, e);
+        }
+    }
+
     public String getAbsolutePath(String path) {
         return Paths.get(path).toAbsolutePath().toString();
     }
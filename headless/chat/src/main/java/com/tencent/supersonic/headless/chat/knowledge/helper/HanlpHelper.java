@@ -33,6 +33,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /** HanLP helper */
@@ -41,8 +45,15 @@ public class HanlpHelper {
 
     public static final String FILE_SPILT = File.separator;
     public static final String SPACE_SPILT = "#";
-    private static volatile DynamicCustomDictionary CustomDictionary;
+    /**
+     * The segment holds the published custom dictionary, which in turn holds the search tries, so a
+     * reload publishes all of them with a single reference swap.
+     */
     private static volatile Segment segment;
+    /** serializes the writers of the knowledge, readers never lock */
+    private static final ReentrantLock WRITE_LOCK = new ReentrantLock();
+    /** counts the writes to the knowledge, so results derived from it can tell it changed */
+    private static final AtomicLong VERSION = new AtomicLong();
 
     static {
         // reset hanlp config
@@ -57,58 +68,85 @@ public class HanlpHelper {
         if (segment == null) {
             synchronized (HanlpHelper.class) {
                 if (segment == null) {
-                    segment = HanLP.newSegment().enableIndexMode(true).enableIndexMode(4)
-                            .enableCustomDictionary(true).enableCustomDictionaryForcing(true)
-                            .enableOffset(true).enableJapaneseNameRecognize(false)
-                            .enableNameRecognize(false).enableAllNamedEntityRecognize(false)
-                            .enableJapaneseNameRecognize(false)
-                            .enableNumberQuantifierRecognize(false).enablePlaceRecognize(false)
-                            .enableOrganizationRecognize(false)
-                            .enableCustomDictionary(getDynamicCustomDictionary());
+                    segment = newSegment(
+                            new MultiCustomDictionary(HanLP.Config.CustomDictionaryPath));
                 }
             }
         }
         return segment;
     }
 
+    private static Segment newSegment(MultiCustomDictionary customDictionary) {
+        return HanLP.newSegment().enableIndexMode(true).enableIndexMode(4)
+                .enableCustomDictionary(true).enableCustomDictionaryForcing(true).enableOffset(true)
+                .enableJapaneseNameRecognize(false).enableNameRecognize(false)
+                .enableAllNamedEntityRecognize(false).enableJapaneseNameRecognize(false)
+                .enableNumberQuantifierRecognize(false).enablePlaceRecognize(false)
+                .enableOrganizationRecognize(false).enableCustomDictionary(customDictionary);
+    }
+
+    public static long getVersion() {
+        return VERSION.get();
+    }
+
+    public static MultiCustomDictionary getCustomDictionary() {
+        return (MultiCustomDictionary) getSegment().customDictionary;
+    }
+
     public static DynamicCustomDictionary getDynamicCustomDictionary() {
-        if (CustomDictionary == null) {
-            synchronized (HanlpHelper.class) {
-                if (CustomDictionary == null) {
-                    CustomDictionary = new MultiCustomDictionary(HanLP.Config.CustomDictionaryPath);
-                }
-            }
-        }
-        return CustomDictionary;
+        return getCustomDictionary();
     }
 
     /** reload custom dictionary */
     public static boolean reloadCustomDictionary() throws IOException {
+        return reloadCustomDictionary(dictionary -> {
+        });
+    }
 
-        final long startTime = System.currentTimeMillis();
+    /**
+     * Builds a new custom dictionary with its search tries from the dictionary files, lets the
+     * initializer add further words to it and then publishes it. The published dictionary is left
+     * as it is while the new one is built, and is kept if the files cannot be loaded.
+     */
+    public static boolean reloadCustomDictionary(Consumer<MultiCustomDictionary> initializer)
+            throws IOException {
 
-        if (HanLP.Config.CustomDictionaryPath == null
-                || HanLP.Config.CustomDictionaryPath.length == 0) {
-            return false;
-        }
-        if (HanLP.Config.IOAdapter instanceof HadoopFileIOAdapter) {
-            // 1.delete hdfs file
-            HdfsFileHelper.deleteCacheFile(HanLP.Config.CustomDictionaryPath);
-            // 2.query txt files，update CustomDictionaryPath
-            HdfsFileHelper.resetCustomPath(getDynamicCustomDictionary());
-        } else {
-            FileHelper.deleteCacheFile(HanLP.Config.CustomDictionaryPath);
-            FileHelper.resetCustomPath(getDynamicCustomDictionary());
-        }
-        // 3.clear trie
-        SearchService.clear();
+        final long startTime = System.currentTimeMillis();
 
-        boolean reload = getDynamicCustomDictionary().reload();
-        if (reload) {
+        WRITE_LOCK.lock();
+        try {
+            if (HanLP.Config.CustomDictionaryPath == null
+                    || HanLP.Config.CustomDictionaryPath.length == 0) {
+                initializer.accept(getCustomDictionary());
+                return false;
+            }
+            if (HanLP.Config.IOAdapter instanceof HadoopFileIOAdapter) {
+                // 1.delete hdfs file
+                HdfsFileHelper.deleteCacheFile(HanLP.Config.CustomDictionaryPath);
+                // 2.query txt files，update CustomDictionaryPath
+                HdfsFileHelper.resetCustomPath(getDynamicCustomDictionary());
+            } else {
+                FileHelper.deleteCacheFile(HanLP.Config.CustomDictionaryPath);
+                FileHelper.resetCustomPath(getDynamicCustomDictionary());
+            }
+            // 3.build the new dictionary and tries off to the side
+            MultiCustomDictionary customDictionary =
+                    new MultiCustomDictionary(HanLP.Config.CustomDictionaryPath);
+            if (!customDictionary.isLoaded()) {
+                log.warn("Custom dictionary failed to load, keep the current one");
+                initializer.accept(getCustomDictionary());
+                return false;
+            }
+            initializer.accept(customDictionary);
+            // 4.publish
+            segment = newSegment(customDictionary);
             log.info("Custom dictionary has been reloaded in {} milliseconds",
                     System.currentTimeMillis() - startTime);
+            return true;
+        } finally {
+            VERSION.incrementAndGet();
+            WRITE_LOCK.unlock();
         }
-        return reload;
     }
 
     private static void resetHanlpConfig() throws FileNotFoundException {
@@ -185,20 +223,49 @@ public class HanlpHelper {
         return ResourceUtils.getFile("classpath:hanlp.properties").getParent();
     }
 
+    /**
+     * Applies the updater to a fork of the published custom dictionary and publishes the fork, in
+     * turn with other writers. Readers keep using the published dictionary unchanged meanwhile.
+     */
+    public static void updateCustomDictionary(Consumer<MultiCustomDictionary> updater) {
+        WRITE_LOCK.lock();
+        try {
+            MultiCustomDictionary customDictionary = getCustomDictionary().fork();
+            updater.accept(customDictionary);
+            segment = newSegment(customDictionary);
+        } finally {
+            VERSION.incrementAndGet();
+            WRITE_LOCK.unlock();
+        }
+    }
+
     public static boolean addToCustomDictionary(DictWord dictWord) {
+        AtomicBoolean added = new AtomicBoolean();
+        updateCustomDictionary(
+                customDictionary -> added.set(addToCustomDictionary(customDictionary, dictWord)));
+        return added.get();
+    }
+
+    public static boolean addToCustomDictionary(MultiCustomDictionary customDictionary,
+            DictWord dictWord) {
         log.debug("dictWord:{}", dictWord);
-        return getDynamicCustomDictionary().insert(dictWord.getWord(),
-                dictWord.getNatureWithFrequency());
+        return customDictionary.insert(dictWord.getWord(), dictWord.getNatureWithFrequency());
     }
 
     public static void removeFromCustomDictionary(DictWord dictWord) {
+        updateCustomDictionary(
+                customDictionary -> removeFromCustomDictionary(customDictionary, dictWord));
+    }
+
+    public static void removeFromCustomDictionary(MultiCustomDictionary customDictionary,
+            DictWord dictWord) {
         log.debug("dictWord:{}", dictWord);
-        CoreDictionary.Attribute attribute = getDynamicCustomDictionary().get(dictWord.getWord());
+        CoreDictionary.Attribute attribute = customDictionary.get(dictWord.getWord());
         if (attribute == null) {
             return;
         }
         log.info("get attribute:{}", attribute);
-        getDynamicCustomDictionary().remove(dictWord.getWord());
+        customDictionary.remove(dictWord.getWord());
         StringBuilder sb = new StringBuilder();
         List<Nature> natureList = new ArrayList<>();
         for (int i = 0; i < attribute.nature.length; i++) {
@@ -212,10 +279,9 @@ public class HanlpHelper {
         int len = natureWithFrequency.length();
         log.info("filtered natureWithFrequency:{}", natureWithFrequency);
         if (StringUtils.isNotBlank(natureWithFrequency)) {
-            getDynamicCustomDictionary().add(dictWord.getWord(),
-                    natureWithFrequency.substring(0, len - 1));
+            customDictionary.add(dictWord.getWord(), natureWithFrequency.substring(0, len - 1));
         }
-        SearchService.remove(dictWord, natureList.toArray(new Nature[0]));
+        SearchService.remove(customDictionary, dictWord, natureList.toArray(new Nature[0]));
     }
 
     public static <T extends MapResult> void transLetterOriginal(List<T> mapResults) {
@@ -224,12 +290,13 @@ public class HanlpHelper {
         }
 
         List<T> newResults = new ArrayList<>();
+        DynamicCustomDictionary customDictionary = getDynamicCustomDictionary();
 
         for (T mapResult : mapResults) {
             String name = mapResult.getName();
             boolean isAdded = false;
-            if (MultiCustomDictionary.isLowerLetter(name) && CustomDictionary.contains(name)) {
-                CoreDictionary.Attribute attribute = CustomDictionary.get(name);
+            if (MultiCustomDictionary.isLowerLetter(name) && customDictionary.contains(name)) {
+                CoreDictionary.Attribute attribute = customDictionary.get(name);
                 if (attribute != null) {
                     isAdded = addLetterOriginal(newResults, mapResult, attribute);
                 }
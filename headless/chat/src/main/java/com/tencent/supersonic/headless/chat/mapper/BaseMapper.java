@@ -40,10 +40,12 @@ public abstract class BaseMapper implements SchemaMapper {
             doMap(chatQueryContext);
             MapFilter.filter(chatQueryContext);
         } catch (Exception e) {
+            chatQueryContext.getMappingContext().markFailed();
             log.error("work error", e);
         }
 
         long cost = System.currentTimeMillis() - startTime;
+        chatQueryContext.getMappingContext().addCost(simpleName, cost);
         log.debug("after {},cost:{},mapInfo:{}", simpleName, cost,
                 chatQueryContext.getMapInfo().getDataSetElementMatches());
     }
@@ -121,10 +123,15 @@ public abstract class BaseMapper implements SchemaMapper {
         return element.getAlias();
     }
 
+    /** the terms of the query text, segmented once per request */
+    public List<S2Term> getTerms(ChatQueryContext chatQueryContext) {
+        return chatQueryContext.getMappingContext().getTerms(
+                chatQueryContext.getRequest().getQueryText(),
+                text -> HanlpHelper.getTerms(text, chatQueryContext.getModelIdToDataSetIds()));
+    }
+
     public <T> List<T> getMatches(ChatQueryContext chatQueryContext, MatchStrategy matchStrategy) {
-        String queryText = chatQueryContext.getRequest().getQueryText();
-        List<S2Term> terms =
-                HanlpHelper.getTerms(queryText, chatQueryContext.getModelIdToDataSetIds());
+        List<S2Term> terms = getTerms(chatQueryContext);
         terms = HanlpHelper.getTerms(terms, chatQueryContext.getRequest().getDataSetIds());
         Map<MatchText, List<T>> matchResult = matchStrategy.match(chatQueryContext, terms,
                 chatQueryContext.getRequest().getDataSetIds());
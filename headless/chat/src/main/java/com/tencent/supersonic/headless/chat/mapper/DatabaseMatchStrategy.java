@@ -1,41 +1,52 @@
 package com.tencent.supersonic.headless.chat.mapper;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.tencent.supersonic.headless.api.pojo.SchemaElement;
 import com.tencent.supersonic.headless.api.pojo.SchemaElementMatch;
 import com.tencent.supersonic.headless.api.pojo.response.S2Term;
 import com.tencent.supersonic.headless.chat.ChatQueryContext;
 import com.tencent.supersonic.headless.chat.knowledge.DatabaseMapResult;
-import com.tencent.supersonic.headless.chat.utils.EditDistanceUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 /**
  * DatabaseMatchStrategy uses SQL LIKE operator to match schema elements. It currently supports
- * fuzzy matching against names and aliases.
+ * fuzzy matching against names and aliases. The names are looked up in a {@link SchemaNameIndex}
+ * that is kept for each version of the schema elements.
  */
 @Service
 @Slf4j
 public class DatabaseMatchStrategy extends SingleMatchStrategy<DatabaseMapResult> {
 
-    private ThreadLocal<List<SchemaElement>> allElements = ThreadLocal.withInitial(ArrayList::new);
+    private static final int MAX_INDEXES = 16;
+
+    private ThreadLocal<SchemaNameIndex> nameIndex = new ThreadLocal<>();
+
+    private final Cache<String, SchemaNameIndex> nameIndexes =
+            Caffeine.newBuilder().maximumSize(MAX_INDEXES).build();
 
     @Override
     public Map<MatchText, List<DatabaseMapResult>> match(ChatQueryContext chatQueryContext,
             List<S2Term> terms, Set<Long> detectDataSetIds) {
-        allElements.set(getSchemaElements(chatQueryContext));
-        return super.match(chatQueryContext, terms, detectDataSetIds);
+        List<SchemaElement> schemaElements = getSchemaElements(chatQueryContext);
+        nameIndex.set(nameIndexes.get(SchemaNameIndex.signature(schemaElements),
+                key -> SchemaNameIndex.build(schemaElements)));
+        try {
+            return super.match(chatQueryContext, terms, detectDataSetIds);
+        } finally {
+            nameIndex.remove();
+        }
     }
 
     public List<DatabaseMapResult> detectByStep(ChatQueryContext chatQueryContext,
@@ -44,30 +55,27 @@ public class DatabaseMatchStrategy extends SingleMatchStrategy<DatabaseMapResult
             return new ArrayList<>();
         }
 
+        SchemaNameIndex index = nameIndex.get();
+        if (Objects.isNull(index)) {
+            return new ArrayList<>();
+        }
         Double metricDimensionThresholdConfig = getThreshold(chatQueryContext);
-        Map<String, Set<SchemaElement>> nameToItems = getNameToItems(allElements.get());
         List<DatabaseMapResult> results = new ArrayList<>();
-        for (Entry<String, Set<SchemaElement>> entry : nameToItems.entrySet()) {
-            String name = entry.getKey();
-            double similarity = EditDistanceUtils.getSimilarity(detectSegment, name);
-            if (!name.contains(detectSegment) || similarity < metricDimensionThresholdConfig) {
-                continue;
-            }
-            Set<SchemaElement> schemaElements = entry.getValue();
-            if (!CollectionUtils.isEmpty(detectDataSetIds)) {
-                schemaElements = schemaElements.stream().filter(
-                        schemaElement -> detectDataSetIds.contains(schemaElement.getDataSetId()))
-                        .collect(Collectors.toSet());
-            }
-            for (SchemaElement schemaElement : schemaElements) {
-                DatabaseMapResult databaseMapResult = new DatabaseMapResult();
-                databaseMapResult.setDetectWord(detectSegment);
-                databaseMapResult.setName(schemaElement.getName());
-                databaseMapResult.setSimilarity(similarity);
-                databaseMapResult.setSchemaElement(schemaElement);
-                results.add(databaseMapResult);
-            }
-        }
+        index.search(detectSegment, metricDimensionThresholdConfig,
+                (schemaElements, similarity) -> {
+                    for (SchemaElement schemaElement : schemaElements) {
+                        if (!CollectionUtils.isEmpty(detectDataSetIds)
+                                && !detectDataSetIds.contains(schemaElement.getDataSetId())) {
+                            continue;
+                        }
+                        DatabaseMapResult databaseMapResult = new DatabaseMapResult();
+                        databaseMapResult.setDetectWord(detectSegment);
+                        databaseMapResult.setName(schemaElement.getName());
+                        databaseMapResult.setSimilarity(similarity);
+                        databaseMapResult.setSchemaElement(schemaElement);
+                        results.add(databaseMapResult);
+                    }
+                });
         return results;
     }
 
@@ -80,16 +88,16 @@ public class DatabaseMatchStrategy extends SingleMatchStrategy<DatabaseMapResult
 
     @Override
     public Function<Supplier<List<DatabaseMapResult>>, Supplier<List<DatabaseMapResult>>> taskDecorator() {
-        List<SchemaElement> schemaElements = allElements.get();
-        if (CollectionUtils.isEmpty(schemaElements)) {
+        SchemaNameIndex index = nameIndex.get();
+        if (Objects.isNull(index)) {
             return null;
         }
         return (t) -> (Supplier<List<DatabaseMapResult>>) () -> {
             try {
-                allElements.set(schemaElements);
+                nameIndex.set(index);
                 return t.get();
             } finally {
-                allElements.remove();
+                nameIndex.remove();
             }
         };
     }
@@ -114,15 +122,4 @@ public class DatabaseMatchStrategy extends SingleMatchStrategy<DatabaseMapResult
         return getThreshold(threshold, minThreshold,
                 chatQueryContext.getRequest().getMapModeEnum());
     }
-
-    private Map<String, Set<SchemaElement>> getNameToItems(List<SchemaElement> models) {
-        return models.stream().collect(Collectors.toMap(SchemaElement::getName, a -> {
-            Set<SchemaElement> result = new HashSet<>();
-            result.add(a);
-            return result;
-        }, (k1, k2) -> {
-            k1.addAll(k2);
-            return k1;
-        }));
-    }
 }
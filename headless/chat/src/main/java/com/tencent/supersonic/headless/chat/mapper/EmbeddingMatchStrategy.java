@@ -223,10 +223,32 @@ public class EmbeddingMatchStrategy extends BatchMatchStrategy<EmbeddingResult>
         int embeddingRoundNumber =
                 Integer.parseInt(mapperConfig.getParameterValue(EMBEDDING_MAPPER_ROUND_NUMBER));
 
-        // Build and execute query
-        RetrieveQuery retrieveQuery = RetrieveQuery.builder().queryTextsList(queryTextsSub).build();
-        List<RetrieveQueryResult> retrieveQueryResults = metaEmbeddingService.retrieveQuery(
-                retrieveQuery, embeddingNumber, modelIdToDataSetIds, detectDataSetIds);
+        // Build and execute query for the texts not retrieved before in this request
+        MappingContext mappingContext = chatQueryContext.getMappingContext();
+        List<String> queryTexts = queryTextsSub.stream()
+                .filter(queryText -> Objects.isNull(mappingContext.getRetrievals(queryText)))
+                .collect(Collectors.toList());
+        if (!queryTexts.isEmpty()) {
+            RetrieveQuery retrieveQuery =
+                    RetrieveQuery.builder().queryTextsList(queryTexts).build();
+            Map<String, List<Retrieval>> textToRetrievals = metaEmbeddingService
+                    .retrieveQuery(retrieveQuery, embeddingNumber, modelIdToDataSetIds,
+                            detectDataSetIds)
+                    .stream().collect(Collectors.toMap(RetrieveQueryResult::getQuery,
+                            RetrieveQueryResult::getRetrieval, (v1, v2) -> v1));
+            queryTexts.forEach(queryText -> mappingContext.putRetrievals(queryText,
+                    textToRetrievals.getOrDefault(queryText, Collections.emptyList())));
+        }
+        List<RetrieveQueryResult> retrieveQueryResults = new ArrayList<>();
+        for (String queryText : queryTextsSub) {
+            List<Retrieval> retrievals = mappingContext.getRetrievals(queryText);
+            if (CollectionUtils.isNotEmpty(retrievals)) {
+                RetrieveQueryResult retrieveQueryResult = new RetrieveQueryResult();
+                retrieveQueryResult.setQuery(queryText);
+                retrieveQueryResult.setRetrieval(new ArrayList<>(retrievals));
+                retrieveQueryResults.add(retrieveQueryResult);
+            }
+        }
 
         if (CollectionUtils.isEmpty(retrieveQueryResults)) {
             return Collections.emptyList();
@@ -31,20 +31,15 @@ public class HanlpDictMatchStrategy extends SingleMatchStrategy<HanlpMapResult>
 
     public List<HanlpMapResult> detectByStep(ChatQueryContext chatQueryContext,
             Set<Long> detectDataSetIds, String detectSegment, int offset) {
-        // step1. pre search
-        Integer oneDetectionMaxSize =
-                Integer.valueOf(mapperConfig.getParameterValue(MAPPER_DETECTION_MAX_SIZE));
-        LinkedHashSet<HanlpMapResult> hanlpMapResults = knowledgeBaseService
-                .prefixSearch(detectSegment, oneDetectionMaxSize,
-                        chatQueryContext.getModelIdToDataSetIds(), detectDataSetIds)
-                .stream().collect(Collectors.toCollection(LinkedHashSet::new));
-        // step2. suffix search
-        LinkedHashSet<HanlpMapResult> suffixHanlpMapResults = knowledgeBaseService
-                .suffixSearch(detectSegment, oneDetectionMaxSize,
-                        chatQueryContext.getModelIdToDataSetIds(), detectDataSetIds)
-                .stream().collect(Collectors.toCollection(LinkedHashSet::new));
-
-        hanlpMapResults.addAll(suffixHanlpMapResults);
+        // step1 and step2. pre and suffix search, once per segment of the request
+        LinkedHashSet<HanlpMapResult> hanlpMapResults =
+                chatQueryContext.getMappingContext()
+                        .getDictResults(detectSegment,
+                                segment -> search(chatQueryContext, detectDataSetIds, segment))
+                        .stream()
+                        .map(result -> new HanlpMapResult(result.getName(), result.getNatures(),
+                                result.getDetectWord(), result.getSimilarity()))
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
 
         if (CollectionUtils.isEmpty(hanlpMapResults)) {
             return new ArrayList<>();
@@ -93,6 +88,22 @@ public class HanlpDictMatchStrategy extends SingleMatchStrategy<HanlpMapResult>
         return oneRoundResults;
     }
 
+    private List<HanlpMapResult> search(ChatQueryContext chatQueryContext,
+            Set<Long> detectDataSetIds, String detectSegment) {
+        Integer oneDetectionMaxSize =
+                Integer.valueOf(mapperConfig.getParameterValue(MAPPER_DETECTION_MAX_SIZE));
+        LinkedHashSet<HanlpMapResult> hanlpMapResults = knowledgeBaseService
+                .prefixSearch(detectSegment, oneDetectionMaxSize,
+                        chatQueryContext.getModelIdToDataSetIds(), detectDataSetIds)
+                .stream().collect(Collectors.toCollection(LinkedHashSet::new));
+        LinkedHashSet<HanlpMapResult> suffixHanlpMapResults = knowledgeBaseService
+                .suffixSearch(detectSegment, oneDetectionMaxSize,
+                        chatQueryContext.getModelIdToDataSetIds(), detectDataSetIds)
+                .stream().collect(Collectors.toCollection(LinkedHashSet::new));
+        hanlpMapResults.addAll(suffixHanlpMapResults);
+        return new ArrayList<>(hanlpMapResults);
+    }
+
     public double getThresholdMatch(List<String> natures, ChatQueryContext chatQueryContext) {
         Double threshold =
                 Double.valueOf(mapperConfig.getParameterValue(MapperConfig.MAPPER_NAME_THRESHOLD));
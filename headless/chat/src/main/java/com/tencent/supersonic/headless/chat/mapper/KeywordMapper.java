@@ -32,11 +32,8 @@ public class KeywordMapper extends BaseMapper {
 
     @Override
     public void doMap(ChatQueryContext chatQueryContext) {
-        String queryText = chatQueryContext.getRequest().getQueryText();
-
         // 1. hanlpDict Match
-        List<S2Term> terms =
-                HanlpHelper.getTerms(queryText, chatQueryContext.getModelIdToDataSetIds());
+        List<S2Term> terms = getTerms(chatQueryContext);
         HanlpDictMatchStrategy hanlpMatchStrategy =
                 ContextUtils.getBean(HanlpDictMatchStrategy.class);
         List<HanlpMapResult> hanlpMatchResults = getMatches(chatQueryContext, hanlpMatchStrategy);
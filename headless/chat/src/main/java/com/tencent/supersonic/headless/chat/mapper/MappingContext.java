@@ -0,0 +1,65 @@
+package com.tencent.supersonic.headless.chat.mapper;
+
+import com.tencent.supersonic.headless.api.pojo.response.S2Term;
+import com.tencent.supersonic.headless.chat.knowledge.HanlpMapResult;
+import dev.langchain4j.store.embedding.Retrieval;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * What the schema mappers look up while mapping one request. The query text is segmented once and
+ * the dictionary and embedding lookups are kept per detect segment, so the mappers and the
+ * descriptions mapped by {@link TermDescMapper} do not repeat them. It also records the cost of
+ * each mapper and whether any of them failed.
+ */
+public class MappingContext {
+
+    private final Map<String, List<S2Term>> textToTerms = new ConcurrentHashMap<>();
+    private final Map<String, List<HanlpMapResult>> segmentToDictResults =
+            new ConcurrentHashMap<>();
+    private final Map<String, List<Retrieval>> segmentToRetrievals = new ConcurrentHashMap<>();
+    private final Map<String, Long> mapperCosts =
+            Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean failed;
+
+    public List<S2Term> getTerms(String text, Function<String, List<S2Term>> segmenter) {
+        return textToTerms.computeIfAbsent(text, segmenter);
+    }
+
+    /** the prefix and suffix matches of a segment, the caller must not change them */
+    public List<HanlpMapResult> getDictResults(String detectSegment,
+            Function<String, List<HanlpMapResult>> searcher) {
+        return segmentToDictResults.computeIfAbsent(detectSegment, searcher);
+    }
+
+    public List<Retrieval> getRetrievals(String detectSegment) {
+        return segmentToRetrievals.get(detectSegment);
+    }
+
+    public void putRetrievals(String detectSegment, List<Retrieval> retrievals) {
+        segmentToRetrievals.put(detectSegment, retrievals);
+    }
+
+    public void addCost(String mapper, long cost) {
+        mapperCosts.merge(mapper, cost, Long::sum);
+    }
+
+    public Map<String, Long> getMapperCosts() {
+        synchronized (mapperCosts) {
+            return new LinkedHashMap<>(mapperCosts);
+        }
+    }
+
+    public void markFailed() {
+        failed = true;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+}
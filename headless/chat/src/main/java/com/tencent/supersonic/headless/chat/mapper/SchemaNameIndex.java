@@ -0,0 +1,135 @@
+package com.tencent.supersonic.headless.chat.mapper;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tencent.supersonic.headless.api.pojo.SchemaElement;
+import com.tencent.supersonic.headless.chat.utils.EditDistanceUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * An inverted index from the characters and character pairs of the schema element names to the
+ * names containing them. A segment is only compared with the names listed for its rarest pair,
+ * since a name can only contain the segment if it contains all of its pairs.
+ */
+public class SchemaNameIndex {
+
+    private static final int[] EMPTY = new int[0];
+    private static final long SINGLE = 1L << 32;
+
+    private final String[] names;
+    private final List<Set<SchemaElement>> elements;
+    private final Map<Long, int[]> postings;
+
+    private SchemaNameIndex(String[] names, List<Set<SchemaElement>> elements,
+            Map<Long, int[]> postings) {
+        this.names = names;
+        this.elements = elements;
+        this.postings = postings;
+    }
+
+    public static SchemaNameIndex build(List<SchemaElement> schemaElements) {
+        Map<String, Set<SchemaElement>> nameToItems = new LinkedHashMap<>();
+        for (SchemaElement schemaElement : schemaElements) {
+            if (Objects.nonNull(schemaElement.getName())) {
+                nameToItems.computeIfAbsent(schemaElement.getName(), k -> new LinkedHashSet<>())
+                        .add(schemaElement);
+            }
+        }
+        String[] names = nameToItems.keySet().toArray(new String[0]);
+        Map<Long, int[]> postings = new HashMap<>();
+        Map<Long, Integer> sizes = new HashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            final int nameId = id;
+            forEachGram(names[id], true, gram -> {
+                int[] posting = postings.getOrDefault(gram, EMPTY);
+                int size = sizes.getOrDefault(gram, 0);
+                // a gram seen twice in one name is listed once
+                if (size > 0 && posting[size - 1] == nameId) {
+                    return;
+                }
+                if (size == posting.length) {
+                    posting = Arrays.copyOf(posting, Math.max(4, size * 2));
+                    postings.put(gram, posting);
+                }
+                posting[size] = nameId;
+                sizes.put(gram, size + 1);
+            });
+        }
+        postings.replaceAll((gram, posting) -> Arrays.copyOf(posting, sizes.get(gram)));
+        return new SchemaNameIndex(names, new ArrayList<>(nameToItems.values()), postings);
+    }
+
+    /** a signature of the names, ids and data sets of the elements */
+    public static String signature(List<SchemaElement> schemaElements) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (SchemaElement schemaElement : schemaElements) {
+            hasher.putString(String.valueOf(schemaElement.getType()), StandardCharsets.UTF_8)
+                    .putString(String.valueOf(schemaElement.getId()), StandardCharsets.UTF_8)
+                    .putString(String.valueOf(schemaElement.getDataSetId()), StandardCharsets.UTF_8)
+                    .putString(String.valueOf(schemaElement.getName()), StandardCharsets.UTF_8)
+                    .putByte((byte) 0);
+        }
+        return schemaElements.size() + "_" + hasher.hash();
+    }
+
+    /**
+     * passes each name containing the segment whose similarity reaches the threshold to the
+     * consumer, together with the similarity
+     */
+    public void search(String segment, double threshold,
+            BiConsumer<Set<SchemaElement>, Double> consumer) {
+        for (int id : getCandidates(segment)) {
+            String name = names[id];
+            if (!name.contains(segment)) {
+                continue;
+            }
+            double similarity = EditDistanceUtils.getSimilarity(segment, name, threshold);
+            if (similarity >= threshold) {
+                consumer.accept(elements.get(id), similarity);
+            }
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /** the names listed for the rarest gram of the segment */
+    private int[] getCandidates(String segment) {
+        int[][] rarest = {null};
+        forEachGram(segment, false, gram -> {
+            int[] posting = postings.getOrDefault(gram, EMPTY);
+            if (rarest[0] == null || posting.length < rarest[0].length) {
+                rarest[0] = posting;
+            }
+        });
+        return rarest[0] == null ? EMPTY : rarest[0];
+    }
+
+    /**
+     * the adjacent character pairs of a text, and its single characters for a name or a one
+     * character segment
+     */
+    private static void forEachGram(String text, boolean name, LongConsumer consumer) {
+        if (name || text.length() == 1) {
+            for (int i = 0; i < text.length(); i++) {
+                consumer.accept(SINGLE | text.charAt(i));
+            }
+        }
+        for (int i = 0; i + 1 < text.length(); i++) {
+            consumer.accept((long) text.charAt(i) << 16 | text.charAt(i + 1));
+        }
+    }
+}
@@ -41,6 +41,7 @@ public class TermDescMapper extends BaseMapper {
         queryContext.setSemanticSchema(chatQueryContext.getSemanticSchema());
         queryContext.setModelIdToDataSetIds(chatQueryContext.getModelIdToDataSetIds());
         queryContext.setChatWorkflowState(chatQueryContext.getChatWorkflowState());
+        queryContext.setMappingContext(chatQueryContext.getMappingContext());
         queryContext.getRequest().setDescriptionMapped(true);
         return queryContext;
     }
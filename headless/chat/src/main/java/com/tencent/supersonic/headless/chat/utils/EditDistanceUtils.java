@@ -10,6 +10,8 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class EditDistanceUtils {
 
+    private static final ThreadLocal<int[]> ROWS = ThreadLocal.withInitial(() -> new int[96]);
+
     /**
      * * get similarity
      *
@@ -23,4 +25,76 @@ public class EditDistanceUtils {
         return 1 - (double) EditDistance.compute(detectSegmentLower, matchNameLower)
                 / Math.max(matchName.length(), detectSegment.length());
     }
+
+    /**
+     * the similarity of {@link #getSimilarity(String, String)} if it reaches the threshold,
+     * otherwise any value below the threshold. The distance stops as soon as it exceeds what the
+     * threshold allows and reuses the rows of the calling thread.
+     */
+    public static double getSimilarity(String detectSegment, String matchName, double threshold) {
+        String detectSegmentLower = detectSegment.toLowerCase();
+        String matchNameLower = matchName.toLowerCase();
+        int length = Math.max(matchName.length(), detectSegment.length());
+        int maxDistance = (int) Math.min(Math.floor((1 - threshold) * length) + 1, length + 1);
+        int distance = boundedDistance(detectSegmentLower, matchNameLower, maxDistance);
+        if (distance > maxDistance) {
+            return -1;
+        }
+        return 1 - (double) distance / length;
+    }
+
+    /**
+     * the distance of {@link EditDistance#compute(String, String)}, including its transpositions,
+     * or maxDistance + 1 once it is known to be larger than maxDistance
+     */
+    public static int boundedDistance(String a, String b, int maxDistance) {
+        final int m = a.length();
+        final int n = b.length();
+        if (Math.abs(m - n) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] buffer = ROWS.get();
+        if (buffer.length < 3 * (n + 1)) {
+            buffer = new int[3 * (n + 1)];
+            ROWS.set(buffer);
+        }
+        // rows i - 2, i - 1 and i start at these offsets and rotate with i
+        int before = 0;
+        int previous = n + 1;
+        int current = 2 * (n + 1);
+        for (int j = 0; j <= n; j++) {
+            buffer[previous + j] = j;
+        }
+        int previousMin = 0;
+        for (int i = 1; i <= m; i++) {
+            char ci = a.charAt(i - 1);
+            buffer[current] = i;
+            int rowMin = i;
+            for (int j = 1; j <= n; j++) {
+                char cj = b.charAt(j - 1);
+                int value;
+                if (ci == cj) {
+                    value = buffer[previous + j - 1];
+                } else if (i > 1 && j > 1 && ci == b.charAt(j - 2) && cj == a.charAt(i - 2)) {
+                    value = 1 + Math.min(buffer[before + j - 2],
+                            Math.min(buffer[current + j - 1], buffer[previous + j]));
+                } else {
+                    value = Math.min(buffer[previous + j - 1] + 1,
+                            Math.min(buffer[current + j - 1] + 1, buffer[previous + j] + 1));
+                }
+                buffer[current + j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            // later rows come from this row or, by a transposition, from the previous one
+            if (Math.min(rowMin, previousMin + 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+            previousMin = rowMin;
+            int rotated = before;
+            before = previous;
+            previous = current;
+            current = rotated;
+        }
+        return Math.min(buffer[previous + n], maxDistance + 1);
+    }
 }
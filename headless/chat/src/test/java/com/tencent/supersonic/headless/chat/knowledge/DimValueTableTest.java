@@ -0,0 +1,80 @@
+package com.tencent.supersonic.headless.chat.knowledge;
+
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class DimValueTableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testBuildAndSearch() throws Exception {
+        Path valueFile = dir.resolve("dic_value_1_DIMENSION_2.txt");
+        Files.write(valueFile, Collections.singletonList("北京 _1_2 100"));
+        List<String> valueFiles = Collections.singletonList(valueFile.toString());
+        String tablePath = dir.resolve(DimValueTable.TABLE_FILE).toString();
+
+        DimValueTable.Builder builder = new DimValueTable.Builder(tablePath);
+        builder.add("北京", CoreDictionary.Attribute.create("_1_2 100"));
+        builder.add("北京市", CoreDictionary.Attribute.create("_1_2 300"));
+        builder.add("北海", CoreDictionary.Attribute.create("_1_2 200"));
+        builder.add("上海", CoreDictionary.Attribute.create("_1_2 50"));
+        builder.add("北京", CoreDictionary.Attribute.create("_3_4 10"));
+        DimValueTable table = builder.build(tablePath, valueFiles, 2);
+
+        Assertions.assertEquals(4, table.size());
+        Map<String, List<String>> result = table.prefixSearch("北京", 10, modelId -> true);
+        Assertions.assertEquals(Arrays.asList("北京", "北京市"),
+                Arrays.asList(result.keySet().toArray()));
+        Assertions.assertEquals(Arrays.asList("_1_2", "_3_4"), result.get("北京"));
+        Assertions.assertEquals(Collections.singletonList("_3_4"),
+                table.prefixSearch("北", 10, modelId -> modelId == 3).get("北京"));
+        Assertions.assertEquals(1, table.prefixSearch("北", 1, modelId -> true).size());
+        Assertions.assertTrue(table.prefixSearch("南", 10, modelId -> true).isEmpty());
+        Assertions.assertEquals(Arrays.asList("北京市", "北海"), table.getTopValues("_1_2"));
+
+        DimValueTable reopened = DimValueTable.open(tablePath, valueFiles);
+        Assertions.assertNotNull(reopened);
+        Assertions.assertEquals(Arrays.asList("北京市", "北海"), reopened.getTopValues("_1_2"));
+
+        Files.write(valueFile, Arrays.asList("北京 _1_2 100", "上海 _1_2 50"));
+        Assertions.assertNull(DimValueTable.open(tablePath, valueFiles));
+    }
+
+    @Test
+    void testBuildFromSpilledRuns() throws Exception {
+        List<String> valueFiles = Collections.emptyList();
+        String tablePath = dir.resolve(DimValueTable.TABLE_FILE).toString();
+
+        DimValueTable.Builder builder = new DimValueTable.Builder(tablePath, 2);
+        builder.add("北京", CoreDictionary.Attribute.create("_1_2 100"));
+        builder.add("上海", CoreDictionary.Attribute.create("_1_2 50"));
+        builder.add("北海", CoreDictionary.Attribute.create("_1_2 200"));
+        builder.add("北京", CoreDictionary.Attribute.create("_3_4 10"));
+        builder.add("北京市", CoreDictionary.Attribute.create("_1_2 300"));
+        DimValueTable table = builder.build(tablePath, valueFiles, 2);
+
+        Assertions.assertEquals(4, table.size());
+        Map<String, List<String>> result = table.prefixSearch("北", 10, modelId -> true);
+        Assertions.assertEquals(Arrays.asList("北京", "北海", "北京市"),
+                Arrays.asList(result.keySet().toArray()));
+        Assertions.assertEquals(Arrays.asList("_1_2", "_3_4"), result.get("北京"));
+        Assertions.assertEquals(Arrays.asList("北京市", "北海"), table.getTopValues("_1_2"));
+        try (Stream<Path> files = Files.list(dir)) {
+            Assertions.assertEquals(Collections.singletonList(DimValueTable.TABLE_FILE),
+                    files.map(file -> file.getFileName().toString()).collect(Collectors.toList()));
+        }
+    }
+}
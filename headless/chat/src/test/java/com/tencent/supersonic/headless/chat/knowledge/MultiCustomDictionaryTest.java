@@ -0,0 +1,69 @@
+package com.tencent.supersonic.headless.chat.knowledge;
+
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.TreeMap;
+
+class MultiCustomDictionaryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testForkLeavesPublishedDictionaryUnchanged() {
+        MultiCustomDictionary published = new MultiCustomDictionary((String[]) null);
+        TreeMap<String, CoreDictionary.Attribute> words = new TreeMap<>();
+        words.put("北京", CoreDictionary.Attribute.create("_1_2 100"));
+        published.dat.build(words);
+        published.insert("上海", "_1_2 100");
+        SearchService.putSuffix(published, "海上", CoreDictionary.Attribute.create("_1_2_suffix 1"));
+
+        MultiCustomDictionary fork = published.fork();
+        fork.insert("北京", "_3_4 100");
+        fork.insert("天津", "_1_2 100");
+        fork.removeNature("上海", "_1_2");
+        fork.removeSuffixNature("海上", "_1_2_suffix");
+
+        Assertions.assertEquals(1, published.get("北京").nature.length);
+        Assertions.assertNull(published.get("天津"));
+        Assertions.assertNotNull(published.get("上海"));
+        Assertions.assertTrue(published.getPrefixTrie().containsKey("上海"));
+        Assertions.assertFalse(published.getPrefixTrie().containsKey("天津"));
+        Assertions.assertEquals(Collections.singletonList("_1_2_suffix"),
+                published.getSuffixTrie().get("海上"));
+
+        Assertions.assertEquals(2, fork.get("北京").nature.length);
+        Assertions.assertNotNull(fork.get("天津"));
+        Assertions.assertNull(fork.get("上海"));
+        Assertions.assertFalse(fork.getPrefixTrie().containsKey("上海"));
+        Assertions.assertTrue(fork.getPrefixTrie().containsKey("天津"));
+        Assertions.assertNull(fork.getSuffixTrie().get("海上"));
+    }
+
+    @Test
+    void testValueTableRebuiltOnCachedDictionary() throws Exception {
+        Path mainFile = dir.resolve("custom.txt");
+        Path valueFile = dir.resolve("dic_value_1_DIMENSION_2.txt");
+        Files.write(mainFile, Collections.singletonList("销量 _1_3 100"));
+        Files.write(valueFile, Collections.singletonList("北京 _1_2 100"));
+        String[] path = {mainFile.toString(), valueFile.toString()};
+
+        Assertions.assertNotNull(new MultiCustomDictionary(path).getValueTable());
+        Path tableFile = Paths.get(DimValueTable.getTablePath(path));
+        Files.delete(tableFile);
+
+        // the dictionary is loaded from its cache, the table has to be rebuilt from the values
+        MultiCustomDictionary cached = new MultiCustomDictionary(path);
+        Assertions.assertTrue(Files.exists(tableFile));
+        Assertions.assertNotNull(cached.get("北京"));
+        Assertions.assertEquals(Collections.singleton("北京"),
+                cached.getValueTable().prefixSearch("北", 10, modelId -> true).keySet());
+    }
+}
@@ -0,0 +1,49 @@
+package com.tencent.supersonic.headless.chat.knowledge.file;
+
+import com.github.pagehelper.PageInfo;
+import com.tencent.supersonic.headless.api.pojo.response.DictValueResp;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class DictValueStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testQuery() throws Exception {
+        Path file = dir.resolve("dic_value_1_DIMENSION_2.txt");
+        Files.write(file, Arrays.asList("北京 _1_2 100", "", "broken line", "上海 _1_2 x",
+                "北京市 _1_2 300", "南京 _1_2 50", "new#york _1_2 20\r", "京都 _1_2 10"));
+        DictValueStore store = DictValueStore.load(file);
+        Assertions.assertEquals(5, store.size());
+        int weight = store.weight();
+
+        PageInfo<DictValueResp> page = store.query(null, 2, 2);
+        Assertions.assertEquals(5, page.getTotal());
+        Assertions.assertEquals(Arrays.asList("南京", "new york"), values(page));
+        Assertions.assertEquals(20L, page.getList().get(1).getFrequency());
+        Assertions.assertEquals("_1_2", page.getList().get(1).getNature());
+        Assertions.assertTrue(page.isHasNextPage());
+
+        page = store.query("北京", 1, 10);
+        Assertions.assertEquals(Arrays.asList("北京", "北京市"), values(page));
+        Assertions.assertTrue(store.weight() > weight);
+        // holds both characters, but not as the keyword
+        Assertions.assertEquals(Arrays.asList("京都"), values(store.query("京都", 1, 10)));
+        Assertions.assertTrue(values(store.query("京北", 1, 10)).isEmpty());
+        Assertions.assertEquals(Arrays.asList("new york"), values(store.query("w y", 1, 10)));
+        Assertions.assertTrue(values(store.query("广州", 1, 10)).isEmpty());
+    }
+
+    private List<String> values(PageInfo<DictValueResp> page) {
+        return page.getList().stream().map(DictValueResp::getValue).collect(Collectors.toList());
+    }
+}
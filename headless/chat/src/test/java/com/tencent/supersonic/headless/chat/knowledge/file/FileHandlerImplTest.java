@@ -0,0 +1,39 @@
+package com.tencent.supersonic.headless.chat.knowledge.file;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+class FileHandlerImplTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testEmptyLinesReplaceFile() throws Exception {
+        LocalFileConfig localFileConfig = Mockito.mock(LocalFileConfig.class);
+        Mockito.when(localFileConfig.getDictDirectoryLatest())
+                .thenReturn(dir.resolve("latest").toString());
+        Mockito.when(localFileConfig.getDictDirectoryBackup())
+                .thenReturn(dir.resolve("backup").toString());
+        FileHandlerImpl fileHandler = new FileHandlerImpl(localFileConfig, 1000L, 30);
+        String fileName = "dic_value_1_DIMENSION_2.txt";
+        Path file = dir.resolve("latest").resolve(fileName);
+
+        Assertions.assertEquals(2,
+                fileHandler.writeFile(Stream.of("北京 _1_2 1", "上海 _1_2 1"), fileName));
+        Assertions.assertEquals(Arrays.asList("北京 _1_2 1", "上海 _1_2 1"), Files.readAllLines(file));
+
+        Assertions.assertEquals(0, fileHandler.writeFile(Stream.empty(), fileName));
+        Assertions.assertEquals(Collections.emptyList(), Files.readAllLines(file));
+        Assertions.assertEquals(2,
+                Files.readAllLines(dir.resolve("backup").resolve(fileName)).size());
+    }
+}
@@ -0,0 +1,71 @@
+package com.tencent.supersonic.headless.chat.mapper;
+
+import com.hankcs.hanlp.algorithm.EditDistance;
+import com.tencent.supersonic.headless.api.pojo.SchemaElement;
+import com.tencent.supersonic.headless.api.pojo.SchemaElementType;
+import com.tencent.supersonic.headless.chat.utils.EditDistanceUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class SchemaNameIndexTest {
+
+    @Test
+    void boundedDistance() {
+        Random random = new Random(7);
+        String alphabet = "abc访问次数";
+        for (int i = 0; i < 2000; i++) {
+            String a = randomText(random, alphabet, 8);
+            String b = randomText(random, alphabet, 8);
+            int distance = EditDistance.compute(a, b);
+            for (int max = 0; max <= 9; max++) {
+                int bounded = EditDistanceUtils.boundedDistance(a, b, max);
+                if (distance <= max) {
+                    Assertions.assertEquals(distance, bounded, a + " " + b);
+                } else {
+                    Assertions.assertTrue(bounded > max, a + " " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    void search() {
+        List<SchemaElement> schemaElements = new ArrayList<>();
+        String[] names = {"访问次数", "访问人数", "停留时长", "部门", "次数", "访问用户次数"};
+        for (int i = 0; i < names.length; i++) {
+            schemaElements.add(SchemaElement.builder().id((long) i).dataSetId(1L).name(names[i])
+                    .type(SchemaElementType.METRIC).build());
+        }
+        SchemaNameIndex index = SchemaNameIndex.build(schemaElements);
+        for (String segment : new String[] {"访问", "次数", "次", "部门", "时长", "用户次"}) {
+            for (double threshold : new double[] {0.1, 0.3, 0.5}) {
+                Map<String, Double> expected = new HashMap<>();
+                for (String name : names) {
+                    double similarity = EditDistanceUtils.getSimilarity(segment, name);
+                    if (name.contains(segment) && similarity >= threshold) {
+                        expected.put(name, similarity);
+                    }
+                }
+                Map<String, Double> actual = new HashMap<>();
+                index.search(segment, threshold, (elements, similarity) -> actual
+                        .put(elements.iterator().next().getName(), similarity));
+                Assertions.assertEquals(expected, actual, segment + " " + threshold);
+            }
+        }
+    }
+
+    private static String randomText(Random random, String alphabet, int maxLength) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
@@ -17,9 +17,25 @@ public class CacheCommonConfig {
     @Value("${s2.cache.common.version:0}")
     private Integer cacheCommonVersion;
 
+    /**
+     * model versions are kept per instance, so an edit on one instance is only seen by the others
+     * once their entries expire
+     */
     @Value("${s2.cache.common.expire.after.write:10}")
     private Integer cacheCommonExpireAfterWrite;
 
     @Value("${s2.query.cache.enable:true}")
     private Boolean cacheEnable;
+
+    /** serve an expired result while a single background query refreshes it */
+    @Value("${s2.cache.common.stale.enable:false}")
+    private Boolean staleWhileRevalidate;
+
+    /** how many minutes after expiring a result may still be served stale */
+    @Value("${s2.cache.common.stale.max:30}")
+    private Integer staleMaxMinutes;
+
+    /** how many seconds a query waits for the same query in flight before running it itself */
+    @Value("${s2.cache.common.coalesce.wait:30}")
+    private Integer coalesceWaitSeconds;
 }
@@ -0,0 +1,17 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/** a cached query result together with the time it was written */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheEntry implements Serializable {
+
+    private Object value;
+    private long writeTime;
+}
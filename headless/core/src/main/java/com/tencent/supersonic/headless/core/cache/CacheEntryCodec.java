@@ -0,0 +1,369 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import com.tencent.supersonic.common.pojo.QueryAuthorization;
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.common.util.JsonUtil;
+import com.tencent.supersonic.headless.api.pojo.ColumnVector;
+import com.tencent.supersonic.headless.api.pojo.ColumnarResult;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of cached query results. The column metadata is written as json, the values
+ * are written column by column in their {@link ColumnVector} encoding, so metric columns are plain
+ * primitive arrays and dimension columns a dictionary plus codes. Reading works on a
+ * {@link ByteBuffer}, which lets the disk tier decode straight from a mapped file.
+ */
+public class CacheEntryCodec {
+
+    private static final int OBJECT_BYTES = 16;
+    private static final int REFERENCE_BYTES = 8;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte BIG_DECIMAL = 9;
+    private static final byte BIG_INTEGER = 10;
+    private static final byte SQL_DATE = 11;
+    private static final byte TIMESTAMP = 12;
+    private static final byte DATE = 13;
+
+    private CacheEntryCodec() {}
+
+    public static boolean isSupported(Object value) {
+        return value instanceof CacheEntry
+                && ((CacheEntry) value).getValue() instanceof SemanticQueryResp;
+    }
+
+    /**
+     * Writes a query result. Fails with {@link NotSerializableException} for values of a type the
+     * codec does not know, such results are simply kept out of the disk tier.
+     */
+    public static void write(SemanticQueryResp resp, DataOutputStream out) throws IOException {
+        out.writeInt(resp.getPageNo());
+        out.writeInt(resp.getPageSize());
+        out.writeLong(resp.getTotalCount());
+        out.writeBoolean(resp.isUseCache());
+        writeString(out, resp.getSql());
+        writeString(out, resp.getErrorMsg());
+        writeString(out, JsonUtil.toString(resp.getColumns()));
+        writeString(out, resp.getQueryAuthorization() == null ? null
+                : JsonUtil.toString(resp.getQueryAuthorization()));
+        ColumnarResult columnarResult = resp.getColumnarResult() != null ? resp.getColumnarResult()
+                : ColumnarResult.of(resp.getColumns(), resp.getResultList());
+        out.writeInt(columnarResult.getRowCount());
+        out.writeInt(columnarResult.getColumns().size());
+        for (ColumnVector vector : columnarResult.getColumns()) {
+            writeVector(out, vector);
+        }
+    }
+
+    public static SemanticQueryResp read(ByteBuffer buffer) throws IOException {
+        SemanticQueryResp resp = new SemanticQueryResp();
+        resp.setPageNo(buffer.getInt());
+        resp.setPageSize(buffer.getInt());
+        resp.setTotalCount(buffer.getLong());
+        resp.setUseCache(buffer.get() != 0);
+        resp.setSql(readString(buffer));
+        resp.setErrorMsg(readString(buffer));
+        String columns = readString(buffer);
+        resp.setColumns(
+                columns == null ? new ArrayList<>() : JsonUtil.toList(columns, QueryColumn.class));
+        String authorization = readString(buffer);
+        if (authorization != null) {
+            resp.setQueryAuthorization(JsonUtil.toObject(authorization, QueryAuthorization.class));
+        }
+        ColumnarResult columnarResult = new ColumnarResult();
+        columnarResult.setRowCount(buffer.getInt());
+        int columnCount = buffer.getInt();
+        for (int i = 0; i < columnCount; i++) {
+            columnarResult.getColumns().add(readVector(buffer));
+        }
+        resp.setColumnarResult(columnarResult);
+        return resp;
+    }
+
+    /** rough on-heap size of a cached value, used to weigh cache entries */
+    public static long estimateSize(Object value) {
+        if (value instanceof CacheEntry) {
+            value = ((CacheEntry) value).getValue();
+        }
+        if (!(value instanceof SemanticQueryResp)) {
+            return 1024;
+        }
+        SemanticQueryResp resp = (SemanticQueryResp) value;
+        long size = 512 + 256L * resp.getColumns().size() + sizeOf(resp.getSql());
+        ColumnarResult columnarResult = resp.getColumnarResult();
+        if (columnarResult == null) {
+            for (Map<String, Object> row : resp.getResultList()) {
+                size += OBJECT_BYTES + 48L * row.size();
+                for (Object cell : row.values()) {
+                    size += sizeOf(cell);
+                }
+            }
+            return size;
+        }
+        for (ColumnVector vector : columnarResult.getColumns()) {
+            size += OBJECT_BYTES + sizeOf(vector.getName());
+            switch (vector.getEncoding()) {
+                case LONG:
+                    size += 8L * vector.getLongValues().length + 8L * lengthOf(vector.getNulls());
+                    break;
+                case DOUBLE:
+                    size += 8L * vector.getDoubleValues().length + 8L * lengthOf(vector.getNulls());
+                    break;
+                case DICTIONARY:
+                    size += 4L * vector.getCodes().length;
+                    for (String word : vector.getDictionary()) {
+                        size += REFERENCE_BYTES + sizeOf(word);
+                    }
+                    break;
+                default:
+                    for (Object cell : vector.getValues()) {
+                        size += REFERENCE_BYTES + sizeOf(cell);
+                    }
+            }
+        }
+        return size;
+    }
+
+    private static void writeVector(DataOutputStream out, ColumnVector vector) throws IOException {
+        writeString(out, vector.getName());
+        out.writeByte(vector.getEncoding().ordinal());
+        switch (vector.getEncoding()) {
+            case LONG:
+                out.writeInt(vector.getLongValues().length);
+                for (long value : vector.getLongValues()) {
+                    out.writeLong(value);
+                }
+                writeLongs(out, vector.getNulls());
+                break;
+            case DOUBLE:
+                out.writeInt(vector.getDoubleValues().length);
+                for (double value : vector.getDoubleValues()) {
+                    out.writeDouble(value);
+                }
+                writeLongs(out, vector.getNulls());
+                break;
+            case DICTIONARY:
+                out.writeInt(vector.getDictionary().size());
+                for (String word : vector.getDictionary()) {
+                    writeString(out, word);
+                }
+                out.writeInt(vector.getCodes().length);
+                for (int code : vector.getCodes()) {
+                    out.writeInt(code);
+                }
+                break;
+            default:
+                out.writeInt(vector.getValues().length);
+                for (Object value : vector.getValues()) {
+                    writeValue(out, value);
+                }
+        }
+    }
+
+    private static ColumnVector readVector(ByteBuffer buffer) throws IOException {
+        ColumnVector vector = new ColumnVector();
+        vector.setName(readString(buffer));
+        ColumnVector.Encoding encoding = ColumnVector.Encoding.values()[buffer.get()];
+        vector.setEncoding(encoding);
+        switch (encoding) {
+            case LONG:
+                long[] longValues = new long[buffer.getInt()];
+                buffer.asLongBuffer().get(longValues);
+                buffer.position(buffer.position() + 8 * longValues.length);
+                vector.setLongValues(longValues);
+                vector.setNulls(readLongs(buffer));
+                break;
+            case DOUBLE:
+                double[] doubleValues = new double[buffer.getInt()];
+                buffer.asDoubleBuffer().get(doubleValues);
+                buffer.position(buffer.position() + 8 * doubleValues.length);
+                vector.setDoubleValues(doubleValues);
+                vector.setNulls(readLongs(buffer));
+                break;
+            case DICTIONARY:
+                int dictionarySize = buffer.getInt();
+                List<String> dictionary = new ArrayList<>(dictionarySize);
+                for (int i = 0; i < dictionarySize; i++) {
+                    dictionary.add(readString(buffer));
+                }
+                int[] codes = new int[buffer.getInt()];
+                buffer.asIntBuffer().get(codes);
+                buffer.position(buffer.position() + 4 * codes.length);
+                vector.setDictionary(dictionary);
+                vector.setCodes(codes);
+                break;
+            default:
+                Object[] values = new Object[buffer.getInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readValue(buffer);
+                }
+                vector.setValues(values);
+        }
+        return vector;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeString(out, value.toString());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(SQL_DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value.getClass() == java.util.Date.class) {
+            out.writeByte(DATE);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer) throws IOException {
+        byte type = buffer.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(buffer);
+            case LONG:
+                return buffer.getLong();
+            case INTEGER:
+                return buffer.getInt();
+            case SHORT:
+                return buffer.getShort();
+            case BYTE:
+                return buffer.get();
+            case DOUBLE:
+                return buffer.getDouble();
+            case FLOAT:
+                return buffer.getFloat();
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(buffer));
+            case BIG_INTEGER:
+                return new BigInteger(readString(buffer));
+            case SQL_DATE:
+                return new java.sql.Date(buffer.getLong());
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(buffer.getLong());
+                timestamp.setNanos(buffer.getInt());
+                return timestamp;
+            case DATE:
+                return new java.util.Date(buffer.getLong());
+            default:
+                throw new IOException("unknown value type " + type);
+        }
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static long[] readLongs(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        long[] values = new long[length];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + 8 * length);
+        return values;
+    }
+
+    private static int lengthOf(long[] values) {
+        return values == null ? 0 : values.length;
+    }
+
+    private static long sizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + ((String) value).length();
+        }
+        if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return 64;
+        }
+        return OBJECT_BYTES + 8;
+    }
+}
@@ -2,31 +2,58 @@ package com.tencent.supersonic.headless.core.cache;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 import java.util.concurrent.TimeUnit;
 
 @Configuration
+@Slf4j
 public class CaffeineCacheConfig {
 
     @Autowired
     private CacheCommonConfig cacheCommonConfig;
 
+    @Autowired
+    private Environment environment;
+
     @Value("${s2.caffeine.initial.capacity:500}")
     private Integer caffeineInitialCapacity;
 
+    /**
+     * entry count of the search cache only, the query result cache is bounded by
+     * s2.caffeine.max.bytes instead
+     */
     @Value("${s2.caffeine.max.size:5000}")
     private Integer caffeineMaximumSize;
 
+    /** heap bytes of query results, weighed by their estimated size rather than counted */
+    @Value("${s2.caffeine.max.bytes:268435456}")
+    private Long caffeineMaximumBytes;
+
     @Bean(name = "caffeineCache")
     public Cache<String, Object> caffeineCache() {
-        return Caffeine.newBuilder()
-                .expireAfterWrite(cacheCommonConfig.getCacheCommonExpireAfterWrite(),
-                        TimeUnit.MINUTES)
-                .initialCapacity(caffeineInitialCapacity).maximumSize(caffeineMaximumSize).build();
+        if (environment.containsProperty("s2.caffeine.max.size")
+                && !environment.containsProperty("s2.caffeine.max.bytes")) {
+            log.warn(
+                    "s2.caffeine.max.size no longer bounds the query result cache, "
+                            + "set s2.caffeine.max.bytes instead, now using {} bytes",
+                    caffeineMaximumBytes);
+        }
+        // stale results are kept beyond expiring so they can be served while being refreshed
+        int expireAfterWrite = cacheCommonConfig.getCacheCommonExpireAfterWrite();
+        if (Boolean.TRUE.equals(cacheCommonConfig.getStaleWhileRevalidate())) {
+            expireAfterWrite += cacheCommonConfig.getStaleMaxMinutes();
+        }
+        return Caffeine.newBuilder().expireAfterWrite(expireAfterWrite, TimeUnit.MINUTES)
+                .initialCapacity(caffeineInitialCapacity).maximumWeight(caffeineMaximumBytes)
+                .weigher((String key, Object value) -> (int) Math
+                        .min(CacheEntryCodec.estimateSize(value), Integer.MAX_VALUE))
+                .build();
     }
 
     @Bean(name = "searchCaffeineCache")
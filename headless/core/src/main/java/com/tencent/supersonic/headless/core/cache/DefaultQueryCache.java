@@ -2,37 +2,82 @@ package com.tencent.supersonic.headless.core.cache;
 
 import com.tencent.supersonic.common.util.ContextUtils;
 import com.tencent.supersonic.headless.api.pojo.request.SemanticQueryReq;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 @Slf4j
 public class DefaultQueryCache implements QueryCache {
 
+    /** queries being executed, concurrent misses of the same key wait for the same future */
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong coalesceTimeoutCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong revalidateCount = new AtomicLong();
+
     public Object query(SemanticQueryReq semanticQueryReq, String cacheKey) {
-        CacheManager cacheManager = ContextUtils.getBean(CacheManager.class);
         if (isCache(semanticQueryReq)) {
-            Object result = cacheManager.get(cacheKey);
-            if (Objects.nonNull(result)) {
-                log.debug("query from cache, key:{},result:{}", cacheKey,
-                        StringUtils.normalizeSpace(result.toString()));
+            CacheEntry cacheEntry = getEntry(cacheKey);
+            if (Objects.isNull(cacheEntry) || isExpired(cacheEntry)) {
+                return null;
             }
-            return result;
+            log.debug("query from cache, key:{},result:{}", cacheKey,
+                    StringUtils.normalizeSpace(cacheEntry.getValue().toString()));
+            return cacheEntry.getValue();
         }
         return null;
     }
 
+    @Override
+    public Object query(SemanticQueryReq semanticQueryReq, String cacheKey, Callable<Object> loader)
+            throws Exception {
+        if (isCache(semanticQueryReq)) {
+            CacheEntry cacheEntry = getEntry(cacheKey);
+            if (Objects.nonNull(cacheEntry) && !isExpired(cacheEntry)) {
+                hitCount.incrementAndGet();
+                return cacheEntry.getValue();
+            }
+            if (Objects.nonNull(cacheEntry) && isStaleWhileRevalidate()) {
+                staleCount.incrementAndGet();
+                revalidate(cacheKey, loader);
+                return cacheEntry.getValue();
+            }
+        }
+        missCount.incrementAndGet();
+        if (!isCache(semanticQueryReq)) {
+            // the caller asked for a fresh result, so it must not get another query's result
+            Object value = loader.call();
+            put(cacheKey, value);
+            return value;
+        }
+        return load(cacheKey, loader);
+    }
+
     public Boolean put(String cacheKey, Object value) {
         CacheManager cacheManager = ContextUtils.getBean(CacheManager.class);
         CacheCommonConfig cacheCommonConfig = ContextUtils.getBean(CacheCommonConfig.class);
         if (cacheCommonConfig.getCacheEnable() && Objects.nonNull(value)) {
-            CompletableFuture.supplyAsync(() -> cacheManager.put(cacheKey, value))
+            CacheEntry cacheEntry = new CacheEntry(snapshot(value), System.currentTimeMillis());
+            CompletableFuture.supplyAsync(() -> cacheManager.put(cacheKey, cacheEntry))
                     .exceptionally(exception -> {
                         log.warn("exception:", exception);
                         return null;
@@ -46,13 +91,105 @@ public class DefaultQueryCache implements QueryCache {
     public String getCacheKey(SemanticQueryReq semanticQueryReq) {
         CacheManager cacheManager = ContextUtils.getBean(CacheManager.class);
         String commandMd5 = semanticQueryReq.generateCommandMd5();
-        String keyByModelIds = getKeyByModelIds(semanticQueryReq.getModelIds());
+        // model versions are part of the key, so a model change makes its results unreachable
+        ModelVersionManager modelVersionManager = ContextUtils.getBean(ModelVersionManager.class);
+        String keyByModelIds = modelVersionManager.getVersionKey(semanticQueryReq.getModelIds());
         return cacheManager.generateCacheKey(keyByModelIds, commandMd5);
     }
 
-    private String getKeyByModelIds(List<Long> modelIds) {
-        return String.join(",",
-                modelIds.stream().map(Object::toString).collect(Collectors.toList()));
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("hit", hitCount.get());
+        stats.put("miss", missCount.get());
+        stats.put("coalesced", coalescedCount.get());
+        stats.put("coalesceTimeout", coalesceTimeoutCount.get());
+        stats.put("stale", staleCount.get());
+        stats.put("revalidate", revalidateCount.get());
+        stats.put("inFlight", (long) inFlight.size());
+        return stats;
+    }
+
+    /**
+     * runs the loader unless the same key is already being loaded, in which case the caller waits
+     * for that load and gets the shared snapshot of its result. A caller that waited longer than
+     * the coalesce wait runs the loader itself.
+     */
+    private Object load(String cacheKey, Callable<Object> loader) throws Exception {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(cacheKey, flight);
+        if (Objects.nonNull(existing)) {
+            coalescedCount.incrementAndGet();
+            log.debug("wait for in-flight query, key:{}", cacheKey);
+            CacheCommonConfig cacheCommonConfig = ContextUtils.getBean(CacheCommonConfig.class);
+            try {
+                return existing.get(cacheCommonConfig.getCoalesceWaitSeconds(), TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } catch (TimeoutException e) {
+                coalesceTimeoutCount.incrementAndGet();
+                log.warn("in-flight query is not done after {}s, run it again, key:{}",
+                        cacheCommonConfig.getCoalesceWaitSeconds(), cacheKey);
+                return loader.call();
+            }
+        }
+        try {
+            Object value = loader.call();
+            Object shared = snapshot(value);
+            // written synchronously so that queries arriving after the flight find the result
+            CacheCommonConfig cacheCommonConfig = ContextUtils.getBean(CacheCommonConfig.class);
+            if (cacheCommonConfig.getCacheEnable() && Objects.nonNull(shared)) {
+                ContextUtils.getBean(CacheManager.class).put(cacheKey,
+                        new CacheEntry(shared, System.currentTimeMillis()));
+            }
+            flight.complete(shared);
+            return value;
+        } catch (Exception e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, flight);
+        }
+    }
+
+    private void revalidate(String cacheKey, Callable<Object> loader) {
+        if (!revalidating.add(cacheKey)) {
+            return;
+        }
+        revalidateCount.incrementAndGet();
+        ThreadPoolExecutor executor =
+                ContextUtils.getBean("commonExecutor", ThreadPoolExecutor.class);
+        CompletableFuture.runAsync(() -> {
+            try {
+                load(cacheKey, loader);
+            } catch (Exception e) {
+                log.warn("revalidate cache error, key:{}", cacheKey, e);
+            } finally {
+                revalidating.remove(cacheKey);
+            }
+        }, executor);
+    }
+
+    /** results are cached in columnar form, which is far more compact than row maps */
+    private Object snapshot(Object value) {
+        return value instanceof SemanticQueryResp ? ((SemanticQueryResp) value).columnarCopy()
+                : value;
+    }
+
+    private CacheEntry getEntry(String cacheKey) {
+        Object value = ContextUtils.getBean(CacheManager.class).get(cacheKey);
+        return value instanceof CacheEntry ? (CacheEntry) value : null;
+    }
+
+    private boolean isExpired(CacheEntry cacheEntry) {
+        CacheCommonConfig cacheCommonConfig = ContextUtils.getBean(CacheCommonConfig.class);
+        long expireMillis =
+                TimeUnit.MINUTES.toMillis(cacheCommonConfig.getCacheCommonExpireAfterWrite());
+        return System.currentTimeMillis() - cacheEntry.getWriteTime() > expireMillis;
+    }
+
+    private boolean isStaleWhileRevalidate() {
+        CacheCommonConfig cacheCommonConfig = ContextUtils.getBean(CacheCommonConfig.class);
+        return Boolean.TRUE.equals(cacheCommonConfig.getStaleWhileRevalidate());
     }
 
     private boolean isCache(SemanticQueryReq semanticQueryReq) {
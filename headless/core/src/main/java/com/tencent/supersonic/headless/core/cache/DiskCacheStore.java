@@ -0,0 +1,367 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import com.tencent.supersonic.common.util.JsonUtil;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Second cache tier that keeps query results off the heap, one file per entry in
+ * {@link CacheEntryCodec} form, read back through a memory mapped buffer. Only a small index of
+ * keys, sizes and times stays on the heap; it is rebuilt from the file headers on startup, so
+ * entries survive restarts. Capacity is bounded in bytes and the least recently read entries are
+ * evicted first.
+ */
+@Component
+@Slf4j
+public class DiskCacheStore {
+
+    private static final int MAGIC = 0x53325243;
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".bin";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String VERSIONS_FILE = "versions.json";
+
+    @Value("${s2.cache.disk.enable:false}")
+    private Boolean enable;
+
+    @Value("${s2.cache.disk.path:./data/cache/result}")
+    private String path;
+
+    @Value("${s2.cache.disk.max.bytes:2147483648}")
+    private Long maxBytes;
+
+    /** larger results are not written to disk at all */
+    @Value("${s2.cache.disk.max.entry.bytes:134217728}")
+    private Long maxEntryBytes;
+
+    @Autowired
+    private CacheCommonConfig cacheCommonConfig;
+
+    @Autowired
+    private ModelVersionManager modelVersionManager;
+
+    private final Map<String, DiskEntry> index = new ConcurrentHashMap<>();
+    /** serializes the file replacement and the index update of one key against its removal */
+    private final Striped<Lock> keyLocks = Striped.lock(64);
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong rejectCount = new AtomicLong();
+    private final AtomicLong evictCount = new AtomicLong();
+    private Path directory;
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            directory = Paths.get(path).toAbsolutePath();
+            Files.createDirectories(directory);
+            // keys embed model versions, which must not restart from zero while old entries remain
+            loadVersions();
+            modelVersionManager.addListener(this::saveVersions);
+            loadIndex();
+            evict();
+            log.info("disk cache loaded, path:{}, entries:{}, bytes:{}", directory, index.size(),
+                    usedBytes.get());
+        } catch (IOException e) {
+            log.warn("disk cache init error, disk cache is disabled, path:{}", path, e);
+            enable = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(enable);
+    }
+
+    public boolean put(String key, CacheEntry cacheEntry) {
+        if (!isEnabled() || !CacheEntryCodec.isSupported(cacheEntry)) {
+            return false;
+        }
+        if (CacheEntryCodec.estimateSize(cacheEntry) > maxEntryBytes) {
+            rejectCount.incrementAndGet();
+            return false;
+        }
+        Path file = directory.resolve(fileName(key));
+        Path tmp = directory.resolve(file.getFileName() + "." + UUID.randomUUID() + TMP_SUFFIX);
+        try {
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                CacheEntryCodec.writeString(out, key);
+                out.writeLong(cacheEntry.getWriteTime());
+                CacheEntryCodec.write((SemanticQueryResp) cacheEntry.getValue(), out);
+            }
+            long size = Files.size(tmp);
+            if (size > maxEntryBytes) {
+                Files.deleteIfExists(tmp);
+                rejectCount.incrementAndGet();
+                return false;
+            }
+            Lock lock = keyLocks.get(key);
+            lock.lock();
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                DiskEntry diskEntry = new DiskEntry(file, size, cacheEntry.getWriteTime());
+                DiskEntry old = index.put(key, diskEntry);
+                usedBytes.addAndGet(size - (Objects.isNull(old) ? 0 : old.getSize()));
+            } finally {
+                lock.unlock();
+            }
+            writeCount.incrementAndGet();
+        } catch (IOException e) {
+            log.warn("write disk cache error, key:{}", key, e);
+            deleteQuietly(tmp);
+            rejectCount.incrementAndGet();
+            return false;
+        }
+        if (usedBytes.get() > maxBytes) {
+            evict();
+        }
+        return true;
+    }
+
+    public CacheEntry get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        DiskEntry diskEntry = index.get(key);
+        if (Objects.isNull(diskEntry)) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (isExpired(diskEntry.getWriteTime())) {
+            remove(key, diskEntry);
+            missCount.incrementAndGet();
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(diskEntry.getFile(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || !key.equals(CacheEntryCodec.readString(buffer))) {
+                throw new IOException("unexpected cache file header");
+            }
+            long writeTime = buffer.getLong();
+            SemanticQueryResp resp = CacheEntryCodec.read(buffer);
+            diskEntry.setAccessTime(System.currentTimeMillis());
+            hitCount.incrementAndGet();
+            return new CacheEntry(resp, writeTime);
+        } catch (NoSuchFileException e) {
+            remove(key, diskEntry);
+        } catch (Exception e) {
+            log.warn("read disk cache error, key:{}", key, e);
+            remove(key, diskEntry);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    public void remove(String key) {
+        DiskEntry diskEntry = index.get(key);
+        if (Objects.nonNull(diskEntry)) {
+            remove(key, diskEntry);
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("entries", (long) index.size());
+        stats.put("bytes", usedBytes.get());
+        stats.put("hit", hitCount.get());
+        stats.put("miss", missCount.get());
+        stats.put("write", writeCount.get());
+        stats.put("reject", rejectCount.get());
+        stats.put("evict", evictCount.get());
+        return stats;
+    }
+
+    /** drops expired entries, then the least recently read ones until 90% of the capacity */
+    private synchronized void evict() {
+        List<Map.Entry<String, DiskEntry>> entries = new ArrayList<>(index.entrySet());
+        for (Map.Entry<String, DiskEntry> entry : entries) {
+            if (isExpired(entry.getValue().getWriteTime())) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (usedBytes.get() <= maxBytes) {
+            return;
+        }
+        long target = maxBytes / 10 * 9;
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().getAccessTime()));
+        for (Map.Entry<String, DiskEntry> entry : entries) {
+            if (usedBytes.get() <= target) {
+                break;
+            }
+            if (remove(entry.getKey(), entry.getValue())) {
+                evictCount.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean remove(String key, DiskEntry diskEntry) {
+        Lock lock = keyLocks.get(key);
+        lock.lock();
+        try {
+            if (!index.remove(key, diskEntry)) {
+                return false;
+            }
+            usedBytes.addAndGet(-diskEntry.getSize());
+            // no put of the key can move a newer file in before it is deleted
+            deleteQuietly(diskEntry.getFile());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(TMP_SUFFIX)) {
+                    deleteQuietly(file);
+                } else if (fileName.endsWith(ENTRY_SUFFIX)) {
+                    loadEntry(file);
+                }
+            }
+        }
+    }
+
+    private void loadEntry(Path file) {
+        try (InputStream inputStream = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                deleteQuietly(file);
+                return;
+            }
+            byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            long writeTime = in.readLong();
+            if (isExpired(writeTime)) {
+                deleteQuietly(file);
+                return;
+            }
+            DiskEntry diskEntry = new DiskEntry(file, Files.size(file), writeTime);
+            diskEntry.setAccessTime(Files.getLastModifiedTime(file).toMillis());
+            index.put(new String(key, StandardCharsets.UTF_8), diskEntry);
+            usedBytes.addAndGet(diskEntry.getSize());
+        } catch (Exception e) {
+            log.warn("skip broken disk cache file:{}", file, e);
+            deleteQuietly(file);
+        }
+    }
+
+    private void loadVersions() {
+        Path file = directory.resolve(VERSIONS_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            ModelVersions saved = JsonUtil.toObject(Files.readAllBytes(file), ModelVersions.class);
+            modelVersionManager.restore(saved.getVersions(), saved.getGlobalVersion());
+        } catch (Exception e) {
+            log.warn("load model versions error, file:{}", file, e);
+        }
+    }
+
+    private synchronized void saveVersions() {
+        ModelVersions versions = new ModelVersions();
+        versions.setVersions(modelVersionManager.getVersions());
+        versions.setGlobalVersion(modelVersionManager.getGlobalVersion());
+        Path file = directory.resolve(VERSIONS_FILE);
+        Path tmp = directory.resolve(VERSIONS_FILE + TMP_SUFFIX);
+        try {
+            Files.write(tmp, JsonUtil.toString(versions).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("save model versions error, file:{}", file, e);
+        }
+    }
+
+    private boolean isExpired(long writeTime) {
+        int expireMinutes = cacheCommonConfig.getCacheCommonExpireAfterWrite();
+        if (Boolean.TRUE.equals(cacheCommonConfig.getStaleWhileRevalidate())) {
+            expireMinutes += cacheCommonConfig.getStaleMaxMinutes();
+        }
+        return System.currentTimeMillis() - writeTime > TimeUnit.MINUTES.toMillis(expireMinutes);
+    }
+
+    private static String fileName(String key) {
+        return Hashing.sha256().hashString(key, StandardCharsets.UTF_8) + ENTRY_SUFFIX;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("delete disk cache file error:{}", file, e);
+        }
+    }
+
+    /** compared by identity, so a removal never takes out a newer entry of the same key */
+    @Getter
+    private static class DiskEntry {
+
+        private final Path file;
+        private final long size;
+        private final long writeTime;
+        @Setter
+        private volatile long accessTime;
+
+        DiskEntry(Path file, long size, long writeTime) {
+            this.file = file;
+            this.size = size;
+            this.writeTime = writeTime;
+            this.accessTime = System.currentTimeMillis();
+        }
+    }
+
+    @Data
+    public static class ModelVersions {
+
+        private Map<Long, Long> versions = new HashMap<>();
+        private long globalVersion;
+    }
+}
@@ -0,0 +1,85 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Version counters of models, increased whenever a model or one of its metrics and dimensions
+ * changes. Cache keys embed the versions of the models they depend on, so entries of a changed
+ * model are never hit again and age out, while entries of other models stay valid. The counters
+ * live in this instance only, other instances still rely on the cache expiry to see a change.
+ */
+@Component
+public class ModelVersionManager {
+
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+    /** increased on every model change, used when the models of a key are unknown */
+    private final AtomicLong globalVersion = new AtomicLong();
+    /** notified after every change, e.g. to persist the versions next to persisted entries */
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public void increase(Long modelId) {
+        if (Objects.isNull(modelId)) {
+            return;
+        }
+        versions.computeIfAbsent(modelId, id -> new AtomicLong()).incrementAndGet();
+        globalVersion.incrementAndGet();
+        listeners.forEach(Runnable::run);
+    }
+
+    public void increase(Collection<Long> modelIds) {
+        if (CollectionUtils.isEmpty(modelIds)) {
+            return;
+        }
+        modelIds.stream().distinct().forEach(this::increase);
+    }
+
+    public long getVersion(Long modelId) {
+        AtomicLong version = versions.get(modelId);
+        return Objects.isNull(version) ? 0L : version.get();
+    }
+
+    public long getGlobalVersion() {
+        return globalVersion.get();
+    }
+
+    public Map<Long, Long> getVersions() {
+        Map<Long, Long> snapshot = new HashMap<>();
+        versions.forEach((modelId, version) -> snapshot.put(modelId, version.get()));
+        return snapshot;
+    }
+
+    /**
+     * Raises the counters to versions saved by an earlier run. Counters never go back, so keys
+     * written before a restart can not be produced again for a model that changed since.
+     */
+    public void restore(Map<Long, Long> savedVersions, long savedGlobalVersion) {
+        savedVersions.forEach(
+                (modelId, version) -> versions.computeIfAbsent(modelId, id -> new AtomicLong())
+                        .accumulateAndGet(version, Math::max));
+        globalVersion.accumulateAndGet(savedGlobalVersion, Math::max);
+    }
+
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /** a key part like "1-3,2-0" made of the model ids and their versions */
+    public String getVersionKey(Collection<Long> modelIds) {
+        if (CollectionUtils.isEmpty(modelIds)) {
+            return "v" + getGlobalVersion();
+        }
+        return modelIds.stream().sorted().distinct().map(id -> id + "-" + getVersion(id))
+                .collect(Collectors.joining(","));
+    }
+}
@@ -2,10 +2,28 @@ package com.tencent.supersonic.headless.core.cache;
 
 import com.tencent.supersonic.headless.api.pojo.request.SemanticQueryReq;
 
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
 public interface QueryCache {
 
     Object query(SemanticQueryReq semanticQueryReq, String cacheKey);
 
+    /**
+     * query from cache and run the loader on a miss, the loaded value is put into the cache. The
+     * value returned is the loader's own result only when this call ran the loader.
+     */
+    default Object query(SemanticQueryReq semanticQueryReq, String cacheKey,
+            Callable<Object> loader) throws Exception {
+        Object value = query(semanticQueryReq, cacheKey);
+        if (Objects.nonNull(value)) {
+            return value;
+        }
+        value = loader.call();
+        put(cacheKey, value);
+        return value;
+    }
+
     Boolean put(String cacheKey, Object value);
 
     String getCacheKey(SemanticQueryReq semanticQueryReq);
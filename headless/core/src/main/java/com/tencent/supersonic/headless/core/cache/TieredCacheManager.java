@@ -0,0 +1,99 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Cache manager of two tiers: the byte weighted caffeine cache on the heap and the
+ * {@link DiskCacheStore} off the heap. Results are admitted by size, small ones go to both tiers,
+ * results too large for the heap only go to disk, and disk hits are promoted back to the heap.
+ */
+@Component
+@Primary
+@Slf4j
+public class TieredCacheManager implements CacheManager {
+
+    @Autowired
+    private CaffeineCacheManager caffeineCacheManager;
+
+    @Autowired
+    @Qualifier("caffeineCache")
+    private Cache<String, Object> caffeineCache;
+
+    @Autowired
+    private DiskCacheStore diskCacheStore;
+
+    @Autowired
+    @Qualifier("commonExecutor")
+    private ThreadPoolExecutor commonExecutor;
+
+    /** larger results are kept off the heap */
+    @Value("${s2.caffeine.max.entry.bytes:16777216}")
+    private Long maxHeapEntryBytes;
+
+    @Override
+    public Boolean put(String key, Object value) {
+        boolean onHeap = CacheEntryCodec.estimateSize(value) <= maxHeapEntryBytes;
+        if (onHeap) {
+            caffeineCacheManager.put(key, value);
+        }
+        if (!diskCacheStore.isEnabled() || !CacheEntryCodec.isSupported(value)) {
+            if (!onHeap) {
+                log.debug("result too large to cache, key:{}", key);
+            }
+            return onHeap;
+        }
+        if (!onHeap) {
+            return diskCacheStore.put(key, (CacheEntry) value);
+        }
+        CompletableFuture.runAsync(() -> diskCacheStore.put(key, (CacheEntry) value),
+                commonExecutor);
+        return true;
+    }
+
+    @Override
+    public Object get(String key) {
+        Object value = caffeineCacheManager.get(key);
+        if (Objects.nonNull(value) || !diskCacheStore.isEnabled()) {
+            return value;
+        }
+        CacheEntry cacheEntry = diskCacheStore.get(key);
+        if (Objects.nonNull(cacheEntry)
+                && CacheEntryCodec.estimateSize(cacheEntry) <= maxHeapEntryBytes) {
+            caffeineCacheManager.put(key, cacheEntry);
+        }
+        return cacheEntry;
+    }
+
+    @Override
+    public String generateCacheKey(String prefix, String body) {
+        return caffeineCacheManager.generateCacheKey(prefix, body);
+    }
+
+    @Override
+    public Boolean removeCache(String key) {
+        caffeineCacheManager.removeCache(key);
+        diskCacheStore.remove(key);
+        return true;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("heap.entries", caffeineCache.estimatedSize());
+        caffeineCache.policy().eviction().ifPresent(eviction -> eviction.weightedSize()
+                .ifPresent(bytes -> stats.put("heap.bytes", bytes)));
+        diskCacheStore.getStats().forEach((name, value) -> stats.put("disk." + name, value));
+        return stats;
+    }
+}
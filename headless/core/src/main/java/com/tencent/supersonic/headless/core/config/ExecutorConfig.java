@@ -23,15 +23,21 @@ public class ExecutorConfig {
     @Value("${s2.accelerator.duckDb.temp:/data1/duck/tmp/}")
     private String duckDbTemp;
 
-    @Value("${s2.accelerator.duckDb.maximumPoolSize:10}")
-    private Integer duckDbMaximumPoolSize;
-
-    @Value("${s2.accelerator.duckDb.MaxLifetime:3}")
-    private Integer duckDbMaxLifetime;
-
     @Value("${s2.accelerator.duckDb.memoryLimit:31}")
     private Integer memoryLimit;
 
     @Value("${s2.accelerator.duckDb.threads:32}")
     private Integer threads;
+
+    @Value("${s2.accelerator.duckDb.hotThreshold:10}")
+    private Integer hotThreshold;
+
+    @Value("${s2.accelerator.duckDb.maxMaterializations:200}")
+    private Integer maxMaterializations;
+
+    @Value("${s2.accelerator.duckDb.maxRows:100000}")
+    private Integer materializationMaxRows;
+
+    @Value("${s2.accelerator.duckDb.idleMinutes:1440}")
+    private Integer materializationIdleMinutes;
 }
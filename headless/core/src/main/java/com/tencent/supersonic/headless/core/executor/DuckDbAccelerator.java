@@ -0,0 +1,532 @@
+package com.tencent.supersonic.headless.core.executor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tencent.supersonic.common.jsqlparser.SqlSelectHelper;
+import com.tencent.supersonic.common.pojo.DateConf;
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.common.pojo.enums.DatePeriodEnum;
+import com.tencent.supersonic.common.util.ContextUtils;
+import com.tencent.supersonic.common.util.DateUtils;
+import com.tencent.supersonic.common.util.MD5Util;
+import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import com.tencent.supersonic.headless.core.config.ExecutorConfig;
+import com.tencent.supersonic.headless.core.pojo.DuckDbSource;
+import com.tencent.supersonic.headless.core.pojo.Materialization;
+import com.tencent.supersonic.headless.core.pojo.QueryStatement;
+import com.tencent.supersonic.headless.core.pojo.StructQuery;
+import com.tencent.supersonic.headless.core.utils.JdbcDuckDbUtils;
+import com.tencent.supersonic.headless.core.utils.SqlUtils;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.Select;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps hot struct queries materialized in the embedded duckDb, partitioned by day. Queries that
+ * only differ in their date range share one template, which becomes hot after being executed
+ * {@code hotThreshold} times. The template is loaded into duckDb for the union of the requested
+ * ranges on the next reload, and every query whose range lies within the loaded days is then
+ * answered locally by filtering the materialization, until it is idle for {@code idleMinutes}.
+ * Exact repeats of a query are left to the query cache, so queries without a day range are never
+ * materialized. Materializations whose days all lie in the past are refreshed at most once a day,
+ * all others on every reload.
+ */
+@Slf4j
+public class DuckDbAccelerator extends AbstractAccelerator {
+
+    public static final String MATERIALIZATION_DB = "s2_mv";
+    private static final String STAGING_SUFFIX = "_staging";
+    private static final String START_PLACEHOLDER = "${start}";
+    private static final String END_PLACEHOLDER = "${end}";
+    private static final long SEALED_REFRESH_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final Map<String, Materialization> materializations = new ConcurrentHashMap<>();
+    /** templates of the materializations, keeping the day range to load on the next refresh */
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private final Cache<String, Template> candidates =
+            Caffeine.newBuilder().maximumSize(10000).expireAfterAccess(1, TimeUnit.DAYS).build();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshFailCount = new AtomicLong();
+
+    @Override
+    public boolean reload() {
+        if (!isEnabled()) {
+            return false;
+        }
+        ExecutorConfig executorConfig = ContextUtils.getBean(ExecutorConfig.class);
+        long now = System.currentTimeMillis();
+        evictIdle(executorConfig, now);
+        promoteHotCandidates(executorConfig, now);
+        for (Materialization materialization : materializations.values()) {
+            if (needRefresh(materialization, now)) {
+                refresh(materialization, executorConfig);
+            }
+        }
+        compileMaterializations(materializations.values().stream()
+                .filter(m -> m.getRefreshTime() > 0).collect(Collectors.toList()));
+        log.info("duckDb accelerator stats:{}", getStats());
+        return true;
+    }
+
+    /** counts a hit or a miss of the query, a miss also makes its template hotter */
+    @Override
+    public boolean check(QueryStatement queryStatement) {
+        if (!isEnabled()) {
+            return false;
+        }
+        Template template = Template.of(queryStatement);
+        if (Objects.isNull(template)) {
+            return false;
+        }
+        Materialization materialization = find(template);
+        if (Objects.nonNull(materialization)) {
+            materialization.setAccessTime(System.currentTimeMillis());
+            return true;
+        }
+        missCount.incrementAndGet();
+        Template promoted = templates.get(template.key);
+        if (Objects.nonNull(promoted)) {
+            promoted.widen(template.start, template.end);
+        } else {
+            candidates.get(template.key, k -> template).hit(template.start, template.end);
+        }
+        return false;
+    }
+
+    @Override
+    public SemanticQueryResp query(QueryStatement queryStatement) {
+        Template template = Template.of(queryStatement);
+        Materialization materialization = Objects.isNull(template) ? null : find(template);
+        if (Objects.isNull(materialization)) {
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+        SemanticQueryResp queryResp = new SemanticQueryResp();
+        try {
+            String sql =
+                    String.format("SELECT * FROM %s WHERE \"%s\" >= ? AND \"%s\" <= ? LIMIT %s",
+                            materialization.getName(), materialization.getPartitionName(),
+                            materialization.getPartitionName(), template.limit);
+            // duckDb keeps the insertion order on filtered scans, so the rows stay in query order
+            getJdbcTemplate().query(sql, rs -> {
+                List<QueryColumn> queryColumns = new ArrayList<>();
+                for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                    queryColumns.add(new QueryColumn(rs.getMetaData().getColumnLabel(i),
+                            rs.getMetaData().getColumnTypeName(i)));
+                }
+                List<Map<String, Object>> resultList = new ArrayList<>();
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 0; i < queryColumns.size(); i++) {
+                        row.put(queryColumns.get(i).getBizName(), rs.getObject(i + 1));
+                    }
+                    resultList.add(row);
+                }
+                queryResp.setColumns(queryColumns);
+                queryResp.setResultList(resultList);
+                return queryResp;
+            }, template.start, template.end);
+            queryResp.setSql(StringUtils.normalizeSpace(queryStatement.getSql()));
+            hitCount.incrementAndGet();
+            return queryResp;
+        } catch (Exception e) {
+            log.warn("query materialization {} failed, fall back to source",
+                    materialization.getName(), e);
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("materializations", (long) materializations.size());
+        stats.put("hit", hitCount.get());
+        stats.put("miss", missCount.get());
+        stats.put("fallback", fallbackCount.get());
+        stats.put("refresh", refreshCount.get());
+        stats.put("refreshFail", refreshFailCount.get());
+        return stats;
+    }
+
+    /** the materialization of the template if it has loaded every day of the query range */
+    private Materialization find(Template template) {
+        return match(template.materializationName(), Collections.singletonList(template.dateField),
+                Collections.singletonList(ImmutablePair.of(template.start, template.end)));
+    }
+
+    private void promoteHotCandidates(ExecutorConfig executorConfig, long now) {
+        List<Map.Entry<String, Template>> hotCandidates = candidates.asMap().entrySet().stream()
+                .filter(e -> e.getValue().hits.get() >= executorConfig.getHotThreshold())
+                .sorted((a, b) -> Long.compare(b.getValue().hits.get(), a.getValue().hits.get()))
+                .collect(Collectors.toList());
+        for (Map.Entry<String, Template> entry : hotCandidates) {
+            if (materializations.size() >= executorConfig.getMaxMaterializations()) {
+                break;
+            }
+            candidates.invalidate(entry.getKey());
+            templates.put(entry.getKey(), entry.getValue());
+            materializations.computeIfAbsent(entry.getKey(),
+                    key -> entry.getValue().toMaterialization(now));
+        }
+    }
+
+    private void evictIdle(ExecutorConfig executorConfig, long now) {
+        long idleMillis = TimeUnit.MINUTES.toMillis(executorConfig.getMaterializationIdleMinutes());
+        materializations.values().removeIf(materialization -> {
+            if (now - materialization.getAccessTime() <= idleMillis) {
+                return false;
+            }
+            remove(materialization);
+            return true;
+        });
+    }
+
+    private boolean needRefresh(Materialization materialization, long now) {
+        if (materialization.getRefreshTime() <= 0
+                || CollectionUtils.isEmpty(materialization.getPartitions())) {
+            return true;
+        }
+        Template template = templates.get(getKey(materialization));
+        List<String> partitions = materialization.getPartitions();
+        if (Objects.nonNull(template)
+                && !template.within(partitions.get(0), partitions.get(partitions.size() - 1))) {
+            return true;
+        }
+        if (isSealed(materialization)) {
+            return now - materialization.getRefreshTime() >= SEALED_REFRESH_MILLIS;
+        }
+        return true;
+    }
+
+    /** a materialization whose days all lie before today no longer changes */
+    private boolean isSealed(Materialization materialization) {
+        List<String> partitions = materialization.getPartitions();
+        return LocalDate.parse(partitions.get(partitions.size() - 1)).isBefore(LocalDate.now());
+    }
+
+    private void refresh(Materialization materialization, ExecutorConfig executorConfig) {
+        Template template = templates.get(getKey(materialization));
+        if (Objects.isNull(template)) {
+            return;
+        }
+        String[] range = template.range();
+        try {
+            SqlUtils sqlUtils =
+                    ContextUtils.getBean(SqlUtils.class).init(materialization.getDatabase());
+            // the wider range may need more rows than the queries asked for
+            long rowLimit = executorConfig.getMaterializationMaxRows() + 1L;
+            String sql = liftLimit(template.toSql(range[0], range[1]), rowLimit);
+            if (Objects.isNull(sql)) {
+                sql = template.toSql(range[0], range[1]);
+                rowLimit = template.limit;
+            }
+            SemanticQueryResp sourceResp = new SemanticQueryResp();
+            sqlUtils.queryInternal(sql, sourceResp);
+            String reason = checkMaterializable(template, sourceResp, executorConfig, rowLimit);
+            if (Objects.nonNull(reason)) {
+                log.info("skip materialization {}, {}", materialization.getName(), reason);
+                materializations.remove(getKey(materialization));
+                remove(materialization);
+                return;
+            }
+            load(materialization, sourceResp);
+            materialization.setColumns(sourceResp.getColumns().stream().map(QueryColumn::getBizName)
+                    .collect(Collectors.toList()));
+            materialization
+                    .setPartitions(DateUtils.getDateList(range[0], range[1], DatePeriodEnum.DAY));
+            materialization.setRefreshTime(System.currentTimeMillis());
+            refreshCount.incrementAndGet();
+        } catch (Exception e) {
+            refreshFailCount.incrementAndGet();
+            log.warn("refresh materialization {} failed", materialization.getName(), e);
+        }
+    }
+
+    /**
+     * a result can answer the sub ranges of the template only if it is complete and keeps one day
+     * per row in the date column, returns why it cannot otherwise
+     */
+    private String checkMaterializable(Template template, SemanticQueryResp sourceResp,
+            ExecutorConfig executorConfig, long rowLimit) {
+        List<Map<String, Object>> rows = sourceResp.getResultList();
+        if (rows.size() > executorConfig.getMaterializationMaxRows()) {
+            return String.format("%s rows exceed the limit", rows.size());
+        }
+        if (rows.size() >= rowLimit) {
+            return String.format("%s rows may be truncated by the query limit", rows.size());
+        }
+        if (sourceResp.getColumns().stream()
+                .noneMatch(c -> template.dateField.equals(c.getBizName()))) {
+            return String.format("date field %s is not selected", template.dateField);
+        }
+        for (Map<String, Object> row : rows) {
+            if (!isDay(row.get(template.dateField))) {
+                return String.format("date field %s has no day values", template.dateField);
+            }
+        }
+        return null;
+    }
+
+    /** loads the rows into a staging table first and swaps it in within one transaction */
+    private void load(Materialization materialization, SemanticQueryResp sourceResp)
+            throws Exception {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        String table = materialization.getName();
+        String staging = table + STAGING_SUFFIX;
+        List<QueryColumn> columns = sourceResp.getColumns();
+        List<Map<String, Object>> rows = sourceResp.getResultList();
+        List<String> columnTypes = new ArrayList<>();
+        for (QueryColumn column : columns) {
+            columnTypes.add(getDuckDbType(column.getBizName(), rows));
+        }
+
+        JdbcDuckDbUtils.createDatabase(ContextUtils.getBean(DuckDbSource.class),
+                MATERIALIZATION_DB);
+        List<String> columnDefinitions = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            columnDefinitions.add(
+                    String.format("\"%s\" %s", columns.get(i).getBizName(), columnTypes.get(i)));
+        }
+        jdbcTemplate.execute(String.format("CREATE OR REPLACE TABLE %s (%s)", staging,
+                String.join(",", columnDefinitions)));
+        List<Object[]> batchArgs = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Object[] args = new Object[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                Object value = row.get(columns.get(i).getBizName());
+                args[i] = "VARCHAR".equals(columnTypes.get(i)) && Objects.nonNull(value)
+                        ? value.toString()
+                        : value;
+            }
+            batchArgs.add(args);
+        }
+        String placeholders = String.join(",", Collections.nCopies(columns.size(), "?"));
+        jdbcTemplate.batchUpdate(String.format("INSERT INTO %s VALUES (%s)", staging, placeholders),
+                batchArgs);
+        jdbcTemplate.execute((Connection connection) -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(String.format("DROP TABLE IF EXISTS %s", table));
+                statement.execute(String.format("ALTER TABLE %s RENAME TO %s", staging,
+                        table.substring(table.indexOf('.') + 1)));
+                connection.commit();
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    private String getDuckDbType(String column, List<Map<String, Object>> rows) {
+        String type = null;
+        int scale = 0;
+        for (Map<String, Object> row : rows) {
+            Object value = row.get(column);
+            if (Objects.isNull(value)) {
+                continue;
+            }
+            String valueType;
+            if (value instanceof Long || value instanceof Integer || value instanceof Short
+                    || value instanceof Byte) {
+                valueType = "BIGINT";
+            } else if (value instanceof Double || value instanceof Float) {
+                valueType = "DOUBLE";
+            } else if (value instanceof BigDecimal) {
+                valueType = "DECIMAL";
+                scale = Math.max(scale, ((BigDecimal) value).scale());
+            } else if (value instanceof Boolean) {
+                valueType = "BOOLEAN";
+            } else {
+                valueType = "VARCHAR";
+            }
+            if (type == null) {
+                type = valueType;
+            } else if (!type.equals(valueType)) {
+                return "VARCHAR";
+            }
+        }
+        if (type == null) {
+            return "VARCHAR";
+        }
+        return "DECIMAL".equals(type) ? String.format("DECIMAL(38,%s)", Math.min(scale, 18)) : type;
+    }
+
+    private void remove(Materialization materialization) {
+        templates.remove(getKey(materialization));
+        try {
+            getJdbcTemplate()
+                    .execute(String.format("DROP TABLE IF EXISTS %s", materialization.getName()));
+        } catch (Exception e) {
+            log.warn("drop materialization {} failed", materialization.getName(), e);
+        }
+    }
+
+    private boolean isEnabled() {
+        ExecutorConfig executorConfig = ContextUtils.getBean(ExecutorConfig.class);
+        return Boolean.TRUE.equals(executorConfig.getDuckEnable());
+    }
+
+    private JdbcTemplate getJdbcTemplate() {
+        return ContextUtils.getBean(DuckDbSource.class).getDuckDbJdbcTemplate();
+    }
+
+    private String getKey(Materialization materialization) {
+        return getKey(materialization.getDatabase(), materialization.getSql());
+    }
+
+    private static String getKey(DatabaseResp database, String sql) {
+        return String.format("%s_%s", database.getId(),
+                MD5Util.getMD5(StringUtils.normalizeSpace(sql), false, MD5Util.BIT32));
+    }
+
+    /** replaces the limit of the sql, returns null if the sql has none or cannot be parsed */
+    private static String liftLimit(String sql, long rowLimit) {
+        try {
+            Select select = SqlSelectHelper.getSelect(sql);
+            if (Objects.isNull(select) || Objects.isNull(select.getLimit())) {
+                return null;
+            }
+            select.setLimit(new Limit().withRowCount(new LongValue(rowLimit)));
+            return select.toString();
+        } catch (Exception e) {
+            log.debug("keep the limit of sql:{}", sql, e);
+            return null;
+        }
+    }
+
+    private static boolean isDay(Object value) {
+        if (!(value instanceof String)) {
+            return false;
+        }
+        try {
+            LocalDate.parse((String) value);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A struct query with its day range cut out of the sql. The range literals are replaced by
+     * placeholders, so queries over different ranges share the template and its materialization.
+     */
+    private static class Template {
+
+        private final AtomicLong hits = new AtomicLong();
+        private final String key;
+        private final Long dataSetId;
+        private final String sql;
+        private final DatabaseResp database;
+        private final String dateField;
+        private final long limit;
+        private String start;
+        private String end;
+
+        private Template(QueryStatement queryStatement, String sql, DateConf dateConf, long limit) {
+            this.dataSetId = queryStatement.getDataSetId();
+            this.sql = sql;
+            this.database = queryStatement.getOntology().getDatabase();
+            this.key = getKey(database, sql);
+            this.dateField = dateConf.getDateField();
+            this.limit = limit;
+            this.start = dateConf.getStartDate();
+            this.end = dateConf.getEndDate();
+        }
+
+        /** the template of the query, or null if it has no day range to cut out */
+        static Template of(QueryStatement queryStatement) {
+            if (StringUtils.isBlank(queryStatement.getSql())
+                    || Objects.isNull(queryStatement.getStructQuery())
+                    || Objects.isNull(queryStatement.getOntology())
+                    || Objects.isNull(queryStatement.getOntology().getDatabase())) {
+                return null;
+            }
+            StructQuery structQuery = queryStatement.getStructQuery();
+            DateConf dateConf = structQuery.getDateInfo();
+            if (Objects.isNull(dateConf) || !DatePeriodEnum.DAY.equals(dateConf.getPeriod())
+                    || StringUtils.isBlank(dateConf.getDateField())
+                    || !isDay(dateConf.getStartDate()) || !isDay(dateConf.getEndDate())
+                    || dateConf.getStartDate().compareTo(dateConf.getEndDate()) >= 0
+                    || Objects.isNull(structQuery.getLimit())
+                    || (Objects.nonNull(structQuery.getOffset()) && structQuery.getOffset() > 0)) {
+                return null;
+            }
+            String startLiteral = quote(dateConf.getStartDate());
+            String endLiteral = quote(dateConf.getEndDate());
+            String sql = queryStatement.getSql();
+            if (!sql.contains(startLiteral) || !sql.contains(endLiteral)) {
+                return null;
+            }
+            sql = sql.replace(startLiteral, quote(START_PLACEHOLDER)).replace(endLiteral,
+                    quote(END_PLACEHOLDER));
+            return new Template(queryStatement, sql, dateConf, structQuery.getLimit());
+        }
+
+        synchronized void hit(String start, String end) {
+            hits.incrementAndGet();
+            widen(start, end);
+        }
+
+        synchronized void widen(String start, String end) {
+            this.start = start.compareTo(this.start) < 0 ? start : this.start;
+            this.end = end.compareTo(this.end) > 0 ? end : this.end;
+        }
+
+        synchronized boolean within(String start, String end) {
+            return start.compareTo(this.start) <= 0 && end.compareTo(this.end) >= 0;
+        }
+
+        synchronized String[] range() {
+            return new String[] {start, end};
+        }
+
+        String materializationName() {
+            return MATERIALIZATION_DB + ".mv_" + key;
+        }
+
+        String toSql(String start, String end) {
+            return sql.replace(quote(START_PLACEHOLDER), quote(start))
+                    .replace(quote(END_PLACEHOLDER), quote(end));
+        }
+
+        Materialization toMaterialization(long now) {
+            return Materialization.builder().name(materializationName()).dataSetId(dataSetId)
+                    .sql(sql).database(database).columns(new ArrayList<>()).partitionName(dateField)
+                    .partitions(new ArrayList<>()).isPartitioned(true).accessTime(now).build();
+        }
+
+        private static String quote(String value) {
+            return "'" + value + "'";
+        }
+    }
+}
@@ -1,15 +1,18 @@
 package com.tencent.supersonic.headless.core.executor;
 
+import com.tencent.supersonic.common.pojo.QueryColumn;
 import com.tencent.supersonic.common.util.ContextUtils;
 import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
 import com.tencent.supersonic.headless.core.pojo.QueryStatement;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
 import com.tencent.supersonic.headless.core.utils.ComponentFactory;
 import com.tencent.supersonic.headless.core.utils.SqlUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Objects;
 
 @Component("JdbcExecutor")
@@ -42,7 +45,8 @@ public class JdbcExecutor implements QueryExecutor {
         SemanticQueryResp queryResultWithColumns = new SemanticQueryResp();
         try {
             SqlUtils sqlUtil = sqlUtils.init(database);
-            sqlUtil.queryInternal(queryStatement.getSql(), queryResultWithColumns);
+            sqlUtil.queryInternal(queryStatement.getSql(), queryResultWithColumns,
+                    sqlUtil.getResultLimit());
             queryResultWithColumns.setSql(sql);
         } catch (Exception e) {
             log.error("queryInternal with error ", e);
@@ -50,4 +54,47 @@ public class JdbcExecutor implements QueryExecutor {
         }
         return queryResultWithColumns;
     }
+
+    @Override
+    public SemanticQueryResp execute(QueryStatement queryStatement, RowBatchHandler handler) {
+        // accelerated results are small and already materialized
+        for (QueryAccelerator queryAccelerator : ComponentFactory.getQueryAccelerators()) {
+            if (queryAccelerator.check(queryStatement)) {
+                SemanticQueryResp semanticQueryResp = queryAccelerator.query(queryStatement);
+                if (Objects.nonNull(semanticQueryResp)
+                        && !semanticQueryResp.getResultList().isEmpty()) {
+                    log.info("query by Accelerator {}",
+                            queryAccelerator.getClass().getSimpleName());
+                    QueryExecutor.emitBatches(semanticQueryResp, handler);
+                    return semanticQueryResp;
+                }
+            }
+        }
+
+        SqlUtils sqlUtils = ContextUtils.getBean(SqlUtils.class);
+        String sql = StringUtils.normalizeSpace(queryStatement.getSql());
+        log.info("executing SQL in streaming mode: {}", sql);
+        DatabaseResp database = queryStatement.getOntology().getDatabase();
+        SemanticQueryResp queryResultWithColumns = new SemanticQueryResp();
+        try {
+            SqlUtils sqlUtil = sqlUtils.init(database);
+            sqlUtil.queryStream(queryStatement.getSql(), new RowBatchHandler() {
+                @Override
+                public void onColumns(List<QueryColumn> columns) {
+                    queryResultWithColumns.setColumns(columns);
+                    handler.onColumns(columns);
+                }
+
+                @Override
+                public void onBatch(RowBatch rowBatch) {
+                    handler.onBatch(rowBatch);
+                }
+            });
+            queryResultWithColumns.setSql(sql);
+        } catch (Exception e) {
+            log.error("queryStream with error ", e);
+            queryResultWithColumns.setErrorMsg(e.getMessage());
+        }
+        return queryResultWithColumns;
+    }
 }
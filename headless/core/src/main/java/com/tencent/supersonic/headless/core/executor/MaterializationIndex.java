@@ -0,0 +1,266 @@
+package com.tencent.supersonic.headless.core.executor;
+
+import com.tencent.supersonic.headless.core.pojo.Materialization;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.springframework.util.CollectionUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable matching index over a set of materializations. Every materialization is compiled once
+ * into a column bitset and a partition set, and the partitions of all partitioned materializations
+ * go into one interval tree, so the materializations answering a query are found with a bitset
+ * subset test, a range lookup and a coverage test on the few overlapping ones. An index is never
+ * modified after it is built and can be shared by concurrent queries.
+ */
+public class MaterializationIndex {
+
+    public static final MaterializationIndex EMPTY =
+            MaterializationIndex.build(Collections.emptyList());
+    private static final String UNBOUNDED = "\uffff";
+
+    private final Map<String, Integer> columnIds;
+    private final Map<String, Integer> nameIds;
+    private final List<Materialization> materializations;
+    private final List<BitSet> columnBits;
+    private final List<Set<String>> partitionSets;
+    private final BitSet partitioned;
+    private final PartitionTree partitionTree;
+
+    private MaterializationIndex(Map<String, Integer> columnIds, Map<String, Integer> nameIds,
+            List<Materialization> materializations, List<BitSet> columnBits,
+            List<Set<String>> partitionSets, BitSet partitioned, PartitionTree partitionTree) {
+        this.columnIds = columnIds;
+        this.nameIds = nameIds;
+        this.materializations = materializations;
+        this.columnBits = columnBits;
+        this.partitionSets = partitionSets;
+        this.partitioned = partitioned;
+        this.partitionTree = partitionTree;
+    }
+
+    public static MaterializationIndex build(Collection<Materialization> materializations) {
+        Map<String, Integer> columnIds = new HashMap<>();
+        Map<String, Integer> nameIds = new HashMap<>();
+        List<Materialization> entries = new ArrayList<>(materializations);
+        List<BitSet> columnBits = new ArrayList<>(entries.size());
+        List<Set<String>> partitionSets = new ArrayList<>(entries.size());
+        BitSet partitioned = new BitSet(entries.size());
+        List<Partition> partitions = new ArrayList<>();
+        for (int id = 0; id < entries.size(); id++) {
+            Materialization materialization = entries.get(id);
+            if (materialization.getName() != null) {
+                nameIds.putIfAbsent(materialization.getName(), id);
+            }
+            BitSet bits = new BitSet();
+            if (!CollectionUtils.isEmpty(materialization.getColumns())) {
+                for (String column : materialization.getColumns()) {
+                    bits.set(columnIds.computeIfAbsent(column, c -> columnIds.size()));
+                }
+            }
+            columnBits.add(bits);
+            Set<String> partitionSet = new HashSet<>();
+            if (materialization.isPartitioned()
+                    && !CollectionUtils.isEmpty(materialization.getPartitions())) {
+                partitioned.set(id);
+                for (String partition : materialization.getPartitions()) {
+                    if (partition != null) {
+                        partitions.add(new Partition(partition, partition, id));
+                        partitionSet.add(partition);
+                    }
+                }
+            }
+            partitionSets.add(partitionSet);
+        }
+        return new MaterializationIndex(columnIds, nameIds, entries, columnBits, partitionSets,
+                partitioned, new PartitionTree(partitions));
+    }
+
+    public int size() {
+        return materializations.size();
+    }
+
+    /**
+     * Returns the materializations that contain all the fields and, when partitioned, have a
+     * partition for every day of each query time range. A range whose bounds are not days is only
+     * covered by a partition equal to both bounds.
+     */
+    public List<Materialization> candidates(Collection<String> fields,
+            List<ImmutablePair<String, String>> timeRanges) {
+        BitSet queryBits = new BitSet();
+        for (String field : fields) {
+            Integer columnId = columnIds.get(field);
+            if (columnId == null) {
+                return Collections.emptyList();
+            }
+            queryBits.set(columnId);
+        }
+        BitSet overlapping = null;
+        if (!CollectionUtils.isEmpty(timeRanges)) {
+            for (ImmutablePair<String, String> timeRange : timeRanges) {
+                BitSet ids = new BitSet(materializations.size());
+                String start = timeRange.left == null ? "" : timeRange.left;
+                String end = timeRange.right == null ? UNBOUNDED : timeRange.right;
+                partitionTree.overlap(start, end, ids);
+                if (overlapping == null) {
+                    overlapping = ids;
+                } else {
+                    overlapping.and(ids);
+                }
+            }
+        }
+        List<Materialization> candidates = new ArrayList<>();
+        BitSet missing = new BitSet();
+        for (int id = 0; id < materializations.size(); id++) {
+            if (partitioned.get(id) && (overlapping == null || !overlapping.get(id)
+                    || !covers(partitionSets.get(id), timeRanges))) {
+                continue;
+            }
+            missing.clear();
+            missing.or(queryBits);
+            missing.andNot(columnBits.get(id));
+            if (missing.isEmpty()) {
+                candidates.add(materializations.get(id));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the materialization of the name if it answers the fields and time ranges the way
+     * {@link #candidates} decides, or null.
+     */
+    public Materialization find(String name, Collection<String> fields,
+            List<ImmutablePair<String, String>> timeRanges) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            return null;
+        }
+        if (partitioned.get(id) && (CollectionUtils.isEmpty(timeRanges)
+                || !covers(partitionSets.get(id), timeRanges))) {
+            return null;
+        }
+        for (String field : fields) {
+            Integer columnId = columnIds.get(field);
+            if (columnId == null || !columnBits.get(id).get(columnId)) {
+                return null;
+            }
+        }
+        return materializations.get(id);
+    }
+
+    private static boolean covers(Set<String> partitions,
+            List<ImmutablePair<String, String>> timeRanges) {
+        for (ImmutablePair<String, String> timeRange : timeRanges) {
+            if (timeRange.left == null || timeRange.right == null) {
+                return false;
+            }
+            LocalDate start;
+            LocalDate end;
+            try {
+                start = LocalDate.parse(timeRange.left);
+                end = LocalDate.parse(timeRange.right);
+            } catch (DateTimeParseException e) {
+                if (!timeRange.left.equals(timeRange.right)
+                        || !partitions.contains(timeRange.left)) {
+                    return false;
+                }
+                continue;
+            }
+            if (ChronoUnit.DAYS.between(start, end) >= partitions.size()) {
+                return false;
+            }
+            for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                if (!partitions.contains(day.toString())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static class Partition {
+
+        private final String start;
+        private final String end;
+        private final int id;
+
+        Partition(String start, String end, int id) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Static interval tree laid out over the partitions sorted by start, each node keeps the
+     * largest end of its subtree. Partition values are compared as strings, as they are in the
+     * rewrite check.
+     */
+    private static class PartitionTree {
+
+        private final Partition[] partitions;
+        private final String[] maxEnds;
+
+        PartitionTree(List<Partition> partitions) {
+            this.partitions = partitions.stream().sorted(Comparator.comparing(p -> p.start))
+                    .toArray(Partition[]::new);
+            this.maxEnds = new String[this.partitions.length];
+            buildMaxEnds(0, this.partitions.length - 1);
+        }
+
+        private String buildMaxEnds(int low, int high) {
+            if (low > high) {
+                return null;
+            }
+            int mid = (low + high) >>> 1;
+            String maxEnd = partitions[mid].end;
+            maxEnd = max(maxEnd, buildMaxEnds(low, mid - 1));
+            maxEnd = max(maxEnd, buildMaxEnds(mid + 1, high));
+            maxEnds[mid] = maxEnd;
+            return maxEnd;
+        }
+
+        void overlap(String start, String end, BitSet ids) {
+            overlap(0, partitions.length - 1, start, end, ids);
+        }
+
+        private void overlap(int low, int high, String start, String end, BitSet ids) {
+            if (low > high) {
+                return;
+            }
+            int mid = (low + high) >>> 1;
+            if (maxEnds[mid].compareTo(start) < 0) {
+                return;
+            }
+            overlap(low, mid - 1, start, end, ids);
+            Partition partition = partitions[mid];
+            if (partition.start.compareTo(end) > 0) {
+                return;
+            }
+            if (partition.end.compareTo(start) >= 0) {
+                ids.set(partition.id);
+            }
+            overlap(mid + 1, high, start, end, ids);
+        }
+
+        private static String max(String a, String b) {
+            if (b == null) {
+                return a;
+            }
+            return a.compareTo(b) >= 0 ? a : b;
+        }
+    }
+}
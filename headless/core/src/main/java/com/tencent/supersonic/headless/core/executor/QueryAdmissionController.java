@@ -0,0 +1,169 @@
+package com.tencent.supersonic.headless.core.executor;
+
+import com.tencent.supersonic.headless.api.pojo.ConnectionPoolConfig;
+import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the queries running against each database. A query waits for a permit at most the queue
+ * timeout and is rejected at once when too many queries are already waiting, so a slow warehouse
+ * fails fast instead of piling up requests on its connection pool.
+ */
+@Component
+@Slf4j
+public class QueryAdmissionController {
+
+    @Value("${s2.source.admission.enable:true}")
+    private Boolean enable;
+
+    @Value("${source.max-active:10}")
+    private int defaultMaxConcurrent;
+
+    @Value("${s2.source.admission.max-queued:50}")
+    private int defaultMaxQueued;
+
+    @Value("${s2.source.admission.queue-timeout:30000}")
+    private long defaultQueueTimeout;
+
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+
+    public Permit acquire(DatabaseResp database) {
+        if (!Boolean.TRUE.equals(enable)) {
+            return () -> {
+            };
+        }
+        Gate gate = getGate(database);
+        if (gate.queued.incrementAndGet() > gate.maxQueued) {
+            gate.queued.decrementAndGet();
+            gate.rejected.incrementAndGet();
+            throw new RuntimeException(String.format(
+                    "too many queries waiting for database %s, please try again later",
+                    database.getName()));
+        }
+        long start = System.currentTimeMillis();
+        boolean acquired;
+        try {
+            acquired = gate.semaphore.tryAcquire(gate.queueTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(
+                    "interrupted while waiting for database " + database.getName());
+        } finally {
+            gate.queued.decrementAndGet();
+        }
+        long waitMillis = System.currentTimeMillis() - start;
+        gate.waitMillis.addAndGet(waitMillis);
+        gate.maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+        if (!acquired) {
+            gate.timeout.incrementAndGet();
+            throw new RuntimeException(String.format(
+                    "timed out after %sms waiting for database %s, please try again later",
+                    waitMillis, database.getName()));
+        }
+        gate.admitted.incrementAndGet();
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                gate.semaphore.release();
+            }
+        };
+    }
+
+    /** drops the gate of the database, e.g. after the database was changed or deleted */
+    public void remove(DatabaseResp database) {
+        gates.remove(getGateKey(database));
+    }
+
+    /** per database: running and queued queries, admitted, rejected and timed out counts */
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> stats = new HashMap<>();
+        gates.forEach((key, gate) -> {
+            Map<String, Long> gateStats = new HashMap<>();
+            gateStats.put("running",
+                    (long) (gate.maxConcurrent - gate.semaphore.availablePermits()));
+            gateStats.put("queued", (long) gate.queued.get());
+            gateStats.put("admitted", gate.admitted.get());
+            gateStats.put("rejected", gate.rejected.get());
+            gateStats.put("timeout", gate.timeout.get());
+            gateStats.put("maxWaitMillis", gate.maxWaitMillis.get());
+            long waited = gate.admitted.get() + gate.timeout.get();
+            gateStats.put("avgWaitMillis", waited == 0 ? 0L : gate.waitMillis.get() / waited);
+            stats.put(key, gateStats);
+        });
+        return stats;
+    }
+
+    /** a gate is rebuilt when the settings of its database change */
+    private Gate getGate(DatabaseResp database) {
+        ConnectionPoolConfig poolConfig = database.getPoolConfig();
+        int maxConcurrent = defaultMaxConcurrent;
+        int maxQueued = defaultMaxQueued;
+        long queueTimeout = defaultQueueTimeout;
+        if (Objects.nonNull(poolConfig)) {
+            if (Objects.nonNull(poolConfig.getMaxConcurrentQueries())) {
+                maxConcurrent = poolConfig.getMaxConcurrentQueries();
+            } else if (Objects.nonNull(poolConfig.getMaxActive())) {
+                maxConcurrent = poolConfig.getMaxActive();
+            }
+            if (Objects.nonNull(poolConfig.getMaxQueuedQueries())) {
+                maxQueued = poolConfig.getMaxQueuedQueries();
+            }
+            if (Objects.nonNull(poolConfig.getQueueTimeout())) {
+                queueTimeout = poolConfig.getQueueTimeout();
+            }
+        }
+        Gate gate = new Gate(Math.max(maxConcurrent, 1), Math.max(maxQueued, 0), queueTimeout);
+        return gates.compute(getGateKey(database),
+                (key, current) -> Objects.nonNull(current) && current.sameSettings(gate) ? current
+                        : gate);
+    }
+
+    private static String getGateKey(DatabaseResp database) {
+        return database.getName() + "@" + database.getUrl();
+    }
+
+    /** released once the query is done, releasing it again has no effect */
+    public interface Permit extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private static class Gate {
+
+        private final int maxConcurrent;
+        private final int maxQueued;
+        private final long queueTimeout;
+        private final Semaphore semaphore;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong admitted = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong timeout = new AtomicLong();
+        private final AtomicLong waitMillis = new AtomicLong();
+        private final AtomicLong maxWaitMillis = new AtomicLong();
+
+        Gate(int maxConcurrent, int maxQueued, long queueTimeout) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.queueTimeout = queueTimeout;
+            this.semaphore = new Semaphore(maxConcurrent, true);
+        }
+
+        boolean sameSettings(Gate other) {
+            return maxConcurrent == other.maxConcurrent && maxQueued == other.maxQueued
+                    && queueTimeout == other.queueTimeout;
+        }
+    }
+}
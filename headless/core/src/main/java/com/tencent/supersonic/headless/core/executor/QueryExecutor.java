@@ -1,12 +1,59 @@
 package com.tencent.supersonic.headless.core.executor;
 
+import com.tencent.supersonic.common.pojo.QueryColumn;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
 import com.tencent.supersonic.headless.core.pojo.QueryStatement;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /** QueryExecutor submits SQL to the database engine and performs acceleration if necessary. */
 public interface QueryExecutor {
 
+    int DEFAULT_BATCH_SIZE = 500;
+
     boolean accept(QueryStatement queryStatement);
 
     SemanticQueryResp execute(QueryStatement queryStatement);
+
+    /**
+     * Executes the query and emits its rows to the handler in bounded batches. The returned
+     * response carries the columns, sql and error message but no result rows. Executors that cannot
+     * stream fall back to executing the query and slicing the materialized result.
+     */
+    default SemanticQueryResp execute(QueryStatement queryStatement, RowBatchHandler handler) {
+        SemanticQueryResp queryResp = execute(queryStatement);
+        emitBatches(queryResp, handler);
+        return queryResp;
+    }
+
+    /** slices a materialized result into batches and clears its rows */
+    static void emitBatches(SemanticQueryResp queryResp, RowBatchHandler handler) {
+        // a failed query carries an error message but neither columns nor rows
+        List<QueryColumn> columns =
+                queryResp.getColumns() == null ? new ArrayList<>() : queryResp.getColumns();
+        handler.onColumns(columns);
+        if (columns.isEmpty() || queryResp.getResultList() == null) {
+            queryResp.setResultList(new ArrayList<>());
+            return;
+        }
+        RowBatch rowBatch = new RowBatch(columns, DEFAULT_BATCH_SIZE);
+        Object[] row = new Object[columns.size()];
+        for (Map<String, Object> line : queryResp.getResultList()) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = line.get(columns.get(i).getBizName());
+            }
+            rowBatch.addRow(row);
+            if (rowBatch.isFull()) {
+                handler.onBatch(rowBatch);
+                rowBatch = new RowBatch(columns, DEFAULT_BATCH_SIZE);
+            }
+        }
+        if (!rowBatch.isEmpty()) {
+            handler.onBatch(rowBatch);
+        }
+        queryResp.setResultList(new ArrayList<>());
+    }
 }
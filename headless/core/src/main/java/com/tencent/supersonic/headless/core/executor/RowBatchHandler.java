@@ -0,0 +1,18 @@
+package com.tencent.supersonic.headless.core.executor;
+
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
+
+import java.util.List;
+
+/**
+ * RowBatchHandler consumes a query result as a sequence of bounded {@link RowBatch}es, so that
+ * large results can flow to the caller without being buffered as a whole.
+ */
+public interface RowBatchHandler {
+
+    /** called once before the first batch, even if the result is empty */
+    default void onColumns(List<QueryColumn> columns) {}
+
+    void onBatch(RowBatch rowBatch);
+}
@@ -5,14 +5,17 @@ import javax.sql.DataSource;
 import com.tencent.supersonic.common.pojo.QueryColumn;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
 import com.tencent.supersonic.headless.core.config.ExecutorConfig;
-import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
+import org.duckdb.DuckDBConnection;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
 import org.springframework.stereotype.Component;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -26,31 +29,39 @@ public class DuckDbSource {
 
     protected JdbcTemplate duckDbJdbcTemplate;
 
-    protected HikariConfig hikariConfig;
-
     private final ExecutorConfig executorConfig;
 
     public DuckDbSource(ExecutorConfig executorConfig) {
         this.executorConfig = executorConfig;
         if (executorConfig.getDuckEnable()) {
-            hikariConfig = getHikariConfig();
-            duckDbDataSource = getDuckDbDataSource(hikariConfig);
+            duckDbDataSource = getDuckDbDataSource();
             duckDbJdbcTemplate = getDuckDbTemplate(duckDbDataSource);
         }
     }
 
-    public HikariConfig getHikariConfig() {
-        HikariConfig config = new HikariConfig();
-        config.setDriverClassName("org.duckdb.DuckDBDriver");
-        config.setMaximumPoolSize(executorConfig.getDuckDbMaximumPoolSize());
-        config.setMaxLifetime(executorConfig.getDuckDbMaxLifetime());
-        config.setJdbcUrl("jdbc:duckdb:");
-        return config;
-    }
+    /**
+     * every jdbc connection to "jdbc:duckdb:" opens a separate in-memory database, so connections
+     * are duplicated from one root connection to share the same database
+     */
+    public DataSource getDuckDbDataSource() {
+        try {
+            Class.forName("org.duckdb.DuckDBDriver");
+            DuckDBConnection root = (DuckDBConnection) DriverManager.getConnection("jdbc:duckdb:");
+            return new AbstractDataSource() {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    return root.duplicate();
+                }
 
-    public DataSource getDuckDbDataSource(HikariConfig config) {
-        HikariDataSource ds = new HikariDataSource(config);
-        return ds;
+                @Override
+                public Connection getConnection(String username, String password)
+                        throws SQLException {
+                    return root.duplicate();
+                }
+            };
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IllegalStateException("failed to open duckDb", e);
+        }
     }
 
     public JdbcTemplate getDuckDbTemplate(DataSource dataSource) {
@@ -1,12 +1,14 @@
 package com.tencent.supersonic.headless.core.pojo;
 
 import com.alibaba.druid.pool.DruidDataSource;
+import com.tencent.supersonic.headless.api.pojo.ConnectionPoolConfig;
 import com.tencent.supersonic.headless.api.pojo.enums.DataType;
 import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
 import com.tencent.supersonic.headless.core.utils.JdbcDataSourceUtils;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -15,6 +17,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Component
@@ -23,12 +27,13 @@ public class JdbcDataSource {
     private static final Object lockLock = new Object();
     private static volatile Map<String, DruidDataSource> dataSourceMap = new ConcurrentHashMap<>();
     private static volatile Map<String, Lock> dataSourceLockMap = new ConcurrentHashMap<>();
+    private static volatile Map<String, JdbcTemplate> jdbcTemplateMap = new ConcurrentHashMap<>();
 
     @Value("${source.lock-time:30}")
     @Getter
     protected Long lockTime;
 
-    @Value("${source.max-active:2}")
+    @Value("${source.max-active:10}")
     @Getter
     protected int maxActive;
 
@@ -92,6 +97,10 @@ public class JdbcDataSource {
     @Getter
     protected String validationQuery;
 
+    @Value("${source.query-timeout:0}")
+    @Getter
+    protected int queryTimeout;
+
     private Lock getDataSourceLock(String key) {
         if (dataSourceLockMap.containsKey(key)) {
             return dataSourceLockMap.get(key);
@@ -118,6 +127,7 @@ public class JdbcDataSource {
         }
 
         try {
+            jdbcTemplateMap.remove(key);
             DruidDataSource druidDataSource = dataSourceMap.remove(key);
             if (druidDataSource != null) {
                 druidDataSource.close();
@@ -129,6 +139,29 @@ public class JdbcDataSource {
         }
     }
 
+    /**
+     * Returns the shared jdbc template of the database, statements it creates are cancelled by the
+     * driver after the query timeout of the database. The template does not limit the rows, as it
+     * also serves dictionary tasks and downloads.
+     */
+    public JdbcTemplate getJdbcTemplate(DatabaseResp database, int fetchSize) {
+        DruidDataSource druidDataSource = getDataSource(database);
+        String key = getDataSourceKey(database);
+        JdbcTemplate jdbcTemplate = jdbcTemplateMap.get(key);
+        if (jdbcTemplate != null && jdbcTemplate.getDataSource() == druidDataSource) {
+            return jdbcTemplate;
+        }
+        jdbcTemplate = new JdbcTemplate(druidDataSource);
+        jdbcTemplate.setDatabaseProductName(database.getName());
+        jdbcTemplate.setFetchSize(fetchSize);
+        ConnectionPoolConfig poolConfig = database.getPoolConfig();
+        jdbcTemplate.setQueryTimeout(poolConfig != null && poolConfig.getQueryTimeout() != null
+                ? poolConfig.getQueryTimeout()
+                : queryTimeout);
+        jdbcTemplateMap.put(key, jdbcTemplate);
+        return jdbcTemplate;
+    }
+
     public DruidDataSource getDataSource(DatabaseResp database) throws RuntimeException {
 
         String name = database.getName();
@@ -183,10 +216,17 @@ public class JdbcDataSource {
                 druidDataSource.setPassword(password);
             }
 
+            ConnectionPoolConfig poolConfig = database.getPoolConfig();
             druidDataSource.setInitialSize(initialSize);
-            druidDataSource.setMinIdle(minIdle);
-            druidDataSource.setMaxActive(maxActive);
-            druidDataSource.setMaxWait(maxWait);
+            druidDataSource.setMinIdle(
+                    poolConfig != null && poolConfig.getMinIdle() != null ? poolConfig.getMinIdle()
+                            : minIdle);
+            druidDataSource.setMaxActive(poolConfig != null && poolConfig.getMaxActive() != null
+                    ? poolConfig.getMaxActive()
+                    : maxActive);
+            druidDataSource.setMaxWait(
+                    poolConfig != null && poolConfig.getMaxWait() != null ? poolConfig.getMaxWait()
+                            : maxWait);
             druidDataSource.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
             druidDataSource.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
             druidDataSource.setMaxEvictableIdleTimeMillis(maxEvictableIdleTimeMillis);
@@ -240,8 +280,22 @@ public class JdbcDataSource {
         return druidDataSource;
     }
 
+    /** databases with other pool settings get their own pool */
     private String getDataSourceKey(DatabaseResp database) {
+        ConnectionPoolConfig poolConfig = database.getPoolConfig();
         return JdbcDataSourceUtils.getKey(database.getName(), database.getUrl(),
-                database.getUsername(), database.passwordDecrypt(), "", false);
+                database.getUsername(), database.passwordDecrypt(), getPoolKey(poolConfig),
+                poolConfig != null);
+    }
+
+    /** the settings the pool and its jdbc template are built from */
+    static String getPoolKey(ConnectionPoolConfig poolConfig) {
+        if (poolConfig == null) {
+            return "";
+        }
+        return Stream
+                .of(poolConfig.getMaxActive(), poolConfig.getMinIdle(), poolConfig.getMaxWait(),
+                        poolConfig.getQueryTimeout())
+                .map(String::valueOf).collect(Collectors.joining(","));
     }
 }
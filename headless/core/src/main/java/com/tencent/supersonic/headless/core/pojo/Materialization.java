@@ -1,5 +1,6 @@
 package com.tencent.supersonic.headless.core.pojo;
 
+import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
 import lombok.Builder;
 import lombok.Data;
 
@@ -16,4 +17,9 @@ public class Materialization {
     private List<String> partitions;
     private boolean isPartitioned;
     private String partitionName;
+    /** the source sql whose result is materialized */
+    private String sql;
+    private DatabaseResp database;
+    private long refreshTime;
+    private long accessTime;
 }
@@ -32,6 +32,17 @@ public class Ontology {
                 .collect(Collectors.toList());
     }
 
+    /** a copy whose maps can be changed on their own, the schema items are shared */
+    public Ontology copy() {
+        Ontology ontology = new Ontology();
+        ontology.setDatabase(database);
+        ontology.setModelMap(new HashMap<>(modelMap));
+        ontology.setMetricMap(new HashMap<>(metricMap));
+        ontology.setDimensionMap(new HashMap<>(dimensionMap));
+        ontology.setJoinRelations(joinRelations);
+        return ontology;
+    }
+
     public EngineType getDatabaseType() {
         if (Objects.nonNull(database)) {
             return EngineType.fromString(database.getType().toUpperCase());
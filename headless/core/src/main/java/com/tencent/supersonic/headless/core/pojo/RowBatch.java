@@ -0,0 +1,79 @@
+package com.tencent.supersonic.headless.core.pojo;
+
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, column-major slice of a query result. Values of the i-th column are kept in
+ * {@code values[i]}, so a batch is filled row by row but can be consumed column by column.
+ */
+public class RowBatch {
+
+    @Getter
+    private final List<QueryColumn> columns;
+    private final Object[][] values;
+    @Getter
+    private int rowCount;
+
+    public RowBatch(List<QueryColumn> columns, int capacity) {
+        this.columns = columns;
+        this.values = new Object[columns.size()][capacity];
+    }
+
+    public int getCapacity() {
+        return values.length == 0 ? 0 : values[0].length;
+    }
+
+    public boolean isFull() {
+        return values.length == 0 || rowCount >= values[0].length;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public void addRow(Object[] row) {
+        for (int i = 0; i < values.length; i++) {
+            values[i][rowCount] = row[i];
+        }
+        rowCount++;
+    }
+
+    public Object getValue(int row, int column) {
+        return values[column][row];
+    }
+
+    public void setValue(int row, int column, Object value) {
+        values[column][row] = value;
+    }
+
+    public Object[] getColumnValues(int column) {
+        return values[column];
+    }
+
+    public int indexOf(String bizName) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getBizName().equals(bizName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public List<Map<String, Object>> toRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            for (int col = 0; col < columns.size(); col++) {
+                line.put(columns.get(col).getBizName(), values[col][row]);
+            }
+            rows.add(line);
+        }
+        return rows;
+    }
+}
@@ -3,6 +3,7 @@ package com.tencent.supersonic.headless.core.translator;
 import com.tencent.supersonic.common.calcite.SqlMergeWithUtils;
 import com.tencent.supersonic.common.jsqlparser.SqlSelectHelper;
 import com.tencent.supersonic.common.pojo.enums.EngineType;
+import com.tencent.supersonic.common.util.ContextUtils;
 import com.tencent.supersonic.headless.api.pojo.response.QueryState;
 import com.tencent.supersonic.headless.core.pojo.OntologyQuery;
 import com.tencent.supersonic.headless.core.pojo.QueryStatement;
@@ -13,21 +14,109 @@ import com.tencent.supersonic.headless.core.utils.ComponentFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class DefaultSemanticTranslator implements SemanticTranslator {
 
+    @Autowired
+    private TranslationCache translationCache;
+
     public void translate(QueryStatement queryStatement) throws Exception {
         if (queryStatement.isTranslated()) {
             return;
         }
+        TranslationCache.SqlShape shape = translationCache.getShape(queryStatement);
+        if (Objects.nonNull(shape)) {
+            String sql = translationCache.get(shape);
+            if (StringUtils.isNotBlank(sql)) {
+                queryStatement.setSql(sql);
+                log.debug("translated query SQL from cache: [{}]", StringUtils.normalizeSpace(sql));
+                if (shape.isVerify()) {
+                    verifyTemplate(shape, queryStatement);
+                }
+                return;
+            }
+        }
+        doTranslate(queryStatement);
+        if (Objects.nonNull(shape) && queryStatement.isOk()
+                && QueryState.SUCCESS.equals(queryStatement.getStatus())
+                && !translationCache.verify(shape, queryStatement.getSql())) {
+            learnTemplate(shape, queryStatement);
+        }
+    }
+
+    /**
+     * Translates the shape of the query in the background, so the first query of a shape is not
+     * slowed down by learning its template.
+     */
+    private void learnTemplate(TranslationCache.SqlShape shape, QueryStatement queryStatement) {
+        if (!translationCache.startLearning(shape)) {
+            return;
+        }
+        QueryStatement shapeStatement = copyStatement(queryStatement, shape.getShapeSql());
+        String translatedSql = queryStatement.getSql();
+        ThreadPoolExecutor executor =
+                ContextUtils.getBean("commonExecutor", ThreadPoolExecutor.class);
+        CompletableFuture.runAsync(() -> {
+            try {
+                doTranslate(shapeStatement);
+                translationCache.learn(shape, shapeStatement.getSql(), translatedSql);
+            } catch (Exception e) {
+                log.debug("translate shape error, shape:{}", shape.getShapeSql(), e);
+                translationCache.learn(shape, null, translatedSql);
+            }
+        }, executor).exceptionally(e -> {
+            translationCache.cancelLearning(shape);
+            return null;
+        });
+    }
+
+    /** translates a query served from a template in full in the background to check the template */
+    private void verifyTemplate(TranslationCache.SqlShape shape, QueryStatement queryStatement) {
+        QueryStatement fullStatement =
+                copyStatement(queryStatement, queryStatement.getSqlQuery().getSql());
+        ThreadPoolExecutor executor =
+                ContextUtils.getBean("commonExecutor", ThreadPoolExecutor.class);
+        CompletableFuture.runAsync(() -> {
+            try {
+                doTranslate(fullStatement);
+                if (QueryState.SUCCESS.equals(fullStatement.getStatus())) {
+                    translationCache.verify(shape, fullStatement.getSql());
+                }
+            } catch (Exception e) {
+                log.debug("verify translation template error, shape:{}", shape.getShapeSql(), e);
+            }
+        }, executor);
+    }
+
+    private QueryStatement copyStatement(QueryStatement queryStatement, String sql) {
+        QueryStatement copy = new QueryStatement();
+        copy.setDataSetId(queryStatement.getDataSetId());
+        copy.setDataSetName(queryStatement.getDataSetName());
+        copy.setIsS2SQL(true);
+        copy.setEnableOptimize(queryStatement.getEnableOptimize());
+        copy.setLimit(queryStatement.getLimit());
+        copy.setOntology(queryStatement.getOntology());
+        copy.setSemanticSchema(queryStatement.getSemanticSchema());
+        copy.setUser(queryStatement.getUser());
+        SqlQuery sqlQuery = new SqlQuery();
+        sqlQuery.setSql(sql);
+        sqlQuery.setTable(queryStatement.getSqlQuery().getTable());
+        copy.setSqlQuery(sqlQuery);
+        return copy;
+    }
+
+    private void doTranslate(QueryStatement queryStatement) throws Exception {
         for (QueryParser parser : ComponentFactory.getQueryParsers()) {
             if (parser.accept(queryStatement)) {
                 log.debug("QueryConverter accept [{}]", parser.getClass().getName());
@@ -0,0 +1,271 @@
+package com.tencent.supersonic.headless.core.translator;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tencent.supersonic.common.jsqlparser.LiteralReplaceVisitor;
+import com.tencent.supersonic.common.jsqlparser.SqlReplaceHelper;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticSchemaResp;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
+import com.tencent.supersonic.headless.core.pojo.QueryStatement;
+import com.tencent.supersonic.headless.core.pojo.SqlQuery;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+/**
+ * Cache of translated sql templates for S2SQL queries. A query is reduced to its shape by replacing
+ * the literals of its filters with placeholders; the shape together with the data set, the user,
+ * the model versions and the translation options is the key. A template is learned by translating
+ * the shape itself and is only kept when binding the literals of the query into it gives exactly
+ * the sql the full translation produced, otherwise the shape is remembered as not cacheable. As the
+ * literals of one query can not prove that the translation passes every literal through, a template
+ * is only served once the full translations of further queries with other literals agreed with it,
+ * and every few hits one more query is translated in full to check it again. Any disagreement makes
+ * the shape not cacheable.
+ */
+@Component
+@Slf4j
+public class TranslationCache {
+
+    @Autowired
+    private ModelVersionManager modelVersionManager;
+
+    @Autowired
+    private TranslatorConfig translatorConfig;
+
+    private final Cache<String, Optional<Template>> templates;
+    private final Set<String> learning = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong uncacheableCount = new AtomicLong();
+    private final AtomicLong verifyCount = new AtomicLong();
+    private final AtomicLong verifyFailCount = new AtomicLong();
+
+    /** how many queries with distinct literals must agree with a template before it is served */
+    @Value("${s2.translator.cache.verify.min:2}")
+    private Integer minVerifications = 2;
+
+    /** every how many hits a query is translated in full to check its template again */
+    @Value("${s2.translator.cache.verify.interval:50}")
+    private Integer verifyInterval = 50;
+
+    public TranslationCache(@Value("${s2.translator.cache.max.size:2000}") Integer maxSize,
+            @Value("${s2.translator.cache.expire.minutes:30}") Integer expireMinutes) {
+        templates = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES).build();
+    }
+
+    /** returns the shape of an S2SQL query, or null when the query is not cacheable */
+    public SqlShape getShape(QueryStatement queryStatement) {
+        if (!Boolean.parseBoolean(
+                translatorConfig.getParameterValue(TranslatorConfig.TRANSLATOR_CACHE_ENABLE))) {
+            return null;
+        }
+        SqlQuery sqlQuery = queryStatement.getSqlQuery();
+        SemanticSchemaResp semanticSchema = queryStatement.getSemanticSchema();
+        if (!Boolean.TRUE.equals(queryStatement.getIsS2SQL())
+                || Objects.nonNull(queryStatement.getStructQuery()) || Objects.isNull(sqlQuery)
+                || StringUtils.isBlank(sqlQuery.getSql()) || Objects.isNull(semanticSchema)) {
+            return null;
+        }
+        List<String> literals = new ArrayList<>();
+        String shapeSql;
+        try {
+            shapeSql = SqlReplaceHelper.replaceLiterals(sqlQuery.getSql(), literals);
+        } catch (Exception e) {
+            log.debug("skip translation cache, sql:{}", sqlQuery.getSql(), e);
+            return null;
+        }
+        String user =
+                Objects.isNull(queryStatement.getUser()) ? "" : queryStatement.getUser().getName();
+        String key = String.join("|", String.valueOf(queryStatement.getDataSetId()), user,
+                modelVersionManager.getVersionKey(semanticSchema.getModelIds()),
+                String.valueOf(sqlQuery.getTable()), String.valueOf(queryStatement.getLimit()),
+                String.valueOf(queryStatement.getEnableOptimize()), shapeSql);
+        return new SqlShape(key, shapeSql, sqlQuery.getTable(), literals);
+    }
+
+    /**
+     * Returns the translated sql of the query when a verified template of its shape is known. The
+     * shape is marked for verification when the caller should also translate the query in full and
+     * pass the result to {@link #verify}.
+     */
+    public String get(SqlShape shape) {
+        Optional<Template> template = templates.getIfPresent(shape.getKey());
+        if (Objects.isNull(template) || template.isEmpty()) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (!template.get().isVerified(minVerifications)) {
+            missCount.incrementAndGet();
+            shape.setVerify(true);
+            return null;
+        }
+        hitCount.incrementAndGet();
+        shape.setVerify(template.get().hit() % verifyInterval == 0);
+        return template.get().bind(shape.getLiterals());
+    }
+
+    /** marks the shape as being learned, false if it is known or already being learned */
+    public boolean startLearning(SqlShape shape) {
+        return Objects.isNull(templates.getIfPresent(shape.getKey()))
+                && learning.add(shape.getKey());
+    }
+
+    /**
+     * Keeps the translated shape as the template of the shape if it reproduces the sql translated
+     * for the query the shape was taken from.
+     */
+    public void learn(SqlShape shape, String translatedShapeSql, String translatedSql) {
+        try {
+            Template template = StringUtils.isBlank(translatedShapeSql) ? null
+                    : new Template(compile(translatedShapeSql));
+            if (Objects.nonNull(template)
+                    && translatedSql.equals(template.bind(shape.getLiterals()))) {
+                template.verify(shape.getLiterals(), minVerifications);
+                templates.put(shape.getKey(), Optional.of(template));
+                log.debug("learned translation template, shape:{}", shape.getShapeSql());
+            } else {
+                markUncacheable(shape);
+            }
+        } finally {
+            learning.remove(shape.getKey());
+        }
+    }
+
+    /**
+     * Checks the template of the shape against the full translation of a query of that shape,
+     * returns false when no template of the shape is known yet.
+     */
+    public boolean verify(SqlShape shape, String translatedSql) {
+        Optional<Template> template = templates.getIfPresent(shape.getKey());
+        if (Objects.isNull(template)) {
+            return false;
+        }
+        if (template.isEmpty()) {
+            return true;
+        }
+        verifyCount.incrementAndGet();
+        if (StringUtils.isNotBlank(translatedSql)
+                && translatedSql.equals(template.get().bind(shape.getLiterals()))) {
+            template.get().verify(shape.getLiterals(), minVerifications);
+        } else {
+            verifyFailCount.incrementAndGet();
+            markUncacheable(shape);
+        }
+        return true;
+    }
+
+    public void cancelLearning(SqlShape shape) {
+        learning.remove(shape.getKey());
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("hit", hitCount.get());
+        stats.put("miss", missCount.get());
+        stats.put("uncacheable", uncacheableCount.get());
+        stats.put("verify", verifyCount.get());
+        stats.put("verifyFail", verifyFailCount.get());
+        stats.put("size", templates.estimatedSize());
+        return stats;
+    }
+
+    /** splits the sql into text parts and placeholder positions */
+    private static List<Object> compile(String sql) {
+        List<Object> template = new ArrayList<>();
+        Matcher matcher = LiteralReplaceVisitor.PLACEHOLDER.matcher(sql);
+        int start = 0;
+        while (matcher.find()) {
+            template.add(sql.substring(start, matcher.start()));
+            String position = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            template.add(Integer.parseInt(position));
+            start = matcher.end();
+        }
+        template.add(sql.substring(start));
+        return template;
+    }
+
+    private void markUncacheable(SqlShape shape) {
+        templates.put(shape.getKey(), Optional.empty());
+        uncacheableCount.incrementAndGet();
+        log.debug("translation not cacheable, shape:{}", shape.getShapeSql());
+    }
+
+    /** text parts and placeholder positions of a translated shape */
+    private static class Template {
+
+        private final List<Object> parts;
+        private final Set<List<String>> verifiedLiterals = ConcurrentHashMap.newKeySet();
+        private final AtomicLong hits = new AtomicLong();
+
+        Template(List<Object> parts) {
+            this.parts = parts;
+        }
+
+        void verify(List<String> literals, int minVerifications) {
+            if (!isVerified(minVerifications)) {
+                verifiedLiterals.add(literals);
+            }
+        }
+
+        boolean isVerified(int minVerifications) {
+            return verifiedLiterals.size() >= minVerifications;
+        }
+
+        long hit() {
+            return hits.incrementAndGet();
+        }
+
+        String bind(List<String> literals) {
+            StringBuilder sql = new StringBuilder();
+            for (Object part : parts) {
+                if (part instanceof Integer) {
+                    int position = (Integer) part;
+                    if (position >= literals.size()) {
+                        return null;
+                    }
+                    sql.append(literals.get(position));
+                } else {
+                    sql.append(part);
+                }
+            }
+            return sql.toString();
+        }
+    }
+
+    @Getter
+    public static class SqlShape {
+
+        private final String key;
+        private final String shapeSql;
+        private final String table;
+        private final List<String> literals;
+        /** set by {@link #get} when the query should also be translated in full and verified */
+        @Setter
+        private volatile boolean verify;
+
+        SqlShape(String key, String shapeSql, String table, List<String> literals) {
+            this.key = key;
+            this.shapeSql = shapeSql;
+            this.table = table;
+            this.literals = literals;
+        }
+    }
+}
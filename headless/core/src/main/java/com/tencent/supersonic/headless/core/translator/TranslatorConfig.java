@@ -16,9 +16,13 @@ public class TranslatorConfig extends ParameterConfig {
             new Parameter("s2.query-optimizer.resultLimit", "1000", "查询最大返回数据行数",
                     "为了前端展示性能考虑，请不要设置过大", "number", "语义翻译配置");
 
+    public static final Parameter TRANSLATOR_CACHE_ENABLE =
+            new Parameter("s2.translator.cache.enable", "true", "是否开启翻译缓存",
+                    "结构相同仅字面值不同的S2SQL复用已翻译的物理SQL", "bool", "语义翻译配置");
+
     @Override
     public List<Parameter> getSysParameters() {
-        return Lists.newArrayList(TRANSLATOR_RESULT_LIMIT);
+        return Lists.newArrayList(TRANSLATOR_RESULT_LIMIT, TRANSLATOR_CACHE_ENABLE);
     }
 
 }
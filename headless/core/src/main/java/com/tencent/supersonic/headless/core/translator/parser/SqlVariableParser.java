@@ -1,15 +1,18 @@
 package com.tencent.supersonic.headless.core.translator.parser;
 
+import com.tencent.supersonic.headless.api.pojo.ModelDetail;
 import com.tencent.supersonic.headless.api.pojo.enums.ModelDefineType;
 import com.tencent.supersonic.headless.api.pojo.response.ModelResp;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticSchemaResp;
 import com.tencent.supersonic.headless.core.pojo.QueryStatement;
 import com.tencent.supersonic.headless.core.utils.SqlVariableParseUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Slf4j
@@ -35,9 +38,17 @@ public class SqlVariableParser implements QueryParser {
                         SqlVariableParseUtils.parse(modelResp.getModelDetail().getSqlQuery(),
                                 modelResp.getModelDetail().getSqlVariables(),
                                 queryStatement.getStructQuery().getParams());
-                ModelResp dataModel =
-                        queryStatement.getOntology().getModelMap().get(modelResp.getBizName());
-                dataModel.getModelDetail().setSqlQuery(sqlParsed);
+                // the models of the ontology are shared by the queries, so the parsed sql is set
+                // on a copy of the model
+                Map<String, ModelResp> modelMap = queryStatement.getOntology().getModelMap();
+                ModelResp dataModel = modelMap.get(modelResp.getBizName());
+                ModelDetail modelDetail = new ModelDetail();
+                BeanUtils.copyProperties(dataModel.getModelDetail(), modelDetail);
+                modelDetail.setSqlQuery(sqlParsed);
+                ModelResp parsedModel = new ModelResp();
+                BeanUtils.copyProperties(dataModel, parsedModel);
+                parsedModel.setModelDetail(modelDetail);
+                modelMap.put(modelResp.getBizName(), parsedModel);
             }
         }
     }
@@ -1,18 +1,25 @@
 package com.tencent.supersonic.headless.core.utils;
 
-import javax.sql.DataSource;
-
 import com.tencent.supersonic.common.pojo.QueryColumn;
 import com.tencent.supersonic.common.util.DateUtils;
+import com.tencent.supersonic.headless.api.pojo.ConnectionPoolConfig;
 import com.tencent.supersonic.headless.api.pojo.enums.DataType;
 import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import com.tencent.supersonic.headless.core.executor.QueryAdmissionController;
+import com.tencent.supersonic.headless.core.executor.QueryAdmissionController.Permit;
+import com.tencent.supersonic.headless.core.executor.RowBatchHandler;
 import com.tencent.supersonic.headless.core.pojo.JdbcDataSource;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.StatementCallback;
 import org.springframework.stereotype.Component;
 
 import java.rmi.ServerException;
@@ -24,6 +31,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 import static com.tencent.supersonic.common.pojo.Constants.AT_SYMBOL;
 
@@ -38,12 +46,19 @@ public class SqlUtils {
     @Autowired
     private JdbcDataSource jdbcDataSource;
 
+    @Autowired
+    private QueryAdmissionController queryAdmissionController;
+
+    @Getter
     @Value("${s2.source.result-limit:1000000}")
     private int resultLimit;
 
     @Value("${s2.source.enable-query-log:false}")
     private boolean isQueryLogEnable;
 
+    @Value("${s2.source.fetch-size:500}")
+    private int fetchSize;
+
     @Getter
     private DataType dataTypeEnum;
 
@@ -58,16 +73,30 @@ public class SqlUtils {
     }
 
     public SqlUtils init(DatabaseResp database) {
-        return SqlUtilsBuilder.getBuilder()
+        return SqlUtilsBuilder.getBuilder().withId(database.getId())
                 .withName(database.getId() + AT_SYMBOL + database.getName())
                 .withType(database.getType()).withJdbcUrl(database.getUrl())
                 .withUsername(database.getUsername()).withPassword(database.getPassword())
-                .withJdbcDataSource(this.jdbcDataSource).withResultLimit(this.resultLimit)
+                .withPoolConfig(database.getPoolConfig()).withJdbcDataSource(this.jdbcDataSource)
+                .withQueryAdmissionController(this.queryAdmissionController)
+                .withResultLimit(this.resultLimit).withFetchSize(this.fetchSize)
                 .withIsQueryLogEnable(this.isQueryLogEnable).build();
     }
 
+    /**
+     * closes the connection pool and drops the admission gate of the database, e.g. after its
+     * settings changed
+     */
+    public void release(DatabaseResp database) {
+        SqlUtils sqlUtils = init(database);
+        sqlUtils.jdbcDataSourceUtils.releaseDataSource(sqlUtils.getDatabase());
+        if (queryAdmissionController != null) {
+            queryAdmissionController.remove(sqlUtils.getDatabase());
+        }
+    }
+
     public List<Map<String, Object>> execute(String sql) throws ServerException {
-        try {
+        try (Permit permit = acquire()) {
             List<Map<String, Object>> list = jdbcTemplate().queryForList(sql);
             log.info("list:{}", list);
             return list;
@@ -78,72 +107,174 @@ public class SqlUtils {
     }
 
     public void execute(String sql, SemanticQueryResp queryResultWithColumns) {
-        getResult(sql, queryResultWithColumns, jdbcTemplate());
+        queryInternal(sql, queryResultWithColumns);
     }
 
     public JdbcTemplate jdbcTemplate() throws RuntimeException {
-        Connection connection = null;
-        try {
-            connection = jdbcDataSourceUtils.getConnection(database);
-        } catch (Exception e) {
-            log.warn("e:", e);
-        } finally {
-            JdbcDataSourceUtils.releaseConnection(connection);
-        }
-        DataSource dataSource = jdbcDataSourceUtils.getDataSource(database);
-        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-        jdbcTemplate.setDatabaseProductName(database.getName());
-        jdbcTemplate.setFetchSize(500);
-        return jdbcTemplate;
+        return jdbcDataSource.getJdbcTemplate(database, fetchSize);
     }
 
     public void queryInternal(String sql, SemanticQueryResp queryResultWithColumns) {
-        getResult(sql, queryResultWithColumns, jdbcTemplate());
+        queryInternal(sql, queryResultWithColumns, 0);
+    }
+
+    /**
+     * Executes the sql and reads at most {@code maxRows} rows of the result into the response, zero
+     * means no limit.
+     */
+    public void queryInternal(String sql, SemanticQueryResp queryResultWithColumns, int maxRows) {
+        try (Permit permit = acquire()) {
+            getResult(sql, queryResultWithColumns, jdbcTemplate(), maxRows);
+        } catch (CannotGetJdbcConnectionException e) {
+            releaseBrokenDataSource(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Executes the sql and hands the result to the handler in batches of at most {@code fetchSize}
+     * rows, so the whole result is never held in memory at once. The driver is put in its cursor
+     * mode, as mysql and postgresql read the whole result before the first row otherwise. The
+     * admission permit is given back once the query has run, a slow reader of the batches only
+     * keeps its connection.
+     */
+    public void queryStream(String sql, RowBatchHandler handler) {
+        try (Permit permit = acquire()) {
+            jdbcTemplate().execute((StatementCallback<Void>) stmt -> {
+                Connection connection = stmt.getConnection();
+                // postgresql only fetches through a cursor inside of a transaction
+                boolean inTransaction = isPostgreSql() && connection.getAutoCommit();
+                if (inTransaction) {
+                    connection.setAutoCommit(false);
+                }
+                try {
+                    stmt.setFetchSize(getStreamFetchSize());
+                    try (ResultSet rs = stmt.executeQuery(sql)) {
+                        permit.close();
+                        List<QueryColumn> queryColumns = getQueryColumns(rs);
+                        handler.onColumns(queryColumns);
+                        readBatches(rs, queryColumns, handler, 0);
+                    }
+                } finally {
+                    if (inTransaction) {
+                        connection.rollback();
+                        connection.setAutoCommit(true);
+                    }
+                }
+                return null;
+            });
+        } catch (CannotGetJdbcConnectionException e) {
+            releaseBrokenDataSource(e);
+            throw e;
+        }
+    }
+
+    /** the mysql driver only streams the rows with a fetch size of Integer.MIN_VALUE */
+    private int getStreamFetchSize() {
+        if (StringUtils.startsWithIgnoreCase(database.getUrl(), "jdbc:mysql:")) {
+            return Integer.MIN_VALUE;
+        }
+        return Math.max(fetchSize, 1);
+    }
+
+    private boolean isPostgreSql() {
+        return StringUtils.startsWithIgnoreCase(database.getUrl(), "jdbc:postgresql:");
+    }
+
+    private Permit acquire() {
+        if (queryAdmissionController == null) {
+            return () -> {
+            };
+        }
+        return queryAdmissionController.acquire(database);
+    }
+
+    /** the pool is rebuilt on the next query, as the database may have been restarted */
+    private void releaseBrokenDataSource(CannotGetJdbcConnectionException e) {
+        log.warn("get connection error, release datasource, jdbcUrl:{}", database.getUrl(), e);
+        jdbcDataSourceUtils.releaseDataSource(database);
     }
 
     private SemanticQueryResp getResult(String sql, SemanticQueryResp queryResultWithColumns,
-            JdbcTemplate jdbcTemplate) {
-        jdbcTemplate.query(sql, rs -> {
+            JdbcTemplate jdbcTemplate, int maxRows) {
+        ResultSetExtractor<SemanticQueryResp> extractor = rs -> {
             if (null == rs) {
                 return queryResultWithColumns;
             }
 
-            ResultSetMetaData metaData = rs.getMetaData();
-            List<QueryColumn> queryColumns = new ArrayList<>();
-            for (int i = 1; i <= metaData.getColumnCount(); i++) {
-                String key = metaData.getColumnLabel(i);
-                queryColumns.add(new QueryColumn(key, metaData.getColumnTypeName(i)));
-            }
+            List<QueryColumn> queryColumns = getQueryColumns(rs);
             queryResultWithColumns.setColumns(queryColumns);
 
-            List<Map<String, Object>> resultList = getAllData(rs, queryColumns);
+            List<Map<String, Object>> resultList = getAllData(rs, queryColumns, maxRows);
             queryResultWithColumns.setResultList(resultList);
             return queryResultWithColumns;
+        };
+        if (maxRows <= 0) {
+            jdbcTemplate.query(sql, extractor);
+            return queryResultWithColumns;
+        }
+        // the limit is set on this statement only, the template is shared with other callers, and
+        // is enforced while reading as well, since some drivers ignore it
+        jdbcTemplate.execute((StatementCallback<SemanticQueryResp>) stmt -> {
+            stmt.setMaxRows(maxRows);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                return extractor.extractData(rs);
+            }
         });
         return queryResultWithColumns;
     }
 
-    private List<Map<String, Object>> getAllData(ResultSet rs, List<QueryColumn> queryColumns) {
+    private List<QueryColumn> getQueryColumns(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        List<QueryColumn> queryColumns = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String key = metaData.getColumnLabel(i);
+            queryColumns.add(new QueryColumn(key, metaData.getColumnTypeName(i)));
+        }
+        return queryColumns;
+    }
+
+    private List<Map<String, Object>> getAllData(ResultSet rs, List<QueryColumn> queryColumns,
+            int maxRows) {
         List<Map<String, Object>> data = new ArrayList<>();
         try {
-            while (rs.next()) {
-                data.add(getLineData(rs, queryColumns));
-            }
+            readBatches(rs, queryColumns, rowBatch -> data.addAll(rowBatch.toRows()), maxRows);
+        } catch (CancellationException e) {
+            // a part of the result must not be taken for all of it
+            throw e;
         } catch (Exception e) {
             log.warn("error in getAllData, e:", e);
         }
         return data;
     }
 
-    private Map<String, Object> getLineData(ResultSet rs, List<QueryColumn> queryColumns)
-            throws SQLException {
-        Map<String, Object> map = new LinkedHashMap<>();
-        for (QueryColumn queryColumn : queryColumns) {
-            String colName = queryColumn.getBizName();
-            Object value = rs.getObject(colName);
-            map.put(colName, getValue(value));
+    private void readBatches(ResultSet rs, List<QueryColumn> queryColumns, RowBatchHandler handler,
+            int maxRows) throws SQLException {
+        int batchSize = Math.max(fetchSize, 1);
+        RowBatch rowBatch = new RowBatch(queryColumns, batchSize);
+        Object[] row = new Object[queryColumns.size()];
+        long rowCount = 0;
+        while ((maxRows <= 0 || rowCount++ < maxRows) && rs.next()) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = getValue(rs.getObject(i + 1));
+            }
+            rowBatch.addRow(row);
+            if (rowBatch.isFull()) {
+                checkInterrupted();
+                handler.onBatch(rowBatch);
+                rowBatch = new RowBatch(queryColumns, batchSize);
+            }
+        }
+        if (!rowBatch.isEmpty()) {
+            handler.onBatch(rowBatch);
+        }
+    }
+
+    /** a cancelled caller interrupts its worker, which then stops reading the result */
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("query interrupted");
         }
-        return map;
     }
 
     private Object getValue(Object value) {
@@ -165,7 +296,11 @@ public class SqlUtils {
     public static final class SqlUtilsBuilder {
 
         private JdbcDataSource jdbcDataSource;
+        private QueryAdmissionController queryAdmissionController;
+        private Long id;
+        private ConnectionPoolConfig poolConfig;
         private int resultLimit;
+        private int fetchSize;
         private boolean isQueryLogEnable;
         private String name;
         private String type;
@@ -184,11 +319,32 @@ public class SqlUtils {
             return this;
         }
 
+        SqlUtilsBuilder withQueryAdmissionController(
+                QueryAdmissionController queryAdmissionController) {
+            this.queryAdmissionController = queryAdmissionController;
+            return this;
+        }
+
+        SqlUtilsBuilder withId(Long id) {
+            this.id = id;
+            return this;
+        }
+
+        SqlUtilsBuilder withPoolConfig(ConnectionPoolConfig poolConfig) {
+            this.poolConfig = poolConfig;
+            return this;
+        }
+
         SqlUtilsBuilder withResultLimit(int resultLimit) {
             this.resultLimit = resultLimit;
             return this;
         }
 
+        SqlUtilsBuilder withFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
         SqlUtilsBuilder withIsQueryLogEnable(boolean isQueryLogEnable) {
             this.isQueryLogEnable = isQueryLogEnable;
             return this;
@@ -220,13 +376,15 @@ public class SqlUtils {
         }
 
         public SqlUtils build() {
-            DatabaseResp database = DatabaseResp.builder().name(this.name)
+            DatabaseResp database = DatabaseResp.builder().id(this.id).name(this.name)
                     .type(this.type.toUpperCase()).url(this.jdbcUrl).username(this.username)
-                    .password(this.password).build();
+                    .password(this.password).poolConfig(this.poolConfig).build();
 
             SqlUtils sqlUtils = new SqlUtils(database);
             sqlUtils.jdbcDataSource = this.jdbcDataSource;
+            sqlUtils.queryAdmissionController = this.queryAdmissionController;
             sqlUtils.resultLimit = this.resultLimit;
+            sqlUtils.fetchSize = this.fetchSize;
             sqlUtils.isQueryLogEnable = this.isQueryLogEnable;
             sqlUtils.jdbcDataSourceUtils = new JdbcDataSourceUtils(this.jdbcDataSource);
 
@@ -0,0 +1,64 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CacheEntryCodecTest {
+
+    @Test
+    public void testRoundTripKeepsValuesAndTypes() throws Exception {
+        SemanticQueryResp resp = queryResp();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            CacheEntryCodec.write(resp, out);
+        }
+        SemanticQueryResp read = CacheEntryCodec.read(ByteBuffer.wrap(bytes.toByteArray()));
+        Assertions.assertEquals(resp.getSql(), read.getSql());
+        Assertions.assertEquals(resp.getTotalCount(), read.getTotalCount());
+        Assertions.assertEquals(resp.getColumns().size(), read.getColumns().size());
+        Assertions.assertEquals(resp.getResultList(), read.getResultList());
+        Assertions.assertEquals(new BigDecimal("0.10"), read.getResultList().get(0).get("rate"));
+        Assertions.assertNull(read.getResultList().get(1).get("pv"));
+    }
+
+    @Test
+    public void testEstimateSizeGrowsWithRows() {
+        SemanticQueryResp resp = queryResp();
+        long small = CacheEntryCodec.estimateSize(new CacheEntry(resp, 0L));
+        resp.getResultList().addAll(queryResp().getResultList());
+        Assertions.assertTrue(CacheEntryCodec.estimateSize(resp) > small);
+    }
+
+    static SemanticQueryResp queryResp() {
+        SemanticQueryResp resp = new SemanticQueryResp();
+        resp.setSql("select department, pv, rate from t");
+        resp.setTotalCount(2L);
+        resp.setColumns(Arrays.asList(new QueryColumn("department", "VARCHAR"),
+                new QueryColumn("pv", "BIGINT"), new QueryColumn("rate", "DECIMAL")));
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(row("HR", 10L, new BigDecimal("0.10")));
+        rows.add(row("sales", null, new BigDecimal("2.5")));
+        resp.setResultList(rows);
+        return resp;
+    }
+
+    private static Map<String, Object> row(String department, Long pv, BigDecimal rate) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("department", department);
+        row.put("pv", pv);
+        row.put("rate", rate);
+        return row;
+    }
+}
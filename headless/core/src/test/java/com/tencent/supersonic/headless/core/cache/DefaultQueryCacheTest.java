@@ -0,0 +1,116 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import com.tencent.supersonic.common.util.ContextUtils;
+import com.tencent.supersonic.headless.api.pojo.request.QuerySqlReq;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DefaultQueryCacheTest {
+
+    private static final String KEY = "supersonic_dev_0_key";
+
+    private final CacheCommonConfig cacheCommonConfig = new CacheCommonConfig();
+
+    private final DefaultQueryCache queryCache = new DefaultQueryCache();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        cacheCommonConfig.setCacheEnable(true);
+        cacheCommonConfig.setCacheCommonExpireAfterWrite(60);
+        cacheCommonConfig.setStaleWhileRevalidate(false);
+        cacheCommonConfig.setCoalesceWaitSeconds(5);
+        // the loads run on other threads, which a static mock would not reach
+        ApplicationContext applicationContext = Mockito.mock(ApplicationContext.class);
+        Mockito.when(applicationContext.getBean(CacheCommonConfig.class))
+                .thenReturn(cacheCommonConfig);
+        Mockito.when(applicationContext.getBean(CacheManager.class))
+                .thenReturn(Mockito.mock(CacheManager.class));
+        new ContextUtils().setApplicationContext(applicationContext);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        CompletableFuture<Object> leader = runAsync(request(true), this::slowLoad);
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> waiter = runAsync(request(true), this::slowLoad);
+        waitForCoalesced();
+        release.countDown();
+        Assertions.assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("result", waiter.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testWaiterRunsTheQueryAfterTimeout() throws Exception {
+        cacheCommonConfig.setCoalesceWaitSeconds(1);
+        CompletableFuture<Object> leader = runAsync(request(true), this::slowLoad);
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Object value = queryCache.query(request(true), KEY, () -> "own result");
+        Assertions.assertEquals("own result", value);
+        Assertions.assertEquals(1L, queryCache.getStats().get("coalesceTimeout"));
+        release.countDown();
+        Assertions.assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUncachedQueriesAreNotCoalesced() throws Exception {
+        CompletableFuture<Object> first = runAsync(request(false), this::slowLoad);
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Object value = queryCache.query(request(false), KEY, () -> "fresh result");
+        Assertions.assertEquals("fresh result", value);
+        Assertions.assertEquals(0L, queryCache.getStats().get("coalesced"));
+        release.countDown();
+        Assertions.assertEquals("result", first.get(5, TimeUnit.SECONDS));
+    }
+
+    private Object slowLoad() throws Exception {
+        loads.incrementAndGet();
+        started.countDown();
+        Assertions.assertTrue(release.await(10, TimeUnit.SECONDS));
+        return "result";
+    }
+
+    private CompletableFuture<Object> runAsync(QuerySqlReq request, Callable<Object> loader) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return queryCache.query(request, KEY, loader);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private void waitForCoalesced() throws InterruptedException {
+        for (int i = 0; i < 100 && queryCache.getStats().get("coalesced") == 0; i++) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(1L, queryCache.getStats().get("coalesced"));
+    }
+
+    private static QuerySqlReq request(boolean cache) {
+        QuerySqlReq querySqlReq = new QuerySqlReq();
+        querySqlReq.getCacheInfo().setCache(cache);
+        return querySqlReq;
+    }
+}
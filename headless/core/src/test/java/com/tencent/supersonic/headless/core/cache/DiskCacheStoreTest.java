@@ -0,0 +1,75 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+public class DiskCacheStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEntriesSurviveRestart() throws Exception {
+        DiskCacheStore store = diskCacheStore();
+        SemanticQueryResp resp = CacheEntryCodecTest.queryResp();
+        Assertions.assertTrue(store.put("key", new CacheEntry(resp, System.currentTimeMillis())));
+
+        DiskCacheStore restarted = diskCacheStore();
+        CacheEntry cacheEntry = restarted.get("key");
+        Assertions.assertNotNull(cacheEntry);
+        Assertions.assertEquals(resp.getResultList(),
+                ((SemanticQueryResp) cacheEntry.getValue()).getResultList());
+        Assertions.assertNull(restarted.get("other"));
+    }
+
+    @Test
+    public void testRemoveRacingPutNeverLeavesDanglingEntry() throws Exception {
+        DiskCacheStore store = diskCacheStore();
+        CacheEntry cacheEntry =
+                new CacheEntry(CacheEntryCodecTest.queryResp(), System.currentTimeMillis());
+        for (int i = 0; i < 200; i++) {
+            CompletableFuture<Boolean> put =
+                    CompletableFuture.supplyAsync(() -> store.put("key", cacheEntry));
+            store.remove("key");
+            put.join();
+            // whatever won, an entry in the index must still have its file
+            if (store.getStats().get("entries") > 0) {
+                Assertions.assertNotNull(store.get("key"));
+            } else {
+                try (Stream<Path> files = Files.list(directory)) {
+                    Assertions.assertEquals(0,
+                            files.filter(file -> file.toString().endsWith(".bin")).count());
+                }
+            }
+        }
+    }
+
+    private DiskCacheStore diskCacheStore() throws Exception {
+        CacheCommonConfig cacheCommonConfig = new CacheCommonConfig();
+        cacheCommonConfig.setCacheCommonExpireAfterWrite(60);
+        cacheCommonConfig.setStaleWhileRevalidate(false);
+        DiskCacheStore store = new DiskCacheStore();
+        setField(store, "enable", true);
+        setField(store, "path", directory.toString());
+        setField(store, "maxBytes", 1L << 30);
+        setField(store, "maxEntryBytes", 1L << 20);
+        setField(store, "cacheCommonConfig", cacheCommonConfig);
+        setField(store, "modelVersionManager", new ModelVersionManager());
+        store.init();
+        return store;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,50 @@
+package com.tencent.supersonic.headless.core.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ModelVersionManagerTest {
+
+    @Test
+    public void testChangeOnlyMovesKeysOfTheModel() {
+        ModelVersionManager modelVersionManager = new ModelVersionManager();
+        String before = modelVersionManager.getVersionKey(Arrays.asList(2L, 1L));
+        String other = modelVersionManager.getVersionKey(Collections.singletonList(3L));
+        modelVersionManager.increase(1L);
+        Assertions.assertEquals("1-0,2-0", before);
+        Assertions.assertEquals("1-1,2-0",
+                modelVersionManager.getVersionKey(Arrays.asList(1L, 2L, 1L)));
+        Assertions.assertEquals(other,
+                modelVersionManager.getVersionKey(Collections.singletonList(3L)));
+        Assertions.assertEquals("v1", modelVersionManager.getVersionKey(null));
+    }
+
+    @Test
+    public void testRestoreNeverGoesBack() {
+        ModelVersionManager modelVersionManager = new ModelVersionManager();
+        modelVersionManager.increase(Arrays.asList(1L, 1L, 2L));
+        Map<Long, Long> saved = new HashMap<>();
+        saved.put(1L, 5L);
+        saved.put(2L, 0L);
+        modelVersionManager.restore(saved, 0L);
+        Assertions.assertEquals(5L, modelVersionManager.getVersion(1L));
+        Assertions.assertEquals(1L, modelVersionManager.getVersion(2L));
+        Assertions.assertEquals(2L, modelVersionManager.getGlobalVersion());
+    }
+
+    @Test
+    public void testListenersAreNotified() {
+        ModelVersionManager modelVersionManager = new ModelVersionManager();
+        AtomicInteger notified = new AtomicInteger();
+        modelVersionManager.addListener(notified::incrementAndGet);
+        modelVersionManager.increase(1L);
+        modelVersionManager.increase((Long) null);
+        Assertions.assertEquals(1, notified.get());
+    }
+}
@@ -0,0 +1,146 @@
+package com.tencent.supersonic.headless.core.executor;
+
+import com.tencent.supersonic.common.pojo.DateConf;
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.common.util.ContextUtils;
+import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import com.tencent.supersonic.headless.core.config.ExecutorConfig;
+import com.tencent.supersonic.headless.core.pojo.DuckDbSource;
+import com.tencent.supersonic.headless.core.pojo.Ontology;
+import com.tencent.supersonic.headless.core.pojo.QueryStatement;
+import com.tencent.supersonic.headless.core.pojo.StructQuery;
+import com.tencent.supersonic.headless.core.utils.SqlUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class DuckDbAcceleratorTest {
+
+    private static final String SQL = "SELECT imp_date, SUM(pv) AS pv FROM s2_pv_uv_statis "
+            + "WHERE imp_date >= '%s' AND imp_date <= '%s' GROUP BY imp_date "
+            + "ORDER BY imp_date DESC LIMIT 2000";
+
+    private MockedStatic<ContextUtils> contextUtils;
+
+    private final List<String> sourceSqls = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ExecutorConfig executorConfig = new ExecutorConfig();
+        executorConfig.setDuckEnable(true);
+        executorConfig.setDuckDbTemp(Files.createTempDirectory("duck").toString());
+        executorConfig.setMemoryLimit(1);
+        executorConfig.setThreads(2);
+        executorConfig.setHotThreshold(2);
+        executorConfig.setMaxMaterializations(10);
+        executorConfig.setMaterializationMaxRows(1000);
+        executorConfig.setMaterializationIdleMinutes(60);
+        DuckDbSource duckDbSource = new DuckDbSource(executorConfig);
+
+        SqlUtils sqlUtils = Mockito.mock(SqlUtils.class);
+        Mockito.when(sqlUtils.init(any(DatabaseResp.class))).thenReturn(sqlUtils);
+        Mockito.doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            sourceSqls.add(sql);
+            SemanticQueryResp resp = invocation.getArgument(1);
+            resp.setColumns(Arrays.asList(new QueryColumn("imp_date", "VARCHAR"),
+                    new QueryColumn("pv", "BIGINT")));
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (int day = 10; day >= 1; day--) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("imp_date", String.format("2024-03-%02d", day));
+                row.put("pv", (long) day);
+                rows.add(row);
+            }
+            resp.setResultList(rows);
+            return null;
+        }).when(sqlUtils).queryInternal(anyString(), any(SemanticQueryResp.class));
+
+        contextUtils = Mockito.mockStatic(ContextUtils.class);
+        contextUtils.when(() -> ContextUtils.getBean(ExecutorConfig.class))
+                .thenReturn(executorConfig);
+        contextUtils.when(() -> ContextUtils.getBean(DuckDbSource.class)).thenReturn(duckDbSource);
+        contextUtils.when(() -> ContextUtils.getBean(SqlUtils.class)).thenReturn(sqlUtils);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        contextUtils.close();
+    }
+
+    @Test
+    public void testSubRangeIsAnsweredByMaterialization() {
+        DuckDbAccelerator accelerator = new DuckDbAccelerator();
+        Assertions.assertFalse(accelerator.check(queryStatement("2024-03-01", "2024-03-05")));
+        Assertions.assertFalse(accelerator.check(queryStatement("2024-03-06", "2024-03-10")));
+        Assertions.assertTrue(accelerator.reload());
+
+        // the union of the requested ranges is loaded with the limit lifted
+        Assertions.assertEquals(1, sourceSqls.size());
+        Assertions.assertTrue(sourceSqls.get(0).contains("'2024-03-01'"));
+        Assertions.assertTrue(sourceSqls.get(0).contains("'2024-03-10'"));
+        Assertions.assertTrue(sourceSqls.get(0).endsWith("LIMIT 1001"));
+
+        QueryStatement queryStatement = queryStatement("2024-03-03", "2024-03-06");
+        Assertions.assertTrue(accelerator.check(queryStatement));
+        SemanticQueryResp queryResp = accelerator.query(queryStatement);
+        Assertions.assertEquals(
+                Arrays.asList("2024-03-06", "2024-03-05", "2024-03-04", "2024-03-03"),
+                queryResp.getResultList().stream().map(row -> row.get("imp_date"))
+                        .collect(Collectors.toList()));
+        Assertions.assertEquals(1L, accelerator.getStats().get("hit"));
+
+        // a range beyond the loaded days goes to the source and widens the next load
+        Assertions.assertFalse(accelerator.check(queryStatement("2024-03-08", "2024-03-12")));
+        Assertions.assertEquals(3L, accelerator.getStats().get("miss"));
+        accelerator.reload();
+        Assertions.assertTrue(sourceSqls.get(1).contains("'2024-03-12'"));
+        Assertions.assertTrue(accelerator.check(queryStatement("2024-03-08", "2024-03-12")));
+    }
+
+    @Test
+    public void testQueryWithoutRangeIsLeftToTheCache() {
+        DuckDbAccelerator accelerator = new DuckDbAccelerator();
+        QueryStatement queryStatement = queryStatement("2024-03-01", "2024-03-05");
+        queryStatement.setSql("SELECT SUM(pv) AS pv FROM s2_pv_uv_statis LIMIT 2000");
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertFalse(accelerator.check(queryStatement));
+        }
+        accelerator.reload();
+        Assertions.assertTrue(sourceSqls.isEmpty());
+        Assertions.assertEquals(0L, accelerator.getStats().get("miss"));
+    }
+
+    private QueryStatement queryStatement(String startDate, String endDate) {
+        DateConf dateConf = new DateConf();
+        dateConf.setDateMode(DateConf.DateMode.BETWEEN);
+        dateConf.setStartDate(startDate);
+        dateConf.setEndDate(endDate);
+        dateConf.setDateField("imp_date");
+        StructQuery structQuery = new StructQuery();
+        structQuery.setDateInfo(dateConf);
+        Ontology ontology = new Ontology();
+        ontology.setDatabase(DatabaseResp.builder().id(1L).name("h2").type("h2").build());
+        QueryStatement queryStatement = new QueryStatement();
+        queryStatement.setDataSetId(1L);
+        queryStatement.setSql(String.format(SQL, startDate, endDate));
+        queryStatement.setStructQuery(structQuery);
+        queryStatement.setOntology(ontology);
+        return queryStatement;
+    }
+}
@@ -0,0 +1,72 @@
+package com.tencent.supersonic.headless.core.executor;
+
+import com.tencent.supersonic.headless.core.pojo.Materialization;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MaterializationIndexTest {
+
+    private final MaterializationIndex index = MaterializationIndex.build(Arrays.asList(
+            materialization("s2_mv.mv_march", "2024-03-01", "2024-03-02", "2024-03-03"),
+            materialization("s2_mv.mv_april", "2024-04-01", "2024-04-02"),
+            Materialization.builder().name("s2_mv.mv_total").columns(Arrays.asList("pv")).build()));
+
+    @Test
+    public void testCoveredRangeMatches() {
+        Assertions.assertEquals(Collections.singletonList("s2_mv.mv_march"),
+                names(index.candidates(Arrays.asList("imp_date", "pv"),
+                        Collections.singletonList(ImmutablePair.of("2024-03-02", "2024-03-03")))));
+    }
+
+    @Test
+    public void testPartlyCoveredRangeDoesNotMatch() {
+        Assertions.assertTrue(index
+                .candidates(Arrays.asList("imp_date", "pv"),
+                        Collections.singletonList(ImmutablePair.of("2024-03-03", "2024-04-01")))
+                .isEmpty());
+        Assertions.assertTrue(index
+                .candidates(Arrays.asList("imp_date", "pv"),
+                        Collections.singletonList(ImmutablePair.of("2024-02-28", "2024-03-01")))
+                .isEmpty());
+    }
+
+    @Test
+    public void testMissingFieldDoesNotMatch() {
+        Assertions.assertTrue(index
+                .candidates(Arrays.asList("imp_date", "uv"),
+                        Collections.singletonList(ImmutablePair.of("2024-03-01", "2024-03-01")))
+                .isEmpty());
+        Assertions.assertEquals(Collections.singletonList("s2_mv.mv_total"),
+                names(index.candidates(Collections.singletonList("pv"), Collections.emptyList())));
+    }
+
+    @Test
+    public void testFindByName() {
+        List<ImmutablePair<String, String>> march =
+                Collections.singletonList(ImmutablePair.of("2024-03-01", "2024-03-03"));
+        Assertions.assertEquals("s2_mv.mv_march", index
+                .find("s2_mv.mv_march", Collections.singletonList("imp_date"), march).getName());
+        Assertions.assertNull(
+                index.find("s2_mv.mv_april", Collections.singletonList("imp_date"), march));
+        Assertions.assertNull(index.find("s2_mv.mv_march", Collections.singletonList("uv"), march));
+        Assertions.assertNull(index.find("s2_mv.mv_none", Collections.singletonList("pv"), march));
+        Assertions.assertEquals("s2_mv.mv_total", index
+                .find("s2_mv.mv_total", Collections.singletonList("pv"), Collections.emptyList())
+                .getName());
+    }
+
+    private static Materialization materialization(String name, String... partitions) {
+        return Materialization.builder().name(name).columns(Arrays.asList("imp_date", "pv"))
+                .partitionName("imp_date").partitions(Arrays.asList(partitions)).isPartitioned(true)
+                .build();
+    }
+
+    private static List<String> names(List<Materialization> materializations) {
+        return materializations.stream().map(Materialization::getName).toList();
+    }
+}
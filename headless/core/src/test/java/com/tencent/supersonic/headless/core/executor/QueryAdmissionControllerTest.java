@@ -0,0 +1,59 @@
+package com.tencent.supersonic.headless.core.executor;
+
+import com.tencent.supersonic.headless.api.pojo.ConnectionPoolConfig;
+import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+public class QueryAdmissionControllerTest {
+
+    @Test
+    public void testPermitIsReleasedOnce() throws Exception {
+        QueryAdmissionController controller = controller();
+        DatabaseResp database = database();
+        QueryAdmissionController.Permit permit = controller.acquire(database);
+        permit.close();
+        permit.close();
+        QueryAdmissionController.Permit other = controller.acquire(database);
+        // a second release of the first permit must not have freed a further permit
+        Assertions.assertThrows(RuntimeException.class, () -> controller.acquire(database));
+        other.close();
+    }
+
+    @Test
+    public void testRemovedGateIsDropped() throws Exception {
+        QueryAdmissionController controller = controller();
+        DatabaseResp database = database();
+        controller.acquire(database).close();
+        Assertions.assertEquals(1, controller.getStats().size());
+        controller.remove(database);
+        Assertions.assertTrue(controller.getStats().isEmpty());
+    }
+
+    private static QueryAdmissionController controller() throws Exception {
+        QueryAdmissionController controller = new QueryAdmissionController();
+        setField(controller, "enable", true);
+        setField(controller, "defaultMaxConcurrent", 10);
+        setField(controller, "defaultMaxQueued", 10);
+        setField(controller, "defaultQueueTimeout", 10L);
+        return controller;
+    }
+
+    private static DatabaseResp database() {
+        ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+        poolConfig.setMaxConcurrentQueries(1);
+        DatabaseResp database = new DatabaseResp();
+        database.setName("1@duckdb");
+        database.setUrl("jdbc:duckdb:");
+        database.setPoolConfig(poolConfig);
+        return database;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,22 @@
+package com.tencent.supersonic.headless.core.pojo;
+
+import com.tencent.supersonic.headless.api.pojo.ConnectionPoolConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class JdbcDataSourceTest {
+
+    @Test
+    public void testPoolKeyFollowsPoolSettings() {
+        ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+        poolConfig.setMaxActive(5);
+        poolConfig.setQueryTimeout(30);
+        String key = JdbcDataSource.getPoolKey(poolConfig);
+        // admission settings do not change the pool
+        poolConfig.setMaxQueuedQueries(3);
+        Assertions.assertEquals(key, JdbcDataSource.getPoolKey(poolConfig));
+        poolConfig.setQueryTimeout(60);
+        Assertions.assertNotEquals(key, JdbcDataSource.getPoolKey(poolConfig));
+        Assertions.assertEquals("", JdbcDataSource.getPoolKey(null));
+    }
+}
@@ -0,0 +1,94 @@
+package com.tencent.supersonic.headless.core.translator;
+
+import com.tencent.supersonic.common.pojo.User;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticSchemaResp;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
+import com.tencent.supersonic.headless.core.pojo.QueryStatement;
+import com.tencent.supersonic.headless.core.pojo.SqlQuery;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+
+public class TranslationCacheTest {
+
+    private static final String SHAPE_TRANSLATION =
+            "SELECT a FROM t WHERE d = 's2_param_0' AND n > 7000000000000000001";
+
+    private final TranslationCache translationCache = new TranslationCache(100, 30);
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        TranslatorConfig translatorConfig = Mockito.mock(TranslatorConfig.class);
+        Mockito.when(translatorConfig.getParameterValue(TranslatorConfig.TRANSLATOR_CACHE_ENABLE))
+                .thenReturn("true");
+        setField("translatorConfig", translatorConfig);
+        setField("modelVersionManager", new ModelVersionManager());
+        setField("verifyInterval", 2);
+    }
+
+    @Test
+    public void testTemplateIsServedOnlyAfterOtherLiteralsAgree() {
+        TranslationCache.SqlShape first = shape("alice", "'x'", "1");
+        Assertions.assertTrue(translationCache.startLearning(first));
+        translationCache.learn(first, SHAPE_TRANSLATION, translated("'x'", "1"));
+
+        TranslationCache.SqlShape second = shape("alice", "'y'", "2");
+        Assertions.assertNull(translationCache.get(second));
+        Assertions.assertTrue(second.isVerify());
+        Assertions.assertTrue(translationCache.verify(second, translated("'y'", "2")));
+
+        TranslationCache.SqlShape third = shape("alice", "'z'", "3");
+        Assertions.assertEquals(translated("'z'", "3"), translationCache.get(third));
+        Assertions.assertFalse(third.isVerify());
+        TranslationCache.SqlShape fourth = shape("alice", "'w'", "4");
+        Assertions.assertEquals(translated("'w'", "4"), translationCache.get(fourth));
+        Assertions.assertTrue(fourth.isVerify());
+    }
+
+    @Test
+    public void testDisagreeingTranslationMakesShapeUncacheable() {
+        TranslationCache.SqlShape first = shape("alice", "'x'", "1");
+        translationCache.learn(first, SHAPE_TRANSLATION, translated("'x'", "1"));
+        TranslationCache.SqlShape second = shape("alice", "'y'", "2");
+        Assertions.assertNull(translationCache.get(second));
+        // the literal changed the translation, e.g. it was mapped to another value
+        Assertions.assertTrue(translationCache.verify(second, translated("'mapped'", "2")));
+        Assertions.assertNull(translationCache.get(shape("alice", "'y'", "2")));
+        Assertions.assertFalse(translationCache.startLearning(shape("alice", "'y'", "2")));
+        Assertions.assertEquals(1L, translationCache.getStats().get("verifyFail"));
+    }
+
+    @Test
+    public void testUsersDoNotShareTemplates() {
+        Assertions.assertNotEquals(shape("alice", "'x'", "1").getKey(),
+                shape("bob", "'x'", "1").getKey());
+        Assertions.assertEquals(shape("alice", "'x'", "1").getKey(),
+                shape("alice", "'y'", "2").getKey());
+    }
+
+    private TranslationCache.SqlShape shape(String user, String text, String number) {
+        QueryStatement queryStatement = new QueryStatement();
+        queryStatement.setDataSetId(1L);
+        queryStatement.setIsS2SQL(true);
+        queryStatement.setUser(User.get(1L, user));
+        queryStatement.setSemanticSchema(new SemanticSchemaResp());
+        SqlQuery sqlQuery = new SqlQuery();
+        sqlQuery.setSql("SELECT a FROM t WHERE d = " + text + " AND n > " + number);
+        sqlQuery.setTable("t");
+        queryStatement.setSqlQuery(sqlQuery);
+        return translationCache.getShape(queryStatement);
+    }
+
+    private static String translated(String text, String number) {
+        return "SELECT a FROM t WHERE d = " + text + " AND n > " + number;
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = TranslationCache.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(translationCache, value);
+    }
+}
@@ -0,0 +1,176 @@
+package com.tencent.supersonic.headless.core.utils;
+
+import javax.sql.DataSource;
+
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import com.tencent.supersonic.headless.core.executor.QueryAdmissionController;
+import com.tencent.supersonic.headless.core.executor.QueryExecutor;
+import com.tencent.supersonic.headless.core.executor.RowBatchHandler;
+import com.tencent.supersonic.headless.core.pojo.JdbcDataSource;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+public class SqlUtilsTest {
+
+    private static final String SQL = "SELECT * FROM range(10)";
+
+    private SingleConnectionDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SqlUtils sqlUtils;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:duckdb:", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        JdbcDataSource jdbcDataSource = Mockito.mock(JdbcDataSource.class);
+        Mockito.when(jdbcDataSource.getJdbcTemplate(any(DatabaseResp.class), anyInt()))
+                .thenReturn(jdbcTemplate);
+        sqlUtils = SqlUtils.SqlUtilsBuilder.getBuilder().withId(1L).withName("1@duckdb")
+                .withType("duckdb").withJdbcUrl("jdbc:duckdb:").withJdbcDataSource(jdbcDataSource)
+                .withResultLimit(3).withFetchSize(2).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    public void testResultLimitAppliesToLimitedQueryOnly() throws Exception {
+        SemanticQueryResp limited = new SemanticQueryResp();
+        sqlUtils.queryInternal(SQL, limited, sqlUtils.getResultLimit());
+        Assertions.assertEquals(3, limited.getResultList().size());
+
+        SemanticQueryResp unlimited = new SemanticQueryResp();
+        sqlUtils.queryInternal(SQL, unlimited);
+        Assertions.assertEquals(10, unlimited.getResultList().size());
+        Assertions.assertEquals(10, sqlUtils.execute(SQL).size());
+
+        List<RowBatch> batches = new ArrayList<>();
+        sqlUtils.queryStream(SQL, batches::add);
+        Assertions.assertEquals(10, batches.stream().mapToInt(b -> b.toRows().size()).sum());
+        Assertions.assertEquals(-1, jdbcTemplate.getMaxRows());
+    }
+
+    @Test
+    public void testInterruptedReaderStops() {
+        List<RowBatch> batches = new ArrayList<>();
+        Thread.currentThread().interrupt();
+        try {
+            Assertions.assertThrows(CancellationException.class,
+                    () -> sqlUtils.queryInternal(SQL, new SemanticQueryResp()));
+            Assertions.assertThrows(CancellationException.class,
+                    () -> sqlUtils.queryStream(SQL, batches::add));
+        } finally {
+            Thread.interrupted();
+        }
+        Assertions.assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    public void testStreamGivesBackPermitBeforeReading() throws Exception {
+        QueryAdmissionController controller = new QueryAdmissionController();
+        setField(controller, "enable", true);
+        setField(controller, "defaultMaxConcurrent", 1);
+        setField(controller, "defaultMaxQueued", 10);
+        setField(controller, "defaultQueueTimeout", 10L);
+        JdbcDataSource jdbcDataSource = Mockito.mock(JdbcDataSource.class);
+        Mockito.when(jdbcDataSource.getJdbcTemplate(any(DatabaseResp.class), anyInt()))
+                .thenReturn(jdbcTemplate);
+        SqlUtils admitted = SqlUtils.SqlUtilsBuilder.getBuilder().withId(1L).withName("1@duckdb")
+                .withType("duckdb").withJdbcUrl("jdbc:duckdb:").withJdbcDataSource(jdbcDataSource)
+                .withQueryAdmissionController(controller).withFetchSize(2).build();
+        List<Integer> admittedWhileReading = new ArrayList<>();
+        admitted.queryStream(SQL, rowBatch -> {
+            // a query on another connection is admitted while this one is being read
+            controller.acquire(admitted.getDatabase()).close();
+            admittedWhileReading.add(rowBatch.toRows().size());
+        });
+        Assertions.assertEquals(5, admittedWhileReading.size());
+    }
+
+    @Test
+    public void testStreamUsesCursorOfDriver() throws Exception {
+        Connection connection = Mockito.mock(Connection.class);
+        Statement statement = Mockito.mock(Statement.class);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(connection.getAutoCommit()).thenReturn(true);
+        Mockito.when(connection.createStatement()).thenReturn(statement);
+        Mockito.when(statement.getConnection()).thenReturn(connection);
+        Mockito.when(statement.executeQuery(SQL)).thenReturn(resultSet);
+        Mockito.when(resultSet.getMetaData()).thenReturn(Mockito.mock(ResultSetMetaData.class));
+
+        streamUtils("mysql", "jdbc:mysql://localhost:3306/s2", connection).queryStream(SQL,
+                batches -> {
+                });
+        Mockito.verify(statement).setFetchSize(Integer.MIN_VALUE);
+        Mockito.verify(connection, Mockito.never()).setAutoCommit(false);
+
+        streamUtils("postgresql", "jdbc:postgresql://localhost:5432/s2", connection)
+                .queryStream(SQL, batches -> {
+                });
+        Mockito.verify(statement).setFetchSize(2);
+        InOrder inOrder = Mockito.inOrder(connection, statement);
+        inOrder.verify(connection).setAutoCommit(false);
+        inOrder.verify(statement).executeQuery(SQL);
+        inOrder.verify(connection).setAutoCommit(true);
+    }
+
+    private SqlUtils streamUtils(String type, String url, Connection connection) throws Exception {
+        DataSource streamDataSource = Mockito.mock(DataSource.class);
+        Mockito.when(streamDataSource.getConnection()).thenReturn(connection);
+        JdbcDataSource jdbcDataSource = Mockito.mock(JdbcDataSource.class);
+        Mockito.when(jdbcDataSource.getJdbcTemplate(any(DatabaseResp.class), anyInt()))
+                .thenReturn(new JdbcTemplate(streamDataSource));
+        return SqlUtils.SqlUtilsBuilder.getBuilder().withId(1L).withName("1@" + type).withType(type)
+                .withJdbcUrl(url).withJdbcDataSource(jdbcDataSource).withFetchSize(2).build();
+    }
+
+    @Test
+    public void testEmitBatchesWithoutColumns() {
+        SemanticQueryResp queryResp = new SemanticQueryResp();
+        queryResp.setErrorMsg("table not found");
+        List<RowBatch> batches = new ArrayList<>();
+        QueryExecutor.emitBatches(queryResp, new RowBatchHandler() {
+            @Override
+            public void onColumns(List<QueryColumn> columns) {
+                Assertions.assertTrue(columns.isEmpty());
+            }
+
+            @Override
+            public void onBatch(RowBatch rowBatch) {
+                batches.add(rowBatch);
+            }
+        });
+        Assertions.assertTrue(batches.isEmpty());
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -17,6 +17,8 @@ import com.tencent.supersonic.headless.api.pojo.request.QueryStructReq;
 import com.tencent.supersonic.headless.api.pojo.request.SemanticQueryReq;
 import com.tencent.supersonic.headless.api.pojo.response.DimensionResp;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import com.tencent.supersonic.headless.core.executor.RowBatchHandler;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
 import com.tencent.supersonic.headless.server.service.DimensionService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -78,7 +80,8 @@ public class DimValueAspect {
 
         rewriteFilter(queryStructReq.getDimensionFilters(), dimAndAliasAndTechNamePair);
 
-        SemanticQueryResp semanticQueryResp = (SemanticQueryResp) joinPoint.proceed();
+        SemanticQueryResp semanticQueryResp =
+                (SemanticQueryResp) proceed(joinPoint, dimAndTechNameAndBizNamePair);
         if (Objects.nonNull(semanticQueryResp)) {
             rewriteDimValue(semanticQueryResp, dimAndTechNameAndBizNamePair);
         }
@@ -130,13 +133,36 @@ public class DimValueAspect {
         }
         Map<String, Map<String, String>> techNameToBizName = getTechNameToBizName(dimensions);
 
-        SemanticQueryResp queryResultWithColumns = (SemanticQueryResp) joinPoint.proceed();
+        SemanticQueryResp queryResultWithColumns =
+                (SemanticQueryResp) proceed(joinPoint, techNameToBizName);
         if (Objects.nonNull(queryResultWithColumns)) {
             rewriteDimValue(queryResultWithColumns, techNameToBizName);
         }
         return queryResultWithColumns;
     }
 
+    /** streaming queries pass a RowBatchHandler, whose batches are rewritten as they flow by */
+    private Object proceed(ProceedingJoinPoint joinPoint,
+            Map<String, Map<String, String>> dimAndTechNameAndBizNamePair) throws Throwable {
+        Object[] args = joinPoint.getArgs();
+        if (args.length > 2 && args[2]instanceof RowBatchHandler handler) {
+            args[2] = new RowBatchHandler() {
+                @Override
+                public void onColumns(List<QueryColumn> columns) {
+                    handler.onColumns(columns);
+                }
+
+                @Override
+                public void onBatch(RowBatch rowBatch) {
+                    rewriteDimValue(rowBatch, dimAndTechNameAndBizNamePair);
+                    handler.onBatch(rowBatch);
+                }
+            };
+            return joinPoint.proceed(args);
+        }
+        return joinPoint.proceed();
+    }
+
     public void replaceInCondition(FieldExpression expression, DimensionResp dimension,
             Map<String, Map<String, String>> filedNameToValueMap) {
         if (expression.getOperator().equals(FilterOperatorEnum.IN.getValue())) {
@@ -196,6 +222,30 @@ public class DimValueAspect {
         }
     }
 
+    private void rewriteDimValue(RowBatch rowBatch,
+            Map<String, Map<String, String>> dimAndTechNameAndBizNamePair) {
+        if (!selectDimValueMap(rowBatch.getColumns(), dimAndTechNameAndBizNamePair)) {
+            return;
+        }
+        for (int col = 0; col < rowBatch.getColumns().size(); col++) {
+            Map<String, String> techAndBizPair =
+                    dimAndTechNameAndBizNamePair.get(rowBatch.getColumns().get(col).getBizName());
+            if (CollectionUtils.isEmpty(techAndBizPair)) {
+                continue;
+            }
+            for (int row = 0; row < rowBatch.getRowCount(); row++) {
+                Object techName = rowBatch.getValue(row, col);
+                if (Objects.isNull(techName)) {
+                    continue;
+                }
+                String bizValueName = techAndBizPair.get(techName.toString());
+                if (StringUtils.isNotEmpty(bizValueName)) {
+                    rowBatch.setValue(row, col, bizValueName);
+                }
+            }
+        }
+    }
+
     private boolean selectDimValueMap(List<QueryColumn> columns,
             Map<String, Map<String, String>> dimAndTechNameAndBizNamePair) {
         if (CollectionUtils.isEmpty(dimAndTechNameAndBizNamePair)
@@ -2,26 +2,39 @@ package com.tencent.supersonic.headless.server.facade.rest;
 
 import com.tencent.supersonic.auth.api.authentication.utils.UserHolder;
 import com.tencent.supersonic.common.pojo.User;
+import com.tencent.supersonic.common.pojo.exception.InvalidPermissionException;
 import com.tencent.supersonic.common.util.StringUtil;
 import com.tencent.supersonic.headless.api.pojo.SqlEvaluation;
 import com.tencent.supersonic.headless.api.pojo.request.QuerySqlReq;
 import com.tencent.supersonic.headless.api.pojo.request.QuerySqlsReq;
 import com.tencent.supersonic.headless.api.pojo.request.SemanticQueryReq;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import com.tencent.supersonic.headless.core.cache.CacheManager;
+import com.tencent.supersonic.headless.core.cache.DefaultQueryCache;
+import com.tencent.supersonic.headless.core.cache.TieredCacheManager;
+import com.tencent.supersonic.headless.core.executor.DuckDbAccelerator;
+import com.tencent.supersonic.headless.core.executor.QueryAccelerator;
+import com.tencent.supersonic.headless.core.executor.QueryAdmissionController;
+import com.tencent.supersonic.headless.core.translator.TranslationCache;
+import com.tencent.supersonic.headless.core.utils.ComponentFactory;
 import com.tencent.supersonic.headless.server.facade.service.ChatLayerService;
 import com.tencent.supersonic.headless.server.facade.service.SemanticLayerService;
+import com.tencent.supersonic.headless.server.utils.SchemaMapInfoCache;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -36,6 +49,18 @@ public class SqlQueryApiController {
     @Autowired
     private ChatLayerService chatLayerService;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private TranslationCache translationCache;
+
+    @Autowired
+    private QueryAdmissionController queryAdmissionController;
+
+    @Autowired
+    private SchemaMapInfoCache schemaMapInfoCache;
+
     @PostMapping("/sql")
     public Object queryBySql(@RequestBody QuerySqlReq querySqlReq, HttpServletRequest request,
             HttpServletResponse response) throws Exception {
@@ -117,6 +142,33 @@ public class SqlQueryApiController {
         return queryBySqls(querySqlsReq, request, response);
     }
 
+    /** counters of the caches, gates and mappers on the query path, for super admins only */
+    @GetMapping("/stats")
+    public Map<String, Object> queryStats(HttpServletRequest request,
+            HttpServletResponse response) {
+        User user = UserHolder.findUser(request, response);
+        if (!user.isSuperAdmin()) {
+            throw new InvalidPermissionException("only super admins can view the query stats");
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (ComponentFactory.getQueryCache() instanceof DefaultQueryCache) {
+            stats.put("queryCache",
+                    ((DefaultQueryCache) ComponentFactory.getQueryCache()).getStats());
+        }
+        if (cacheManager instanceof TieredCacheManager) {
+            stats.put("cacheStore", ((TieredCacheManager) cacheManager).getStats());
+        }
+        stats.put("translationCache", translationCache.getStats());
+        stats.put("admission", queryAdmissionController.getStats());
+        stats.put("mapping", schemaMapInfoCache.getStats());
+        for (QueryAccelerator queryAccelerator : ComponentFactory.getQueryAccelerators()) {
+            if (queryAccelerator instanceof DuckDbAccelerator) {
+                stats.put("duckDbAccelerator", ((DuckDbAccelerator) queryAccelerator).getStats());
+            }
+        }
+        return stats;
+    }
+
     private List<QuerySqlReq> convert(QuerySqlsReq querySqlsReq) {
         return querySqlsReq.getSqls().stream().map(sql -> {
             QuerySqlReq querySqlReq = new QuerySqlReq();
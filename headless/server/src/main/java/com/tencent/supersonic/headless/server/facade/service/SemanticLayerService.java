@@ -10,6 +10,7 @@ import com.tencent.supersonic.headless.api.pojo.response.ItemResp;
 import com.tencent.supersonic.headless.api.pojo.response.MetricResp;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticTranslateResp;
+import com.tencent.supersonic.headless.core.executor.RowBatchHandler;
 
 import java.util.List;
 
@@ -20,6 +21,13 @@ public interface SemanticLayerService {
 
     SemanticQueryResp queryByReq(SemanticQueryReq queryReq, User user) throws Exception;
 
+    /**
+     * Streams the query result to the handler in bounded batches instead of materializing it. The
+     * returned response carries columns and sql only, and the result is never cached.
+     */
+    SemanticQueryResp queryByReq(SemanticQueryReq queryReq, User user, RowBatchHandler handler)
+            throws Exception;
+
     SemanticQueryResp queryDimensionValue(DimensionValueReq dimensionValueReq, User user);
 
     DataSetSchema getDataSetSchema(Long id);
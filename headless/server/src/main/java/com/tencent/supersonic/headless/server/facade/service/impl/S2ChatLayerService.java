@@ -45,7 +45,11 @@ public class S2ChatLayerService implements ChatLayerService {
     @Override
     public MapResp map(QueryNLReq queryNLReq) {
         ChatQueryContext queryCtx = buildChatQueryContext(queryNLReq);
-        ComponentFactory.getSchemaMappers().forEach(mapper -> mapper.map(queryCtx));
+        if (queryCtx.getMapInfo().isEmpty()) {
+            chatWorkflowEngine.performMapping(queryCtx);
+        } else {
+            ComponentFactory.getSchemaMappers().forEach(mapper -> mapper.map(queryCtx));
+        }
         return new MapResp(queryNLReq.getQueryText(), queryCtx.getMapInfo());
     }
 
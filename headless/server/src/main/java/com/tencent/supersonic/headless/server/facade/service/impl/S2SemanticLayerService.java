@@ -21,7 +21,9 @@ import com.tencent.supersonic.headless.chat.knowledge.helper.HanlpHelper;
 import com.tencent.supersonic.headless.chat.knowledge.helper.NatureHelper;
 import com.tencent.supersonic.headless.core.cache.QueryCache;
 import com.tencent.supersonic.headless.core.executor.QueryExecutor;
+import com.tencent.supersonic.headless.core.executor.RowBatchHandler;
 import com.tencent.supersonic.headless.core.pojo.QueryStatement;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
 import com.tencent.supersonic.headless.core.pojo.SqlQuery;
 import com.tencent.supersonic.headless.core.pojo.StructQuery;
 import com.tencent.supersonic.headless.core.translator.SemanticTranslator;
@@ -42,6 +44,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Service
@@ -107,52 +110,114 @@ public class S2SemanticLayerService implements SemanticLayerService {
             // 1.initStatInfo
             statUtils.initStatInfo(queryReq, user);
 
-            // 2.query from cache
+            // 2.query from cache, concurrent identical queries share a single execution
             String cacheKey = queryCache.getCacheKey(queryReq);
-            Object query = queryCache.query(queryReq, cacheKey);
-            if (Objects.nonNull(query)) {
+            AtomicReference<SemanticQueryResp> executed = new AtomicReference<>();
+            Object query = queryCache.query(queryReq, cacheKey, () -> {
+                SemanticQueryResp result = executeQuery(queryReq, user);
+                executed.set(result);
+                return result;
+            });
+            if (Objects.nonNull(query) && query != executed.get()) {
                 log.info("cacheKey:{},query:{}", cacheKey,
                         StringUtils.normalizeSpace(query.toString()));
-            }
-            if (Objects.nonNull(query)) {
-                SemanticQueryResp queryResp = (SemanticQueryResp) query;
+                SemanticQueryResp cachedResp = (SemanticQueryResp) query;
+                SemanticQueryResp queryResp =
+                        queryReq.isColumnarResult() ? cachedResp.columnarCopy()
+                                : cachedResp.rowCopy();
                 queryResp.setUseCache(true);
                 return queryResp;
             }
             StatUtils.get().setUseResultCache(false);
 
-            // 3 translate query
+            // 5.set stateInfo
+            SemanticQueryResp queryResp = (SemanticQueryResp) query;
+            if (Objects.isNull(queryResp)) {
+                state = TaskStatusEnum.ERROR;
+            } else {
+                // the result has been put into cache by the query above
+                statUtils.updateResultCacheKey(cacheKey);
+                if (queryReq.isColumnarResult()) {
+                    queryResp.toColumnar();
+                }
+            }
+
+            return queryResp;
+        } catch (Exception e) {
+            log.error("exception in queryByReq:{}, e: ", queryReq, e);
+            state = TaskStatusEnum.ERROR;
+            throw e;
+        } finally {
+            statUtils.statInfo2DbAsync(state);
+        }
+    }
+
+    private SemanticQueryResp executeQuery(SemanticQueryReq queryReq, User user) throws Exception {
+        // 3 translate query
+        QueryStatement queryStatement = buildQueryStatement(queryReq, user);
+        semanticTranslator.translate(queryStatement);
+
+        // Check whether the dimensions of the metric drill-down are correct temporarily,
+        // add the abstraction of a validator later.
+        metricDrillDownChecker.checkQuery(queryStatement);
+
+        // 4.execute query
+        SemanticQueryResp queryResp = null;
+        for (QueryExecutor queryExecutor : queryExecutors) {
+            if (queryExecutor.accept(queryStatement)) {
+                queryResp = queryExecutor.execute(queryStatement);
+                queryUtils.populateQueryColumns(queryResp, queryStatement.getSemanticSchema());
+            }
+        }
+        if (Objects.nonNull(queryResp)) {
+            queryResp.appendErrorMsg(queryStatement.getErrMsg());
+        }
+        return queryResp;
+    }
+
+    @Override
+    @S2DataPermission
+    @SneakyThrows
+    public SemanticQueryResp queryByReq(SemanticQueryReq queryReq, User user,
+            RowBatchHandler handler) {
+        TaskStatusEnum state = TaskStatusEnum.SUCCESS;
+        log.info("[stream queryReq:{}]", queryReq);
+        try {
+            statUtils.initStatInfo(queryReq, user);
+            StatUtils.get().setUseResultCache(false);
+
             QueryStatement queryStatement = buildQueryStatement(queryReq, user);
             semanticTranslator.translate(queryStatement);
-
-            // Check whether the dimensions of the metric drill-down are correct temporarily,
-            // add the abstraction of a validator later.
             metricDrillDownChecker.checkQuery(queryStatement);
 
-            // 4.execute query
             SemanticQueryResp queryResp = null;
+            RowBatchHandler populatingHandler = new RowBatchHandler() {
+                @Override
+                public void onColumns(List<QueryColumn> columns) {
+                    queryUtils.populateQueryColumns(columns, queryStatement.getSemanticSchema());
+                    handler.onColumns(columns);
+                }
+
+                @Override
+                public void onBatch(RowBatch rowBatch) {
+                    handler.onBatch(rowBatch);
+                }
+            };
             for (QueryExecutor queryExecutor : queryExecutors) {
                 if (queryExecutor.accept(queryStatement)) {
-                    queryResp = queryExecutor.execute(queryStatement);
-                    queryUtils.populateQueryColumns(queryResp, queryStatement.getSemanticSchema());
+                    queryResp = queryExecutor.execute(queryStatement, populatingHandler);
+                    break;
                 }
             }
 
-            // 5.reset cache and set stateInfo
-            Boolean setCacheSuccess = queryCache.put(cacheKey, queryResp);
-            if (setCacheSuccess) {
-                // if result is not null, update cache data
-                statUtils.updateResultCacheKey(cacheKey);
-            }
             if (Objects.isNull(queryResp)) {
                 state = TaskStatusEnum.ERROR;
             } else {
                 queryResp.appendErrorMsg(queryStatement.getErrMsg());
             }
-
             return queryResp;
         } catch (Exception e) {
-            log.error("exception in queryByReq:{}, e: ", queryReq, e);
+            log.error("exception in stream queryByReq:{}, e: ", queryReq, e);
             state = TaskStatusEnum.ERROR;
             throw e;
         } finally {
@@ -315,7 +380,8 @@ public class S2SemanticLayerService implements SemanticLayerService {
         queryStatement.setDataSetId(queryReq.getDataSetId());
         queryStatement.setDataSetName(queryReq.getDataSetName());
         queryStatement.setSemanticSchema(semanticSchemaResp);
-        queryStatement.setOntology(semanticSchemaManager.buildOntology(semanticSchemaResp));
+        queryStatement.setOntology(
+                semanticSchemaManager.getOntology(schemaFilterReq, semanticSchemaResp));
         return queryStatement;
     }
 
@@ -1,5 +1,7 @@
 package com.tencent.supersonic.headless.server.manager;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.tencent.supersonic.common.pojo.ModelRela;
@@ -7,19 +9,24 @@ import com.tencent.supersonic.common.pojo.enums.FilterOperatorEnum;
 import com.tencent.supersonic.headless.api.pojo.*;
 import com.tencent.supersonic.headless.api.pojo.enums.DimensionType;
 import com.tencent.supersonic.headless.api.pojo.enums.MetricDefineType;
+import com.tencent.supersonic.headless.api.pojo.request.SchemaFilterReq;
 import com.tencent.supersonic.headless.api.pojo.response.*;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
 import com.tencent.supersonic.headless.core.pojo.JoinRelation;
 import com.tencent.supersonic.headless.core.pojo.Ontology;
 import com.tencent.supersonic.headless.core.translator.parser.calcite.S2CalciteSchema;
 import com.tencent.supersonic.headless.server.pojo.yaml.*;
 import com.tencent.supersonic.headless.server.service.SchemaService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -27,9 +34,35 @@ import java.util.stream.Collectors;
 public class SemanticSchemaManager {
 
     private final SchemaService schemaService;
+    private final ModelVersionManager modelVersionManager;
+    /** the ontologies by data set and model versions, with the schema they were built from */
+    private final Cache<String, Pair<SemanticSchemaResp, Ontology>> ontologies;
 
-    public SemanticSchemaManager(SchemaService schemaService) {
+    public SemanticSchemaManager(SchemaService schemaService,
+            ModelVersionManager modelVersionManager,
+            @Value("${s2.ontology.cache.max-size:500}") long maxSize) {
         this.schemaService = schemaService;
+        this.modelVersionManager = modelVersionManager;
+        this.ontologies = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterAccess(30, TimeUnit.MINUTES).build();
+    }
+
+    /**
+     * the ontology of the semantic schema fetched by the filter, built once per data set and model
+     * versions. Each caller gets its own copy to change.
+     */
+    public Ontology getOntology(SchemaFilterReq schemaFilterReq,
+            SemanticSchemaResp semanticSchemaResp) {
+        String key = String.format("%s_%s", schemaFilterReq.getDataSetId(),
+                modelVersionManager.getVersionKey(schemaFilterReq.getModelIds()));
+        Pair<SemanticSchemaResp, Ontology> cached = ontologies.getIfPresent(key);
+        // a schema fetched again with the same content keeps the ontology, while changes that do
+        // not bump a model version, such as of the database or the relations, rebuild it
+        if (Objects.isNull(cached) || !Objects.equals(cached.getLeft(), semanticSchemaResp)) {
+            cached = Pair.of(semanticSchemaResp, buildOntology(semanticSchemaResp));
+            ontologies.put(key, cached);
+        }
+        return cached.getRight().copy();
     }
 
     public Ontology buildOntology(SemanticSchemaResp semanticSchemaResp) {
@@ -45,6 +45,17 @@ public class StatRepositoryImpl implements StatRepository {
         return statMapper.insertOrUpdate(queryStatDO);
     }
 
+    @Override
+    public void createRecords(List<QueryStat> queryStatInfos) {
+        List<QueryStatDO> queryStatDOS = queryStatInfos.stream().map(queryStatInfo -> {
+            QueryStatDO queryStatDO = new QueryStatDO();
+            BeanUtils.copyProperties(queryStatInfo, queryStatDO);
+            return queryStatDO;
+        }).collect(Collectors.toList());
+        // one jdbc batch of single row statements, each keeps the upsert of createRecord
+        statMapper.insertOrUpdate(queryStatDOS);
+    }
+
     @Override
     @SneakyThrows
     public List<ItemUseResp> getStatInfo(ItemUseReq itemUseReq) {
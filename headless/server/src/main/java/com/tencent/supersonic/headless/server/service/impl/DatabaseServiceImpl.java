@@ -64,6 +64,7 @@ public class DatabaseServiceImpl extends ServiceImpl<DatabaseDOMapper, DatabaseD
 
         DatabaseDO databaseDO = getDatabaseDO(databaseReq.getId());
         if (databaseDO != null) {
+            sqlUtils.release(DatabaseConverter.convertWithPassword(databaseDO));
             databaseReq.updatedBy(user.getName());
             DatabaseConverter.convert(databaseReq, databaseDO);
             updateById(databaseDO);
@@ -149,6 +150,10 @@ public class DatabaseServiceImpl extends ServiceImpl<DatabaseDOMapper, DatabaseD
             String message = String.format("该数据库被模型%s使用，无法删除", datasourceNames);
             throw new RuntimeException(message);
         }
+        DatabaseDO databaseDO = getById(databaseId);
+        if (databaseDO != null) {
+            sqlUtils.release(DatabaseConverter.convertWithPassword(databaseDO));
+        }
         removeById(databaseId);
     }
 
@@ -1,5 +1,7 @@
 package com.tencent.supersonic.headless.server.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import com.tencent.supersonic.common.pojo.Constants;
@@ -18,25 +20,41 @@ import com.tencent.supersonic.headless.api.pojo.response.DictTaskResp;
 import com.tencent.supersonic.headless.api.pojo.response.DictValueDimResp;
 import com.tencent.supersonic.headless.api.pojo.response.DictValueResp;
 import com.tencent.supersonic.headless.api.pojo.response.DimensionResp;
+import com.tencent.supersonic.headless.api.pojo.response.ModelResp;
 import com.tencent.supersonic.headless.chat.knowledge.DictWord;
 import com.tencent.supersonic.headless.chat.knowledge.file.FileHandler;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
 import com.tencent.supersonic.headless.server.persistence.dataobject.DictTaskDO;
 import com.tencent.supersonic.headless.server.persistence.repository.DictRepository;
 import com.tencent.supersonic.headless.server.service.DictTaskService;
 import com.tencent.supersonic.headless.server.service.DimensionService;
+import com.tencent.supersonic.headless.server.service.ModelService;
 import com.tencent.supersonic.headless.server.utils.DictUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -52,6 +70,10 @@ public class DictTaskServiceImpl implements DictTaskService {
     @Value("${dict.file.type:txt}")
     private String dictFileType;
 
+    /** items of one database built at the same time by the daily task */
+    @Value("${s2.dict.task.database.parallelism:2}")
+    private Integer dictTaskDatabaseParallelism;
+
     private String dimValue = "DimValue_%d_%d";
 
     private final DictRepository dictRepository;
@@ -60,16 +82,28 @@ public class DictTaskServiceImpl implements DictTaskService {
     private final FileHandler fileHandler;
     private final DictWordService dictWordService;
     private final DimensionService dimensionService;
+    private final ModelVersionManager modelVersionManager;
+    private final ModelService modelService;
+    /** items built at the same time by the daily task, sized by s2.dict.task.parallelism */
+    private final ThreadPoolExecutor dictTaskExecutor;
+    /** value to alias map of each dimension, keyed by the dimension and its model version */
+    private final Cache<String, Map<String, DimValueMap>> dimValueMaps =
+            Caffeine.newBuilder().maximumSize(1000).expireAfterWrite(30, TimeUnit.MINUTES).build();
 
     public DictTaskServiceImpl(DictRepository dictRepository, DictUtils dictConverter,
             DictUtils dictUtils, FileHandler fileHandler, DictWordService dictWordService,
-            DimensionService dimensionService) {
+            DimensionService dimensionService, ModelVersionManager modelVersionManager,
+            ModelService modelService,
+            @Qualifier("dictTaskExecutor") ThreadPoolExecutor dictTaskExecutor) {
         this.dictRepository = dictRepository;
         this.dictConverter = dictConverter;
         this.dictUtils = dictUtils;
         this.fileHandler = fileHandler;
         this.dictWordService = dictWordService;
         this.dimensionService = dimensionService;
+        this.modelVersionManager = modelVersionManager;
+        this.modelService = modelService;
+        this.dictTaskExecutor = dictTaskExecutor;
     }
 
     @Override
@@ -108,17 +142,13 @@ public class DictTaskServiceImpl implements DictTaskService {
         }
 
         DictTaskDO dictTaskDO = dictRepository.queryDictTaskById(dictItemResp.getId());
-        dictTaskDO.setStatus(TaskStatusEnum.RUNNING.getStatus());
-        dictRepository.editDictTask(dictTaskDO);
-
-        // 1.Generate item dictionary data
-        List<String> data = dictUtils.fetchItemValue(dictItemResp);
-
-        // 2.Change dictionary file
-        String fileName = dictItemResp.fetchDictFileName() + Constants.DOT + dictFileType;
-        fileHandler.writeFile(data, fileName, false);
+        // 1.Generate item dictionary data and change dictionary file
+        buildDictFile(dictItemResp, dictTaskDO);
+        if (TaskStatusEnum.ERROR.getStatus().equals(dictTaskDO.getStatus())) {
+            return;
+        }
 
-        // 3.Change in-memory dictionary data in real time
+        // 2.Change in-memory dictionary data in real time
         String status = TaskStatusEnum.SUCCESS.getStatus();
         try {
             dictWordService.loadDictWord();
@@ -157,14 +187,140 @@ public class DictTaskServiceImpl implements DictTaskService {
         log.info("[dailyDictTask] start");
         if (!dictFlushDailyEnable) {
             log.info("dictFlushDailyEnable is false, now finish dailyDictTask");
+            return true;
         }
         DictItemFilter filter = DictItemFilter.builder().status(StatusEnum.ONLINE).build();
         List<DictItemResp> dictItemRespList = dictRepository.queryDictConf(filter);
-        dictItemRespList.stream().forEach(item -> handleDictTaskByItemResp(item, null));
+        runDictTasks(dictItemRespList, null);
         log.info("[dailyDictTask] finish");
         return true;
     }
 
+    /**
+     * Builds the dictionary files of the items in parallel, bounded in total and per database, and
+     * reloads the knowledge once all files are written.
+     */
+    private void runDictTasks(List<DictItemResp> dictItemRespList, User user) {
+        if (CollectionUtils.isEmpty(dictItemRespList)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Map<Long, DictTaskDO> tasks = new ConcurrentHashMap<>();
+        for (DictItemResp dictItemResp : dictItemRespList) {
+            DictTaskDO dictTaskDO =
+                    dictConverter.generateDictTaskDO(dictItemResp, user, TaskStatusEnum.PENDING);
+            dictRepository.addDictTask(dictTaskDO);
+            dictItemResp.setId(dictTaskDO.getId());
+            tasks.put(dictTaskDO.getId(), dictTaskDO);
+        }
+
+        Map<Long, Semaphore> databasePermits = new ConcurrentHashMap<>();
+        Map<Long, Long> databaseIds = new HashMap<>();
+        List<DictItemResp> orderedItems = interleaveByDatabase(dictItemRespList, databaseIds);
+        AtomicInteger finished = new AtomicInteger();
+        List<CompletableFuture<Void>> futures =
+                orderedItems.stream().map(dictItemResp -> CompletableFuture.runAsync(() -> {
+                    Semaphore permit =
+                            databasePermits.computeIfAbsent(databaseIds.get(dictItemResp.getId()),
+                                    k -> new Semaphore(Math.max(dictTaskDatabaseParallelism, 1)));
+                    permit.acquireUninterruptibly();
+                    try {
+                        buildDictFile(dictItemResp, tasks.get(dictItemResp.getId()));
+                    } finally {
+                        permit.release();
+                    }
+                    log.info("[dictTask] progress:{}/{}", finished.incrementAndGet(),
+                            dictItemRespList.size());
+                }, dictTaskExecutor)).collect(Collectors.toList());
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        // change in-memory dictionary data once for all items
+        long reloadStart = System.currentTimeMillis();
+        String reloadError = null;
+        try {
+            dictWordService.loadDictWord();
+        } catch (Exception e) {
+            log.error("reloadCustomDictionary error", e);
+            reloadError = e.toString();
+        }
+        long reloadMs = System.currentTimeMillis() - reloadStart;
+        for (DictTaskDO dictTaskDO : tasks.values()) {
+            if (TaskStatusEnum.RUNNING.getStatus().equals(dictTaskDO.getStatus())) {
+                dictTaskDO
+                        .setStatus(Objects.isNull(reloadError) ? TaskStatusEnum.SUCCESS.getStatus()
+                                : TaskStatusEnum.ERROR.getStatus());
+                dictTaskDO.setDescription(dictTaskDO.getDescription() + ", reload:" + reloadMs
+                        + "ms" + (Objects.isNull(reloadError) ? "" : ", error:" + reloadError));
+            }
+            dictTaskDO.setElapsedMs(DateUtils.calculateDiffMs(dictTaskDO.getCreatedAt()));
+            dictRepository.editDictTask(dictTaskDO);
+        }
+        log.info("[dictTask] {} items are done in {}ms, reload:{}ms", dictItemRespList.size(),
+                System.currentTimeMillis() - start, reloadMs);
+    }
+
+    /** streams the values of the item into its dictionary file, the task stays running */
+    private void buildDictFile(DictItemResp dictItemResp, DictTaskDO dictTaskDO) {
+        long start = System.currentTimeMillis();
+        dictTaskDO.setStatus(TaskStatusEnum.RUNNING.getStatus());
+        dictRepository.editDictTask(dictTaskDO);
+        try {
+            AtomicLong rowCount = new AtomicLong();
+            Map<String, Long> valueAndFrequency =
+                    dictUtils.fetchItemValueFrequency(dictItemResp, rowCount);
+            long fetchMs = System.currentTimeMillis() - start;
+            String fileName = dictItemResp.fetchDictFileName() + Constants.DOT + dictFileType;
+            long lineCount = fileHandler
+                    .writeFile(dictUtils.toDictLines(dictItemResp, valueAndFrequency), fileName);
+            dictTaskDO.setDescription(
+                    String.format("rows:%d, values:%d, fetch:%dms, write:%dms", rowCount.get(),
+                            lineCount, fetchMs, System.currentTimeMillis() - start - fetchMs));
+        } catch (Exception e) {
+            log.error("dictItemResp:{}, buildDictFile error:", dictItemResp, e);
+            dictTaskDO.setStatus(TaskStatusEnum.ERROR.getStatus());
+            dictTaskDO.setDescription(e.toString());
+        }
+        dictTaskDO.setElapsedMs(DateUtils.calculateDiffMs(dictTaskDO.getCreatedAt()));
+        dictRepository.editDictTask(dictTaskDO);
+    }
+
+    /**
+     * Orders the items round robin over their databases, so the workers spread over the databases
+     * instead of queueing up on the permits of one.
+     */
+    private List<DictItemResp> interleaveByDatabase(List<DictItemResp> dictItemRespList,
+            Map<Long, Long> databaseIds) {
+        Map<Long, Long> modelDatabaseIds = new HashMap<>();
+        Map<Long, Deque<DictItemResp>> itemsByDatabase = new LinkedHashMap<>();
+        for (DictItemResp dictItemResp : dictItemRespList) {
+            Long databaseId = modelDatabaseIds.computeIfAbsent(dictItemResp.getModelId(),
+                    modelId -> getDatabaseId(dictItemResp));
+            databaseIds.put(dictItemResp.getId(), databaseId);
+            itemsByDatabase.computeIfAbsent(databaseId, k -> new ArrayDeque<>()).add(dictItemResp);
+        }
+        List<DictItemResp> orderedItems = new ArrayList<>(dictItemRespList.size());
+        while (orderedItems.size() < dictItemRespList.size()) {
+            for (Deque<DictItemResp> items : itemsByDatabase.values()) {
+                if (!items.isEmpty()) {
+                    orderedItems.add(items.poll());
+                }
+            }
+        }
+        return orderedItems;
+    }
+
+    private Long getDatabaseId(DictItemResp dictItemResp) {
+        try {
+            ModelResp model = modelService.getModel(dictItemResp.getModelId());
+            if (Objects.nonNull(model) && Objects.nonNull(model.getDatabaseId())) {
+                return model.getDatabaseId();
+            }
+        } catch (Exception e) {
+            log.warn("failed to get the database of dictItemResp:{}", dictItemResp, e);
+        }
+        return -1L;
+    }
+
     @Override
     public DictTaskResp queryLatestDictTask(DictSingleTaskReq taskReq, User user) {
         return dictRepository.queryLatestDictTask(taskReq);
@@ -183,8 +339,7 @@ public class DictTaskServiceImpl implements DictTaskService {
 
     @Override
     public PageInfo<DictValueDimResp> queryDictValue(DictValueReq dictValueReq, User user) {
-        // todo 优化读取内存结构
-        // return getDictValuePageFromMemory(dictValueReq);
+        // the file handler keeps the values of the file in memory while they are paged through
         return getDictValuePageFromFile(dictValueReq);
     }
 
@@ -195,17 +350,15 @@ public class DictTaskServiceImpl implements DictTaskService {
         PageInfo<DictValueResp> dictValueRespList =
                 fileHandler.queryDictValue(fileName, dictValueReq);
         PageInfo<DictValueDimResp> result = convert2DictValueDimRespPage(dictValueRespList);
-        fillDimMapInfo(result.getList(), dictValueReq.getItemId());
+        fillDimMapInfo(result.getList(), dictValueReq.getModelId(), dictValueReq.getItemId());
         return result;
     }
 
-    private void fillDimMapInfo(List<DictValueDimResp> list, Long dimId) {
-        DimensionResp dimResp = dimensionService.getDimension(dimId);
-        if (CollectionUtils.isEmpty(dimResp.getDimValueMaps())) {
+    private void fillDimMapInfo(List<DictValueDimResp> list, Long modelId, Long dimId) {
+        if (CollectionUtils.isEmpty(list)) {
             return;
         }
-        Map<String, DimValueMap> valueAndMap = dimResp.getDimValueMaps().stream()
-                .collect(Collectors.toMap(dim -> dim.getValue(), v -> v, (v1, v2) -> v2));
+        Map<String, DimValueMap> valueAndMap = getDimValueMaps(modelId, dimId);
         if (CollectionUtils.isEmpty(valueAndMap)) {
             return;
         }
@@ -217,6 +370,24 @@ public class DictTaskServiceImpl implements DictTaskService {
         });
     }
 
+    /**
+     * edits of the value aliases increase the model version, which retires the cached map. Without
+     * a model the global version is used, which increases on a change of any model.
+     */
+    private Map<String, DimValueMap> getDimValueMaps(Long modelId, Long dimId) {
+        String key = dimId + "_"
+                + (Objects.isNull(modelId) ? "v" + modelVersionManager.getGlobalVersion()
+                        : modelVersionManager.getVersion(modelId));
+        return dimValueMaps.get(key, k -> {
+            DimensionResp dimResp = dimensionService.getDimension(dimId);
+            if (Objects.isNull(dimResp) || CollectionUtils.isEmpty(dimResp.getDimValueMaps())) {
+                return new HashMap<>();
+            }
+            return dimResp.getDimValueMaps().stream()
+                    .collect(Collectors.toMap(dim -> dim.getValue(), v -> v, (v1, v2) -> v2));
+        });
+    }
+
     private PageInfo<DictValueDimResp> convert2DictValueDimRespPage(
             PageInfo<DictValueResp> dictValueRespPage) {
         PageInfo<DictValueDimResp> result = new PageInfo<>();
@@ -1,56 +1,110 @@
 package com.tencent.supersonic.headless.server.service.impl;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.tencent.supersonic.common.pojo.enums.DictWordType;
 import com.tencent.supersonic.headless.api.pojo.SchemaElement;
 import com.tencent.supersonic.headless.api.pojo.SchemaElementType;
+import com.tencent.supersonic.headless.api.pojo.SchemaValueMap;
 import com.tencent.supersonic.headless.api.pojo.SemanticSchema;
 import com.tencent.supersonic.headless.chat.knowledge.DictWord;
 import com.tencent.supersonic.headless.chat.knowledge.KnowledgeBaseService;
 import com.tencent.supersonic.headless.chat.knowledge.builder.WordBuilderFactory;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
 import com.tencent.supersonic.headless.server.service.SchemaService;
 import lombok.Data;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Keeps the knowledge base in line with the semantic schema. The words of every schema element are
+ * remembered together with a digest of their content, and each reload only applies the words of
+ * elements that were added, removed or changed. Elements of a model whose change version and
+ * element content are unchanged are skipped without building their words.
+ */
 @Service
 @Slf4j
 @Data
 public class DictWordService {
 
+    private static final String MODEL_KEY_PREFIX = "model_";
+
     @Autowired
     private SchemaService schemaService;
     @Autowired
     private KnowledgeBaseService knowledgeBaseService;
+    @Autowired
+    private ModelVersionManager modelVersionManager;
 
-    private List<DictWord> preDictWords = new ArrayList<>();
+    /** words of each schema element applied last, keyed by element */
+    private Map<String, ElementWords> preElementWords = new HashMap<>();
+    /** change signature of each model applied last */
+    private Map<String, String> preModelSignatures = new HashMap<>();
 
-    public void loadDictWord() {
-        List<DictWord> dictWords = getAllDictWords();
-        setPreDictWords(dictWords);
+    public synchronized void loadDictWord() {
+        Map<String, String> modelSignatures = new HashMap<>();
+        Map<String, ElementWords> elementWords = getElementWords(modelSignatures, false);
+        List<DictWord> dictWords = elementWords.values().stream()
+                .flatMap(words -> words.getWords().stream()).collect(Collectors.toList());
+        setPreElementWords(elementWords);
+        setPreModelSignatures(modelSignatures);
         knowledgeBaseService.reloadAllData(dictWords);
     }
 
-    public void reloadDictWord() {
+    public synchronized void reloadDictWord() {
         long startTime = System.currentTimeMillis();
-        List<DictWord> dictWords = getAllDictWords();
-        List<DictWord> preDictWords = getPreDictWords();
-        if (org.apache.commons.collections.CollectionUtils.isEqualCollection(dictWords,
-                preDictWords)) {
+        Map<String, String> modelSignatures = new HashMap<>();
+        Map<String, ElementWords> elementWords = getElementWords(modelSignatures, true);
+
+        List<DictWord> addedWords = new ArrayList<>();
+        List<DictWord> removedWords = new ArrayList<>();
+        Map<String, ElementWords> preElementWords = getPreElementWords();
+        elementWords.forEach((key, words) -> {
+            ElementWords preWords = preElementWords.get(key);
+            if (Objects.isNull(preWords)) {
+                addedWords.addAll(words.getWords());
+            } else if (!preWords.getDigest().equals(words.getDigest())) {
+                Set<DictWord> preSet = new HashSet<>(preWords.getWords());
+                Set<DictWord> set = new HashSet<>(words.getWords());
+                words.getWords().stream().filter(word -> !preSet.contains(word))
+                        .forEach(addedWords::add);
+                preWords.getWords().stream().filter(word -> !set.contains(word))
+                        .forEach(removedWords::add);
+            }
+        });
+        preElementWords.forEach((key, preWords) -> {
+            if (!elementWords.containsKey(key)) {
+                removedWords.addAll(preWords.getWords());
+            }
+        });
+        setPreElementWords(elementWords);
+        setPreModelSignatures(modelSignatures);
+        if (addedWords.isEmpty() && removedWords.isEmpty()) {
             log.debug("Dictionary hasn't been reloaded.");
             return;
         }
-        setPreDictWords(dictWords);
-        knowledgeBaseService.reloadAllData(dictWords);
+        knowledgeBaseService.updateDictWords(addedWords, removedWords);
         long duration = System.currentTimeMillis() - startTime;
-        log.info("Dictionary has been regularly reloaded in {} milliseconds", duration);
+        log.info("Dictionary has been regularly updated in {} milliseconds, added:{}, removed:{}",
+                duration, addedWords.size(), removedWords.size());
     }
 
     public List<DictWord> getAllDictWords() {
@@ -82,6 +136,110 @@ public class DictWordService {
         natures.addAll(natureList);
     }
 
+    /**
+     * Words of all schema elements keyed by element. With reuse, the words of a model whose
+     * signature is unchanged are taken from the last reload instead of being built again.
+     */
+    private Map<String, ElementWords> getElementWords(Map<String, String> modelSignatures,
+            boolean reuse) {
+        SemanticSchema semanticSchema = schemaService.getSemanticSchema();
+        Map<DictWordType, List<SchemaElement>> elementsByType = new LinkedHashMap<>();
+        elementsByType.put(DictWordType.DIMENSION, semanticSchema.getDimensions());
+        elementsByType.put(DictWordType.METRIC, semanticSchema.getMetrics());
+        elementsByType.put(DictWordType.VALUE, semanticSchema.getDimensionValues());
+        elementsByType.put(DictWordType.TERM, semanticSchema.getTerms());
+
+        Map<String, Map<String, Pair<DictWordType, SchemaElement>>> elementsByModel =
+                new LinkedHashMap<>();
+        elementsByType.forEach((type, elements) -> {
+            if (CollectionUtils.isEmpty(elements)) {
+                return;
+            }
+            for (SchemaElement element : distinct(elements)) {
+                elementsByModel
+                        .computeIfAbsent(getModelKey(type, element), k -> new LinkedHashMap<>())
+                        .put(getElementKey(type, element), Pair.of(type, element));
+            }
+        });
+
+        Map<String, ElementWords> elementWords = new LinkedHashMap<>();
+        elementsByModel.forEach((modelKey, elements) -> {
+            String signature = getModelSignature(modelKey, elements);
+            modelSignatures.put(modelKey, signature);
+            boolean unchanged = reuse && signature.equals(getPreModelSignatures().get(modelKey));
+            elements.forEach((key, element) -> {
+                ElementWords preWords = getPreElementWords().get(key);
+                if (unchanged && Objects.nonNull(preWords)) {
+                    elementWords.put(key, preWords);
+                    return;
+                }
+                List<DictWord> words = WordBuilderFactory.get(element.getLeft())
+                        .getDictWords(Collections.singletonList(element.getRight()));
+                elementWords.put(key, new ElementWords(words));
+            });
+        });
+        log.debug("element size:{}, model size:{}", elementWords.size(), elementsByModel.size());
+        return elementWords;
+    }
+
+    /** the change version of the model and a digest of the content its words are built from */
+    private String getModelSignature(String modelKey,
+            Map<String, Pair<DictWordType, SchemaElement>> elements) {
+        long version =
+                modelKey.startsWith(MODEL_KEY_PREFIX)
+                        ? modelVersionManager.getVersion(
+                                Long.valueOf(modelKey.substring(MODEL_KEY_PREFIX.length())))
+                        : 0L;
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (Map.Entry<String, Pair<DictWordType, SchemaElement>> entry : elements.entrySet()) {
+            SchemaElement element = entry.getValue().getRight();
+            putString(hasher, entry.getKey());
+            putString(hasher, element.getName());
+            putStrings(hasher, element.getAlias());
+            putString(hasher, String.valueOf(element.getDataSetId()));
+            List<SchemaValueMap> valueMaps = element.getSchemaValueMaps();
+            hasher.putInt(Objects.isNull(valueMaps) ? -1 : valueMaps.size());
+            if (Objects.nonNull(valueMaps)) {
+                for (SchemaValueMap valueMap : valueMaps) {
+                    putString(hasher, valueMap.getTechName());
+                    putString(hasher, valueMap.getBizName());
+                    putStrings(hasher, valueMap.getAlias());
+                }
+            }
+        }
+        return version + ":" + elements.size() + ":" + hasher.hash();
+    }
+
+    /** strings are length prefixed, so that no two different sequences feed the same bytes */
+    private static void putString(Hasher hasher, String value) {
+        if (Objects.isNull(value)) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+
+    private static void putStrings(Hasher hasher, List<String> values) {
+        hasher.putInt(Objects.isNull(values) ? -1 : values.size());
+        if (Objects.nonNull(values)) {
+            values.forEach(value -> putString(hasher, value));
+        }
+    }
+
+    /** terms belong to data sets, other elements to models */
+    private String getModelKey(DictWordType type, SchemaElement element) {
+        if (DictWordType.TERM.equals(type)) {
+            return "dataSet_" + element.getDataSetId();
+        }
+        return MODEL_KEY_PREFIX + element.getModel();
+    }
+
+    private String getElementKey(DictWordType type, SchemaElement element) {
+        String key = type.name() + "_" + element.getModel() + "_" + element.getId();
+        // terms are not deduplicated and their words depend on the data set
+        return DictWordType.TERM.equals(type) ? key + "_" + element.getDataSetId() : key;
+    }
+
     private List<SchemaElement> distinct(List<SchemaElement> metas) {
         if (CollectionUtils.isEmpty(metas)) {
             return metas;
@@ -94,4 +252,23 @@ public class DictWordService {
                         Collectors.toMap(SchemaElement::getId, Function.identity(), (e1, e2) -> e1))
                 .values().stream().collect(Collectors.toList());
     }
+
+    @Getter
+    public static class ElementWords {
+
+        private final List<DictWord> words;
+        /** digest of the words, tells a changed element without comparing all its words */
+        private final HashCode digest;
+
+        public ElementWords(List<DictWord> words) {
+            this.words = words;
+            Hasher hasher = Hashing.sha256().newHasher();
+            for (DictWord word : words) {
+                putString(hasher, word.getWord());
+                putString(hasher, word.getNatureWithFrequency());
+                putString(hasher, word.getAlias());
+            }
+            this.digest = hasher.hash();
+        }
+    }
 }
@@ -23,6 +23,7 @@ import com.tencent.supersonic.headless.api.pojo.request.DimensionReq;
 import com.tencent.supersonic.headless.api.pojo.request.MetaBatchReq;
 import com.tencent.supersonic.headless.api.pojo.request.PageDimensionReq;
 import com.tencent.supersonic.headless.api.pojo.response.*;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
 import com.tencent.supersonic.headless.server.persistence.dataobject.DimensionDO;
 import com.tencent.supersonic.headless.server.persistence.mapper.DimensionDOMapper;
 import com.tencent.supersonic.headless.server.persistence.repository.DimensionRepository;
@@ -66,6 +67,9 @@ public class DimensionServiceImpl extends ServiceImpl<DimensionDOMapper, Dimensi
     @Autowired
     private ApplicationEventPublisher eventPublisher;
 
+    @Autowired
+    private ModelVersionManager modelVersionManager;
+
     public DimensionServiceImpl(DimensionRepository dimensionRepository, ModelService modelService,
             AliasGenerateHelper aliasGenerateHelper, DatabaseService databaseService,
             ModelRelaService modelRelaService, DataSetService dataSetService) {
@@ -203,6 +207,7 @@ public class DimensionServiceImpl extends ServiceImpl<DimensionDOMapper, Dimensi
             dimensionDO.setUpdatedBy(user.getName());
         }).collect(Collectors.toList());
         dimensionRepository.batchUpdateStatus(dimensionDOS);
+        increaseModelVersion(dimensionDOS);
         if (StatusEnum.OFFLINE.getCode().equals(metaBatchReq.getStatus())
                 || StatusEnum.DELETED.getCode().equals(metaBatchReq.getStatus())) {
             sendEventBatch(dimensionDOS, EventType.DELETE);
@@ -225,6 +230,7 @@ public class DimensionServiceImpl extends ServiceImpl<DimensionDOMapper, Dimensi
             dimensionDO.setSensitiveLevel(metaBatchReq.getSensitiveLevel());
         }
         updateBatchById(dimensionDOS);
+        increaseModelVersion(dimensionDOS);
     }
 
     @Override
@@ -469,7 +475,13 @@ public class DimensionServiceImpl extends ServiceImpl<DimensionDOMapper, Dimensi
         sendEventBatch(dimensionDOS, eventType);
     }
 
+    private void increaseModelVersion(List<DimensionDO> dimensionDOS) {
+        modelVersionManager.increase(
+                dimensionDOS.stream().map(DimensionDO::getModelId).collect(Collectors.toList()));
+    }
+
     private void sendEventBatch(List<DimensionDO> dimensionDOS, EventType eventType) {
+        increaseModelVersion(dimensionDOS);
         DataEvent dataEvent = getDataEvent(dimensionDOS, eventType);
         eventPublisher.publishEvent(dataEvent);
     }
@@ -514,6 +526,7 @@ public class DimensionServiceImpl extends ServiceImpl<DimensionDOMapper, Dimensi
         }
         dimensionDO.setDimValueMaps(JsonUtil.toString(dimValueMapList));
         updateById(dimensionDO);
+        modelVersionManager.increase(dimensionDO.getModelId());
         return true;
     }
 
@@ -536,6 +549,7 @@ public class DimensionServiceImpl extends ServiceImpl<DimensionDOMapper, Dimensi
     }
 
     private void sendEvent(DataItem dataItem, EventType eventType) {
+        modelVersionManager.increase(Long.valueOf(dataItem.getModelId()));
         eventPublisher.publishEvent(new DataEvent(this, Lists.newArrayList(dataItem), eventType));
     }
 
@@ -15,9 +15,12 @@ import com.tencent.supersonic.headless.api.pojo.request.BatchDownloadReq;
 import com.tencent.supersonic.headless.api.pojo.request.DownloadMetricReq;
 import com.tencent.supersonic.headless.api.pojo.request.QuerySqlReq;
 import com.tencent.supersonic.headless.api.pojo.request.QueryStructReq;
+import com.tencent.supersonic.headless.api.pojo.request.SemanticQueryReq;
 import com.tencent.supersonic.headless.api.pojo.response.DimensionResp;
 import com.tencent.supersonic.headless.api.pojo.response.MetricResp;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import com.tencent.supersonic.headless.core.executor.RowBatchHandler;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
 import com.tencent.supersonic.headless.core.utils.DataTransformUtils;
 import com.tencent.supersonic.headless.server.facade.service.SemanticLayerService;
 import com.tencent.supersonic.headless.server.pojo.DataDownload;
@@ -27,12 +30,20 @@ import com.tencent.supersonic.headless.server.service.MetricService;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.net.URLEncoder;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -51,11 +62,20 @@ public class DownloadServiceImpl implements DownloadService {
 
     private SemanticLayerService queryService;
 
+    private ThreadPoolExecutor downloadExecutor;
+
+    /** the number of metric queries of a batch download that run ahead of the writer */
+    private int batchConcurrency;
+
     public DownloadServiceImpl(MetricService metricService, DimensionService dimensionService,
-            SemanticLayerService queryService) {
+            SemanticLayerService queryService,
+            @Qualifier("downloadExecutor") ThreadPoolExecutor downloadExecutor,
+            @Value("${s2.download.batch.concurrency:4}") int batchConcurrency) {
         this.metricService = metricService;
         this.dimensionService = dimensionService;
         this.queryService = queryService;
+        this.downloadExecutor = downloadExecutor;
+        this.batchConcurrency = Math.max(batchConcurrency, 1);
     }
 
     @Override
@@ -64,19 +84,25 @@ public class DownloadServiceImpl implements DownloadService {
         String fileName =
                 String.format("%s_%s.xlsx", "supersonic", DateUtils.format(new Date(), dateFormat));
         File file = FileUtils.createTmpFile(fileName);
+        ExcelWriter excelWriter = EasyExcel.write(file).build();
         try {
             QueryStructReq queryStructReq = metricService.convert(downloadMetricReq);
-            SemanticQueryResp queryResult =
-                    queryService.queryByReq(queryStructReq.convert(true), user);
-            DataDownload dataDownload =
-                    buildDataDownload(queryResult, queryStructReq, downloadMetricReq.isTransform());
-            EasyExcel.write(file).sheet("Sheet1").head(dataDownload.getHeaders())
-                    .doWrite(dataDownload.getData());
+            if (downloadMetricReq.isTransform()) {
+                // the transform pivots the dates into columns, so it needs all rows at once
+                SemanticQueryResp queryResult =
+                        queryService.queryByReq(queryStructReq.convert(true), user);
+                DataDownload dataDownload = buildDataDownload(queryResult, queryStructReq, true);
+                excelWriter.write(dataDownload.getData(),
+                        EasyExcel.writerSheet("Sheet1").head(dataDownload.getHeaders()).build());
+            } else {
+                writeSheet(queryStructReq.convert(true), user, excelWriter, "Sheet1");
+            }
         } catch (RuntimeException e) {
-            EasyExcel.write(file).sheet("Sheet1").head(buildErrMessageHead())
-                    .doWrite(buildErrMessageData(e.getMessage()));
+            excelWriter.finish();
+            writeErrMessage(file, e);
             return;
         }
+        excelWriter.finish();
         downloadFile(response, file, fileName);
     }
 
@@ -108,7 +134,7 @@ public class DownloadServiceImpl implements DownloadService {
         metaFilter.setIds(dimensionIds);
         Map<Long, DimensionResp> dimensionRespMap = dimensionService.getDimensions(metaFilter)
                 .stream().collect(Collectors.toMap(DimensionResp::getId, d -> d));
-        ExcelWriter excelWriter = EasyExcel.write(file).build();
+        List<Pair<String, Supplier<DataDownload>>> sheetQueries = new ArrayList<>();
         int sheetCount = 1;
         for (List<MetricResp> metrics : metricMap.values()) {
             if (CollectionUtils.isEmpty(metrics)) {
@@ -116,29 +142,105 @@ public class DownloadServiceImpl implements DownloadService {
             }
             MetricResp metricResp = metrics.get(0);
             List<DimensionResp> dimensions = getMetricRelaDimensions(metricResp, dimensionRespMap);
+            String sheetName = "Sheet" + sheetCount;
             for (MetricResp metric : metrics) {
-                try {
-                    QueryStructReq queryStructReq =
-                            buildDownloadReq(dimensions, metric, batchDownloadReq);
-                    QuerySqlReq querySqlReq = queryStructReq.convert();
-                    querySqlReq.setNeedAuth(true);
-                    SemanticQueryResp queryResult = queryService.queryByReq(querySqlReq, user);
-                    DataDownload dataDownload = buildDataDownload(queryResult, queryStructReq,
-                            batchDownloadReq.isTransform());
-                    WriteSheet writeSheet = EasyExcel.writerSheet("Sheet" + sheetCount)
-                            .head(dataDownload.getHeaders()).build();
-                    excelWriter.write(dataDownload.getData(), writeSheet);
-                } catch (RuntimeException e) {
-                    EasyExcel.write(file).sheet("Sheet1").head(buildErrMessageHead())
-                            .doWrite(buildErrMessageData(e.getMessage()));
-                    return;
-                }
+                sheetQueries.add(Pair.of(sheetName,
+                        () -> queryDataDownload(dimensions, metric, batchDownloadReq, user)));
             }
             sheetCount++;
         }
+        // the metrics are queried concurrently, a bounded number of them ahead of the writer,
+        // and written in their order as they complete. A failure cancels the queries ahead and
+        // interrupts their workers, which stop reading their results.
+        ExcelWriter excelWriter = EasyExcel.write(file).build();
+        Deque<Future<DataDownload>> pending = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            for (int written = 0; written < sheetQueries.size(); written++) {
+                while (submitted < sheetQueries.size() && pending.size() < batchConcurrency) {
+                    pending.add(
+                            downloadExecutor.submit(sheetQueries.get(submitted++).getRight()::get));
+                }
+                DataDownload dataDownload = getDataDownload(pending.poll());
+                WriteSheet writeSheet = EasyExcel.writerSheet(sheetQueries.get(written).getLeft())
+                        .head(dataDownload.getHeaders()).build();
+                excelWriter.write(dataDownload.getData(), writeSheet);
+            }
+        } catch (RuntimeException e) {
+            pending.forEach(future -> future.cancel(true));
+            excelWriter.finish();
+            writeErrMessage(file, e);
+            return;
+        }
         excelWriter.finish();
     }
 
+    private DataDownload queryDataDownload(List<DimensionResp> dimensions, MetricResp metric,
+            BatchDownloadReq batchDownloadReq, User user) {
+        QueryStructReq queryStructReq = buildDownloadReq(dimensions, metric, batchDownloadReq);
+        QuerySqlReq querySqlReq = queryStructReq.convert();
+        querySqlReq.setNeedAuth(true);
+        try {
+            SemanticQueryResp queryResult = queryService.queryByReq(querySqlReq, user);
+            return buildDataDownload(queryResult, queryStructReq, batchDownloadReq.isTransform());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private DataDownload getDataDownload(Future<DataDownload> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Download interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * streams the result of the query into a sheet, the rows are read through a jdbc cursor and
+     * written batch by batch, so the result is never held in memory as a whole
+     */
+    private void writeSheet(SemanticQueryReq queryReq, User user, ExcelWriter excelWriter,
+            String sheetName) throws Exception {
+        SemanticQueryResp queryResp =
+                queryService.queryByReq(queryReq, user, new RowBatchHandler() {
+                    private WriteSheet writeSheet;
+
+                    @Override
+                    public void onColumns(List<QueryColumn> columns) {
+                        List<List<String>> header = Lists.newArrayList();
+                        for (QueryColumn column : columns) {
+                            header.add(Lists.newArrayList(column.getName()));
+                        }
+                        writeSheet = EasyExcel.writerSheet(sheetName).head(header).build();
+                        // the head is written with the first rows, so an empty result still
+                        // gets one
+                        excelWriter.write(new ArrayList<>(), writeSheet);
+                    }
+
+                    @Override
+                    public void onBatch(RowBatch rowBatch) {
+                        excelWriter.write(buildData(rowBatch), writeSheet);
+                    }
+                });
+        if (Objects.isNull(queryResp) || StringUtils.isNotBlank(queryResp.getErrorMsg())) {
+            throw new RuntimeException(
+                    Objects.isNull(queryResp) ? "query failed" : queryResp.getErrorMsg());
+        }
+    }
+
+    private void writeErrMessage(File file, RuntimeException e) {
+        EasyExcel.write(file).sheet("Sheet1").head(buildErrMessageHead())
+                .doWrite(buildErrMessageData(e.getMessage()));
+    }
+
     private List<List<String>> buildErrMessageHead() {
         List<List<String>> headers = Lists.newArrayList();
         headers.add(Lists.newArrayList("异常提示"));
@@ -186,6 +288,19 @@ public class DownloadServiceImpl implements DownloadService {
         return data;
     }
 
+    private List<List<String>> buildData(RowBatch rowBatch) {
+        List<List<String>> data = new ArrayList<>(rowBatch.getRowCount());
+        int columnCount = rowBatch.getColumns().size();
+        for (int row = 0; row < rowBatch.getRowCount(); row++) {
+            List<String> rowData = new ArrayList<>(columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                rowData.add(String.valueOf(rowBatch.getValue(row, column)));
+            }
+            data.add(rowData);
+        }
+        return data;
+    }
+
     private List<List<String>> buildData(List<List<String>> headers, Map<String, String> nameMap,
             List<Map<String, Object>> dataTransformed, String metricName) {
         List<List<String>> data = Lists.newArrayList();
@@ -280,7 +395,6 @@ public class DownloadServiceImpl implements DownloadService {
 
     private void downloadFile(HttpServletResponse response, File file, String filename) {
         try {
-            byte[] buffer = readFileToByteArray(file);
             response.reset();
             response.setCharacterEncoding("UTF-8");
             response.addHeader("Content-Disposition",
@@ -288,19 +402,11 @@ public class DownloadServiceImpl implements DownloadService {
             response.addHeader("Content-Length", "" + file.length());
             try (OutputStream outputStream = new BufferedOutputStream(response.getOutputStream())) {
                 response.setContentType("application/octet-stream");
-                outputStream.write(buffer);
+                Files.copy(file.toPath(), outputStream);
                 outputStream.flush();
             }
         } catch (Exception e) {
             log.error("failed to download file", e);
         }
     }
-
-    private byte[] readFileToByteArray(File file) throws IOException {
-        try (InputStream fis = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
-            byte[] buffer = new byte[fis.available()];
-            fis.read(buffer);
-            return buffer;
-        }
-    }
 }
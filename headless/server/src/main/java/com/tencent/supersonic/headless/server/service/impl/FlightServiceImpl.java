@@ -1,11 +1,5 @@
 package com.tencent.supersonic.headless.server.service.impl;
 
-import javax.sql.RowSetMetaData;
-import javax.sql.rowset.CachedRowSet;
-import javax.sql.rowset.RowSetFactory;
-import javax.sql.rowset.RowSetMetaDataImpl;
-import javax.sql.rowset.RowSetProvider;
-
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.ByteString;
@@ -21,10 +15,9 @@ import com.tencent.supersonic.headless.api.pojo.request.SemanticQueryReq;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
 import com.tencent.supersonic.headless.server.facade.service.SemanticLayerService;
 import com.tencent.supersonic.headless.server.service.FlightService;
-import com.tencent.supersonic.headless.server.utils.FlightUtils;
+import com.tencent.supersonic.headless.server.utils.ArrowBatchWriter;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.arrow.adapter.jdbc.ArrowVectorIterator;
-import org.apache.arrow.adapter.jdbc.JdbcToArrowUtils;
 import org.apache.arrow.flight.CallHeaders;
 import org.apache.arrow.flight.CallStatus;
 import org.apache.arrow.flight.FlightConstants;
@@ -43,22 +36,14 @@ import org.apache.arrow.flight.sql.impl.FlightSql.CommandStatementQuery;
 import org.apache.arrow.flight.sql.impl.FlightSql.TicketStatementQuery;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
-import org.apache.arrow.vector.VectorLoader;
-import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.VectorUnloader;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.sql.Types;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
@@ -68,8 +53,6 @@ import static com.google.protobuf.Any.pack;
 import static com.google.protobuf.ByteString.copyFrom;
 import static java.util.Collections.singletonList;
 import static java.util.UUID.randomUUID;
-import static org.apache.arrow.adapter.jdbc.JdbcToArrow.sqlToArrowVectorIterator;
-import static org.apache.arrow.adapter.jdbc.JdbcToArrowUtils.jdbcToArrowSchema;
 
 /** arrow flight FlightSqlProducer */
 @Slf4j
@@ -83,17 +66,45 @@ public class FlightServiceImpl extends BasicFlightSqlProducer implements FlightS
     private ExecutorService executorService;
     private final String nameHeaderKey = "name";
     private final String passwordHeaderKey = "password";
-    private final Calendar defaultCalendar = JdbcToArrowUtils.getUtcCalendar();
     private final SemanticLayerService queryService;
     private final AuthenticationConfig authenticationConfig;
     private final UserService userService;
+    /**
+     * shared by all queries, each query allocates from a bounded child allocator. Created on first
+     * use, as arrow memory needs extra jvm options that are only set where flight is served.
+     */
+    private volatile BufferAllocator rootAllocator;
+    private final long allocatorMaxBytes;
+    private final long queryMaxBytes;
 
     public FlightServiceImpl(SemanticLayerService queryService,
-            AuthenticationConfig authenticationConfig, UserService userService) {
+            AuthenticationConfig authenticationConfig, UserService userService,
+            @Value("${s2.flight.allocator.max.bytes:1073741824}") Long allocatorMaxBytes,
+            @Value("${s2.flight.query.max.bytes:268435456}") Long queryMaxBytes) {
         this.queryService = queryService;
         this.authenticationConfig = authenticationConfig;
 
         this.userService = userService;
+        this.allocatorMaxBytes = allocatorMaxBytes;
+        this.queryMaxBytes = queryMaxBytes;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (Objects.nonNull(rootAllocator)) {
+            rootAllocator.close();
+        }
+    }
+
+    private BufferAllocator getRootAllocator() {
+        if (Objects.isNull(rootAllocator)) {
+            synchronized (this) {
+                if (Objects.isNull(rootAllocator)) {
+                    rootAllocator = new RootAllocator(allocatorMaxBytes);
+                }
+            }
+        }
+        return rootAllocator;
     }
 
     public void setLocation(String host, Integer port) {
@@ -154,49 +165,36 @@ public class FlightServiceImpl extends BasicFlightSqlProducer implements FlightS
             return;
         }
         executorService.submit(() -> {
-            BufferAllocator rootAllocator = new RootAllocator();
-            try {
-                Optional<Param> authOpt = semanticQueryReq.getParams().stream().filter(
-                        p -> p.getName().equals(authenticationConfig.getTokenHttpHeaderKey()))
-                        .findFirst();
-                if (authOpt.isPresent()) {
-                    User user = UserHolder.findUser(authOpt.get().getValue(),
-                            authenticationConfig.getTokenHttpHeaderAppKey());
-                    SemanticQueryResp resp = queryService.queryByReq(semanticQueryReq, user);
-                    ResultSet resultSet =
-                            semanticQueryRespToResultSet(resp, semanticQueryReq.getDataSetId());
-                    final Schema schema =
-                            jdbcToArrowSchema(resultSet.getMetaData(), defaultCalendar);
-                    try (final VectorSchemaRoot vectorSchemaRoot =
-                            VectorSchemaRoot.create(schema, rootAllocator)) {
-                        final VectorLoader loader = new VectorLoader(vectorSchemaRoot);
-                        listener.start(vectorSchemaRoot);
-                        final ArrowVectorIterator iterator =
-                                sqlToArrowVectorIterator(resultSet, rootAllocator);
-                        while (iterator.hasNext()) {
-                            final VectorSchemaRoot batch = iterator.next();
-                            if (batch.getRowCount() == 0) {
-                                break;
-                            }
-                            final VectorUnloader unloader = new VectorUnloader(batch);
-                            loader.load(unloader.getRecordBatch());
-                            listener.putNext();
-                            vectorSchemaRoot.clear();
+            try (BufferAllocator allocator = getRootAllocator()
+                    .newChildAllocator("flight-" + randomUUID(), 0, queryMaxBytes);
+                    ArrowBatchWriter writer = new ArrowBatchWriter(allocator, listener)) {
+                try {
+                    Optional<Param> authOpt = semanticQueryReq.getParams().stream().filter(
+                            p -> p.getName().equals(authenticationConfig.getTokenHttpHeaderKey()))
+                            .findFirst();
+                    if (authOpt.isPresent()) {
+                        User user = UserHolder.findUser(authOpt.get().getValue(),
+                                authenticationConfig.getTokenHttpHeaderAppKey());
+                        SemanticQueryResp resp =
+                                queryService.queryByReq(semanticQueryReq, user, writer);
+                        if (StringUtils.isNotBlank(resp.getErrorMsg())) {
+                            throw new RuntimeException(resp.getErrorMsg());
                         }
-
-                        listener.putNext();
+                        writer.ensureStarted();
+                        log.info("getStreamPreparedStatement {} rows {}", hander,
+                                writer.getRowCount());
                     }
+                } catch (Exception e) {
+                    listener.error(
+                            CallStatus.INTERNAL
+                                    .withDescription(String.format(
+                                            "Failed to get exec statement %s", e.getMessage()))
+                                    .toRuntimeException());
+                    log.error("getStreamPreparedStatement error {}", hander, e);
+                } finally {
+                    preparedStatementCache.invalidate(hander);
+                    listener.completed();
                 }
-            } catch (Exception e) {
-                listener.error(CallStatus.INTERNAL
-                        .withDescription(
-                                String.format("Failed to get exec statement %s", e.getMessage()))
-                        .toRuntimeException());
-                log.error("getStreamPreparedStatement error {}", hander);
-            } finally {
-                preparedStatementCache.invalidate(hander);
-                listener.completed();
-                rootAllocator.close();
             }
         });
     }
@@ -300,45 +298,4 @@ public class FlightServiceImpl extends BasicFlightSqlProducer implements FlightS
         String auth = userService.login(userReq, authenticationConfig.getTokenDefaultAppKey());
         return auth;
     }
-
-    private ResultSet semanticQueryRespToResultSet(SemanticQueryResp resp, Long dataSetId)
-            throws SQLException {
-        RowSetFactory factory = RowSetProvider.newFactory();
-        CachedRowSet rowset = factory.createCachedRowSet();
-        RowSetMetaData rowSetMetaData = new RowSetMetaDataImpl();
-        int columnNum = resp.getColumns().size();
-        rowSetMetaData.setColumnCount(columnNum);
-        for (int i = 1; i <= columnNum; i++) {
-            String columnName = resp.getColumns().get(i - 1).getBizName();
-            rowSetMetaData.setColumnName(i, columnName);
-            Optional<Map<String, Object>> valOpt = resp.getResultList().stream()
-                    .filter(r -> r.containsKey(columnName) && Objects.nonNull(r.get(columnName)))
-                    .findFirst();
-            if (valOpt.isPresent()) {
-                int type = FlightUtils.resolveType(valOpt.get());
-                rowSetMetaData.setColumnType(i, type);
-                rowSetMetaData.setNullable(i, FlightUtils.isNullable(type));
-            } else {
-                rowSetMetaData.setNullable(i, ResultSetMetaData.columnNullable);
-                rowSetMetaData.setColumnType(i, Types.VARCHAR);
-            }
-            rowSetMetaData.setCatalogName(i, String.valueOf(dataSetId));
-            rowSetMetaData.setSchemaName(i, dataSetIdHeaderKey);
-        }
-        rowset.setMetaData(rowSetMetaData);
-        for (Map<String, Object> row : resp.getResultList()) {
-            rowset.moveToInsertRow();
-            for (int i = 1; i <= columnNum; i++) {
-                String columnName = resp.getColumns().get(i - 1).getBizName();
-                if (row.containsKey(columnName)) {
-                    rowset.updateObject(i, row.get(columnName));
-                } else {
-                    rowset.updateObject(i, null);
-                }
-            }
-            rowset.insertRow();
-            rowset.moveToCurrentRow();
-        }
-        return rowset;
-    }
 }
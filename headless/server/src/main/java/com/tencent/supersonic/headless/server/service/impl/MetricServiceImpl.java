@@ -18,6 +18,7 @@ import com.tencent.supersonic.headless.api.pojo.enums.MapModeEnum;
 import com.tencent.supersonic.headless.api.pojo.enums.MetricDefineType;
 import com.tencent.supersonic.headless.api.pojo.request.*;
 import com.tencent.supersonic.headless.api.pojo.response.*;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
 import com.tencent.supersonic.headless.server.facade.service.ChatLayerService;
 import com.tencent.supersonic.headless.server.persistence.dataobject.*;
 import com.tencent.supersonic.headless.server.persistence.mapper.MetricDOMapper;
@@ -57,10 +58,13 @@ public class MetricServiceImpl extends ServiceImpl<MetricDOMapper, MetricDO>
 
     private ChatLayerService chatLayerService;
 
+    private ModelVersionManager modelVersionManager;
+
     public MetricServiceImpl(MetricRepository metricRepository, ModelService modelService,
             AliasGenerateHelper aliasGenerateHelper, CollectService collectService,
             DataSetService dataSetService, ApplicationEventPublisher eventPublisher,
-            DimensionService dimensionService, @Lazy ChatLayerService chatLayerService) {
+            DimensionService dimensionService, @Lazy ChatLayerService chatLayerService,
+            ModelVersionManager modelVersionManager) {
         this.metricRepository = metricRepository;
         this.modelService = modelService;
         this.aliasGenerateHelper = aliasGenerateHelper;
@@ -69,6 +73,7 @@ public class MetricServiceImpl extends ServiceImpl<MetricDOMapper, MetricDO>
         this.dataSetService = dataSetService;
         this.dimensionService = dimensionService;
         this.chatLayerService = chatLayerService;
+        this.modelVersionManager = modelVersionManager;
     }
 
     @Override
@@ -200,6 +205,7 @@ public class MetricServiceImpl extends ServiceImpl<MetricDOMapper, MetricDO>
             metricDO.setUpdatedBy(user.getName());
         }).collect(Collectors.toList());
         metricRepository.batchUpdateStatus(metricDOS);
+        increaseModelVersion(metricDOS);
         if (StatusEnum.OFFLINE.getCode().equals(metaBatchReq.getStatus())
                 || StatusEnum.DELETED.getCode().equals(metaBatchReq.getStatus())) {
             sendEventBatch(metricDOS, EventType.DELETE);
@@ -216,6 +222,7 @@ public class MetricServiceImpl extends ServiceImpl<MetricDOMapper, MetricDO>
             metricDO.setUpdatedBy(user.getName());
         }
         metricRepository.batchPublish(metrics);
+        increaseModelVersion(metrics);
     }
 
     @Override
@@ -226,6 +233,7 @@ public class MetricServiceImpl extends ServiceImpl<MetricDOMapper, MetricDO>
             metricDO.setUpdatedBy(user.getName());
         }
         metricRepository.batchUnPublish(metrics);
+        increaseModelVersion(metrics);
     }
 
     @Override
@@ -270,6 +278,7 @@ public class MetricServiceImpl extends ServiceImpl<MetricDOMapper, MetricDO>
             metricDO.setSensitiveLevel(metaBatchReq.getSensitiveLevel());
         }
         updateBatchById(metrics);
+        increaseModelVersion(metrics);
     }
 
     @Override
@@ -660,6 +669,11 @@ public class MetricServiceImpl extends ServiceImpl<MetricDOMapper, MetricDO>
         return metricResps;
     }
 
+    private void increaseModelVersion(List<MetricDO> metricDOS) {
+        modelVersionManager.increase(
+                metricDOS.stream().map(MetricDO::getModelId).collect(Collectors.toList()));
+    }
+
     @Override
     public void sendMetricEventBatch(List<Long> modelIds, EventType eventType) {
         MetricFilter metricFilter = new MetricFilter();
@@ -688,11 +702,13 @@ public class MetricServiceImpl extends ServiceImpl<MetricDOMapper, MetricDO>
     }
 
     private void sendEventBatch(List<MetricDO> metricDOS, EventType eventType) {
+        increaseModelVersion(metricDOS);
         DataEvent dataEvent = getDataEvent(metricDOS, eventType);
         eventPublisher.publishEvent(dataEvent);
     }
 
     private void sendEvent(DataItem dataItem, EventType eventType) {
+        modelVersionManager.increase(Long.valueOf(dataItem.getModelId()));
         eventPublisher.publishEvent(new DataEvent(this, Lists.newArrayList(dataItem), eventType));
     }
 
@@ -13,6 +13,7 @@ import com.tencent.supersonic.headless.api.pojo.*;
 import com.tencent.supersonic.headless.api.pojo.enums.DimensionType;
 import com.tencent.supersonic.headless.api.pojo.request.*;
 import com.tencent.supersonic.headless.api.pojo.response.*;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
 import com.tencent.supersonic.headless.server.modeller.SemanticModeller;
 import com.tencent.supersonic.headless.server.persistence.dataobject.DateInfoDO;
 import com.tencent.supersonic.headless.server.persistence.dataobject.DimensionDO;
@@ -63,6 +64,8 @@ public class ModelServiceImpl implements ModelService {
 
     private final ApplicationEventPublisher eventPublisher;
 
+    private final ModelVersionManager modelVersionManager;
+
     ExecutorService executor =
             new ThreadPoolExecutor(0, 5, 5L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
@@ -70,7 +73,7 @@ public class ModelServiceImpl implements ModelService {
             @Lazy DimensionService dimensionService, @Lazy MetricService metricService,
             DomainService domainService, UserService userService, DataSetService dataSetService,
             DateInfoRepository dateInfoRepository, ModelRelaService modelRelaService,
-            ApplicationEventPublisher eventPublisher) {
+            ApplicationEventPublisher eventPublisher, ModelVersionManager modelVersionManager) {
         this.modelRepository = modelRepository;
         this.databaseService = databaseService;
         this.dimensionService = dimensionService;
@@ -81,6 +84,7 @@ public class ModelServiceImpl implements ModelService {
         this.dateInfoRepository = dateInfoRepository;
         this.modelRelaService = modelRelaService;
         this.eventPublisher = eventPublisher;
+        this.modelVersionManager = modelVersionManager;
     }
 
     @Override
@@ -95,6 +99,7 @@ public class ModelServiceImpl implements ModelService {
         // create or update metric
         List<MetricReq> metricReqs = ModelConverter.convertMetricList(modelDO);
         metricService.alterMetricBatch(metricReqs, modelDO.getId(), user);
+        modelVersionManager.increase(modelDO.getId());
         sendEvent(modelDO, EventType.ADD);
         return ModelConverter.convert(modelDO);
     }
@@ -129,6 +134,7 @@ public class ModelServiceImpl implements ModelService {
         // create or update metric
         List<MetricReq> metricReqs = ModelConverter.convertMetricList(modelDO);
         metricService.alterMetricBatch(metricReqs, modelDO.getId(), user);
+        modelVersionManager.increase(modelDO.getId());
         sendEvent(modelDO, EventType.UPDATE);
         return ModelConverter.convert(modelDO);
     }
@@ -170,6 +176,7 @@ public class ModelServiceImpl implements ModelService {
         datasourceDO.setUpdatedAt(new Date());
         datasourceDO.setUpdatedBy(user.getName());
         modelRepository.updateModel(datasourceDO);
+        modelVersionManager.increase(id);
     }
 
     @Override
@@ -518,6 +525,7 @@ public class ModelServiceImpl implements ModelService {
             }
         }).collect(Collectors.toList());
         modelRepository.batchUpdate(modelDOS);
+        modelVersionManager.increase(metaBatchReq.getIds());
     }
 
     @Override
@@ -570,6 +578,7 @@ public class ModelServiceImpl implements ModelService {
 
         modelDO.setModelDetail(JsonUtil.toString(modelDetail));
         modelRepository.updateModel(modelDO);
+        modelVersionManager.increase(modelId);
     }
 
     @Override
@@ -603,6 +612,7 @@ public class ModelServiceImpl implements ModelService {
 
         modelDO.setModelDetail(JsonUtil.toString(modelDetail));
         modelRepository.updateModel(modelDO);
+        modelVersionManager.increase(modelId);
     }
 
     protected ModelDO getModelDO(Long id) {
@@ -17,6 +17,7 @@ import com.tencent.supersonic.headless.api.pojo.request.DataSetFilterReq;
 import com.tencent.supersonic.headless.api.pojo.request.ItemUseReq;
 import com.tencent.supersonic.headless.api.pojo.request.SchemaFilterReq;
 import com.tencent.supersonic.headless.api.pojo.response.*;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
 import com.tencent.supersonic.headless.server.manager.DimensionYamlManager;
 import com.tencent.supersonic.headless.server.manager.MetricYamlManager;
 import com.tencent.supersonic.headless.server.manager.ModelYamlManager;
@@ -53,7 +54,7 @@ public class SchemaServiceImpl implements SchemaService {
     protected final Cache<DataSetFilterReq, List<DataSetSchemaResp>> dataSetSchemaCache =
             CacheBuilder.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
 
-    protected final Cache<SchemaFilterReq, SemanticSchemaResp> semanticSchemaCache =
+    protected final Cache<String, SemanticSchemaResp> semanticSchemaCache =
             CacheBuilder.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
 
     private final StatUtils statUtils;
@@ -65,6 +66,7 @@ public class SchemaServiceImpl implements SchemaService {
     private final ModelRelaService modelRelaService;
     private final TermService termService;
     private final DatabaseService databaseService;
+    private final ModelVersionManager modelVersionManager;
 
     @Value("${s2.schema.cache.enable:true}")
     private boolean schemaCacheEnable;
@@ -72,7 +74,7 @@ public class SchemaServiceImpl implements SchemaService {
     public SchemaServiceImpl(ModelService modelService, DimensionService dimensionService,
             MetricService metricService, DomainService domainService, DataSetService dataSetService,
             ModelRelaService modelRelaService, StatUtils statUtils, TermService termService,
-            DatabaseService databaseService) {
+            DatabaseService databaseService, ModelVersionManager modelVersionManager) {
         this.modelService = modelService;
         this.dimensionService = dimensionService;
         this.metricService = metricService;
@@ -82,6 +84,7 @@ public class SchemaServiceImpl implements SchemaService {
         this.statUtils = statUtils;
         this.termService = termService;
         this.databaseService = databaseService;
+        this.modelVersionManager = modelVersionManager;
     }
 
     public List<DataSetSchemaResp> fetchDataSetSchema(DataSetFilterReq filter) {
@@ -386,16 +389,23 @@ public class SchemaServiceImpl implements SchemaService {
     @Override
     public SemanticSchemaResp fetchSemanticSchema(SchemaFilterReq schemaFilterReq) {
         SemanticSchemaResp semanticSchemaResp = null;
+        String cacheKey = getSemanticSchemaCacheKey(schemaFilterReq);
         if (schemaCacheEnable) {
-            semanticSchemaResp = semanticSchemaCache.getIfPresent(schemaFilterReq);
+            semanticSchemaResp = semanticSchemaCache.getIfPresent(cacheKey);
         }
         if (semanticSchemaResp == null) {
             semanticSchemaResp = buildSemanticSchema(schemaFilterReq);
-            semanticSchemaCache.put(schemaFilterReq, semanticSchemaResp);
+            semanticSchemaCache.put(cacheKey, semanticSchemaResp);
         }
         return semanticSchemaResp;
     }
 
+    /** the key carries the versions of the models, a model change leads to a rebuild */
+    private String getSemanticSchemaCacheKey(SchemaFilterReq schemaFilterReq) {
+        return String.format("%s_%s", schemaFilterReq.getDataSetId(),
+                modelVersionManager.getVersionKey(schemaFilterReq.getModelIds()));
+    }
+
     @SneakyThrows
     @Override
     public List<ItemUseResp> getStatInfo(ItemUseReq itemUseReq) {
@@ -0,0 +1,25 @@
+package com.tencent.supersonic.headless.server.task;
+
+import com.tencent.supersonic.headless.core.executor.QueryAccelerator;
+import com.tencent.supersonic.headless.core.utils.ComponentFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class AcceleratorReloadTask {
+
+    /** refresh the materializations kept by query accelerators */
+    @Scheduled(cron = "${s2.accelerator.reload.cron:0 0/5 * * * ?}")
+    public void reloadAccelerators() {
+        for (QueryAccelerator queryAccelerator : ComponentFactory.getQueryAccelerators()) {
+            try {
+                queryAccelerator.reload();
+            } catch (Exception e) {
+                log.error("reload accelerator {} error",
+                        queryAccelerator.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
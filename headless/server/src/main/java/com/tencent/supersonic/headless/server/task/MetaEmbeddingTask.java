@@ -43,6 +43,7 @@ public class MetaEmbeddingTask implements CommandLineRunner {
     }
 
     private void embeddingStorePersistFile() {
+        embeddingService.persistEmbeddingCache();
         EmbeddingStoreFactory embeddingStoreFactory = EmbeddingStoreFactoryProvider.getFactory();
         if (embeddingStoreFactory instanceof InMemoryEmbeddingStoreFactory inMemoryFactory) {
             long startTime = System.currentTimeMillis();
@@ -0,0 +1,319 @@
+package com.tencent.supersonic.headless.server.utils;
+
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.headless.core.executor.RowBatchHandler;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.flight.FlightProducer.ServerStreamListener;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.commons.lang3.StringUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes streamed row batches straight into arrow vectors and sends each batch to the flight
+ * client. The schema is typed from the jdbc type names of the result columns; decimals keep their
+ * exact value, as arrow decimals when the type names its precision and scale and as strings
+ * otherwise. A value that does not fit its column fails the stream rather than being sent as null.
+ * A batch is only written once the client is ready to take it, so a slow client holds back the
+ * query instead of letting batches pile up in memory.
+ */
+@Slf4j
+public class ArrowBatchWriter implements RowBatchHandler, AutoCloseable {
+
+    private static final Pattern INTEGER_TYPE = Pattern.compile(
+            "(U?INT(EGER)?\\d*|U?TINYINT|U?SMALLINT|MEDIUMINT|BIGINT|LONG|SERIAL|BIGSERIAL)( UNSIGNED)?");
+    /** unsigned 64 bit integers exceed a signed arrow bigint */
+    private static final Pattern UNSIGNED_BIGINT_TYPE =
+            Pattern.compile("UINT64|UBIGINT|BIGINT UNSIGNED|UNSIGNED BIGINT");
+    private static final Pattern FLOAT_TYPE =
+            Pattern.compile("(DOUBLE( PRECISION)?|FLOAT\\d*|REAL)( UNSIGNED)?");
+    private static final Pattern DECIMAL_TYPE =
+            Pattern.compile("(DECIMAL\\d*|DECFLOAT|NUMERIC|NUMBER)( UNSIGNED)?");
+    /** decimal types whose parameters are precision and scale, unlike e.g. Decimal64(scale) */
+    private static final Pattern PRECISION_SCALE_TYPE =
+            Pattern.compile("(DECIMAL|NUMERIC|NUMBER)( UNSIGNED)?");
+    private static final Pattern DECIMAL_PARAMS =
+            Pattern.compile("\\(\\s*(\\d+)\\s*(?:,\\s*(\\d+)\\s*)?\\)");
+    private static final Pattern BOOLEAN_TYPE = Pattern.compile("BOOL(EAN)?");
+    private static final int MAX_DECIMAL_PRECISION = 38;
+    private static final long READY_WAIT_SECONDS = 1;
+
+    private final BufferAllocator allocator;
+    private final ServerStreamListener listener;
+    private final Lock readyLock = new ReentrantLock();
+    private final Condition readyChanged = readyLock.newCondition();
+    private VectorSchemaRoot root;
+    @Getter
+    private long rowCount;
+
+    public ArrowBatchWriter(BufferAllocator allocator, ServerStreamListener listener) {
+        this.allocator = allocator;
+        this.listener = listener;
+        listener.setOnReadyHandler(this::signalReady);
+        listener.setOnCancelHandler(this::signalReady);
+    }
+
+    @Override
+    public void onColumns(List<QueryColumn> columns) {
+        List<Field> fields = new ArrayList<>(columns.size());
+        for (QueryColumn column : columns) {
+            fields.add(
+                    new Field(column.getBizName(), FieldType.nullable(toArrowType(column)), null));
+        }
+        root = VectorSchemaRoot.create(new Schema(fields), allocator);
+        listener.start(root);
+    }
+
+    @Override
+    public void onBatch(RowBatch rowBatch) {
+        awaitReady();
+        root.allocateNew();
+        int count = rowBatch.getRowCount();
+        for (int col = 0; col < root.getFieldVectors().size(); col++) {
+            write(root.getVector(col), rowBatch.getColumnValues(col), count);
+        }
+        root.setRowCount(count);
+        listener.putNext();
+        root.clear();
+        rowCount += count;
+    }
+
+    /** sends an empty schema when the query failed before its columns were known */
+    public void ensureStarted() {
+        if (Objects.isNull(root)) {
+            onColumns(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (Objects.nonNull(root)) {
+            root.close();
+        }
+    }
+
+    public static ArrowType toArrowType(QueryColumn column) {
+        String type = normalize(column.getType());
+        if (UNSIGNED_BIGINT_TYPE.matcher(type).matches()) {
+            return new ArrowType.Decimal(20, 0, 128);
+        }
+        if (INTEGER_TYPE.matcher(type).matches()) {
+            return new ArrowType.Int(64, true);
+        }
+        if (FLOAT_TYPE.matcher(type).matches()) {
+            return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+        }
+        if (DECIMAL_TYPE.matcher(type).matches()) {
+            return toDecimalType(type, column.getType());
+        }
+        if (BOOLEAN_TYPE.matcher(type).matches()) {
+            return ArrowType.Bool.INSTANCE;
+        }
+        // dates and times are already formatted as strings when the result is read
+        return ArrowType.Utf8.INSTANCE;
+    }
+
+    /** a decimal of the declared precision and scale, a string when they are not declared */
+    private static ArrowType toDecimalType(String name, String type) {
+        Matcher matcher = DECIMAL_PARAMS.matcher(type);
+        if (!PRECISION_SCALE_TYPE.matcher(name).matches() || !matcher.find()) {
+            return ArrowType.Utf8.INSTANCE;
+        }
+        int precision = Integer.parseInt(matcher.group(1));
+        int scale = matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2));
+        if (precision < 1 || precision > MAX_DECIMAL_PRECISION || scale > precision) {
+            return ArrowType.Utf8.INSTANCE;
+        }
+        return new ArrowType.Decimal(precision, scale, 128);
+    }
+
+    /** upper case type name without wrappers and parameters, e.g. Nullable(Decimal(10, 2)) */
+    private static String normalize(String type) {
+        if (StringUtils.isBlank(type)) {
+            return "";
+        }
+        String name = type.trim().toUpperCase(Locale.ROOT);
+        while (name.startsWith("NULLABLE(") || name.startsWith("LOWCARDINALITY(")) {
+            name = name.substring(name.indexOf('(') + 1, name.lastIndexOf(')')).trim();
+        }
+        int paren = name.indexOf('(');
+        if (paren > 0) {
+            name = (name.substring(0, paren) + name.substring(name.lastIndexOf(')') + 1)).trim();
+        }
+        return name;
+    }
+
+    private void write(FieldVector vector, Object[] values, int count) {
+        if (vector instanceof BigIntVector bigIntVector) {
+            for (int i = 0; i < count; i++) {
+                Object value = values[i];
+                if (Objects.isNull(value)) {
+                    bigIntVector.setNull(i);
+                } else if (value instanceof Long || value instanceof Integer
+                        || value instanceof Short || value instanceof Byte) {
+                    bigIntVector.setSafe(i, ((Number) value).longValue());
+                } else {
+                    BigDecimal number = toNumber(vector, value);
+                    bigIntVector.setSafe(i, exact(vector, value, number::longValueExact));
+                }
+            }
+        } else if (vector instanceof Float8Vector float8Vector) {
+            for (int i = 0; i < count; i++) {
+                if (Objects.isNull(values[i])) {
+                    float8Vector.setNull(i);
+                } else if (values[i]instanceof Number number) {
+                    float8Vector.setSafe(i, number.doubleValue());
+                } else {
+                    float8Vector.setSafe(i, toNumber(vector, values[i]).doubleValue());
+                }
+            }
+        } else if (vector instanceof DecimalVector decimalVector) {
+            int scale = decimalVector.getScale();
+            for (int i = 0; i < count; i++) {
+                Object value = values[i];
+                BigDecimal number = toNumber(vector, value);
+                if (Objects.isNull(number)) {
+                    decimalVector.setNull(i);
+                    continue;
+                }
+                BigDecimal scaled = exact(vector, value,
+                        () -> number.setScale(scale, RoundingMode.UNNECESSARY));
+                if (scaled.precision() > decimalVector.getPrecision()) {
+                    throw notFit(vector, value, null);
+                }
+                decimalVector.setSafe(i, scaled);
+            }
+        } else if (vector instanceof BitVector bitVector) {
+            for (int i = 0; i < count; i++) {
+                if (Objects.isNull(values[i])) {
+                    bitVector.setNull(i);
+                } else {
+                    bitVector.setSafe(i, toBoolean(values[i]) ? 1 : 0);
+                }
+            }
+        } else {
+            VarCharVector varCharVector = (VarCharVector) vector;
+            for (int i = 0; i < count; i++) {
+                if (Objects.isNull(values[i])) {
+                    varCharVector.setNull(i);
+                } else {
+                    varCharVector.setSafe(i, toText(values[i]).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        vector.setValueCount(count);
+    }
+
+    private BigDecimal toNumber(FieldVector vector, Object value) {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (value instanceof BigInteger integer) {
+            return new BigDecimal(integer);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return BigDecimal.valueOf(((Number) value).doubleValue());
+        }
+        if (value instanceof Number number) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException(
+                    String.format("value %s of column %s is not a number", value, vector.getName()),
+                    e);
+        }
+    }
+
+    private <T> T exact(FieldVector vector, Object value, Supplier<T> conversion) {
+        try {
+            return conversion.get();
+        } catch (ArithmeticException e) {
+            throw notFit(vector, value, e);
+        }
+    }
+
+    private RuntimeException notFit(FieldVector vector, Object value, Throwable cause) {
+        return new RuntimeException(String.format("value %s does not fit column %s of type %s",
+                value, vector.getName(), vector.getField().getType()), cause);
+    }
+
+    private String toText(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        return String.valueOf(value);
+    }
+
+    private boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        return Boolean.parseBoolean(value.toString()) || "1".equals(value.toString());
+    }
+
+    /** waits for the ready callback of the client, the timed wait only guards a missed signal */
+    private void awaitReady() {
+        readyLock.lock();
+        try {
+            while (!listener.isReady()) {
+                if (listener.isCancelled()) {
+                    throw new RuntimeException("flight stream is cancelled by the client");
+                }
+                readyChanged.await(READY_WAIT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for the flight client");
+        } finally {
+            readyLock.unlock();
+        }
+    }
+
+    private void signalReady() {
+        readyLock.lock();
+        try {
+            readyChanged.signalAll();
+        } finally {
+            readyLock.unlock();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.tencent.supersonic.headless.server.utils;
 
 import com.tencent.supersonic.common.util.ContextUtils;
 import com.tencent.supersonic.common.util.JsonUtil;
+import com.tencent.supersonic.headless.api.pojo.SchemaMapInfo;
 import com.tencent.supersonic.headless.api.pojo.SemanticParseInfo;
 import com.tencent.supersonic.headless.api.pojo.enums.ChatWorkflowState;
 import com.tencent.supersonic.headless.api.pojo.request.SemanticQueryReq;
@@ -19,11 +20,23 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Service
@@ -34,6 +47,15 @@ public class ChatWorkflowEngine {
     private final List<SemanticParser> semanticParsers = CoreComponentFactory.getSemanticParsers();
     private final List<SemanticCorrector> semanticCorrectors =
             CoreComponentFactory.getSemanticCorrectors();
+    @Autowired
+    private SchemaMapInfoCache schemaMapInfoCache;
+    @Autowired
+    @Qualifier("candidateExecutor")
+    private ThreadPoolExecutor candidateExecutor;
+    @Value("${s2.workflow.candidate.parallel.enable:false}")
+    private boolean parallelCandidates;
+    @Value("${s2.workflow.candidate.timeout-ms:60000}")
+    private long candidateTimeoutMs;
 
     public void start(ChatWorkflowState initialState, ChatQueryContext queryCtx) {
         ParseResp parseResult = queryCtx.getParseResp();
@@ -58,6 +80,9 @@ public class ChatWorkflowEngine {
                         parseResult.setErrorMsg("No semantic queries can be parsed out.");
                         queryCtx.setChatWorkflowState(ChatWorkflowState.FINISHED);
                     } else {
+                        if (!parallelCandidates || !queryCtx.needSQL()) {
+                            queryCtx.retainTopCandidate();
+                        }
                         List<SemanticParseInfo> parseInfos = queryCtx.getCandidateQueries().stream()
                                 .map(SemanticQuery::getParseInfo).collect(Collectors.toList());
                         parseResult.setSelectedParses(parseInfos);
@@ -70,8 +95,16 @@ public class ChatWorkflowEngine {
                     }
                     break;
                 case S2SQL_CORRECTING:
-                    performCorrecting(queryCtx);
-                    queryCtx.setChatWorkflowState(ChatWorkflowState.TRANSLATING);
+                    if (parallelCandidates && queryCtx.getCandidateQueries().size() > 1) {
+                        long correctStart = System.currentTimeMillis();
+                        performCorrectingAndTranslating(queryCtx, parseResult);
+                        parseResult.getParseTimeCost()
+                                .setSqlTime(System.currentTimeMillis() - correctStart);
+                        queryCtx.setChatWorkflowState(ChatWorkflowState.PHYSICAL_SQL_CORRECTING);
+                    } else {
+                        performCorrecting(queryCtx);
+                        queryCtx.setChatWorkflowState(ChatWorkflowState.TRANSLATING);
+                    }
                     break;
                 case TRANSLATING:
                     long start = System.currentTimeMillis();
@@ -93,11 +126,31 @@ public class ChatWorkflowEngine {
         }
     }
 
-    private void performMapping(ChatQueryContext queryCtx) {
-        if (Objects.isNull(queryCtx.getMapInfo())
-                || MapUtils.isEmpty(queryCtx.getMapInfo().getDataSetElementMatches())) {
-            schemaMappers.forEach(mapper -> mapper.map(queryCtx));
+    /**
+     * maps the question unless the context already has a mapping result. The result of the same
+     * question is taken from the cache as long as the schema and the dictionary did not change.
+     */
+    public void performMapping(ChatQueryContext queryCtx) {
+        if (Objects.nonNull(queryCtx.getMapInfo())
+                && MapUtils.isNotEmpty(queryCtx.getMapInfo().getDataSetElementMatches())) {
+            return;
         }
+        long start = System.currentTimeMillis();
+        String cacheKey = schemaMapInfoCache.getKey(queryCtx);
+        SchemaMapInfo cachedMapInfo = schemaMapInfoCache.get(cacheKey);
+        if (Objects.nonNull(cachedMapInfo)) {
+            queryCtx.setMapInfo(cachedMapInfo);
+            log.info("mapping cache hit, cost:{}, cacheStats:{}",
+                    System.currentTimeMillis() - start, schemaMapInfoCache.stats());
+            return;
+        }
+        schemaMappers.forEach(mapper -> mapper.map(queryCtx));
+        schemaMapInfoCache.record(queryCtx.getMappingContext());
+        if (!queryCtx.getMappingContext().isFailed()) {
+            schemaMapInfoCache.put(cacheKey, queryCtx.getMapInfo());
+        }
+        log.info("mapping cost:{}, mapperCosts:{}", System.currentTimeMillis() - start,
+                queryCtx.getMappingContext().getMapperCosts());
     }
 
     private void performParsing(ChatQueryContext queryCtx) {
@@ -112,13 +165,16 @@ public class ChatWorkflowEngine {
         List<SemanticQuery> candidateQueries = queryCtx.getCandidateQueries();
         if (CollectionUtils.isNotEmpty(candidateQueries)) {
             for (SemanticQuery semanticQuery : candidateQueries) {
-                for (SemanticCorrector corrector : semanticCorrectors) {
-                    corrector.correct(queryCtx, semanticQuery.getParseInfo());
-                    if (!ChatWorkflowState.S2SQL_CORRECTING
-                            .equals(queryCtx.getChatWorkflowState())) {
-                        break;
-                    }
-                }
+                correct(queryCtx, semanticQuery.getParseInfo());
+            }
+        }
+    }
+
+    private void correct(ChatQueryContext queryCtx, SemanticParseInfo parseInfo) {
+        for (SemanticCorrector corrector : semanticCorrectors) {
+            corrector.correct(queryCtx, parseInfo);
+            if (!ChatWorkflowState.S2SQL_CORRECTING.equals(queryCtx.getChatWorkflowState())) {
+                break;
             }
         }
     }
@@ -130,44 +186,149 @@ public class ChatWorkflowEngine {
         if (StringUtils.isNotBlank(parseResult.getErrorMsg())) {
             errorMsg.add(parseResult.getErrorMsg());
         }
-        semanticParseInfos.forEach(parseInfo -> {
+        semanticParseInfos.forEach(
+                parseInfo -> setState(parseResult, translate(queryCtx, parseInfo, errorMsg)));
+        if (!errorMsg.isEmpty()) {
+            parseResult.setErrorMsg(String.join("\n", errorMsg));
+        }
+    }
+
+    /**
+     * corrects and translates each candidate on its own thread and a copy of the context, so the
+     * candidates take as long as the slowest of them. A candidate rejected by the executor runs on
+     * the calling thread. A candidate that runs out of time can not be stopped and would still
+     * change its parse info, so it is dropped. Of the remaining candidates the one with the highest
+     * score that translates is kept, and only its errors are reported.
+     */
+    private void performCorrectingAndTranslating(ChatQueryContext queryCtx, ParseResp parseResult) {
+        List<SemanticQuery> candidateQueries = queryCtx.getCandidateQueries();
+        List<String> errorMsg = new ArrayList<>();
+        if (StringUtils.isNotBlank(parseResult.getErrorMsg())) {
+            errorMsg.add(parseResult.getErrorMsg());
+        }
+        List<FutureTask<Boolean>> futures = new ArrayList<>();
+        List<List<String>> candidateErrorMsgs = new ArrayList<>();
+        for (SemanticQuery candidateQuery : candidateQueries) {
+            ChatQueryContext candidateCtx = queryCtx.copyForCandidate(candidateQuery);
+            SemanticParseInfo parseInfo = candidateQuery.getParseInfo();
+            List<String> candidateErrorMsg = Collections.synchronizedList(new ArrayList<>());
+            FutureTask<Boolean> future = new FutureTask<>(() -> {
+                correct(candidateCtx, parseInfo);
+                return translate(candidateCtx, parseInfo, candidateErrorMsg);
+            });
             try {
-                SemanticQuery semanticQuery = QueryManager.createQuery(parseInfo.getQueryMode());
-                if (Objects.isNull(semanticQuery)) {
-                    return;
-                }
-                semanticQuery.setParseInfo(parseInfo);
-                SemanticQueryReq semanticQueryReq = semanticQuery.buildSemanticQueryReq();
-                SemanticLayerService queryService =
-                        ContextUtils.getBean(SemanticLayerService.class);
-                SemanticTranslateResp explain =
-                        queryService.translate(semanticQueryReq, queryCtx.getRequest().getUser());
-                if (explain.isOk()) {
-                    parseInfo.getSqlInfo().setQuerySQL(explain.getQuerySQL());
-                    parseResult.setState(ParseResp.ParseState.COMPLETED);
-                } else {
-                    parseResult.setState(ParseResp.ParseState.FAILED);
-                }
-                if (StringUtils.isNotBlank(explain.getErrMsg())) {
-                    errorMsg.add(explain.getErrMsg());
+                candidateExecutor.execute(future);
+            } catch (RejectedExecutionException e) {
+                log.info("candidate executor is busy, correct on the calling thread, S2SQL:{}",
+                        parseInfo.getSqlInfo().getParsedS2SQL());
+                future.run();
+            }
+            futures.add(future);
+            candidateErrorMsgs.add(candidateErrorMsg);
+        }
+        List<Boolean> translated = new ArrayList<>(Collections.nCopies(futures.size(), null));
+        Set<SemanticParseInfo> abandoned = Collections.newSetFromMap(new IdentityHashMap<>());
+        long deadline = System.currentTimeMillis() + candidateTimeoutMs;
+        for (int i = 0; i < futures.size(); i++) {
+            FutureTask<Boolean> future = futures.get(i);
+            SemanticParseInfo parseInfo = candidateQueries.get(i).getParseInfo();
+            String parsedS2SQL = parseInfo.getSqlInfo().getParsedS2SQL();
+            try {
+                translated.set(i, future.get(Math.max(0, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                abandoned.add(parseInfo);
+                log.warn("correct and translate candidate timeout, timeoutMs:{}, S2SQL:{}",
+                        candidateTimeoutMs, parsedS2SQL);
+                candidateErrorMsgs.get(i).add(String.format("S2SQL:%s timeout after %sms",
+                        parsedS2SQL, candidateTimeoutMs));
+            } catch (ExecutionException e) {
+                log.warn("correct candidate failed, S2SQL:{}", parsedS2SQL, e.getCause());
+                candidateErrorMsgs.get(i)
+                        .add(String.format("S2SQL:%s %s", parsedS2SQL, e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < futures.size(); j++) {
+                    futures.get(j).cancel(true);
+                    abandoned.add(candidateQueries.get(j).getParseInfo());
+                    candidateErrorMsgs.get(j).add(String.format("S2SQL:%s interrupted",
+                            candidateQueries.get(j).getParseInfo().getSqlInfo().getParsedS2SQL()));
                 }
-                log.info(
-                        "SqlInfoProcessor results:\n"
-                                + "Parsed S2SQL: {}\nCorrected S2SQL: {}\nQuery SQL: {}",
-                        StringUtils.normalizeSpace(parseInfo.getSqlInfo().getParsedS2SQL()),
-                        StringUtils.normalizeSpace(parseInfo.getSqlInfo().getCorrectedS2SQL()),
-                        StringUtils.normalizeSpace(parseInfo.getSqlInfo().getQuerySQL()));
-            } catch (Exception e) {
-                log.warn("get sql info failed:{}", e);
-                errorMsg.add(String.format("S2SQL:%s %s", parseInfo.getSqlInfo().getParsedS2SQL(),
-                        e.getMessage()));
+                break;
             }
-        });
+        }
+        int kept = -1;
+        for (int i = 0; i < candidateQueries.size(); i++) {
+            if (abandoned.contains(candidateQueries.get(i).getParseInfo())) {
+                continue;
+            }
+            if (kept < 0 || (Boolean.TRUE.equals(translated.get(i))
+                    && !Boolean.TRUE.equals(translated.get(kept)))) {
+                kept = i;
+            }
+        }
+        if (kept < 0) {
+            candidateErrorMsgs.forEach(errorMsg::addAll);
+            queryCtx.setCandidateQueries(new ArrayList<>());
+            parseResult.setSelectedParses(new ArrayList<>());
+            parseResult.setState(ParseResp.ParseState.FAILED);
+        } else {
+            SemanticQuery keptQuery = candidateQueries.get(kept);
+            errorMsg.addAll(candidateErrorMsgs.get(kept));
+            setState(parseResult, translated.get(kept));
+            queryCtx.setCandidateQueries(new ArrayList<>(List.of(keptQuery)));
+            parseResult.setSelectedParses(new ArrayList<>(List.of(keptQuery.getParseInfo())));
+        }
         if (!errorMsg.isEmpty()) {
             parseResult.setErrorMsg(String.join("\n", errorMsg));
         }
     }
 
+    /**
+     * translates the S2SQL of a candidate into its query sql and adds any error to the messages.
+     * Returns whether the translation is ok, or null if the candidate has no semantic query.
+     */
+    private Boolean translate(ChatQueryContext queryCtx, SemanticParseInfo parseInfo,
+            List<String> errorMsg) {
+        try {
+            SemanticQuery semanticQuery = QueryManager.createQuery(parseInfo.getQueryMode());
+            if (Objects.isNull(semanticQuery)) {
+                return null;
+            }
+            semanticQuery.setParseInfo(parseInfo);
+            SemanticQueryReq semanticQueryReq = semanticQuery.buildSemanticQueryReq();
+            SemanticLayerService queryService = ContextUtils.getBean(SemanticLayerService.class);
+            SemanticTranslateResp explain =
+                    queryService.translate(semanticQueryReq, queryCtx.getRequest().getUser());
+            if (explain.isOk()) {
+                parseInfo.getSqlInfo().setQuerySQL(explain.getQuerySQL());
+            }
+            if (StringUtils.isNotBlank(explain.getErrMsg())) {
+                errorMsg.add(explain.getErrMsg());
+            }
+            log.info(
+                    "SqlInfoProcessor results:\n"
+                            + "Parsed S2SQL: {}\nCorrected S2SQL: {}\nQuery SQL: {}",
+                    StringUtils.normalizeSpace(parseInfo.getSqlInfo().getParsedS2SQL()),
+                    StringUtils.normalizeSpace(parseInfo.getSqlInfo().getCorrectedS2SQL()),
+                    StringUtils.normalizeSpace(parseInfo.getSqlInfo().getQuerySQL()));
+            return explain.isOk();
+        } catch (Exception e) {
+            log.warn("get sql info failed:{}", e);
+            errorMsg.add(String.format("S2SQL:%s %s", parseInfo.getSqlInfo().getParsedS2SQL(),
+                    e.getMessage()));
+            return null;
+        }
+    }
+
+    private void setState(ParseResp parseResult, Boolean translated) {
+        if (Objects.nonNull(translated)) {
+            parseResult.setState(
+                    translated ? ParseResp.ParseState.COMPLETED : ParseResp.ParseState.FAILED);
+        }
+    }
+
     private void performPhysicalSqlCorrecting(ChatQueryContext queryCtx) {
         List<SemanticQuery> candidateQueries = queryCtx.getCandidateQueries();
         if (CollectionUtils.isNotEmpty(candidateQueries)) {
@@ -34,6 +34,7 @@ public class DatabaseConverter {
         databaseResp.setUrl(connectInfo.getUrl());
         databaseResp.setUsername(connectInfo.getUserName());
         databaseResp.setDatabase(connectInfo.getDatabase());
+        databaseResp.setPoolConfig(connectInfo.getPoolConfig());
         if (StringUtils.isNotBlank(databaseDO.getAdmin())) {
             databaseResp.setAdmins(Arrays.asList(databaseDO.getAdmin().split(",")));
         }
@@ -66,6 +67,7 @@ public class DatabaseConverter {
         connectInfo.setPassword(database.passwordDecrypt());
         connectInfo.setUrl(database.getUrl());
         connectInfo.setDatabase(database.getDatabase());
+        connectInfo.setPoolConfig(database.getPoolConfig());
         return connectInfo;
     }
 
@@ -75,6 +77,7 @@ public class DatabaseConverter {
         connectInfo.setPassword(databaseReq.getPassword());
         connectInfo.setUrl(databaseReq.getUrl());
         connectInfo.setDatabase(databaseReq.getDatabase());
+        connectInfo.setPoolConfig(databaseReq.getPoolConfig());
         return connectInfo;
     }
 }
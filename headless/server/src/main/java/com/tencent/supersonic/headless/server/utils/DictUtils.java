@@ -28,6 +28,8 @@ import org.springframework.util.CollectionUtils;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static com.tencent.supersonic.common.pojo.Constants.*;
 
@@ -132,44 +134,57 @@ public class DictUtils {
         return dictItemResp;
     }
 
-    public List<String> fetchItemValue(DictItemResp dictItemResp) {
-        List<String> lines = new ArrayList<>();
+    /**
+     * Streams the value rows of the item from the database and merges them by value, so only the
+     * distinct values are held instead of the whole result.
+     *
+     * @param rowCount counts the rows read
+     */
+    public Map<String, Long> fetchItemValueFrequency(DictItemResp dictItemResp, AtomicLong rowCount)
+            throws Exception {
+        Map<String, Long> valueAndFrequencyPair = new HashMap<>(2000);
         SemanticQueryReq semanticQueryReq = constructQueryReq(dictItemResp);
+        if (Objects.isNull(semanticQueryReq)) {
+            return valueAndFrequencyPair;
+        }
         semanticQueryReq.setNeedAuth(false);
         String bizName = dictItemResp.getBizName();
-        try {
-            SemanticQueryResp semanticQueryResp =
-                    queryService.queryByReq(semanticQueryReq, User.getDefaultUser());
-            if (Objects.isNull(semanticQueryResp)
-                    || CollectionUtils.isEmpty(semanticQueryResp.getResultList())) {
-                return lines;
+        queryService.queryByReq(semanticQueryReq, User.getDefaultUser(), rowBatch -> {
+            int valueIndex = rowBatch.indexOf(bizName);
+            if (valueIndex < 0 || rowBatch.getColumns().size() != 2) {
+                return;
             }
-            Map<String, Long> valueAndFrequencyPair = new HashMap<>(2000);
-            for (Map<String, Object> line : semanticQueryResp.getResultList()) {
-
-                if (CollectionUtils.isEmpty(line) || !line.containsKey(bizName)
-                        || line.get(bizName) == null || line.size() != 2) {
+            int metricIndex = 1 - valueIndex;
+            for (int row = 0; row < rowBatch.getRowCount(); row++) {
+                Object value = rowBatch.getValue(row, valueIndex);
+                Object metricObject = rowBatch.getValue(row, metricIndex);
+                if (Objects.isNull(value) || Objects.isNull(metricObject)) {
                     continue;
                 }
-                String dimValue = line.get(bizName).toString();
-                Object metricObject = null;
-                for (String key : line.keySet()) {
-                    if (!bizName.equalsIgnoreCase(key)) {
-                        metricObject = line.get(key);
-                    }
-                }
-                if (!StringUtils.isEmpty(dimValue) && Objects.nonNull(metricObject)) {
+                String dimValue = value.toString();
+                if (!StringUtils.isEmpty(dimValue)) {
                     Long metric = Math.round(Double.parseDouble(metricObject.toString()));
                     mergeMultivaluedValue(valueAndFrequencyPair, dimValue, metric);
                 }
             }
-            String nature = dictItemResp.getNature();
-            constructDictLines(valueAndFrequencyPair, lines, nature);
-            addWhiteValueLines(dictItemResp, lines, nature);
-        } catch (Exception e) {
-            log.error("dictItemResp:{},fetchItemValue error:", dictItemResp, e);
-        }
-        return lines;
+            rowCount.addAndGet(rowBatch.getRowCount());
+        });
+        return valueAndFrequencyPair;
+    }
+
+    /** the dictionary lines of the values and the white list of the item, built lazily */
+    public Stream<String> toDictLines(DictItemResp dictItemResp,
+            Map<String, Long> valueAndFrequencyPair) {
+        String nature = dictItemResp.getNature();
+        Stream<String> valueLines = valueAndFrequencyPair.entrySet().stream().map(entry -> String
+                .format("%s %s %s", escapeValue(entry.getKey()), nature, entry.getValue()));
+        List<String> whiteLines = new ArrayList<>();
+        addWhiteValueLines(dictItemResp, whiteLines, nature);
+        return Stream.concat(valueLines, whiteLines.stream());
+    }
+
+    private String escapeValue(String value) {
+        return StringUtils.isEmpty(value) ? value : value.replace(SPACE, POUND);
     }
 
     private void addWhiteValueLines(DictItemResp dictItemResp, List<String> lines, String nature) {
@@ -186,20 +201,6 @@ public class DictUtils {
         });
     }
 
-    private void constructDictLines(Map<String, Long> valueAndFrequencyPair, List<String> lines,
-            String nature) {
-        if (CollectionUtils.isEmpty(valueAndFrequencyPair)) {
-            return;
-        }
-
-        valueAndFrequencyPair.forEach((value, frequency) -> {
-            if (!StringUtils.isEmpty(value)) {
-                value = value.replace(SPACE, POUND);
-            }
-            lines.add(String.format("%s %s %s", value, nature, frequency));
-        });
-    }
-
     private void mergeMultivaluedValue(Map<String, Long> valueAndFrequencyPair, String dimValue,
             Long metric) {
         if (StringUtils.isEmpty(dimValue)) {
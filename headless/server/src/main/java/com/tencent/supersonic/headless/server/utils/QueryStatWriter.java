@@ -0,0 +1,144 @@
+package com.tencent.supersonic.headless.server.utils;
+
+import com.tencent.supersonic.headless.api.pojo.QueryStat;
+import com.tencent.supersonic.headless.server.persistence.repository.StatRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the query stats in batches. The stats are kept in a bounded buffer and a single writer
+ * thread upserts them as one jdbc batch once a batch is full or the flush interval passed, so a
+ * batch takes one round trip rather than one per stat. A stat is dropped and counted when the
+ * buffer is full, so the queries never wait for the stat table. The buffer is flushed on shutdown.
+ */
+@Component
+@Slf4j
+public class QueryStatWriter {
+
+    private final StatRepository statRepository;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final BlockingQueue<QueryStat> buffer;
+    private final Thread writer;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile boolean running = true;
+
+    public QueryStatWriter(StatRepository statRepository,
+            @Value("${s2.stat.buffer.capacity:10000}") int capacity,
+            @Value("${s2.stat.batch.size:500}") int batchSize,
+            @Value("${s2.stat.flush.interval-ms:1000}") long flushIntervalMs) {
+        this.statRepository = statRepository;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.writer = new Thread(this::run, "supersonic-stat-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** adds the stat to the buffer, or drops it if the buffer is full or closed */
+    public boolean offer(QueryStat queryStat) {
+        if (running && buffer.offer(queryStat)) {
+            accepted.incrementAndGet();
+            return true;
+        }
+        long count = dropped.incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            log.warn("query stat buffer is full, dropped:{}, capacity:{}", count,
+                    buffer.size() + buffer.remainingCapacity());
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        try {
+            writer.join(flushIntervalMs + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("query stat writer did not stop, pending:{}", buffer.size());
+        } else {
+            List<QueryStat> batch = new ArrayList<>(batchSize);
+            while (buffer.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        log.info(
+                "query stat writer closed, accepted:{}, written:{}, dropped:{}, failed:{}, "
+                        + "batches:{}",
+                accepted.get(), written.get(), dropped.get(), failed.get(), batches.get());
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    private void run() {
+        while (running) {
+            List<QueryStat> batch = new ArrayList<>(batchSize);
+            long deadline = System.currentTimeMillis() + flushIntervalMs;
+            try {
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    QueryStat queryStat =
+                            wait > 0 ? buffer.poll(wait, TimeUnit.MILLISECONDS) : null;
+                    if (queryStat == null) {
+                        break;
+                    }
+                    batch.add(queryStat);
+                    buffer.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            write(batch);
+        }
+    }
+
+    private void write(List<QueryStat> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            statRepository.createRecords(batch);
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            log.warn("write query stats error, size:{}", batch.size(), e);
+        }
+    }
+}
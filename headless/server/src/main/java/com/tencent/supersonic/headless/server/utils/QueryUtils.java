@@ -34,12 +34,16 @@ public class QueryUtils {
 
     public void populateQueryColumns(SemanticQueryResp semanticQueryResp,
             SemanticSchemaResp semanticSchemaResp) {
+        populateQueryColumns(semanticQueryResp.getColumns(), semanticSchemaResp);
+    }
+
+    public void populateQueryColumns(List<QueryColumn> columns,
+            SemanticSchemaResp semanticSchemaResp) {
         Map<String, MetricResp> metricRespMap = createMetricRespMap(semanticSchemaResp);
         Map<String, DimensionResp> dimensionRespMap = createDimRespMap(semanticSchemaResp);
         Map<String, String> namePair = new HashMap<>();
         Map<String, String> nameTypePair = new HashMap<>();
         populateNamePairs(semanticSchemaResp, namePair, nameTypePair);
-        List<QueryColumn> columns = semanticQueryResp.getColumns();
         columns.forEach(column -> processColumn(column, namePair, nameTypePair, metricRespMap,
                 dimensionRespMap));
     }
@@ -0,0 +1,245 @@
+package com.tencent.supersonic.headless.server.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tencent.supersonic.common.pojo.Parameter;
+import com.tencent.supersonic.common.service.EmbeddingService;
+import com.tencent.supersonic.common.util.DeepCopyUtil;
+import com.tencent.supersonic.common.util.JsonUtil;
+import com.tencent.supersonic.headless.api.pojo.DataSetSchema;
+import com.tencent.supersonic.headless.api.pojo.SchemaElement;
+import com.tencent.supersonic.headless.api.pojo.SchemaMapInfo;
+import com.tencent.supersonic.headless.api.pojo.SemanticSchema;
+import com.tencent.supersonic.headless.api.pojo.request.QueryNLReq;
+import com.tencent.supersonic.headless.chat.ChatQueryContext;
+import com.tencent.supersonic.headless.chat.knowledge.helper.HanlpHelper;
+import com.tencent.supersonic.headless.chat.mapper.MapperConfig;
+import com.tencent.supersonic.headless.chat.mapper.MappingContext;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * The mapping results of recent questions. A result is kept by the question with its whitespace
+ * normalized, the request options, the chat apps and the mapper parameters the mappers depend on
+ * and a version of the schema, of the dictionary and of the embedding store, so a repeated question
+ * skips the mapping until any of them changes. It also counts the calls and costs of each mapper.
+ */
+@Component
+@Slf4j
+public class SchemaMapInfoCache {
+
+    /** the parameters of the mappers, their values take part in the key */
+    private static final List<Parameter> MAPPER_PARAMETERS =
+            Arrays.stream(MapperConfig.class.getFields())
+                    .filter(field -> Modifier.isStatic(field.getModifiers())
+                            && Parameter.class.equals(field.getType()))
+                    .map(field -> {
+                        try {
+                            return (Parameter) field.get(null);
+                        } catch (IllegalAccessException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }).collect(Collectors.toList());
+
+    private final boolean enable;
+    private final Cache<String, SchemaMapInfo> mapInfos;
+    /**
+     * the hash of the schema of each set of data sets by the model version. Edits of terms and tags
+     * do not change the model version, so a hash is only kept for a few seconds.
+     */
+    private final Cache<String, Long> schemaVersions;
+    private final MapperConfig mapperConfig;
+    private final EmbeddingService embeddingService;
+    private final ModelVersionManager modelVersionManager;
+    private final Map<String, MapperStats> mapperStats = new ConcurrentHashMap<>();
+    private final LongAdder mappingCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public SchemaMapInfoCache(@Value("${s2.mapper.cache.enable:true}") boolean enable,
+            @Value("${s2.mapper.cache.max-size:2000}") long maxSize,
+            @Value("${s2.mapper.cache.expire-minutes:30}") long expireMinutes,
+            @Value("${s2.mapper.cache.schema-version.expire-seconds:10}") long schemaExpireSeconds,
+            MapperConfig mapperConfig, EmbeddingService embeddingService,
+            ModelVersionManager modelVersionManager) {
+        this.enable = enable;
+        this.mapInfos = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES).recordStats().build();
+        this.schemaVersions = Caffeine.newBuilder().maximumSize(1000)
+                .expireAfterWrite(schemaExpireSeconds, TimeUnit.SECONDS).build();
+        this.mapperConfig = mapperConfig;
+        this.embeddingService = embeddingService;
+        this.modelVersionManager = modelVersionManager;
+    }
+
+    /** a copy of the mapping result of the same question, or null */
+    public SchemaMapInfo get(String key) {
+        if (!enable || Objects.isNull(key)) {
+            return null;
+        }
+        SchemaMapInfo mapInfo = mapInfos.getIfPresent(key);
+        return Objects.isNull(mapInfo) ? null : DeepCopyUtil.deepCopy(mapInfo);
+    }
+
+    public void put(String key, SchemaMapInfo mapInfo) {
+        if (!enable || Objects.isNull(key)) {
+            return;
+        }
+        mapInfos.put(key, DeepCopyUtil.deepCopy(mapInfo));
+    }
+
+    public CacheStats stats() {
+        return mapInfos.stats();
+    }
+
+    /** adds the costs of the mappers that mapped a question */
+    public void record(MappingContext mappingContext) {
+        mappingCount.increment();
+        if (mappingContext.isFailed()) {
+            failedCount.increment();
+        }
+        mappingContext.getMapperCosts().forEach((mapper, cost) -> mapperStats
+                .computeIfAbsent(mapper, k -> new MapperStats()).add(cost));
+    }
+
+    /** the counters of the cache and the calls and costs of each mapper */
+    public Map<String, Object> getStats() {
+        CacheStats cacheStats = mapInfos.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hit", cacheStats.hitCount());
+        stats.put("miss", cacheStats.missCount());
+        stats.put("eviction", cacheStats.evictionCount());
+        stats.put("size", mapInfos.estimatedSize());
+        stats.put("mapping", mappingCount.sum());
+        stats.put("failed", failedCount.sum());
+        Map<String, Map<String, Long>> mappers = new TreeMap<>();
+        mapperStats.forEach((mapper, mapperStat) -> mappers.put(mapper, mapperStat.toMap()));
+        stats.put("mappers", mappers);
+        return stats;
+    }
+
+    /** the key of the question of the context, or null if it can not be cached */
+    public String getKey(ChatQueryContext queryCtx) {
+        QueryNLReq request = queryCtx.getRequest();
+        if (!enable || StringUtils.isBlank(request.getQueryText())) {
+            return null;
+        }
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putString(hasher, StringUtils.normalizeSpace(request.getQueryText()));
+        putString(hasher, String.valueOf(new TreeSet<>(request.getDataSetIds())));
+        putString(hasher, String.valueOf(request.getMapModeEnum()));
+        putString(hasher, String.valueOf(request.getText2SQLType()));
+        putString(hasher, String.valueOf(request.isDescriptionMapped()));
+        putString(hasher, JsonUtil.toString(request.getQueryFilters()));
+        putString(hasher, String.valueOf(request.getQueryDataType()));
+        if (Objects.nonNull(request.getChatAppConfig())) {
+            putString(hasher, JsonUtil.toString(new TreeMap<>(request.getChatAppConfig())));
+        }
+        if (Objects.nonNull(queryCtx.getModelIdToDataSetIds())) {
+            putString(hasher, String.valueOf(new TreeMap<>(queryCtx.getModelIdToDataSetIds())));
+        }
+        for (Parameter parameter : MAPPER_PARAMETERS) {
+            putString(hasher, String.valueOf(mapperConfig.getParameterValue(parameter)));
+        }
+        hasher.putLong(getSchemaVersion(queryCtx.getSemanticSchema()));
+        hasher.putLong(HanlpHelper.getVersion());
+        hasher.putLong(embeddingService.getVersion());
+        return hasher.hash().toString();
+    }
+
+    private long getSchemaVersion(SemanticSchema semanticSchema) {
+        if (Objects.isNull(semanticSchema)) {
+            return 0L;
+        }
+        String key = modelVersionManager.getGlobalVersion() + ":"
+                + new TreeSet<>(semanticSchema.getDataSetSchemaMap().keySet());
+        return schemaVersions.get(key, k -> hash(semanticSchema));
+    }
+
+    /** a hash of the schema elements that does not depend on their order */
+    private static long hash(SemanticSchema semanticSchema) {
+        long version = 0L;
+        for (DataSetSchema dataSetSchema : semanticSchema.getDataSetSchemaMap().values()) {
+            version += hash(dataSetSchema.getDataSet());
+            version += hash(dataSetSchema.getMetrics());
+            version += hash(dataSetSchema.getDimensions());
+            version += hash(dataSetSchema.getDimensionValues());
+            version += hash(dataSetSchema.getTags());
+            version += hash(dataSetSchema.getTerms());
+        }
+        return version;
+    }
+
+    private static long hash(Collection<SchemaElement> schemaElements) {
+        long hash = 0L;
+        for (SchemaElement schemaElement : schemaElements) {
+            hash += hash(schemaElement);
+        }
+        return hash;
+    }
+
+    private static long hash(SchemaElement schemaElement) {
+        if (Objects.isNull(schemaElement)) {
+            return 0L;
+        }
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putString(hasher, String.valueOf(schemaElement.getType()));
+        putString(hasher, String.valueOf(schemaElement.getId()));
+        putString(hasher, String.valueOf(schemaElement.getDataSetId()));
+        putString(hasher, String.valueOf(schemaElement.getName()));
+        putString(hasher, String.valueOf(schemaElement.getBizName()));
+        putString(hasher, String.valueOf(schemaElement.getAlias()));
+        putString(hasher, String.valueOf(schemaElement.getDescription()));
+        putString(hasher, String.valueOf(schemaElement.getSchemaValueMaps()));
+        putString(hasher, String.valueOf(schemaElement.isPartitionTime()));
+        return hasher.hash().asLong();
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        hasher.putString(value, StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+
+    private static class MapperStats {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMs = new LongAdder();
+        private final LongAccumulator maxMs = new LongAccumulator(Math::max, 0L);
+
+        private void add(long cost) {
+            count.increment();
+            totalMs.add(cost);
+            maxMs.accumulate(cost);
+        }
+
+        private Map<String, Long> toMap() {
+            long calls = count.sum();
+            Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("count", calls);
+            stats.put("totalMs", totalMs.sum());
+            stats.put("avgMs", calls == 0 ? 0L : totalMs.sum() / calls);
+            stats.put("maxMs", maxMs.get());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.tencent.supersonic.headless.server.listener;
+
+import com.hankcs.hanlp.dictionary.CoreDictionary;
+import com.tencent.supersonic.common.pojo.DataEvent;
+import com.tencent.supersonic.common.pojo.DataItem;
+import com.tencent.supersonic.common.pojo.enums.EventType;
+import com.tencent.supersonic.common.pojo.enums.TypeEnums;
+import com.tencent.supersonic.headless.chat.knowledge.DictWord;
+import com.tencent.supersonic.headless.chat.knowledge.MultiCustomDictionary;
+import com.tencent.supersonic.headless.chat.knowledge.helper.HanlpHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+class SchemaDictUpdateListenerTest {
+
+    @Test
+    void testEventIsAppliedToOneFork() {
+        MultiCustomDictionary customDictionary = new MultiCustomDictionary((String[]) null);
+        TreeMap<String, CoreDictionary.Attribute> words = new TreeMap<>();
+        words.put("超音数", CoreDictionary.Attribute.create("_1_1_dataSet 100000"));
+        customDictionary.dat.build(words);
+        customDictionary.insert("访问次数", "_1_2_metric 100000");
+        customDictionary.insert("停留时长", "_1_3_metric 100000");
+        List<DataItem> dataItems = List.of(
+                DataItem.builder().id("2").modelId("1").name("访问次数").newName("访问量")
+                        .type(TypeEnums.METRIC).build(),
+                DataItem.builder().id("3").modelId("1").name("停留时长").type(TypeEnums.METRIC)
+                        .build());
+
+        try (MockedStatic<HanlpHelper> hanlpHelper = Mockito.mockStatic(HanlpHelper.class)) {
+            hanlpHelper
+                    .when(() -> HanlpHelper.addToCustomDictionary(
+                            Mockito.any(MultiCustomDictionary.class), Mockito.any(DictWord.class)))
+                    .thenCallRealMethod();
+            hanlpHelper
+                    .when(() -> HanlpHelper.removeFromCustomDictionary(
+                            Mockito.any(MultiCustomDictionary.class), Mockito.any(DictWord.class)))
+                    .thenCallRealMethod();
+            hanlpHelper.when(() -> HanlpHelper.updateCustomDictionary(Mockito.any()))
+                    .thenAnswer(invocation -> {
+                        invocation.<Consumer<MultiCustomDictionary>>getArgument(0)
+                                .accept(customDictionary);
+                        return null;
+                    });
+            new SchemaDictUpdateListener()
+                    .onApplicationEvent(new DataEvent(this, dataItems, EventType.UPDATE));
+
+            hanlpHelper.verify(() -> HanlpHelper.updateCustomDictionary(Mockito.any()),
+                    Mockito.times(1));
+        }
+        Assertions.assertNotNull(customDictionary.get("访问量"));
+        Assertions.assertNotNull(customDictionary.get("停留时长"));
+    }
+}
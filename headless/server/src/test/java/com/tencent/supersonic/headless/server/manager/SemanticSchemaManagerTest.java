@@ -0,0 +1,52 @@
+package com.tencent.supersonic.headless.server.manager;
+
+import com.google.common.collect.Lists;
+import com.tencent.supersonic.headless.api.pojo.request.SchemaFilterReq;
+import com.tencent.supersonic.headless.api.pojo.response.DatabaseResp;
+import com.tencent.supersonic.headless.api.pojo.response.SemanticSchemaResp;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
+import com.tencent.supersonic.headless.server.service.SchemaService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class SemanticSchemaManagerTest {
+
+    private final SchemaService schemaService = Mockito.mock(SchemaService.class);
+    private final ModelVersionManager modelVersionManager = new ModelVersionManager();
+    private final SemanticSchemaManager semanticSchemaManager =
+            new SemanticSchemaManager(schemaService, modelVersionManager, 100);
+
+    @Test
+    void testOntologyBuiltOncePerSchemaContent() {
+        SchemaFilterReq schemaFilterReq = new SchemaFilterReq();
+        schemaFilterReq.setDataSetId(1L);
+        schemaFilterReq.setModelIds(Lists.newArrayList(1L));
+
+        // the schema cache hands out a new but equal schema once it expires
+        semanticSchemaManager.getOntology(schemaFilterReq, schema("jdbc:h2:mem:s2"));
+        semanticSchemaManager.getOntology(schemaFilterReq, schema("jdbc:h2:mem:s2"));
+        verifyBuilds(1);
+
+        Assertions.assertEquals("jdbc:h2:mem:other", semanticSchemaManager
+                .getOntology(schemaFilterReq, schema("jdbc:h2:mem:other")).getDatabase().getUrl());
+        verifyBuilds(2);
+
+        modelVersionManager.increase(1L);
+        semanticSchemaManager.getOntology(schemaFilterReq, schema("jdbc:h2:mem:other"));
+        verifyBuilds(3);
+    }
+
+    private void verifyBuilds(int times) {
+        Mockito.verify(schemaService, Mockito.times(times)).getSchemaYamlTpl(Mockito.any(),
+                Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private static SemanticSchemaResp schema(String url) {
+        SemanticSchemaResp semanticSchemaResp = new SemanticSchemaResp();
+        semanticSchemaResp.setDataSetId(1L);
+        semanticSchemaResp.setModelIds(Lists.newArrayList(1L));
+        semanticSchemaResp.setDatabaseResp(DatabaseResp.builder().id(1L).url(url).build());
+        return semanticSchemaResp;
+    }
+}
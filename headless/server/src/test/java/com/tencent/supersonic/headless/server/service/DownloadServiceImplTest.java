@@ -1,25 +1,194 @@
 package com.tencent.supersonic.headless.server.service;
 
+import com.alibaba.excel.EasyExcel;
 import com.google.common.collect.Lists;
+import com.tencent.supersonic.common.pojo.Aggregator;
 import com.tencent.supersonic.common.pojo.DateConf;
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.common.pojo.User;
+import com.tencent.supersonic.common.util.ContextUtils;
+import com.tencent.supersonic.common.util.DateModeUtils;
+import com.tencent.supersonic.common.util.SqlFilterUtils;
 import com.tencent.supersonic.headless.api.pojo.DrillDownDimension;
 import com.tencent.supersonic.headless.api.pojo.RelateDimension;
 import com.tencent.supersonic.headless.api.pojo.request.BatchDownloadReq;
+import com.tencent.supersonic.headless.api.pojo.request.DownloadMetricReq;
+import com.tencent.supersonic.headless.api.pojo.request.QuerySqlReq;
+import com.tencent.supersonic.headless.api.pojo.request.QueryStructReq;
 import com.tencent.supersonic.headless.api.pojo.response.DimSchemaResp;
+import com.tencent.supersonic.headless.api.pojo.response.DimensionResp;
+import com.tencent.supersonic.headless.api.pojo.response.MetricResp;
 import com.tencent.supersonic.headless.api.pojo.response.MetricSchemaResp;
 import com.tencent.supersonic.headless.api.pojo.response.ModelSchemaResp;
 import com.tencent.supersonic.headless.api.pojo.response.SemanticQueryResp;
+import com.tencent.supersonic.headless.core.executor.RowBatchHandler;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
+import com.tencent.supersonic.headless.server.facade.service.SemanticLayerService;
+import com.tencent.supersonic.headless.server.service.impl.DownloadServiceImpl;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 class DownloadServiceImplTest {
+
+    private final MetricService metricService = Mockito.mock(MetricService.class);
+    private final DimensionService dimensionService = Mockito.mock(DimensionService.class);
+    private final SemanticLayerService queryService = Mockito.mock(SemanticLayerService.class);
+    private final ThreadPoolExecutor downloadExecutor =
+            new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private final DownloadServiceImpl downloadService = new DownloadServiceImpl(metricService,
+            dimensionService, queryService, downloadExecutor, 2);
+
+    DownloadServiceImplTest() {
+        // the struct queries are converted to sql with these beans
+        ApplicationContext context = Mockito.mock(ApplicationContext.class);
+        Mockito.when(context.getBean(SqlFilterUtils.class)).thenReturn(new SqlFilterUtils());
+        Mockito.when(context.getBean(DateModeUtils.class))
+                .thenReturn(Mockito.mock(DateModeUtils.class));
+        new ContextUtils().setApplicationContext(context);
+    }
+
+    @AfterEach
+    void tearDown() {
+        downloadExecutor.shutdownNow();
+    }
+
     @Test
     void testBatchDownload() throws Exception {}
 
+    @Test
+    void testStreamingDownloadWritesEveryBatch() throws Exception {
+        QueryStructReq queryStructReq = new QueryStructReq();
+        queryStructReq.setGroups(Lists.newArrayList("user_name"));
+        Aggregator aggregator = new Aggregator();
+        aggregator.setColumn("pv");
+        queryStructReq.setAggregators(Lists.newArrayList(aggregator));
+        queryStructReq.setDateInfo(mockDataConf());
+        Mockito.when(metricService.convert(Mockito.any(DownloadMetricReq.class)))
+                .thenReturn(queryStructReq);
+        Mockito.when(queryService.queryByReq(Mockito.any(), Mockito.any(),
+                Mockito.any(RowBatchHandler.class))).thenAnswer(invocation -> {
+                    RowBatchHandler handler = invocation.getArgument(2);
+                    List<QueryColumn> columns =
+                            Lists.newArrayList(new QueryColumn("用户名", "VARCHAR", "user_name"),
+                                    new QueryColumn("访问次数", "BIGINT", "pv"));
+                    handler.onColumns(columns);
+                    for (int batch = 0; batch < 3; batch++) {
+                        RowBatch rowBatch = new RowBatch(columns, 2);
+                        rowBatch.addRow(new Object[] {"user" + batch * 2, batch * 2});
+                        rowBatch.addRow(new Object[] {"user" + (batch * 2 + 1), batch * 2 + 1});
+                        handler.onBatch(rowBatch);
+                    }
+                    return new SemanticQueryResp();
+                });
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        downloadService.downloadByStruct(new DownloadMetricReq(), User.getDefaultUser(),
+                mockResponse(output));
+
+        List<Map<Integer, String>> rows =
+                EasyExcel.read(new ByteArrayInputStream(output.toByteArray())).sheet()
+                        .headRowNumber(0).doReadSync();
+        Assertions.assertEquals(7, rows.size());
+        Assertions.assertEquals("用户名", rows.get(0).get(0));
+        Assertions.assertEquals("访问次数", rows.get(0).get(1));
+        Assertions.assertEquals("user5", rows.get(6).get(0));
+        Assertions.assertEquals("5", rows.get(6).get(1));
+    }
+
+    @Test
+    void testFailedBatchDownloadInterruptsPendingQueries(@TempDir Path tempDir) throws Exception {
+        MetricResp pv = toMetricResp(mockMetricPv());
+        MetricResp uv = toMetricResp(mockMetric(2L, "uv", "访问用户数", Lists.newArrayList(1L, 2L)));
+        Mockito.when(metricService.getMetrics(Mockito.any()))
+                .thenReturn(Lists.newArrayList(pv, uv));
+        Mockito.when(metricService.getDrillDownDimension(Mockito.anyLong())).thenReturn(
+                Lists.newArrayList(new DrillDownDimension(1L), new DrillDownDimension(2L)));
+        Mockito.when(dimensionService.getDimensions(Mockito.any())).thenReturn(Lists
+                .newArrayList(toDimensionResp(1L, "user_name"), toDimensionResp(2L, "department")));
+        CountDownLatch uvStarted = new CountDownLatch(1);
+        CountDownLatch uvInterrupted = new CountDownLatch(1);
+        Mockito.when(queryService.queryByReq(Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    QuerySqlReq querySqlReq = invocation.getArgument(0);
+                    if (querySqlReq.getSql().contains("pv")) {
+                        uvStarted.await(10, TimeUnit.SECONDS);
+                        throw new RuntimeException("pv failed");
+                    }
+                    uvStarted.countDown();
+                    try {
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                    } catch (InterruptedException e) {
+                        uvInterrupted.countDown();
+                        throw e;
+                    }
+                    return mockQueryResult();
+                });
+
+        File file = tempDir.resolve("download.xlsx").toFile();
+        downloadService.batchDownload(buildBatchDownloadReq(), User.getDefaultUser(), file);
+
+        Assertions.assertTrue(uvInterrupted.await(5, TimeUnit.SECONDS));
+        List<Map<Integer, String>> rows =
+                EasyExcel.read(file).sheet().headRowNumber(0).doReadSync();
+        Assertions.assertEquals("pv failed", rows.get(1).get(0));
+    }
+
+    private MetricResp toMetricResp(MetricSchemaResp metricSchemaResp) {
+        MetricResp metricResp = new MetricResp();
+        metricResp.setId(metricSchemaResp.getId());
+        metricResp.setModelId(1L);
+        metricResp.setBizName(metricSchemaResp.getBizName());
+        metricResp.setName(metricSchemaResp.getName());
+        return metricResp;
+    }
+
+    private DimensionResp toDimensionResp(Long id, String bizName) {
+        DimensionResp dimensionResp = new DimensionResp();
+        dimensionResp.setId(id);
+        dimensionResp.setModelId(1L);
+        dimensionResp.setBizName(bizName);
+        return dimensionResp;
+    }
+
+    private HttpServletResponse mockResponse(ByteArrayOutputStream output) throws Exception {
+        HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {}
+
+            @Override
+            public void write(int b) {
+                output.write(b);
+            }
+        });
+        return response;
+    }
+
     private ModelSchemaResp mockModelSchemaResp() {
         ModelSchemaResp modelSchemaResp = new ModelSchemaResp();
         modelSchemaResp.setId(1L);
@@ -76,6 +245,7 @@ class DownloadServiceImplTest {
         dateConf.setStartDate("2023-10-11");
         dateConf.setEndDate("2023-10-15");
         dateConf.setDateMode(DateConf.DateMode.BETWEEN);
+        dateConf.setDateField("sys_imp_date");
         return dateConf;
     }
 
@@ -0,0 +1,110 @@
+package com.tencent.supersonic.headless.server.service.impl;
+
+import com.tencent.supersonic.common.pojo.enums.StatusEnum;
+import com.tencent.supersonic.common.pojo.enums.TaskStatusEnum;
+import com.tencent.supersonic.common.pojo.enums.TypeEnums;
+import com.tencent.supersonic.headless.api.pojo.response.DictItemResp;
+import com.tencent.supersonic.headless.api.pojo.response.ModelResp;
+import com.tencent.supersonic.headless.chat.knowledge.file.FileHandler;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
+import com.tencent.supersonic.headless.server.persistence.dataobject.DictTaskDO;
+import com.tencent.supersonic.headless.server.persistence.repository.DictRepository;
+import com.tencent.supersonic.headless.server.service.DimensionService;
+import com.tencent.supersonic.headless.server.service.ModelService;
+import com.tencent.supersonic.headless.server.utils.DictUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+class DictTaskServiceImplTest {
+
+    private final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(2, 2, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testDailyTaskRunsOnSharedExecutor() throws Exception {
+        DictRepository dictRepository = Mockito.mock(DictRepository.class);
+        DictUtils dictUtils = Mockito.mock(DictUtils.class);
+        FileHandler fileHandler = Mockito.mock(FileHandler.class);
+        DictWordService dictWordService = Mockito.mock(DictWordService.class);
+        ModelService modelService = Mockito.mock(ModelService.class);
+        DictTaskServiceImpl dictTaskService = new DictTaskServiceImpl(dictRepository, dictUtils,
+                dictUtils, fileHandler, dictWordService, Mockito.mock(DimensionService.class),
+                new ModelVersionManager(), modelService, executor);
+        setField(dictTaskService, "dictFlushDailyEnable", true);
+        setField(dictTaskService, "dictFileType", "txt");
+        setField(dictTaskService, "dictTaskDatabaseParallelism", 1);
+
+        DictItemResp city = item(1L, 11L);
+        DictItemResp broken = item(2L, 22L);
+        Mockito.when(dictRepository.queryDictConf(Mockito.any()))
+                .thenReturn(Arrays.asList(city, broken));
+        Mockito.when(modelService.getModel(Mockito.any())).thenReturn(new ModelResp());
+        Map<Long, DictTaskDO> tasks = new ConcurrentHashMap<>();
+        AtomicLong ids = new AtomicLong();
+        Mockito.when(dictUtils.generateDictTaskDO(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    DictTaskDO dictTaskDO = new DictTaskDO();
+                    dictTaskDO.setItemId(invocation.<DictItemResp>getArgument(0).getItemId());
+                    dictTaskDO.setStatus(invocation.<TaskStatusEnum>getArgument(2).getStatus());
+                    dictTaskDO.setCreatedAt(new Date());
+                    return dictTaskDO;
+                });
+        Mockito.when(dictRepository.addDictTask(Mockito.any())).thenAnswer(invocation -> {
+            DictTaskDO dictTaskDO = invocation.getArgument(0);
+            dictTaskDO.setId(ids.incrementAndGet());
+            tasks.put(dictTaskDO.getItemId(), dictTaskDO);
+            return dictTaskDO.getId();
+        });
+        Mockito.when(dictUtils.fetchItemValueFrequency(Mockito.eq(city), Mockito.any()))
+                .thenReturn(Map.of("北京", 1L));
+        Mockito.when(dictUtils.fetchItemValueFrequency(Mockito.eq(broken), Mockito.any()))
+                .thenThrow(new RuntimeException("query failed"));
+        Mockito.when(dictUtils.toDictLines(Mockito.any(), Mockito.any()))
+                .thenReturn(Stream.of("北京 _1_11 1"));
+        Mockito.when(fileHandler.writeFile(Mockito.<Stream<String>>any(), Mockito.anyString()))
+                .thenReturn(1L);
+
+        dictTaskService.dailyDictTask();
+        dictTaskService.dailyDictTask();
+
+        Assertions.assertFalse(executor.isShutdown());
+        // a worker counts its task as completed only after the caller saw the result
+        Assertions.assertEquals(4, executor.getTaskCount());
+        Mockito.verify(dictWordService, Mockito.times(2)).loadDictWord();
+        Assertions.assertEquals(TaskStatusEnum.SUCCESS.getStatus(), tasks.get(11L).getStatus());
+        Assertions.assertEquals(TaskStatusEnum.ERROR.getStatus(), tasks.get(22L).getStatus());
+    }
+
+    private DictItemResp item(Long modelId, Long itemId) {
+        DictItemResp dictItemResp = new DictItemResp();
+        dictItemResp.setModelId(modelId);
+        dictItemResp.setItemId(itemId);
+        dictItemResp.setType(TypeEnums.DIMENSION);
+        dictItemResp.setStatus(StatusEnum.ONLINE);
+        return dictItemResp;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,80 @@
+package com.tencent.supersonic.headless.server.service.impl;
+
+import com.google.common.collect.Lists;
+import com.tencent.supersonic.headless.api.pojo.SchemaElement;
+import com.tencent.supersonic.headless.api.pojo.SchemaElementType;
+import com.tencent.supersonic.headless.api.pojo.SemanticSchema;
+import com.tencent.supersonic.headless.chat.knowledge.DictWord;
+import com.tencent.supersonic.headless.chat.knowledge.KnowledgeBaseService;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
+import com.tencent.supersonic.headless.server.service.SchemaService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class DictWordServiceTest {
+
+    private final List<SchemaElement> dimensions = new ArrayList<>();
+    private final SchemaService schemaService = Mockito.mock(SchemaService.class);
+    private final KnowledgeBaseService knowledgeBaseService =
+            Mockito.mock(KnowledgeBaseService.class);
+    private final DictWordService dictWordService = new DictWordService();
+
+    DictWordServiceTest() {
+        SemanticSchema semanticSchema = Mockito.mock(SemanticSchema.class);
+        Mockito.when(semanticSchema.getDimensions()).thenReturn(dimensions);
+        Mockito.when(schemaService.getSemanticSchema()).thenReturn(semanticSchema);
+        dictWordService.setSchemaService(schemaService);
+        dictWordService.setKnowledgeBaseService(knowledgeBaseService);
+        dictWordService.setModelVersionManager(new ModelVersionManager());
+    }
+
+    @Test
+    void testReloadAppliesOnlyChangedWords() {
+        dimensions.add(dimension(1L, "部门", Lists.newArrayList()));
+        dimensions.add(dimension(2L, "城市", Lists.newArrayList()));
+        dictWordService.loadDictWord();
+
+        // the model version is unchanged, the changed alias must still be seen
+        dimensions.set(0, dimension(1L, "部门", Lists.newArrayList("团队")));
+        dictWordService.reloadDictWord();
+
+        ArgumentCaptor<List<DictWord>> added = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<DictWord>> removed = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(knowledgeBaseService).updateDictWords(added.capture(), removed.capture());
+        Assertions.assertEquals(List.of("团队"),
+                added.getValue().stream().map(DictWord::getWord).collect(Collectors.toList()));
+        Assertions.assertTrue(removed.getValue().isEmpty());
+
+        dictWordService.reloadDictWord();
+        Mockito.verify(knowledgeBaseService, Mockito.times(1)).updateDictWords(Mockito.any(),
+                Mockito.any());
+    }
+
+    @Test
+    void testReloadRemovesWordsOfDroppedElement() {
+        dimensions.add(dimension(1L, "部门", Lists.newArrayList()));
+        dimensions.add(dimension(2L, "城市", Lists.newArrayList()));
+        dictWordService.loadDictWord();
+
+        dimensions.remove(1);
+        dictWordService.reloadDictWord();
+
+        ArgumentCaptor<List<DictWord>> added = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<DictWord>> removed = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(knowledgeBaseService).updateDictWords(added.capture(), removed.capture());
+        Assertions.assertTrue(added.getValue().isEmpty());
+        Assertions.assertEquals(List.of("城市", "市城"),
+                removed.getValue().stream().map(DictWord::getWord).collect(Collectors.toList()));
+    }
+
+    private SchemaElement dimension(Long id, String name, List<String> alias) {
+        return SchemaElement.builder().id(id).model(1L).dataSetId(1L).name(name).alias(alias)
+                .type(SchemaElementType.DIMENSION).build();
+    }
+}
@@ -0,0 +1,143 @@
+package com.tencent.supersonic.headless.server.utils;
+
+import com.tencent.supersonic.common.pojo.QueryColumn;
+import com.tencent.supersonic.headless.core.pojo.RowBatch;
+import org.apache.arrow.flight.FlightProducer.ServerStreamListener;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ArrowBatchWriterTest {
+
+    @Test
+    public void testDecimalsAndUnsignedBigintStayExact() {
+        Assertions.assertEquals(new ArrowType.Decimal(10, 2, 128),
+                ArrowBatchWriter.toArrowType(new QueryColumn("a", "Nullable(Decimal(10, 2))")));
+        Assertions.assertEquals(ArrowType.Utf8.INSTANCE,
+                ArrowBatchWriter.toArrowType(new QueryColumn("a", "DECIMAL")));
+        Assertions.assertEquals(ArrowType.Utf8.INSTANCE,
+                ArrowBatchWriter.toArrowType(new QueryColumn("a", "Decimal64(4)")));
+        Assertions.assertEquals(new ArrowType.Decimal(20, 0, 128),
+                ArrowBatchWriter.toArrowType(new QueryColumn("a", "BIGINT UNSIGNED")));
+        Assertions.assertEquals(new ArrowType.Int(64, true),
+                ArrowBatchWriter.toArrowType(new QueryColumn("a", "INT UNSIGNED")));
+        Assertions.assertEquals(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE),
+                ArrowBatchWriter.toArrowType(new QueryColumn("a", "DOUBLE")));
+    }
+
+    @Test
+    public void testWritesExactValuesOnceReady() throws Exception {
+        List<QueryColumn> columns = Arrays.asList(new QueryColumn("price", "DECIMAL(10,2)"),
+                new QueryColumn("id", "UBIGINT"), new QueryColumn("text", "DECIMAL"));
+        try (BufferAllocator allocator = new RootAllocator();
+                RecordingListener listener = new RecordingListener();
+                ArrowBatchWriter writer = new ArrowBatchWriter(allocator, listener)) {
+            writer.onColumns(columns);
+            RowBatch rowBatch = new RowBatch(columns, 2);
+            rowBatch.addRow(new Object[] {new BigDecimal("1.1"),
+                            new BigInteger("18446744073709551615"), new BigDecimal("0.1000")});
+            rowBatch.addRow(new Object[] {null, 1L, null});
+            CompletableFuture<Void> batch =
+                    CompletableFuture.runAsync(() -> writer.onBatch(rowBatch));
+            Thread.sleep(50);
+            Assertions.assertFalse(batch.isDone());
+            listener.setReady();
+            batch.get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(
+                    Arrays.asList("1.10", "18446744073709551615", "0.1000", "null", "1", "null"),
+                    listener.values);
+        }
+    }
+
+    @Test
+    public void testUnparsableValueFailsTheBatch() {
+        List<QueryColumn> columns = Arrays.asList(new QueryColumn("pv", "BIGINT"));
+        try (BufferAllocator allocator = new RootAllocator();
+                RecordingListener listener = new RecordingListener();
+                ArrowBatchWriter writer = new ArrowBatchWriter(allocator, listener)) {
+            listener.setReady();
+            writer.onColumns(columns);
+            RowBatch rowBatch = new RowBatch(columns, 1);
+            rowBatch.addRow(new Object[] {"n/a"});
+            Assertions.assertThrows(RuntimeException.class, () -> writer.onBatch(rowBatch));
+        }
+    }
+
+    private static class RecordingListener implements ServerStreamListener, AutoCloseable {
+
+        private final List<String> values = new ArrayList<>();
+        private volatile boolean ready;
+        private Runnable onReady;
+        private VectorSchemaRoot root;
+
+        void setReady() {
+            ready = true;
+            onReady.run();
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable handler) {
+            onReady = handler;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable handler) {}
+
+        @Override
+        public void start(VectorSchemaRoot root, DictionaryProvider dictionaries,
+                IpcOption option) {
+            this.root = root;
+        }
+
+        @Override
+        public void putNext() {
+            for (int row = 0; row < root.getRowCount(); row++) {
+                for (int col = 0; col < root.getFieldVectors().size(); col++) {
+                    values.add(String.valueOf(root.getVector(col).getObject(row)));
+                }
+            }
+        }
+
+        @Override
+        public void putNext(ArrowBuf metadata) {
+            putNext();
+        }
+
+        @Override
+        public void putMetadata(ArrowBuf metadata) {}
+
+        @Override
+        public void error(Throwable ex) {}
+
+        @Override
+        public void completed() {}
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,159 @@
+package com.tencent.supersonic.headless.server.utils;
+
+import com.google.common.collect.Lists;
+import com.tencent.supersonic.headless.api.pojo.SemanticParseInfo;
+import com.tencent.supersonic.headless.api.pojo.enums.ChatWorkflowState;
+import com.tencent.supersonic.headless.api.pojo.request.QueryNLReq;
+import com.tencent.supersonic.headless.api.pojo.response.ParseResp;
+import com.tencent.supersonic.headless.chat.ChatQueryContext;
+import com.tencent.supersonic.headless.chat.corrector.SemanticCorrector;
+import com.tencent.supersonic.headless.chat.parser.SemanticParser;
+import com.tencent.supersonic.headless.chat.query.llm.s2sql.LLMSqlQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+class ChatWorkflowEngineTest {
+
+    private static final String SLOW = "SELECT 部门 FROM 超音数";
+    private static final String FAST = "SELECT 用户 FROM 超音数";
+
+    private final CountDownLatch slowDone = new CountDownLatch(1);
+    private final List<ChatQueryContext> correctedContexts =
+            Collections.synchronizedList(Lists.newArrayList());
+    private final SemanticParseInfo slow = parseInfo(SLOW, 2D);
+    private final SemanticParseInfo fast = parseInfo(FAST, 1D);
+    private ThreadPoolExecutor candidateExecutor;
+
+    @AfterEach
+    void tearDown() {
+        candidateExecutor.shutdownNow();
+    }
+
+    @Test
+    void testCandidatesAreCorrectedInParallel() throws Exception {
+        ChatWorkflowEngine engine = createEngine(4, 5000, true);
+        ChatQueryContext queryCtx = queryContext();
+
+        engine.start(ChatWorkflowState.PARSING, queryCtx);
+
+        Assertions.assertEquals("late", slow.getSqlInfo().getCorrectedS2SQL());
+        Assertions.assertEquals("corrected", fast.getSqlInfo().getCorrectedS2SQL());
+        // each candidate is corrected on its own copy of the context
+        Assertions.assertEquals(2, correctedContexts.size());
+        Assertions.assertNotSame(correctedContexts.get(0), correctedContexts.get(1));
+        Assertions.assertFalse(correctedContexts.contains(queryCtx));
+        // the candidate with the highest score is kept
+        Assertions.assertEquals(1, queryCtx.getCandidateQueries().size());
+        Assertions.assertSame(slow, queryCtx.getCandidateQueries().get(0).getParseInfo());
+        Assertions.assertEquals(List.of(slow), queryCtx.getParseResp().getSelectedParses());
+    }
+
+    @Test
+    void testTimedOutCandidateIsDropped() throws Exception {
+        ChatWorkflowEngine engine = createEngine(4, 100, true);
+        ChatQueryContext queryCtx = queryContext();
+        ParseResp parseResp = queryCtx.getParseResp();
+
+        engine.start(ChatWorkflowState.PARSING, queryCtx);
+
+        Assertions.assertEquals(1, queryCtx.getCandidateQueries().size());
+        Assertions.assertSame(fast, queryCtx.getCandidateQueries().get(0).getParseInfo());
+        Assertions.assertEquals("corrected", fast.getSqlInfo().getCorrectedS2SQL());
+        Assertions.assertEquals(List.of(fast), parseResp.getSelectedParses());
+        Assertions.assertFalse(String.valueOf(parseResp.getErrorMsg()).contains("timeout"));
+
+        // the late write of the slow candidate does not reach the result
+        Assertions.assertTrue(slowDone.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(fast), parseResp.getSelectedParses());
+    }
+
+    @Test
+    void testRejectedCandidateRunsOnCallingThread() throws Exception {
+        ChatWorkflowEngine engine = createEngine(1, 5000, true);
+        ChatQueryContext queryCtx = queryContext();
+
+        engine.start(ChatWorkflowState.PARSING, queryCtx);
+
+        Assertions.assertEquals("late", slow.getSqlInfo().getCorrectedS2SQL());
+        Assertions.assertEquals("corrected", fast.getSqlInfo().getCorrectedS2SQL());
+        Assertions.assertEquals(List.of(slow), queryCtx.getParseResp().getSelectedParses());
+    }
+
+    @Test
+    void testOnlyTopCandidateIsCorrectedInSequence() throws Exception {
+        ChatWorkflowEngine engine = createEngine(4, 5000, false);
+        ChatQueryContext queryCtx = queryContext();
+
+        engine.start(ChatWorkflowState.PARSING, queryCtx);
+
+        Assertions.assertEquals("late", slow.getSqlInfo().getCorrectedS2SQL());
+        Assertions.assertNull(fast.getSqlInfo().getCorrectedS2SQL());
+        Assertions.assertEquals(List.of(queryCtx), correctedContexts);
+        Assertions.assertEquals(List.of(slow), queryCtx.getParseResp().getSelectedParses());
+    }
+
+    private ChatWorkflowEngine createEngine(int threads, long timeoutMs, boolean parallel)
+            throws Exception {
+        candidateExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        // adds the candidates one by one like the llm parser does
+        SemanticParser parser = queryCtx -> {
+            for (SemanticParseInfo parseInfo : List.of(fast, slow)) {
+                LLMSqlQuery semanticQuery = new LLMSqlQuery();
+                semanticQuery.setParseInfo(parseInfo);
+                queryCtx.getCandidateQueries().add(semanticQuery);
+            }
+        };
+        SemanticCorrector corrector = (queryCtx, parseInfo) -> {
+            correctedContexts.add(queryCtx);
+            if (SLOW.equals(parseInfo.getSqlInfo().getParsedS2SQL())) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    // the worker can not always be stopped, it keeps going
+                }
+                parseInfo.getSqlInfo().setCorrectedS2SQL("late");
+                slowDone.countDown();
+            } else {
+                parseInfo.getSqlInfo().setCorrectedS2SQL("corrected");
+            }
+        };
+        ChatWorkflowEngine engine = new ChatWorkflowEngine();
+        setField(engine, "semanticParsers", Lists.newArrayList(parser));
+        setField(engine, "semanticCorrectors", Lists.newArrayList(corrector));
+        setField(engine, "candidateExecutor", candidateExecutor);
+        setField(engine, "parallelCandidates", parallel);
+        setField(engine, "candidateTimeoutMs", timeoutMs);
+        return engine;
+    }
+
+    private ChatQueryContext queryContext() {
+        QueryNLReq request = new QueryNLReq();
+        request.setQueryText("各部门的访问次数");
+        ChatQueryContext queryCtx = new ChatQueryContext(request);
+        queryCtx.setParseResp(new ParseResp(request.getQueryText()));
+        return queryCtx;
+    }
+
+    private static SemanticParseInfo parseInfo(String s2SQL, double score) {
+        SemanticParseInfo parseInfo = new SemanticParseInfo();
+        parseInfo.getSqlInfo().setParsedS2SQL(s2SQL);
+        parseInfo.setScore(score);
+        return parseInfo;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,81 @@
+package com.tencent.supersonic.headless.server.utils;
+
+import com.tencent.supersonic.headless.api.pojo.QueryStat;
+import com.tencent.supersonic.headless.api.pojo.request.ItemUseReq;
+import com.tencent.supersonic.headless.api.pojo.response.ItemUseResp;
+import com.tencent.supersonic.headless.server.persistence.repository.StatRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class QueryStatWriterTest {
+
+    @Test
+    void writeInBatches() {
+        CountingRepository repository = new CountingRepository(null);
+        QueryStatWriter writer = new QueryStatWriter(repository, 10000, 500, 1000);
+        for (int i = 0; i < 10000; i++) {
+            Assertions.assertTrue(writer.offer(new QueryStat()));
+        }
+        writer.close();
+        Assertions.assertEquals(10000, repository.records.get());
+        Assertions.assertEquals(10000, writer.getWritten());
+        // one write per query before, about one batch per 500 queries now
+        Assertions.assertTrue(repository.inserts.get() <= 40, "" + repository.inserts.get());
+        Assertions.assertEquals(0, writer.getDropped());
+    }
+
+    @Test
+    void dropWhenFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountingRepository repository = new CountingRepository(blocked);
+        QueryStatWriter writer = new QueryStatWriter(repository, 10, 5, 10);
+        for (int i = 0; i < 100; i++) {
+            writer.offer(new QueryStat());
+        }
+        Assertions.assertTrue(writer.getDropped() > 0);
+        Assertions.assertEquals(100, writer.getAccepted() + writer.getDropped());
+        blocked.countDown();
+        writer.close();
+        Assertions.assertEquals(writer.getAccepted(), repository.records.get());
+        Assertions.assertFalse(writer.offer(new QueryStat()));
+    }
+
+    private static class CountingRepository implements StatRepository {
+
+        private final CountDownLatch blocked;
+        private final AtomicInteger inserts = new AtomicInteger();
+        private final AtomicInteger records = new AtomicInteger();
+
+        CountingRepository(CountDownLatch blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public Boolean createRecord(QueryStat queryStatInfo) {
+            createRecords(List.of(queryStatInfo));
+            return true;
+        }
+
+        @Override
+        public void createRecords(List<QueryStat> queryStatInfos) {
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            inserts.incrementAndGet();
+            records.addAndGet(queryStatInfos.size());
+        }
+
+        @Override
+        public List<ItemUseResp> getStatInfo(ItemUseReq itemUseCommend) {
+            return List.of();
+        }
+    }
+}
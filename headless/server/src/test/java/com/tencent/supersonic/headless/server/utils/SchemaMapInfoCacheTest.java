@@ -0,0 +1,126 @@
+package com.tencent.supersonic.headless.server.utils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.tencent.supersonic.common.pojo.ChatApp;
+import com.tencent.supersonic.common.pojo.Parameter;
+import com.tencent.supersonic.common.service.EmbeddingService;
+import com.tencent.supersonic.headless.api.pojo.DataSetSchema;
+import com.tencent.supersonic.headless.api.pojo.QueryDataType;
+import com.tencent.supersonic.headless.api.pojo.SchemaElement;
+import com.tencent.supersonic.headless.api.pojo.SchemaElementType;
+import com.tencent.supersonic.headless.api.pojo.SemanticSchema;
+import com.tencent.supersonic.headless.api.pojo.request.QueryNLReq;
+import com.tencent.supersonic.headless.chat.ChatQueryContext;
+import com.tencent.supersonic.headless.chat.mapper.MapperConfig;
+import com.tencent.supersonic.headless.chat.mapper.MappingContext;
+import com.tencent.supersonic.headless.core.cache.ModelVersionManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+
+class SchemaMapInfoCacheTest {
+
+    private final MapperConfig mapperConfig = Mockito.mock(MapperConfig.class);
+    private final EmbeddingService embeddingService = Mockito.mock(EmbeddingService.class);
+    private final ModelVersionManager modelVersionManager = new ModelVersionManager();
+    private final DataSetSchema dataSetSchema = Mockito.mock(DataSetSchema.class);
+    private final SchemaMapInfoCache schemaMapInfoCache = new SchemaMapInfoCache(true, 100, 30, 10,
+            mapperConfig, embeddingService, modelVersionManager);
+
+    SchemaMapInfoCacheTest() {
+        Mockito.when(mapperConfig.getParameterValue(Mockito.any())).thenAnswer(
+                invocation -> invocation.getArgument(0, Parameter.class).getDefaultValue());
+        Mockito.when(dataSetSchema.getDataSet()).thenReturn(SchemaElement.builder().id(1L)
+                .dataSetId(1L).name("超音数").type(SchemaElementType.DATASET).build());
+    }
+
+    @Test
+    void testKeyChangesWithMapperParameter() {
+        ChatQueryContext queryCtx = queryContext();
+        String key = schemaMapInfoCache.getKey(queryCtx);
+        Assertions.assertEquals(key, schemaMapInfoCache.getKey(queryCtx));
+
+        Mockito.when(mapperConfig.getParameterValue(MapperConfig.MAPPER_NAME_THRESHOLD))
+                .thenReturn("0.9");
+        Assertions.assertNotEquals(key, schemaMapInfoCache.getKey(queryCtx));
+    }
+
+    @Test
+    void testKeyChangesWithQueryDataType() {
+        ChatQueryContext queryCtx = queryContext();
+        String key = schemaMapInfoCache.getKey(queryCtx);
+
+        queryCtx.getRequest().setQueryDataType(QueryDataType.METRIC);
+        Assertions.assertNotEquals(key, schemaMapInfoCache.getKey(queryCtx));
+    }
+
+    @Test
+    void testKeyChangesWithChatAppConfig() {
+        ChatQueryContext queryCtx = queryContext();
+        String key = schemaMapInfoCache.getKey(queryCtx);
+
+        ChatApp chatApp = ChatApp.builder().name("多轮对话改写").enable(true).chatModelId(1).build();
+        queryCtx.getRequest().setChatAppConfig(Map.of("REWRITE_MULTI_TURN", chatApp));
+        String appKey = schemaMapInfoCache.getKey(queryCtx);
+        Assertions.assertNotEquals(key, appKey);
+
+        chatApp.setChatModelId(2);
+        Assertions.assertNotEquals(appKey, schemaMapInfoCache.getKey(queryCtx));
+    }
+
+    @Test
+    void testKeyChangesWithEmbeddingVersion() {
+        ChatQueryContext queryCtx = queryContext();
+        String key = schemaMapInfoCache.getKey(queryCtx);
+
+        Mockito.when(embeddingService.getVersion()).thenReturn(2L);
+        Assertions.assertNotEquals(key, schemaMapInfoCache.getKey(queryCtx));
+    }
+
+    @Test
+    void testSchemaHashedOncePerModelVersion() {
+        ChatQueryContext queryCtx = queryContext();
+        schemaMapInfoCache.getKey(queryCtx);
+        schemaMapInfoCache.getKey(queryCtx);
+        Mockito.verify(dataSetSchema, Mockito.times(1)).getMetrics();
+
+        modelVersionManager.increase(1L);
+        schemaMapInfoCache.getKey(queryCtx);
+        Mockito.verify(dataSetSchema, Mockito.times(2)).getMetrics();
+    }
+
+    @Test
+    void testMapperStats() {
+        MappingContext first = new MappingContext();
+        first.addCost("KeywordMapper", 10L);
+        first.addCost("EmbeddingMapper", 30L);
+        MappingContext second = new MappingContext();
+        second.addCost("KeywordMapper", 20L);
+        second.markFailed();
+        schemaMapInfoCache.record(first);
+        schemaMapInfoCache.record(second);
+
+        Map<String, Object> stats = schemaMapInfoCache.getStats();
+        Assertions.assertEquals(2L, stats.get("mapping"));
+        Assertions.assertEquals(1L, stats.get("failed"));
+        Map<String, Map<String, Long>> mappers =
+                (Map<String, Map<String, Long>>) stats.get("mappers");
+        Assertions.assertEquals(Map.of("count", 2L, "totalMs", 30L, "avgMs", 15L, "maxMs", 20L),
+                mappers.get("KeywordMapper"));
+        Assertions.assertEquals(1L, mappers.get("EmbeddingMapper").get("count"));
+    }
+
+    private ChatQueryContext queryContext() {
+        QueryNLReq request = new QueryNLReq();
+        request.setQueryText("超音数 访问次数");
+        request.setDataSetIds(Sets.newHashSet(1L));
+        ChatQueryContext queryCtx = new ChatQueryContext(request);
+        List<DataSetSchema> dataSetSchemas = Lists.newArrayList(dataSetSchema);
+        queryCtx.setSemanticSchema(new SemanticSchema(dataSetSchemas));
+        return queryCtx;
+    }
+}